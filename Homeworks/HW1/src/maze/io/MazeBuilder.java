@@ -0,0 +1,113 @@
+package maze.io;
+
+import java.util.Arrays;
+
+import maze.Direction;
+import maze.Door;
+import maze.Maze;
+import maze.Room;
+import maze.Wall;
+
+/**
+ * Wires rooms, walls and doors as the records arrive. Room numbers and door
+ * ids are given dense indices by a {@link NumberIndex}, and rooms and doors
+ * are kept in arrays by index, so each record is resolved with a few array
+ * reads and the maze is complete after a single pass, however sparse the
+ * numbers are.
+ * <p>
+ * Door records may come before or after the rooms that refer to them. The
+ * first room record becomes the current room.
+ */
+public class MazeBuilder implements MazeHandler {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Maze maze;
+    private final NumberIndex roomIndex = new NumberIndex();
+    private final NumberIndex doorIndex = new NumberIndex();
+    private Room[] rooms = new Room[64];
+    private Door[] doors = new Door[16];
+    private Room[] doorRooms = new Room[32];
+    private byte[] doorSides = new byte[32];
+
+    public MazeBuilder() {
+        this(new Maze());
+    }
+
+    public MazeBuilder(final Maze maze) {
+        this.maze = maze;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        Room room = roomFor(number);
+        if (maze.getCurrentRoom() == null) {
+            maze.setCurrentRoom(room);
+        }
+        side(room, Direction.North, north);
+        side(room, Direction.South, south);
+        side(room, Direction.East, east);
+        side(room, Direction.West, west);
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        Door door = new Door(roomFor(room1), roomFor(room2));
+        door.setOpen(open);
+        int d = doorSlot(id);
+        doors[d] = door;
+        for (int i = 2 * d; i < 2 * d + 2; i++) {
+            if (doorRooms[i] != null) {
+                doorRooms[i].setSide(DIRECTIONS[doorSides[i]], door);
+                doorRooms[i] = null;
+            }
+        }
+    }
+
+    private void side(final Room room, final Direction dir, final int side) {
+        if (side == WALL) {
+            room.setSide(dir, new Wall());
+        } else if (MazeHandler.isDoor(side)) {
+            int d = doorSlot(MazeHandler.doorId(side));
+            if (doors[d] != null) {
+                room.setSide(dir, doors[d]);
+            } else {
+                int slot = doorRooms[2 * d] == null ? 2 * d : 2 * d + 1;
+                doorRooms[slot] = room;
+                doorSides[slot] = (byte) dir.ordinal();
+            }
+        } else {
+            Room neighbor = roomFor(side);
+            room.setSide(dir, neighbor);
+            neighbor.setSide(dir.opposite(), room);
+        }
+    }
+
+    private Room roomFor(final int number) {
+        int i = roomIndex.add(number);
+        if (i == rooms.length) {
+            rooms = Arrays.copyOf(rooms, rooms.length * 2);
+        }
+        Room room = rooms[i];
+        if (room == null) {
+            room = new Room(number);
+            rooms[i] = room;
+            maze.addRoom(room);
+        }
+        return room;
+    }
+
+    private int doorSlot(final int id) {
+        int d = doorIndex.add(id);
+        if (d == doors.length) {
+            int size = doors.length * 2;
+            doors = Arrays.copyOf(doors, size);
+            doorRooms = Arrays.copyOf(doorRooms, size * 2);
+            doorSides = Arrays.copyOf(doorSides, size * 2);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,103 @@
+package maze.io;
+
+import java.util.Arrays;
+
+/**
+ * Dense indices from 0 for room or door numbers, in the order the numbers
+ * are first added. Numbers up to a few times the count are looked up in an
+ * array by number; any other, such as a lone room numbered 1500000000, goes
+ * in a small open-addressing table instead, so memory stays proportional to
+ * the count however the numbers are spread.
+ */
+public final class NumberIndex {
+    private static final int DENSE_SLACK = 1024;
+
+    private int[] dense = new int[16];
+    private int[] keys;
+    private int[] values;
+    private int sparse;
+    private int size;
+
+    /**
+     * Returns the index of a number, or -1 if it was never added.
+     */
+    public int get(final int number) {
+        if (number >= 0 && number < dense.length) {
+            int value = dense[number];
+            if (value != 0) {
+                return value - 1;
+            }
+        }
+        return sparse == 0 ? -1 : lookup(number);
+    }
+
+    /**
+     * Returns the index of a number, adding it with the next index if it is
+     * new.
+     */
+    public int add(final int number) {
+        int index = get(number);
+        if (index >= 0) {
+            return index;
+        }
+        index = size++;
+        if (number >= 0 && number < 4L * size + DENSE_SLACK) {
+            if (number >= dense.length) {
+                dense = Arrays.copyOf(dense, (int) Math.min(Math.max(number + 1L, 2L * dense.length),
+                        4L * size + DENSE_SLACK));
+            }
+            dense[number] = index + 1;
+        } else {
+            if (keys == null || 2 * (sparse + 1) > keys.length) {
+                rehash(keys == null ? 16 : 2 * keys.length);
+            }
+            insert(number, index + 1);
+            sparse++;
+        }
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int lookup(final int number) {
+        int mask = keys.length - 1;
+        for (int i = slot(number, mask);; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                return -1;
+            }
+            if (keys[i] == number) {
+                return values[i] - 1;
+            }
+        }
+    }
+
+    private void insert(final int number, final int value) {
+        int mask = keys.length - 1;
+        int i = slot(number, mask);
+        while (values[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = number;
+        values[i] = value;
+    }
+
+    private void rehash(final int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    private static int slot(final int number, final int mask) {
+        return (number * 0x9E3779B9 >>> 16 ^ number * 0x9E3779B9) & mask;
+    }
+}
@@ -2,7 +2,7 @@ package maze;
 
 public class BlueMazeFactory extends MazeFactory {
     public Wall makeWall(){
-        return new BlueWall();
+        return sharedWall(BlueWall.class, BlueWall::new);
     }
 
     public Door makeDoor(Room r1, Room r2){
@@ -38,5 +38,22 @@ public enum Direction
 	North,
 	South,
 	East,
-	West
+	West;
+
+	/**
+	 * Returns the direction facing back through the same side.
+	 */
+	public Direction opposite()
+	{
+		switch (this) {
+		case North:
+			return South;
+		case South:
+			return North;
+		case East:
+			return West;
+		default:
+			return East;
+		}
+	}
 }
@@ -28,17 +28,36 @@
 package maze;
 
 import java.awt.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
+ * The open state may be changed from several threads; entering a closed
+ * door opens it exactly once, however many threads enter it together.
+ * Once the door is added to a maze with {@link Maze#addDoor(Door)} the state
+ * lives in the maze's {@link DoorState} under the door's id.
  *
  * @author Sunny
  * @version 1.0
  * @since 1.0
  */
-public class Door extends MapSite
+public class Door extends MapSite implements Cloneable
 {
-	private final Room[] rooms = new Room[2];
-	private boolean open;
+	private static final VarHandle OPEN;
+
+	static
+	{
+		try {
+			OPEN = MethodHandles.lookup().findVarHandle(Door.class, "open", boolean.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Room[] rooms = new Room[2];
+	private volatile boolean open;
+	private volatile DoorState state;
+	private int id = -1;
 
 	public Door(final Room r1, final Room r2)
 	{
@@ -47,17 +66,96 @@ public class Door extends MapSite
 		rooms[1] = r2;
 	}
 	
-	public final boolean isOpen()
+	public boolean isOpen()
 	{
-		return open;
+		DoorState s = state;
+		return s == null ? open : s.isOpen(id);
 	}
 	
-	public final void setOpen(boolean open)
+	public void setOpen(boolean open)
+	{
+		DoorState s = state;
+		if (s == null)
+			this.open = open;
+		else
+			s.setOpen(id, open);
+	}
+
+	/**
+	 * Returns the door's id in its maze's {@link DoorState}, or -1.
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Moves the open state into {@code state} under a new id and returns it.
+	 */
+	final int attach(final DoorState state)
+	{
+		if (this.state != null)
+			throw new IllegalStateException("door " + id + " already belongs to a maze");
+		id = state.allocate(open);
+		this.state = state;
+		return id;
+	}
+
+	/**
+	 * Gives the door an id in {@code state} that is already taken, for a
+	 * copy of a door that had that id in a state {@code state} was restored
+	 * from.
+	 */
+	final void attach(final DoorState state, final int id)
+	{
+		if (this.state != null)
+			throw new IllegalStateException("door " + this.id + " already belongs to a maze");
+		this.id = id;
+		this.state = state;
+	}
+
+	/**
+	 * Moves the open state back out of {@code state}, which must have given
+	 * the door the last id it handed out, and frees the id.
+	 */
+	final void detach(final DoorState state)
+	{
+		if (this.state != state)
+			throw new IllegalArgumentException("door " + id + " does not belong to this maze");
+		open = state.isOpen(id);
+		state.release(id);
+		this.state = null;
+		id = -1;
+	}
+
+	/**
+	 * Returns true if the door's open state lives in {@code state}.
+	 */
+	final boolean belongsTo(final DoorState state)
+	{
+		return this.state == state;
+	}
+
+	/**
+	 * Returns one of the two rooms the door was made with, 0 or 1, so that a
+	 * maze that keeps doors its own way can take this one in.
+	 */
+	public final Room getRoom(final int i)
 	{
-		this.open = open;
+		return rooms[i];
+	}
+
+	/**
+	 * Sets the open state to {@code open} if it is {@code expected}, as one
+	 * atomic step. Returns false, changing nothing, if it was not.
+	 */
+	public boolean compareAndSetOpen(final boolean expected, final boolean open)
+	{
+		DoorState s = state;
+		return s == null ? OPEN.compareAndSet(this, expected, open) : s.compareAndSet(id, expected, open);
 	}
 	
-	public final Room getOtherSide(final Room r)
+	public Room getOtherSide(final Room r)
 	{
 		if (rooms[0] == r)
 			return rooms[1];
@@ -67,13 +165,33 @@ public class Door extends MapSite
 			return null;
 	}
 	
+	/**
+	 * Returns a door of the same class between two other rooms, open if
+	 * this one is, with no entry listeners and in no maze, for
+	 * {@link MazePrototype}. A subclass with state of its own overrides this
+	 * to copy it too.
+	 */
+	protected Door copy(final Room r1, final Room r2)
+	{
+		Door door;
+		try {
+			door = (Door) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+		door.rooms = new Room[] { r1, r2 };
+		door.open = isOpen();
+		door.state = null;
+		door.id = -1;
+		door.clearEntryListeners();
+		return door;
+	}
+
 	@Override
 	public void enter()
 	{
-		if (!open) {
-			System.out.println("Opened the door.");
-			open = true;
-		}
+		if (!isOpen() && compareAndSetOpen(false, true))
+			getEventSink().doorOpened(this);
 
 		super.notifyEntryListeners();
 	}
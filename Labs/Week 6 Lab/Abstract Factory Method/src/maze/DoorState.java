@@ -0,0 +1,243 @@
+package maze;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The open state of a maze's doors, one bit per door id, kept in pages of
+ * 4096 bits. {@link #snapshot()} and {@link #restore(Snapshot)} are O(1):
+ * they share the page directory and start a new generation, and the first
+ * write afterwards copies the directory (one pointer per page) and each page
+ * it touches (512 bytes). A planner can therefore fork and roll back the
+ * doors of a large maze thousands of times a second.
+ * <p>
+ * Reads and writes are atomic per door and may come from any number of
+ * threads. Each page records the generation it was copied in; a write to a
+ * page of the current generation is a CAS on it, and a page of an older one
+ * is copied under the state's lock first, so no write ever lands on a page
+ * that is about to be replaced. Taking or restoring a snapshot must not
+ * overlap with writes; it is meant for one planning thread, not for a maze
+ * agents are moving in.
+ * <p>
+ * A {@link Listener} hears of every door that {@link #setOpen(int, boolean)}
+ * or {@link #compareAndSet(int, boolean, boolean)} opens or closes, on the
+ * thread that did it. Adding, releasing and restoring doors are not told.
+ */
+public final class DoorState {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 6);
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle DIRECTORY = MethodHandles.arrayElementVarHandle(long[][].class);
+
+    /**
+     * Generations are unique across every state, so that a page shared by a
+     * restore from another state is never taken for one of this state's.
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /**
+     * The doors as they were when the snapshot was taken.
+     */
+    public static final class Snapshot {
+        private final long[][] pages;
+        private final int size;
+
+        private Snapshot(final long[][] pages, final int size) {
+            this.pages = pages;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Told of each door opened or closed through its state.
+     */
+    public interface Listener {
+        void doorChanged(int id, boolean open);
+    }
+
+    /** Each page has {@code PAGE_WORDS} words of bits, then the generation that owns it. */
+    private volatile long[][] pages = new long[0][];
+    private volatile long generation = GENERATIONS.incrementAndGet();
+    private long directoryGeneration = generation;
+    private int size;
+    private volatile Listener listener;
+
+    /**
+     * Adds a door and returns its id. Ids are handed out from 0 in order.
+     */
+    public synchronized int allocate(final boolean open) {
+        int id = size;
+        int page = id >>> PAGE_SHIFT;
+        if (page == pages.length) {
+            long[][] directory = Arrays.copyOf(pages, page + 1);
+            directory[page] = newPage();
+            directoryGeneration = generation;
+            pages = directory;
+        }
+        size = id + 1;
+        set(id, open);
+        return id;
+    }
+
+    /**
+     * Takes back the last id handed out, to undo an
+     * {@link #allocate(boolean)}. The door is closed first so that
+     * {@link #countOpen()} no longer counts it.
+     */
+    public synchronized void release(final int id) {
+        if (id != size - 1) {
+            throw new IllegalArgumentException("door " + id + " is not the last door added");
+        }
+        set(id, false);
+        size = id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOpen(final int id) {
+        long word = (long) WORDS.getVolatile(page(pages, id >>> PAGE_SHIFT), (id >>> 6) & (PAGE_WORDS - 1));
+        return (word & (1L << id)) != 0;
+    }
+
+    public void setOpen(final int id, final boolean open) {
+        Listener l = listener;
+        if (set(id, open) && l != null) {
+            l.doorChanged(id, open);
+        }
+    }
+
+    /**
+     * Sets a door to {@code open} if it is {@code expected}, atomically.
+     */
+    public boolean compareAndSet(final int id, final boolean expected, final boolean open) {
+        long[] page = writable(id);
+        int w = (id >>> 6) & (PAGE_WORDS - 1);
+        long bit = 1L << id;
+        long old;
+        do {
+            old = (long) WORDS.getVolatile(page, w);
+            if (((old & bit) != 0) != expected) {
+                return false;
+            }
+        } while (!WORDS.compareAndSet(page, w, old, open ? old | bit : old & ~bit));
+        Listener l = listener;
+        if (expected != open && l != null) {
+            l.doorChanged(id, open);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the listener told of doors opened or closed, or null.
+     */
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the one listener told of doors opened or closed, or none with
+     * null. A listener that wants to share the state passes the events on
+     * to the one it replaced.
+     */
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized Snapshot snapshot() {
+        generation = GENERATIONS.incrementAndGet();
+        return new Snapshot(pages, size);
+    }
+
+    /**
+     * Puts every door back as it was in the snapshot. Doors added since are
+     * dropped; their ids will be handed out again. The snapshot may come
+     * from another state, which this one then starts as a copy of, sharing
+     * its pages until either writes.
+     */
+    public synchronized void restore(final Snapshot snapshot) {
+        generation = GENERATIONS.incrementAndGet();
+        size = snapshot.size;
+        pages = snapshot.pages;
+    }
+
+    /**
+     * Counts the doors that are open.
+     */
+    public int countOpen() {
+        long[][] directory = pages;
+        int count = 0;
+        for (int p = 0; p < directory.length; p++) {
+            long[] page = page(directory, p);
+            for (int w = 0; w < PAGE_WORDS; w++) {
+                count += Long.bitCount((long) WORDS.getVolatile(page, w));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sets a door's bit and returns true if that changed it.
+     */
+    private boolean set(final int id, final boolean open) {
+        long[] page = writable(id);
+        int w = (id >>> 6) & (PAGE_WORDS - 1);
+        long bit = 1L << id;
+        long old;
+        do {
+            old = (long) WORDS.getVolatile(page, w);
+        } while (!WORDS.compareAndSet(page, w, old, open ? old | bit : old & ~bit));
+        return ((old & bit) != 0) != open;
+    }
+
+    private long[] writable(final int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("door " + id);
+        }
+        int p = id >>> PAGE_SHIFT;
+        long[] page = page(pages, p);
+        if (page[PAGE_WORDS] == generation) {
+            return page;
+        }
+        return copy(p);
+    }
+
+    /**
+     * Copies a page of an older generation into this one, unless another
+     * writer got there first. Nothing writes to a page of an older
+     * generation, so the copy misses no write.
+     */
+    private synchronized long[] copy(final int p) {
+        long[][] directory = pages;
+        long[] page = page(directory, p);
+        if (page[PAGE_WORDS] == generation) {
+            return page;
+        }
+        if (directoryGeneration != generation) {
+            directory = directory.clone();
+            directoryGeneration = generation;
+        }
+        page = page.clone();
+        page[PAGE_WORDS] = generation;
+        DIRECTORY.setRelease(directory, p, page);
+        pages = directory;
+        return page;
+    }
+
+    private long[] newPage() {
+        long[] page = new long[PAGE_WORDS + 1];
+        page[PAGE_WORDS] = generation;
+        return page;
+    }
+
+    private static long[] page(final long[][] directory, final int p) {
+        return (long[]) DIRECTORY.getAcquire(directory, p);
+    }
+}
@@ -0,0 +1,36 @@
+package maze;
+
+/**
+ * Receives the side effects of entering sites that used to go straight to
+ * {@code System.out}. Install one with {@link MapSite#setEventSink(EventSink)};
+ * {@link #CONSOLE} is the default and prints the same messages as before.
+ */
+public interface EventSink {
+    /** Prints each event, as the game always has. */
+    EventSink CONSOLE = new EventSink() {
+        @Override
+        public void wallHit(final Wall wall) {
+            System.out.println("Ouch! Ran into a wall.");
+        }
+
+        @Override
+        public void doorOpened(final Door door) {
+            System.out.println("Opened the door.");
+        }
+    };
+
+    /** Drops every event. */
+    EventSink NONE = new EventSink() {
+        @Override
+        public void wallHit(final Wall wall) {
+        }
+
+        @Override
+        public void doorOpened(final Door door) {
+        }
+    };
+
+    void wallHit(Wall wall);
+
+    void doorOpened(Door door);
+}
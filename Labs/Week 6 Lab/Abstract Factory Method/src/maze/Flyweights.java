@@ -0,0 +1,50 @@
+package maze;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * One shared instance per class of site that holds no state of its own,
+ * such as a theme's wall. A wall looks the same on every side it stands
+ * on, so a maze needs one per theme rather than one per side.
+ * <p>
+ * A shared site is the same object wherever it is used: a listener added
+ * to it is added everywhere. Walls do not notify entry listeners, so that
+ * only matters to code that keeps its own per-site state by identity.
+ */
+public final class Flyweights {
+    private static final ConcurrentMap<Class<? extends MapSite>, MapSite> SHARED = new ConcurrentHashMap<>();
+
+    private Flyweights() {
+    }
+
+    /**
+     * Returns the shared instance of a class, or null if none was made yet.
+     */
+    public static <T extends MapSite> T get(final Class<T> type) {
+        return type.cast(SHARED.get(type));
+    }
+
+    /**
+     * Returns the shared instance of a class, making it on first use. The
+     * supplier must return an instance of exactly that class.
+     */
+    public static <T extends MapSite> T get(final Class<T> type, final Supplier<? extends T> make) {
+        return type.cast(SHARED.computeIfAbsent(type, t -> {
+            MapSite site = make.get();
+            if (site.getClass() != type) {
+                throw new IllegalArgumentException("made a " + site.getClass().getName() + ", not a "
+                        + type.getName());
+            }
+            return site;
+        }));
+    }
+
+    /**
+     * Returns the number of shared instances.
+     */
+    public static int size() {
+        return SHARED.size();
+    }
+}
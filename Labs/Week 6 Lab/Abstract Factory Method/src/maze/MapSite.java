@@ -28,10 +28,22 @@
 package maze;
 
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
+ * Entry listeners are kept in an array that is replaced, never modified, when
+ * a listener is added or removed, so notification reads one volatile field and
+ * runs without a lock or an iterator. Listeners added or removed while a
+ * notification is running take effect from the next one.
+ * <p>
+ * By default listeners run on the thread that entered the site. After
+ * {@link #setEntryDispatcher(Executor)} they run on the given executor instead.
+ * Other side effects of entering a site go to the {@link EventSink}.
  * 
  * @author Sunny
  * @version 1.0
@@ -39,22 +51,124 @@ import java.util.List;
  */
 public abstract class MapSite
 {
-	private List<EntryListener> listeners = new ArrayList<EntryListener>();
+	private static final EntryListener[] NO_LISTENERS = new EntryListener[0];
 
-	public final synchronized void addEntryListener(final EntryListener el)
+	private static final AtomicReferenceFieldUpdater<MapSite, EntryListener[]> LISTENERS =
+			AtomicReferenceFieldUpdater.newUpdater(MapSite.class, EntryListener[].class, "listeners");
+
+	private static volatile Executor dispatcher;
+
+	private static volatile EventSink eventSink = EventSink.CONSOLE;
+
+	private volatile EntryListener[] listeners = NO_LISTENERS;
+
+	public final void addEntryListener(final EntryListener el)
 	{
-		listeners.add(el);
+		EntryListener[] current;
+		EntryListener[] next;
+		do {
+			current = listeners;
+			next = new EntryListener[current.length + 1];
+			System.arraycopy(current, 0, next, 0, current.length);
+			next[current.length] = el;
+		} while (!LISTENERS.compareAndSet(this, current, next));
 	}
 	
-	public final synchronized void removeEntryListener(final EntryListener el)
+	public final void removeEntryListener(final EntryListener el)
+	{
+		EntryListener[] current;
+		EntryListener[] next;
+		do {
+			current = listeners;
+			int i = 0;
+			while (i < current.length && !current[i].equals(el))
+				i++;
+			if (i == current.length)
+				return;
+			if (current.length == 1) {
+				next = NO_LISTENERS;
+			} else {
+				next = new EntryListener[current.length - 1];
+				System.arraycopy(current, 0, next, 0, i);
+				System.arraycopy(current, i + 1, next, i, next.length - i);
+			}
+		} while (!LISTENERS.compareAndSet(this, current, next));
+	}
+
+	/**
+	 * Drops every entry listener, for a copy made with {@link Object#clone()}
+	 * that must not share them.
+	 */
+	final void clearEntryListeners()
+	{
+		listeners = NO_LISTENERS;
+	}
+
+	protected final void notifyEntryListeners()
+	{
+		final EntryListener[] snapshot = listeners;
+		if (snapshot.length == 0)
+			return;
+		final Executor executor = dispatcher;
+		if (executor == null)
+			dispatch(snapshot);
+		else
+			executor.execute(() -> dispatch(snapshot));
+	}
+
+	private void dispatch(final EntryListener[] snapshot)
+	{
+		for (int i = 0; i < snapshot.length; i++)
+			snapshot[i].entered(this);
+	}
+
+	/**
+	 * Hands every later entry notification, on every site, to the given
+	 * executor; {@code null} goes back to notifying on the entering thread.
+	 * Listeners of a site are called in order within one notification, but
+	 * separate notifications are only ordered if the executor runs one task
+	 * at a time.
+	 */
+	public static void setEntryDispatcher(final Executor executor)
+	{
+		dispatcher = executor;
+	}
+
+	public static Executor getEntryDispatcher()
+	{
+		return dispatcher;
+	}
+
+	/**
+	 * Sends wall hits and door openings, on every site, to the given sink
+	 * instead of the console.
+	 */
+	public static void setEventSink(final EventSink sink)
+	{
+		eventSink = sink == null ? EventSink.NONE : sink;
+	}
+
+	public static EventSink getEventSink()
 	{
-		listeners.remove(el);
+		return eventSink;
 	}
 
-	protected final synchronized void notifyEntryListeners()
+	/**
+	 * Creates an executor for {@link #setEntryDispatcher(Executor)} with a
+	 * fixed number of daemon threads and a bounded queue. When the queue is
+	 * full the entering thread runs the listeners itself, which slows the
+	 * producers down instead of dropping events or growing without limit.
+	 */
+	public static ExecutorService newBoundedDispatcher(final int threads, final int capacity)
 	{
-		for (EntryListener el : listeners)
-			el.entered(this);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(capacity), r -> {
+					Thread thread = new Thread(r, "entry-dispatch");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.prestartAllCoreThreads();
+		return executor;
 	}
 
 	public abstract Color getColor();
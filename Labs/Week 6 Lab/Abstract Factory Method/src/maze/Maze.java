@@ -39,19 +39,75 @@ import java.util.Map;
  */
 public class Maze implements Iterable<Room>
 {
-	private final Map<Integer, Room> rooms = new HashMap<Integer, Room>();
+	private final Map<Integer, Room> rooms;
+	private final DoorState doors = new DoorState();
 	private Room current;
 	
 	public Maze()
 	{
+		rooms = new HashMap<Integer, Room>();
 	}
 
-	public final void addRoom(final Room r)
+	/**
+	 * Makes an empty maze whose room map is sized for {@code expectedRooms}.
+	 */
+	Maze(final int expectedRooms)
+	{
+		rooms = new HashMap<Integer, Room>(Math.max(16, (int) (expectedRooms / 0.75f) + 1));
+	}
+
+	public void addRoom(final Room r)
 	{
 		rooms.put(r.getNumber(), r);
 	}
 
-	public final Room getRoom(int number)
+	/**
+	 * Takes a room out of the maze and returns it, or null if there is no
+	 * such room. Sides of other rooms that lead to it are left alone.
+	 */
+	public Room removeRoom(final int number)
+	{
+		return rooms.remove(number);
+	}
+
+	/**
+	 * Puts the door's open state in this maze's {@link DoorState}, where it
+	 * can be snapshotted with every other door. Returns the door's id.
+	 */
+	public int addDoor(final Door d)
+	{
+		return d.attach(doors);
+	}
+
+	/**
+	 * Takes back the door added last with {@link #addDoor(Door)}, to undo
+	 * it: the open state moves back into the door and its id is handed out
+	 * again. Sides that lead to the door are left alone.
+	 */
+	public void removeDoor(final Door d)
+	{
+		d.detach(doors);
+	}
+
+	/**
+	 * Returns true if this maze's rooms and doors are fixed, so that
+	 * {@link #addRoom(Room)}, {@link #removeRoom(int)}, {@link #addDoor(Door)}
+	 * and {@link #removeDoor(Door)} throw
+	 * {@link UnsupportedOperationException}, as
+	 * for a {@link maze.paged.PagedMaze} read from a file it never writes.
+	 * The sides of its rooms can still be set.
+	 */
+	public boolean isFixed()
+	{
+		return false;
+	}
+
+	public DoorState getDoorState()
+	{
+		return doors;
+	}
+
+	public Room getRoom(int number)
 	{
 		return rooms.get(number);
 	}
@@ -67,17 +123,17 @@ public class Maze implements Iterable<Room>
 		return rooms.size();
 	}
 
-	public final Room getCurrentRoom()
+	public Room getCurrentRoom()
 	{
 		return current;
 	}
 
-	public final void setCurrentRoom(final Room room)
+	public void setCurrentRoom(final Room room)
 	{
 		current = room;
 	}
 	
-	public final void setCurrentRoom(int number)
+	public void setCurrentRoom(int number)
 	{
 		current = rooms.get(number);
 	}
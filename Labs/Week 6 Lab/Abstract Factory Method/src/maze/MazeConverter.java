@@ -0,0 +1,40 @@
+package maze;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import maze.io.MazeBinaryWriter;
+import maze.io.MazeFiles;
+import maze.io.MazeTextWriter;
+
+/**
+ * Converts maze files between the text and binary formats without building
+ * the maze. The output format follows the output file's extension:
+ * {@code .mazeb} is binary, anything else is text.
+ * <p>
+ * Usage: {@code MazeConverter <input> <output>}
+ */
+public class MazeConverter {
+    public static void convert(final Path input, final Path output) throws IOException {
+        if (output.getFileName().toString().endsWith(".mazeb")) {
+            try (MazeBinaryWriter writer = new MazeBinaryWriter(output)) {
+                MazeFiles.read(input, writer);
+            }
+        } else {
+            try (MazeTextWriter writer = new MazeTextWriter(output)) {
+                MazeFiles.read(input, writer);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: MazeConverter <input> <output>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.printf("wrote %s in %.3f s%n", args[1], (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -27,12 +27,14 @@
  */
 package maze;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.List;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import maze.io.MazeBuilder;
+import maze.io.MazeFiles;
 
 /**
  * 
@@ -42,6 +44,9 @@ import java.util.Scanner;
  */
 public abstract class MazeFactory
 {
+    private final LongAdder sharedRequests = new LongAdder();
+    private final LongAdder sharedMade = new LongAdder();
+
 	/**
 	 * Creates a small maze.
 	 */
@@ -54,6 +59,7 @@ public abstract class MazeFactory
         maze.addRoom(room1);
         maze.addRoom(room2);
         Door door = makeDoor(room1, room2);
+        maze.addDoor(door);
         room1.setSide(Direction.North, makeWall());
         room1.setSide(Direction.East, makeWall());
         room1.setSide(Direction.West, makeWall());
@@ -69,142 +75,64 @@ public abstract class MazeFactory
 	}
 
     public Maze loadMaze(final String path) {
-        Maze maze = new Maze();
-        File file = new File(path);
-        Scanner sc;
+        MazeBuilder builder = new MazeBuilder(this);
         try {
-            sc = new Scanner(file);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+            MazeFiles.read(Paths.get(path), builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return builder.getMaze();
+    }
 
-        Hashtable<String, List<Direction>> doors = new Hashtable<>();
-        while (sc.hasNextLine()) {
-            List<String> line = List.of(sc.nextLine().split(" "));
-            if (line.get(0).equals("room")) {
-                int num = Integer.parseInt(line.get(1));
-                Room room;
-                if (maze.getRoom(num) == null) {
-                    room = makeRoom(num);
-                    maze.addRoom(room);
-                } else {
-                    room = maze.getRoom(num);
-                }
-                if (maze.getNumberOfRooms() == 1) {
-                    maze.setCurrentRoom(room);
-                }
-
-                String edge = line.get(2);
-                if (edge.contains("d")) {
-                    if (doors.containsKey(edge)) {
-                        doors.get(edge).add(Direction.North);
-                    } else {
-                        doors.put(edge, new ArrayList<>());
-                        doors.get(edge).add(Direction.North);
-                    }
-                } else if (edge.equals("wall")) {
-                    room.setSide(Direction.North, makeWall());
-                } else {
-                    int neighborNum = Integer.parseInt(edge);
-                    if (maze.getRoom(neighborNum) == null) {
-                        Room newRoom = makeRoom(neighborNum);
-                        maze.addRoom(newRoom);
-                        room.setSide(Direction.North, maze.getRoom(neighborNum));
-                        maze.getRoom(neighborNum).setSide(Direction.South, room);
-                    } else {
-                        maze.getRoom(neighborNum).setSide(Direction.South, room);
-                        room.setSide(Direction.North, maze.getRoom(neighborNum));
-                    }
-                }
-
-                edge = line.get(3);
-                if (edge.contains("d")) {
-                    if (doors.containsKey(edge)) {
-                        doors.get(edge).add(Direction.South);
-                    } else {
-                        doors.put(edge, new ArrayList<>());
-                        doors.get(edge).add(Direction.South);
-                    }
-                } else if (edge.equals("wall")) {
-                    room.setSide(Direction.South, makeWall());
-                } else {
-                    int neighborNum = Integer.parseInt(edge);
-                    if (maze.getRoom(neighborNum) == null) {
-                        Room newRoom = makeRoom(neighborNum);
-                        maze.addRoom(newRoom);
-                        room.setSide(Direction.South, maze.getRoom(neighborNum));
-                        maze.getRoom(neighborNum).setSide(Direction.North, room);
-                    } else {
-                        maze.getRoom(neighborNum).setSide(Direction.North, room);
-                        room.setSide(Direction.South, maze.getRoom(neighborNum));
-                    }
-                }
-
-                edge = line.get(4);
-                if (edge.contains("d")) {
-                    if (doors.containsKey(edge)) {
-                        doors.get(edge).add(Direction.East);
-                    } else {
-                        doors.put(edge, new ArrayList<>());
-                        doors.get(edge).add(Direction.East);
-                    }
-                } else if (edge.equals("wall")) {
-                    room.setSide(Direction.East, makeWall());
-                } else {
-                    int neighborNum = Integer.parseInt(edge);
-                    if (maze.getRoom(neighborNum) == null) {
-                        Room newRoom = makeRoom(neighborNum);
-                        maze.addRoom(newRoom);
-                        room.setSide(Direction.East, maze.getRoom(neighborNum));
-                        maze.getRoom(neighborNum).setSide(Direction.West, room);
-                    } else {
-                        maze.getRoom(neighborNum).setSide(Direction.West, room);
-                        room.setSide(Direction.East, maze.getRoom(neighborNum));
-                    }
-                }
-
-                edge = line.get(5);
-                if (edge.contains("d")) {
-                    if (doors.containsKey(edge)) {
-                        doors.get(edge).add(Direction.West);
-                    } else {
-                        doors.put(edge, new ArrayList<>());
-                        doors.get(edge).add(Direction.West);
-                    }
-                } else if (edge.equals("wall")) {
-                    room.setSide(Direction.West, makeWall());
-                } else {
-                    int neighborNum = Integer.parseInt(edge);
-                    if (maze.getRoom(neighborNum) == null) {
-                        Room newRoom = makeRoom(neighborNum);
-                        maze.addRoom(newRoom);
-                        room.setSide(Direction.West, maze.getRoom(neighborNum));
-                        maze.getRoom(neighborNum).setSide(Direction.East, room);
-                    } else {
-                        maze.getRoom(neighborNum).setSide(Direction.East, room);
-                        room.setSide(Direction.West, maze.getRoom(neighborNum));
-                    }
-                }
+    /**
+     * Loads a maze like {@link #loadMaze(String)}, tokenizing text files on
+     * several threads. The rooms are still built on the calling thread, so
+     * the factory needs no locking.
+     */
+    public Maze loadMazeParallel(final String path) {
+        MazeBuilder builder = new MazeBuilder(this);
+        try {
+            MazeFiles.readParallel(Paths.get(path), builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.getMaze();
+    }
 
-            } else {
-                if (line.size() > 1) {
-                    String doorName = line.get(1);
-                    Room r1 = maze.getRoom(Integer.parseInt(line.get(2)));
-                    Room r2 = maze.getRoom(Integer.parseInt(line.get(3)));
+    /**
+     * Loads a maze like {@link #loadMaze(String)}, once, as the template of
+     * a {@link MazePrototype} that makes copies of it without reading the
+     * file or calling this factory again.
+     */
+    public MazePrototype loadPrototype(final String path) {
+        return new MazePrototype(loadMaze(path));
+    }
 
-                    Door door = makeDoor(r1, r2);
-                    if (r1.getSide(doors.get(doorName).get(0)) == null) {
-                        r1.setSide(doors.get(doorName).get(0), door);
-                        r2.setSide(doors.get(doorName).get(1), door);
-                    } else {
-                        r1.setSide(doors.get(doorName).get(1), door);
-                        r2.setSide(doors.get(doorName).get(0), door);
-                    }
-                    door.setOpen(line.get(4).equals("open"));
-                }
-            }
+    /**
+     * Returns the shared wall of a theme from {@link Flyweights}, for
+     * {@link #makeWall()}. Every call that finds it already made counts as
+     * an object saved; only the call whose supplier runs counts as made, so
+     * the count holds when several threads ask for the first wall at once.
+     */
+    protected final <T extends Wall> T sharedWall(final Class<T> type, final Supplier<? extends T> make) {
+        sharedRequests.increment();
+        T wall = Flyweights.get(type);
+        if (wall == null) {
+            wall = Flyweights.get(type, () -> {
+                T made = make.get();
+                sharedMade.increment();
+                return made;
+            });
         }
-        return maze;
+        return wall;
+    }
+
+    /**
+     * Returns how many sites this factory handed out shared instead of
+     * making new ones.
+     */
+    public long getObjectsSaved() {
+        return sharedRequests.sum() - sharedMade.sum();
     }
 
     public abstract Wall makeWall();
@@ -0,0 +1,149 @@
+package maze;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A maze kept as a template, from which any number of independent copies
+ * can be made without going back to the file or the factory. The template's
+ * links are read once into int arrays; {@link #newMaze()} then clones each
+ * room and door with {@link Room#copy()} and {@link Door#copy(Room, Room)},
+ * so the copies keep the theme's classes, and wires them up from the
+ * arrays. The doors' open states are shared with the template's
+ * {@link DoorState} page by page until a copy opens or closes one.
+ * <p>
+ * Walls, and any other site that is neither a room nor a door, are not
+ * copied: every copy uses the template's, as the theme factories already
+ * share one wall across a maze. Rooms and doors are the copy's own, with
+ * no entry listeners.
+ * <p>
+ * The template is read again by every copy for each room's and door's own
+ * fields, so it must not be changed or played in once a prototype is made
+ * of it. {@link #newMaze()} only reads, and may be called from several
+ * threads at once.
+ */
+public final class MazePrototype {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int SITE = -1;
+
+    private final Room[] rooms;
+    private final int[] sides;
+    private final MapSite[] sites;
+    private final Door[] doors;
+    private final int[] doorRooms;
+    private final int[] doorIds;
+    private final DoorState.Snapshot doorStates;
+    private final int current;
+
+    /**
+     * Makes a prototype of a maze. Every room a side leads to must be in the
+     * maze, as must the rooms of every door.
+     */
+    public MazePrototype(final Maze template) {
+        int n = template.getNumberOfRooms();
+        rooms = new Room[n];
+        Map<Room, Integer> index = new IdentityHashMap<>(n);
+        int i = 0;
+        for (Room room : template) {
+            rooms[i] = room;
+            index.put(room, i++);
+        }
+
+        sides = new int[4 * n];
+        sites = new MapSite[4 * n];
+        Map<Door, Integer> doorIndex = new IdentityHashMap<>();
+        List<Door> found = new ArrayList<>();
+        for (int r = 0; r < n; r++) {
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = rooms[r].getSide(dir);
+                int at = 4 * r + dir.ordinal();
+                if (site instanceof Room) {
+                    Integer next = index.get(site);
+                    if (next == null) {
+                        throw new IllegalArgumentException("room " + rooms[r].getNumber() + " leads " + dir
+                                + " to room " + ((Room) site).getNumber() + ", which is not in the maze");
+                    }
+                    sides[at] = next;
+                } else if (site instanceof Door) {
+                    Integer d = doorIndex.get(site);
+                    if (d == null) {
+                        d = found.size();
+                        doorIndex.put((Door) site, d);
+                        found.add((Door) site);
+                    }
+                    sides[at] = -2 - d;
+                } else {
+                    sides[at] = SITE;
+                    sites[at] = site;
+                }
+            }
+        }
+
+        DoorState state = template.getDoorState();
+        doors = found.toArray(new Door[0]);
+        doorRooms = new int[2 * doors.length];
+        doorIds = new int[doors.length];
+        for (int d = 0; d < doors.length; d++) {
+            for (int k = 0; k < 2; k++) {
+                Room room = doors[d].getRoom(k);
+                Integer at = room == null ? Integer.valueOf(-1) : index.get(room);
+                if (at == null) {
+                    throw new IllegalArgumentException("door " + doors[d].getId() + " leads to room "
+                            + room.getNumber() + ", which is not in the maze");
+                }
+                doorRooms[2 * d + k] = at;
+            }
+            doorIds[d] = doors[d].belongsTo(state) ? doors[d].getId() : -1;
+        }
+        doorStates = state.snapshot();
+
+        Room room = template.getCurrentRoom();
+        current = room == null ? -1 : index.getOrDefault(room, -1);
+    }
+
+    /**
+     * Returns a new maze like the template: the same rooms, doors and
+     * current room, with doors open or closed as they were when the
+     * prototype was made.
+     */
+    public Maze newMaze() {
+        Maze maze = new Maze(rooms.length);
+        DoorState state = maze.getDoorState();
+        state.restore(doorStates);
+
+        Room[] copies = new Room[rooms.length];
+        for (int r = 0; r < rooms.length; r++) {
+            copies[r] = rooms[r].copy();
+            maze.addRoom(copies[r]);
+        }
+        Door[] doorCopies = new Door[doors.length];
+        for (int d = 0; d < doors.length; d++) {
+            int r1 = doorRooms[2 * d];
+            int r2 = doorRooms[2 * d + 1];
+            Door door = doors[d].copy(r1 < 0 ? null : copies[r1], r2 < 0 ? null : copies[r2]);
+            if (doorIds[d] >= 0) {
+                door.attach(state, doorIds[d]);
+            }
+            doorCopies[d] = door;
+        }
+        for (int at = 0; at < sides.length; at++) {
+            int side = sides[at];
+            MapSite site = side >= 0 ? copies[side] : side == SITE ? sites[at] : doorCopies[-2 - side];
+            copies[at >> 2].setSide(DIRECTIONS[at & 3], site);
+        }
+        if (current >= 0) {
+            maze.setCurrentRoom(copies[current]);
+        }
+        return maze;
+    }
+
+    public int getNumberOfRooms() {
+        return rooms.length;
+    }
+
+    public int getNumberOfDoors() {
+        return doors.length;
+    }
+}
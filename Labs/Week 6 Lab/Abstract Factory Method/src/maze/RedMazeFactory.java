@@ -3,7 +3,7 @@ package maze;
 public class RedMazeFactory extends MazeFactory {
     @Override
     public Wall makeWall() {
-        return new RedWall();
+        return sharedWall(RedWall.class, RedWall::new);
     }
 
     @Override
@@ -35,9 +35,9 @@ import java.awt.*;
  * @version 1.0
  * @since 1.0
  */
-public class Room extends MapSite
+public class Room extends MapSite implements Cloneable
 {
-	private final MapSite[] sides = new MapSite[4];
+	private MapSite[] sides = new MapSite[4];
 	private final int number;
 	
 	public Room(int num)
@@ -45,12 +45,12 @@ public class Room extends MapSite
 		number = num;
 	}
 
-	public final MapSite getSide(Direction dir)
+	public MapSite getSide(Direction dir)
 	{
 		return sides[dir.ordinal()];
 	}
 	
-	public final void setSide(Direction dir, MapSite site)
+	public void setSide(Direction dir, MapSite site)
 	{
 		sides[dir.ordinal()] = site;
 	}
@@ -60,6 +60,25 @@ public class Room extends MapSite
 		return number;
 	}
 
+	/**
+	 * Returns a room of the same class and number with no sides and no
+	 * entry listeners, for {@link MazePrototype}. Other fields are copied as
+	 * they are, so a subclass with state of its own overrides this to copy
+	 * it too.
+	 */
+	protected Room copy()
+	{
+		Room room;
+		try {
+			room = (Room) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+		room.sides = new MapSite[4];
+		room.clearEntryListeners();
+		return room;
+	}
+
 	@Override
 	public void enter()
 	{
@@ -40,7 +40,7 @@ public class Wall extends MapSite
 	@Override
 	public void enter()
 	{
-		System.out.println("Ouch! Ran into a wall.");
+		getEventSink().wallHit(this);
 	}
 
 	@Override
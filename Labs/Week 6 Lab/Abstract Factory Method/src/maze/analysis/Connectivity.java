@@ -0,0 +1,358 @@
+package maze.analysis;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.compact.CompactMaze;
+import maze.compact.GridMaze;
+import maze.solve.MazeGraph;
+
+/**
+ * The connected components of a maze, found with a union-find over every
+ * room side, run in parallel on a fork-join pool. Union links the larger
+ * root under the smaller with a CAS, so concurrent unions never form a
+ * cycle and each component ends up named by its lowest room index; the
+ * result is the same whatever the number of threads.
+ * <p>
+ * With {@code openDoorsOnly} unset only walls separate rooms; set, closed
+ * doors do too. Components are numbered in order of their lowest room
+ * index, so the first room is always in component 0.
+ * <p>
+ * Usage: {@code Connectivity <maze file> [maze|compact|grid]} loads the
+ * file as the given kind of maze (default {@code compact}) and prints a
+ * report for both modes.
+ */
+public final class Connectivity {
+    private static final int LEAF = 1 << 16;
+    private static final VarHandle PARENT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Links links;
+    private final boolean openDoorsOnly;
+    private final int[] component;
+    private int[] sizes;
+    private int count;
+
+    private Connectivity(final Links links, final boolean openDoorsOnly) {
+        this.links = links;
+        this.openDoorsOnly = openDoorsOnly;
+        this.component = new int[links.size()];
+    }
+
+    /**
+     * Analyzes any maze. Compact and grid mazes are read straight from their
+     * arrays; other mazes are indexed with a {@link MazeGraph} first.
+     */
+    public static Connectivity analyze(final Maze maze, final boolean openDoorsOnly) {
+        if (maze instanceof CompactMaze) {
+            return analyze((CompactMaze) maze, openDoorsOnly, ForkJoinPool.commonPool());
+        }
+        if (maze instanceof GridMaze) {
+            return analyze((GridMaze) maze, openDoorsOnly, ForkJoinPool.commonPool());
+        }
+        return analyze(new MazeGraph(maze), openDoorsOnly, ForkJoinPool.commonPool());
+    }
+
+    public static Connectivity analyze(final MazeGraph graph, final boolean openDoorsOnly,
+            final ForkJoinPool pool) {
+        return new Connectivity(Links.of(graph), openDoorsOnly).run(pool);
+    }
+
+    /**
+     * Analyzes a compact maze by its room indices, unless rooms were removed
+     * from it: those keep their indices, so the rooms left are indexed with
+     * a {@link MazeGraph} instead, as for any other maze.
+     */
+    public static Connectivity analyze(final CompactMaze maze, final boolean openDoorsOnly,
+            final ForkJoinPool pool) {
+        if (maze.getRoomCount() != maze.getNumberOfRooms()) {
+            return analyze(new MazeGraph(maze), openDoorsOnly, pool);
+        }
+        return new Connectivity(Links.of(maze), openDoorsOnly).run(pool);
+    }
+
+    public static Connectivity analyze(final GridMaze maze, final boolean openDoorsOnly, final ForkJoinPool pool) {
+        return new Connectivity(Links.of(maze), openDoorsOnly).run(pool);
+    }
+
+    private Connectivity run(final ForkJoinPool pool) {
+        int[] parent = component;
+        int n = parent.length;
+        boolean symmetric = links.isSymmetric();
+        pool.invoke(new Range(0, n) {
+            @Override
+            void apply(final int from, final int to) {
+                for (int room = from; room < to; room++) {
+                    parent[room] = room;
+                }
+            }
+        });
+        pool.invoke(new Range(0, n) {
+            @Override
+            void apply(final int from, final int to) {
+                for (int room = from; room < to; room++) {
+                    for (int dir = 0; dir < 4; dir++) {
+                        int next = links.link(room, dir, openDoorsOnly);
+                        // a symmetric link is seen from both ends; take it once
+                        if (next > room || next >= 0 && !symmetric) {
+                            union(parent, room, next);
+                        }
+                    }
+                }
+            }
+        });
+        // Every root is the lowest index of its component, so it is met
+        // before the rest and can be given the next number.
+        sizes = new int[16];
+        for (int room = 0; room < n; room++) {
+            int root = find(parent, room);
+            int c;
+            if (root == room) {
+                c = count++;
+                if (c == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, c * 2);
+                }
+            } else {
+                c = ~parent[root];
+            }
+            parent[room] = ~c;
+            sizes[c]++;
+        }
+        pool.invoke(new Range(0, n) {
+            @Override
+            void apply(final int from, final int to) {
+                for (int room = from; room < to; room++) {
+                    parent[room] = ~parent[room];
+                }
+            }
+        });
+        sizes = Arrays.copyOf(sizes, count);
+        return this;
+    }
+
+    /**
+     * Finds the root, halving the path on the way. During the numbering pass
+     * a finished room holds a negative component number and stops the walk.
+     */
+    private static int find(final int[] parent, int x) {
+        while (true) {
+            int p = (int) PARENT.getVolatile(parent, x);
+            if (p == x || p < 0) {
+                return x;
+            }
+            int g = (int) PARENT.getVolatile(parent, p);
+            if (g == p || g < 0) {
+                return p;
+            }
+            PARENT.compareAndSet(parent, x, p, g);
+            x = g;
+        }
+    }
+
+    private static void union(final int[] parent, final int a, final int b) {
+        while (true) {
+            int x = find(parent, a);
+            int y = find(parent, b);
+            if (x == y) {
+                return;
+            }
+            if (x < y) {
+                int t = x;
+                x = y;
+                y = t;
+            }
+            if (PARENT.compareAndSet(parent, x, x, y)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isOpenDoorsOnly() {
+        return openDoorsOnly;
+    }
+
+    public int getRoomCount() {
+        return component.length;
+    }
+
+    public int getComponentCount() {
+        return count;
+    }
+
+    /**
+     * Returns the component of a room, by dense room index.
+     */
+    public int componentOf(final int room) {
+        return component[room];
+    }
+
+    public int getComponentSize(final int c) {
+        return sizes[c];
+    }
+
+    /**
+     * Returns the component sizes, largest first.
+     */
+    public int[] getComponentSizes() {
+        int[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+            int t = sorted[i];
+            sorted[i] = sorted[j];
+            sorted[j] = t;
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns true if every room can be reached from every other.
+     */
+    public boolean isConnected() {
+        return count <= 1;
+    }
+
+    /**
+     * Returns how many rooms cannot be reached from the given room index.
+     */
+    public int getUnreachableCount(final int start) {
+        return component.length - sizes[component[start]];
+    }
+
+    /**
+     * Returns the numbers of up to {@code limit} rooms that cannot be
+     * reached from the given room index, lowest index first.
+     */
+    public int[] getUnreachableRooms(final int start, final int limit) {
+        int[] rooms = new int[Math.min(limit, getUnreachableCount(start))];
+        int c = component[start];
+        for (int room = 0, n = 0; n < rooms.length; room++) {
+            if (component[room] != c) {
+                rooms[n++] = links.numberOf(room);
+            }
+        }
+        return rooms;
+    }
+
+    /**
+     * Describes the components and the rooms unreachable from the given room
+     * index, listing at most {@code limit} of each.
+     */
+    public String report(final int start, final int limit) {
+        StringBuilder out = new StringBuilder();
+        out.append(openDoorsOnly ? "closed doors block: " : "walls only: ");
+        out.append(String.format("%,d rooms, %,d components", component.length, count));
+        if (count > 0) {
+            out.append(String.format(", %,d unreachable from room %d%n", getUnreachableCount(start),
+                    links.numberOf(start)));
+            int[] largest = getComponentSizes();
+            out.append("  largest sizes:");
+            for (int i = 0; i < Math.min(limit, largest.length); i++) {
+                out.append(' ').append(largest[i]);
+            }
+            out.append(largest.length > limit ? " ...\n" : "\n");
+            int[] unreachable = getUnreachableRooms(start, limit);
+            if (unreachable.length > 0) {
+                out.append("  unreachable rooms:");
+                for (int number : unreachable) {
+                    out.append(' ').append(number);
+                }
+                out.append(getUnreachableCount(start) > limit ? " ...\n" : "\n");
+            }
+        } else {
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: Connectivity <maze file> [maze|compact|grid]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        String kind = args.length > 1 ? args[1] : "compact";
+        long start = System.nanoTime();
+        Maze maze;
+        if (kind.equals("grid")) {
+            maze = GridMaze.load(path, new RedMazeFactory());
+        } else if (kind.equals("compact")) {
+            maze = CompactMaze.load(path, new RedMazeFactory());
+        } else {
+            maze = new RedMazeFactory().loadMaze(path.toString());
+        }
+        System.out.printf("loaded %,d rooms in %.3f s%n", maze.getNumberOfRooms(), (System.nanoTime() - start) / 1e9);
+        for (boolean openDoorsOnly : new boolean[] { false, true }) {
+            start = System.nanoTime();
+            Connectivity result = analyze(maze, openDoorsOnly);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int first = startIndex(maze);
+            System.out.print(result.report(first, 10));
+            System.out.printf("  analyzed in %.3f s on %d threads%n", seconds,
+                    ForkJoinPool.commonPool().getParallelism());
+        }
+    }
+
+    private static int startIndex(final Maze maze) {
+        if (maze instanceof CompactMaze) {
+            return Math.max(0, ((CompactMaze) maze).getCurrentIndex());
+        }
+        if (maze instanceof GridMaze) {
+            return ((GridMaze) maze).getCurrentIndex();
+        }
+        // MazeGraph numbers rooms in iteration order
+        int i = 0;
+        for (Room room : maze) {
+            if (room == maze.getCurrentRoom()) {
+                return i;
+            }
+            i++;
+        }
+        return 0;
+    }
+
+    /**
+     * Applies an action to a range of rooms, split across the pool.
+     */
+    private abstract static class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Range(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract void apply(int from, int to);
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                apply(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            Range outer = this;
+            invokeAll(new Range(from, mid) {
+                @Override
+                void apply(final int from, final int to) {
+                    outer.apply(from, to);
+                }
+            }, new Range(mid, to) {
+                @Override
+                void apply(final int from, final int to) {
+                    outer.apply(from, to);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package maze.analysis;
+
+import maze.Direction;
+import maze.compact.CompactMaze;
+import maze.compact.GridMaze;
+import maze.solve.MazeGraph;
+
+/**
+ * The room-to-room links of a maze, by dense room index, whatever the maze
+ * is stored as.
+ */
+interface Links {
+    int size();
+
+    int numberOf(int room);
+
+    /**
+     * Returns the room reached through a side, or -1 for a wall or, when
+     * {@code openDoorsOnly} is set, a closed door.
+     */
+    int link(int room, int dir, boolean openDoorsOnly);
+
+    /**
+     * Returns true if every link is known to be reported from both ends.
+     */
+    default boolean isSymmetric() {
+        return false;
+    }
+
+    static Links of(final MazeGraph graph) {
+        return new Links() {
+            @Override
+            public int size() {
+                return graph.size();
+            }
+
+            @Override
+            public int numberOf(final int room) {
+                return graph.numberOf(room);
+            }
+
+            @Override
+            public int link(final int room, final int dir, final boolean openDoorsOnly) {
+                return graph.step(room, dir, openDoorsOnly);
+            }
+        };
+    }
+
+    static Links of(final CompactMaze maze) {
+        Direction[] directions = Direction.values();
+        return new Links() {
+            @Override
+            public int size() {
+                return maze.getRoomCount();
+            }
+
+            @Override
+            public int numberOf(final int room) {
+                return maze.numberOf(room);
+            }
+
+            @Override
+            public int link(final int room, final int dir, final boolean openDoorsOnly) {
+                int side = maze.side(room, directions[dir]);
+                if (side >= 0) {
+                    return side;
+                }
+                if (!CompactMaze.isDoor(side)) {
+                    return -1;
+                }
+                int door = CompactMaze.doorOf(side);
+                return openDoorsOnly && !maze.isDoorOpen(door) ? -1 : maze.otherRoom(door, room);
+            }
+        };
+    }
+
+    static Links of(final GridMaze maze) {
+        Direction[] directions = Direction.values();
+        return new Links() {
+            @Override
+            public int size() {
+                return maze.size();
+            }
+
+            @Override
+            public int numberOf(final int room) {
+                return room;
+            }
+
+            @Override
+            public boolean isSymmetric() {
+                return true;
+            }
+
+            @Override
+            public int link(final int room, final int dir, final boolean openDoorsOnly) {
+                Direction d = directions[dir];
+                return maze.isPassable(room, d, openDoorsOnly) ? maze.neighbor(room, d) : -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,398 @@
+package maze.analysis;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.Room;
+import maze.io.MazeFiles;
+import maze.io.MazeHandler;
+import maze.io.NumberIndex;
+
+/**
+ * Checks a maze description for the mistakes the builders wire in silently:
+ * one-way passages, doors that do not join the rooms using them, doors no
+ * room uses, sides that name missing rooms or doors, unset sides, duplicate
+ * room or door ids and lines that cannot be parsed.
+ * <p>
+ * The validator is a {@link MazeHandler}, so a file is checked in the one
+ * pass that reads it, before anything is built. It keeps the sides of every
+ * room and the two ends of every door in int arrays, about 20 bytes per
+ * room, indexed through a {@link NumberIndex} however sparse the numbers
+ * are, and the checks run in {@link #end()} in time linear in the records.
+ * Only the first few examples of each problem are kept as text.
+ * <p>
+ * Usage: {@code MazeValidator <maze file>}; exits with status 1 if any
+ * problem is found.
+ */
+public final class MazeValidator implements MazeHandler {
+    /**
+     * A side that was never set. Only built mazes can have one.
+     */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int DEFINED = 1;
+    private static final int USED_BY_FIRST = 2;
+    private static final int USED_BY_SECOND = 4;
+
+    public enum Problem {
+        MALFORMED_LINE("malformed lines"),
+        DUPLICATE_ROOM("duplicate rooms"),
+        DUPLICATE_DOOR("duplicate doors"),
+        MISSING_SIDE("unset sides"),
+        UNKNOWN_ROOM("references to missing rooms"),
+        UNKNOWN_DOOR("references to missing doors"),
+        ONE_WAY_PASSAGE("one-way passages"),
+        DOOR_MISMATCH("doors used by rooms they do not join"),
+        DOOR_ONE_SIDED("doors missing from one of their rooms"),
+        UNUSED_DOOR("doors no room uses");
+
+        private final String description;
+
+        Problem(final String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final int examples;
+    private final Report report;
+
+    private int roomCount;
+    private int[] numbers = new int[16];
+    private int[] sides = new int[64];
+    private final NumberIndex index = new NumberIndex();
+
+    private final NumberIndex doorIndex = new NumberIndex();
+    private int[] doorIds = new int[16];
+    private int[] doorRooms = new int[32];
+    private byte[] doorFlags = new byte[16];
+    private byte[] doorDirs = new byte[32];
+
+    private int current = -1;
+    private boolean ended;
+
+    public MazeValidator() {
+        this(5);
+    }
+
+    /**
+     * Creates a validator that keeps up to {@code examples} descriptions of
+     * each kind of problem.
+     */
+    public MazeValidator(final int examples) {
+        this.examples = examples;
+        this.report = new Report();
+    }
+
+    /**
+     * Checks a text or binary maze file in one pass.
+     */
+    public static Report validate(final Path path) throws IOException {
+        MazeValidator validator = new MazeValidator();
+        MazeFiles.read(path, validator);
+        return validator.getReport();
+    }
+
+    /**
+     * Checks a built maze. Doors are named by their ids where they have
+     * them and numbered after the largest otherwise.
+     */
+    public static Report validate(final Maze maze) {
+        MazeValidator validator = new MazeValidator();
+        Map<Door, Integer> ids = new IdentityHashMap<>();
+        int next = 0;
+        for (Room room : maze) {
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door) {
+                    next = Math.max(next, ((Door) site).getId() + 1);
+                }
+            }
+        }
+        int[] side = new int[4];
+        for (Room room : maze) {
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                int value;
+                if (site == null) {
+                    value = MISSING;
+                } else if (site instanceof Room) {
+                    value = ((Room) site).getNumber();
+                } else if (site instanceof Door) {
+                    Door door = (Door) site;
+                    Integer id = ids.get(door);
+                    if (id == null) {
+                        id = door.getId() >= 0 ? door.getId() : next++;
+                        ids.put(door, id);
+                        Room other = door.getOtherSide(room);
+                        validator.door(id, room.getNumber(), other == null ? -1 : other.getNumber(),
+                                door.isOpen());
+                    }
+                    value = MazeHandler.door(id);
+                } else {
+                    value = WALL;
+                }
+                side[dir.ordinal()] = value;
+            }
+            validator.room(room.getNumber(), side[0], side[1], side[2], side[3]);
+        }
+        Room current = maze.getCurrentRoom();
+        if (current != null) {
+            validator.currentRoom(current.getNumber());
+        }
+        validator.end();
+        return validator.getReport();
+    }
+
+    /**
+     * Returns the report; complete once {@link #end()} has been called.
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        if (index.get(number) >= 0) {
+            problem(Problem.DUPLICATE_ROOM, "room " + number);
+            return;
+        }
+        if (roomCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, roomCount * 2);
+            sides = Arrays.copyOf(sides, roomCount * 8);
+        }
+        int room = roomCount++;
+        numbers[room] = number;
+        index.add(number);
+        sides[4 * room] = north;
+        sides[4 * room + 1] = south;
+        sides[4 * room + 2] = east;
+        sides[4 * room + 3] = west;
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        int d = doorSlot(id);
+        if ((doorFlags[d] & DEFINED) != 0) {
+            problem(Problem.DUPLICATE_DOOR, "door d" + id);
+            return;
+        }
+        doorFlags[d] = DEFINED;
+        doorRooms[2 * d] = room1;
+        doorRooms[2 * d + 1] = room2;
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        current = number;
+    }
+
+    @Override
+    public void malformed(final long line, final String message) {
+        problem(Problem.MALFORMED_LINE, "line " + line + ": " + message);
+    }
+
+    @Override
+    public void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        report.rooms = roomCount;
+        for (int room = 0; room < roomCount; room++) {
+            for (int dir = 0; dir < 4; dir++) {
+                checkSide(room, dir, sides[4 * room + dir]);
+            }
+        }
+        for (int d = 0; d < doorIndex.size(); d++) {
+            int flags = doorFlags[d];
+            if ((flags & DEFINED) == 0) {
+                continue;
+            }
+            report.doors++;
+            int id = doorIds[d];
+            int room1 = doorRooms[2 * d];
+            int room2 = doorRooms[2 * d + 1];
+            if (room1 >= 0 && indexOf(room1) < 0 || room2 >= 0 && indexOf(room2) < 0) {
+                problem(Problem.UNKNOWN_ROOM, "door d" + id + " joins " + room1 + " and " + room2);
+            }
+            if ((flags & (USED_BY_FIRST | USED_BY_SECOND)) == 0) {
+                problem(Problem.UNUSED_DOOR, "door d" + id);
+            } else if ((flags & USED_BY_FIRST) == 0 || (flags & USED_BY_SECOND) == 0) {
+                int missing = (flags & USED_BY_FIRST) == 0 ? room1 : room2;
+                if (missing < 0) {
+                    problem(Problem.DOOR_MISMATCH, "door d" + id + " leads nowhere from room "
+                            + (room1 < 0 ? room2 : room1));
+                } else {
+                    problem(Problem.DOOR_ONE_SIDED, "door d" + id + " is on no side of room " + missing);
+                }
+            } else if (doorDirs[2 * d] != (doorDirs[2 * d + 1] ^ 1)) {
+                problem(Problem.DOOR_MISMATCH, "door d" + id + " is on the " + DIRECTIONS[doorDirs[2 * d]]
+                        + " of " + room1 + " and the " + DIRECTIONS[doorDirs[2 * d + 1]] + " of " + room2);
+            }
+        }
+        if (current >= 0 && indexOf(current) < 0) {
+            problem(Problem.UNKNOWN_ROOM, "current room " + current);
+        }
+    }
+
+    private void checkSide(final int room, final int dir, final int side) {
+        int number = numbers[room];
+        if (side == MISSING) {
+            problem(Problem.MISSING_SIDE, "room " + number + " " + DIRECTIONS[dir]);
+        } else if (MazeHandler.isDoor(side)) {
+            checkDoor(room, dir, MazeHandler.doorId(side));
+        } else if (side >= 0) {
+            int other = indexOf(side);
+            if (other < 0) {
+                problem(Problem.UNKNOWN_ROOM, "room " + number + " " + DIRECTIONS[dir] + " is " + side);
+            } else if (sides[4 * other + (dir ^ 1)] != number) {
+                problem(Problem.ONE_WAY_PASSAGE, "room " + number + " " + DIRECTIONS[dir] + " is " + side
+                        + " but not back");
+            }
+        }
+    }
+
+    private void checkDoor(final int room, final int dir, final int id) {
+        int number = numbers[room];
+        int d = doorIndex.get(id);
+        if (d < 0 || (doorFlags[d] & DEFINED) == 0) {
+            problem(Problem.UNKNOWN_DOOR, "room " + number + " " + DIRECTIONS[dir] + " is d" + id);
+            return;
+        }
+        int end;
+        if (doorRooms[2 * d] == number && (doorFlags[d] & USED_BY_FIRST) == 0) {
+            end = 0;
+        } else if (doorRooms[2 * d + 1] == number && (doorFlags[d] & USED_BY_SECOND) == 0) {
+            end = 1;
+        } else {
+            problem(Problem.DOOR_MISMATCH, "room " + number + " " + DIRECTIONS[dir] + " is d" + id
+                    + ", which joins " + doorRooms[2 * d] + " and " + doorRooms[2 * d + 1]);
+            return;
+        }
+        doorFlags[d] |= end == 0 ? USED_BY_FIRST : USED_BY_SECOND;
+        doorDirs[2 * d + end] = (byte) dir;
+    }
+
+    private int indexOf(final int number) {
+        return index.get(number);
+    }
+
+    /**
+     * Returns the slot of a door id, giving it the next one if it is new.
+     */
+    private int doorSlot(final int id) {
+        int d = doorIndex.add(id);
+        if (d == doorFlags.length) {
+            doorIds = Arrays.copyOf(doorIds, d * 2);
+            doorFlags = Arrays.copyOf(doorFlags, d * 2);
+            doorRooms = Arrays.copyOf(doorRooms, d * 4);
+            doorDirs = Arrays.copyOf(doorDirs, d * 4);
+        }
+        doorIds[d] = id;
+        return d;
+    }
+
+    private void problem(final Problem problem, final String example) {
+        report.add(problem, example, examples);
+    }
+
+    /**
+     * The outcome of a validation: a count of each kind of problem and the
+     * first few examples of each.
+     */
+    public static final class Report {
+        private final long[] counts = new long[Problem.values().length];
+        private final Map<Problem, List<String>> examples = new EnumMap<>(Problem.class);
+        private int rooms;
+        private int doors;
+
+        private void add(final Problem problem, final String example, final int limit) {
+            if (counts[problem.ordinal()]++ < limit) {
+                examples.computeIfAbsent(problem, p -> new ArrayList<>()).add(example);
+            }
+        }
+
+        public boolean isValid() {
+            return getProblemCount() == 0;
+        }
+
+        public long getProblemCount() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getCount(final Problem problem) {
+            return counts[problem.ordinal()];
+        }
+
+        public List<String> getExamples(final Problem problem) {
+            return Collections.unmodifiableList(examples.getOrDefault(problem, Collections.emptyList()));
+        }
+
+        public int getRoomCount() {
+            return rooms;
+        }
+
+        public int getDoorCount() {
+            return doors;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%,d rooms, %,d doors: ", rooms, doors));
+            if (isValid()) {
+                return out.append("ok\n").toString();
+            }
+            out.append(String.format("%,d problems%n", getProblemCount()));
+            for (Problem problem : Problem.values()) {
+                long count = counts[problem.ordinal()];
+                if (count == 0) {
+                    continue;
+                }
+                out.append(String.format("  %,d %s%n", count, problem.getDescription()));
+                for (String example : getExamples(problem)) {
+                    out.append("    ").append(example).append('\n');
+                }
+                if (count > getExamples(problem).size()) {
+                    out.append("    ...\n");
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: MazeValidator <maze file>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        Report report = validate(Paths.get(args[0]));
+        System.out.print(report);
+        System.out.printf("checked in %.3f s%n", (System.nanoTime() - start) / 1e9);
+        if (!report.isValid()) {
+            System.exit(1);
+        }
+    }
+}
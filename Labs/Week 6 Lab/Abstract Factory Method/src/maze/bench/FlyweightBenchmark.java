@@ -0,0 +1,69 @@
+package maze.bench;
+
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.RedWall;
+import maze.Wall;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+
+/**
+ * Compares the retained heap of generated mazes built with a new wall for
+ * every side and with the theme's shared wall.
+ * <p>
+ * Usage: {@code FlyweightBenchmark [side]}, default {@code 1000} (1,000,000
+ * rooms). On JDK 17 with compressed pointers a wall is 16 bytes, so sharing
+ * saves 16 bytes for each wall a room has:
+ * <pre>
+ *                      walls per room    new walls         shared walls
+ * kruskal              2.0               ~152 bytes/room   ~118 bytes/room
+ * kruskal, 50% braided 1.75              ~149 bytes/room   ~119 bytes/room
+ * random grid          1.4               ~150 bytes/room   ~124 bytes/room
+ * </pre>
+ * That is about a fifth of the heap. The walls all go; what is left is the
+ * rooms, their side arrays, the doors and the maze's room map, none of
+ * which can be shared. {@code CompactMaze} is the way to go further.
+ */
+public final class FlyweightBenchmark {
+    private FlyweightBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        for (int maze = 0; maze < 3; maze++) {
+            String name = maze == 0 ? "kruskal" : maze == 1 ? "kruskal, braided" : "random grid";
+            long unshared = measure(name + ", new walls", new RedMazeFactory() {
+                @Override
+                public Wall makeWall() {
+                    return new RedWall();
+                }
+            }, maze, side);
+            RedMazeFactory factory = new RedMazeFactory();
+            long shared = measure(name + ", shared walls", factory, maze, side);
+            System.out.printf("  %,d walls saved, %.0f%% less heap%n", factory.getObjectsSaved(),
+                    100.0 * (unshared - shared) / unshared);
+        }
+    }
+
+    private static long measure(final String name, final MazeFactory factory, final int kind, final int side) {
+        long before = FootprintBenchmark.usedHeap();
+        Maze maze = build(factory, kind, side);
+        long bytes = FootprintBenchmark.usedHeap() - before;
+        System.out.printf("%-32s %,d bytes  %.1f bytes/room%n", name, bytes, (double) bytes / maze.getNumberOfRooms());
+        return bytes;
+    }
+
+    private static Maze build(final MazeFactory factory, final int kind, final int side) {
+        if (kind == 2) {
+            return GridMazes.random(factory, side, side, 0.35, 0.1, 42);
+        }
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        if (kind == 1) {
+            layout.braid(0.5, 42);
+        }
+        layout.addDoors(0.1, 42);
+        return layout.build(factory);
+    }
+}
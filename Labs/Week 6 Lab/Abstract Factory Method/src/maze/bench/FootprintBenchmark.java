@@ -0,0 +1,63 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.compact.CompactMaze;
+import maze.compact.GridMaze;
+
+/**
+ * Compares the retained heap of a {@link Maze} object graph with a
+ * {@link CompactMaze} and a {@link GridMaze} of the same file.
+ * <p>
+ * Usage: {@code FootprintBenchmark [source] [copies]}, defaults
+ * {@code large.maze 40000} (one million rooms). On JDK 17 this reports
+ * about 156 bytes per room for {@code Maze}, 27 for {@code CompactMaze},
+ * most of it slack left by array doubling, and 0.5 for {@code GridMaze}.
+ */
+public final class FootprintBenchmark {
+    private FootprintBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path source = Paths.get(args.length > 0 ? args[0] : "large.maze");
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 40000;
+
+        Path file = Files.createTempFile("scaled", ".maze");
+        try {
+            ScaledMaze.write(source, copies, file);
+
+            long before = usedHeap();
+            GridMaze grid = GridMaze.load(file, new RedMazeFactory());
+            report("GridMaze", grid.getNumberOfRooms(), usedHeap() - before);
+            grid = null;
+
+            before = usedHeap();
+            CompactMaze compact = CompactMaze.load(file, new RedMazeFactory());
+            report("CompactMaze", compact.getNumberOfRooms(), usedHeap() - before);
+            compact = null;
+
+            before = usedHeap();
+            Maze graph = new RedMazeFactory().loadMaze(file.toString());
+            report("Maze", graph.getNumberOfRooms(), usedHeap() - before);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void report(final String name, final int rooms, final long bytes) {
+        System.out.printf("%-12s %,d rooms  %,d bytes  %.1f bytes/room%n", name, rooms, bytes, (double) bytes / rooms);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
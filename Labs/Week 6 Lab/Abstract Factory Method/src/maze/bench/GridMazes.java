@@ -0,0 +1,73 @@
+package maze.bench;
+
+import java.util.SplittableRandom;
+
+import maze.Direction;
+import maze.Door;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+
+/**
+ * Builds rectangular test mazes with rooms numbered row by row. Each
+ * interior edge is a passage, a door or a wall at random, which gives a
+ * braided grid with many loops, the hardest case for the solvers.
+ */
+final class GridMazes {
+    private GridMazes() {
+    }
+
+    static Maze random(final MazeFactory factory, final int width, final int height, final double wallChance,
+            final double doorChance, final long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Maze maze = new Maze();
+        Room[] rooms = new Room[width * height];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = factory.makeRoom(i);
+            maze.addRoom(rooms[i]);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Room room = rooms[y * width + x];
+                if (x + 1 < width) {
+                    join(maze, factory, random, room, rooms[y * width + x + 1], Direction.East, wallChance,
+                            doorChance);
+                } else {
+                    room.setSide(Direction.East, factory.makeWall());
+                }
+                if (y + 1 < height) {
+                    join(maze, factory, random, room, rooms[(y + 1) * width + x], Direction.South, wallChance,
+                            doorChance);
+                } else {
+                    room.setSide(Direction.South, factory.makeWall());
+                }
+                if (x == 0) {
+                    room.setSide(Direction.West, factory.makeWall());
+                }
+                if (y == 0) {
+                    room.setSide(Direction.North, factory.makeWall());
+                }
+            }
+        }
+        maze.setCurrentRoom(rooms[0]);
+        return maze;
+    }
+
+    private static void join(final Maze maze, final MazeFactory factory, final SplittableRandom random,
+            final Room a, final Room b, final Direction dir, final double wallChance, final double doorChance) {
+        double roll = random.nextDouble();
+        if (roll < wallChance) {
+            a.setSide(dir, factory.makeWall());
+            b.setSide(dir.opposite(), factory.makeWall());
+        } else if (roll < wallChance + doorChance) {
+            Door door = factory.makeDoor(a, b);
+            maze.addDoor(door);
+            door.setOpen(random.nextBoolean());
+            a.setSide(dir, door);
+            b.setSide(dir.opposite(), door);
+        } else {
+            a.setSide(dir, b);
+            b.setSide(dir.opposite(), a);
+        }
+    }
+}
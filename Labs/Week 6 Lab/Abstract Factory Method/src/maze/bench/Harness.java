@@ -0,0 +1,148 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A small stand-in for JMH: runs an operation for a number of timed warm-up
+ * and measurement iterations and reports operations per second with the
+ * spread across iterations. Results are written one per line as JSON or
+ * CSV so runs can be diffed or compared against a saved baseline.
+ */
+final class Harness {
+    private static final Pattern JSON = Pattern.compile(
+            "\\{\"benchmark\":\"([^\"]*)\",\"params\":\"([^\"]*)\",\"score\":([0-9.Ee+-]+)");
+
+    /** Written by every operation so the JIT cannot drop the work. */
+    static volatile long sink;
+
+    /**
+     * One batch of work. Returns how many operations it did, so a batch can
+     * cover a whole maze and still be reported per room or per door.
+     */
+    interface Op {
+        long run() throws Exception;
+    }
+
+    static final class Result {
+        final String benchmark;
+        final String params;
+        final double score;
+        final double error;
+        final double nanosPerOp;
+        final int iterations;
+
+        Result(final String benchmark, final String params, final double score, final double error,
+                final double nanosPerOp, final int iterations) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.score = score;
+            this.error = error;
+            this.nanosPerOp = nanosPerOp;
+            this.iterations = iterations;
+        }
+
+        String key() {
+            return benchmark + " " + params;
+        }
+    }
+
+    private final int warmups;
+    private final int iterations;
+    private final long iterationNanos;
+    private final List<Result> results = new ArrayList<>();
+
+    Harness(final int warmups, final int iterations, final long iterationMillis) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    List<Result> getResults() {
+        return results;
+    }
+
+    Result measure(final String benchmark, final String params, final Op op) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            iteration(op);
+        }
+        double[] scores = new double[iterations];
+        double sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration(op);
+            sum += scores[i];
+        }
+        double mean = sum / iterations;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        Result result = new Result(benchmark, params, mean, error, 1e9 / mean, iterations);
+        results.add(result);
+        System.err.printf(Locale.ROOT, "%-12s %-40s %,16.1f ops/s  +- %,.1f%n", benchmark, params, mean, error);
+        return result;
+    }
+
+    private double iteration(final Op op) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            ops += op.run();
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return ops * 1e9 / elapsed;
+    }
+
+    void writeJson(final PrintStream out) {
+        for (Result r : results) {
+            out.printf(Locale.ROOT, "{\"benchmark\":\"%s\",\"params\":\"%s\",\"score\":%.3f,\"error\":%.3f,"
+                    + "\"unit\":\"ops/s\",\"nsPerOp\":%.3f,\"iterations\":%d}%n", r.benchmark, r.params, r.score,
+                    r.error, r.nanosPerOp, r.iterations);
+        }
+    }
+
+    void writeCsv(final PrintStream out) {
+        out.println("benchmark,params,score,error,unit,nsPerOp,iterations");
+        for (Result r : results) {
+            out.printf(Locale.ROOT, "%s,\"%s\",%.3f,%.3f,ops/s,%.3f,%d%n", r.benchmark, r.params, r.score,
+                    r.error, r.nanosPerOp, r.iterations);
+        }
+    }
+
+    /**
+     * Compares the results with a JSON file from an earlier run and prints
+     * every benchmark that got slower by more than {@code tolerance}, a
+     * fraction of the old score. Returns the number of regressions.
+     */
+    int compare(final Path baseline, final double tolerance) throws IOException {
+        Map<String, Double> old = new HashMap<>();
+        for (String line : Files.readAllLines(baseline, StandardCharsets.UTF_8)) {
+            Matcher m = JSON.matcher(line);
+            if (m.find()) {
+                old.put(m.group(1) + " " + m.group(2), Double.parseDouble(m.group(3)));
+            }
+        }
+        int regressions = 0;
+        for (Result r : results) {
+            Double before = old.get(r.key());
+            if (before != null && r.score < before * (1 - tolerance)) {
+                System.err.printf(Locale.ROOT, "REGRESSION %s: %,.1f -> %,.1f ops/s (%.0f%%)%n", r.key(), before,
+                        r.score, 100 * (r.score / before - 1));
+                regressions++;
+            }
+        }
+        return regressions;
+    }
+}
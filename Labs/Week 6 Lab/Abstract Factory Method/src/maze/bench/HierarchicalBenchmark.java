@@ -0,0 +1,107 @@
+package maze.bench;
+
+import java.util.SplittableRandom;
+
+import maze.Door;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.solve.AStarSearch;
+import maze.solve.BreadthFirstSearch;
+import maze.solve.Heuristic;
+import maze.solve.HierarchicalIndex;
+import maze.solve.HierarchicalSearch;
+import maze.solve.MazeGraph;
+import maze.solve.PathFinder;
+import maze.solve.Route;
+
+/**
+ * Compares {@link HierarchicalSearch} with flat breadth-first and A* search
+ * on a random braided grid maze, checking every route length against
+ * breadth-first search. With closed doors blocking, random doors are then
+ * flipped and reported to the index, and the checks are repeated, to show
+ * that dropping only the touched clusters keeps the answers right.
+ * <p>
+ * Usage: {@code HierarchicalBenchmark [side] [queries] [cluster size]
+ * [flips]}, defaults {@code 1000 200 1024 1000} (a 1,000,000-room maze;
+ * give it 1.5 GB of heap). On one core, JDK 17:
+ * <pre>
+ *                      all doors passable    closed doors block
+ * build                ~0.9 s                ~1.2 s
+ * bfs                  ~63 queries/s         ~35 queries/s
+ * a*                   ~130 queries/s        ~80 queries/s
+ * hierarchical         ~190 queries/s        ~170 queries/s
+ * </pre>
+ * About 15,000 of the 19,800 clusters are rooms walled in on every side;
+ * the rest average 200 rooms and 11 entrances. The 1,000 random flips hit
+ * about 100 doors inside clusters, and only those clusters are rebuilt.
+ * Most of a query is the search over the 55,000 entrances, so the gain
+ * grows with the distance between the ends.
+ */
+public final class HierarchicalBenchmark {
+    private HierarchicalBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int clusterSize = args.length > 2 ? Integer.parseInt(args[2]) : HierarchicalIndex.CLUSTER_SIZE;
+        int flips = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        Maze maze = GridMazes.random(new RedMazeFactory(), side, side, 0.35, 0.1, 42);
+        MazeGraph graph = new MazeGraph(maze);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < queries; i++) {
+            from[i] = random.nextInt(graph.size());
+            to[i] = random.nextInt(graph.size());
+        }
+
+        for (boolean openDoorsOnly : new boolean[] { false, true }) {
+            System.out.println(openDoorsOnly ? "closed doors block:" : "all doors passable:");
+            long start = System.nanoTime();
+            HierarchicalIndex index = new HierarchicalIndex(graph, openDoorsOnly, clusterSize);
+            System.out.printf("  build %.3f s: %,d clusters, %,d entrances, %,d distances%n",
+                    (System.nanoTime() - start) / 1e9, index.getClusterCount(), index.getEntranceCount(),
+                    index.getDistanceCount());
+            PathFinder bfs = new BreadthFirstSearch(graph, openDoorsOnly);
+            PathFinder astar = new AStarSearch(graph, openDoorsOnly, Heuristic.grid(graph, side));
+            PathFinder hierarchical = new HierarchicalSearch(index, Heuristic.grid(graph, side));
+            int[] expected = run("bfs", bfs, from, to, null);
+            run("a*", astar, from, to, expected);
+            run("hierarchical", hierarchical, from, to, expected);
+
+            if (openDoorsOnly) {
+                for (int i = 0; i < flips; i++) {
+                    Door door = graph.doorAt(random.nextInt(graph.size()), random.nextInt(4));
+                    if (door != null) {
+                        door.setOpen(!door.isOpen());
+                        index.doorChanged(door);
+                    }
+                }
+                System.out.printf("  flipped doors: %,d clusters dropped%n", index.getInvalidations());
+                expected = run("bfs", bfs, from, to, null);
+                run("hierarchical", hierarchical, from, to, expected);
+                System.out.printf("  %,d clusters rebuilt%n", index.getRebuilds());
+            }
+        }
+    }
+
+    private static int[] run(final String name, final PathFinder finder, final int[] from, final int[] to,
+            final int[] expected) {
+        Route route = new Route();
+        int[] lengths = new int[from.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < from.length; i++) {
+            finder.find(from[i], to[i], route);
+            lengths[i] = route.length();
+            if (expected != null && lengths[i] != expected[i]) {
+                throw new IllegalStateException(name + " found " + lengths[i] + " moves from " + from[i] + " to "
+                        + to[i] + ", not " + expected[i]);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-14s %,10.0f queries/s%n", name, from.length / seconds);
+        return lengths;
+    }
+}
@@ -0,0 +1,85 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import maze.DoorState;
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.journal.JournalListener;
+import maze.journal.JournalWriter;
+import maze.journal.Replay;
+import maze.sim.Simulator;
+
+/**
+ * Measures what recording a journal costs a random walk, how small the
+ * journal is and how fast it replays, and checks that replaying it ends in
+ * the room the walk ended in with the same doors open.
+ * <p>
+ * Usage: {@code JournalBenchmark [side] [moves]}, defaults
+ * {@code 300 10000000}. On one core, JDK 17, the walk slows from about
+ * 7 ns to 46 ns a move with the journal attached, most of it reading the
+ * clock; events take 2.3 bytes each and replay runs at about 105M events/s.
+ */
+public final class JournalBenchmark {
+    private JournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long moves = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+
+        MapSite.setEventSink(EventSink.NONE);
+        Maze maze = GridMazes.random(new RedMazeFactory(), side, side, 0.35, 0.1, 42);
+        DoorState doors = maze.getDoorState();
+        Replay replay = new Replay(maze);
+
+        long start = System.nanoTime();
+        new Simulator(maze).random(moves, new SplittableRandom(7));
+        double plain = (System.nanoTime() - start) / (double) moves;
+        replay.reset();
+
+        Path file = Files.createTempFile("maze", ".journal");
+        file.toFile().deleteOnExit();
+        Simulator walk = new Simulator(maze);
+        JournalWriter journal = new JournalWriter(file);
+        JournalListener listener = new JournalListener(journal);
+        listener.attach(maze);
+        start = System.nanoTime();
+        walk.random(moves, new SplittableRandom(7));
+        journal.close();
+        double recorded = (System.nanoTime() - start) / (double) moves;
+        listener.detach(maze);
+        System.out.printf("walk %.1f ns/move, recorded %.1f ns/move%n", plain, recorded);
+        System.out.printf("%,d events in %,d bytes, %.2f bytes/event%n", journal.getEvents(), Files.size(file),
+                (double) Files.size(file) / journal.getEvents());
+
+        boolean[] open = new boolean[doors.size()];
+        for (int id = 0; id < open.length; id++) {
+            open[id] = doors.isOpen(id);
+        }
+        start = System.nanoTime();
+        replay.seek(file, Long.MAX_VALUE);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("replay %,.0f events/s%n", replay.getEvents() / seconds);
+        if (replay.getEvents() != journal.getEvents()
+                || replay.getCurrentRoom().getNumber() != walk.getCurrentRoom().getNumber()
+                || replay.getWallHits() != walk.getWallHits()) {
+            throw new IllegalStateException("replay does not end where the walk did");
+        }
+        for (int id = 0; id < open.length; id++) {
+            if (doors.isOpen(id) != open[id]) {
+                throw new IllegalStateException("door " + id + " differs after replay");
+            }
+        }
+
+        start = System.nanoTime();
+        replay.seek(file, journal.getEvents() / 2);
+        System.out.printf("seek to the middle %.3f s, room %d%n", (System.nanoTime() - start) / 1e9,
+                replay.getCurrentRoom().getNumber());
+    }
+}
@@ -0,0 +1,102 @@
+package maze.bench;
+
+import java.util.SplittableRandom;
+
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.solve.AStarSearch;
+import maze.solve.BreadthFirstSearch;
+import maze.solve.Heuristic;
+import maze.solve.JunctionGraph;
+import maze.solve.JunctionSearch;
+import maze.solve.MazeGraph;
+import maze.solve.PathFinder;
+import maze.solve.Route;
+
+/**
+ * Measures how far dead-end pruning and corridor contraction shrink a maze,
+ * and compares {@link JunctionSearch} with flat breadth-first and A* search,
+ * checking every route length against breadth-first search. Two mazes are
+ * tried: a Kruskal maze with a fraction of its dead ends braided away, and
+ * the random grid of the other solver benchmarks.
+ * <p>
+ * Usage: {@code JunctionBenchmark [side] [queries] [braid]}, defaults
+ * {@code 1000 200 0.1} (1,000,000-room mazes; give it 1.5 GB of heap). On
+ * one core, JDK 17:
+ * <pre>
+ *                      kruskal, 10% braided    random grid
+ * kept rooms           ~42%                    ~85%
+ * junctions            ~5.6%                   ~51%
+ * build                ~0.15 s                 ~0.18 s
+ * bfs                  ~70 queries/s           ~73 queries/s
+ * a*                   ~63 queries/s           ~145 queries/s
+ * junction             ~300 queries/s          ~27 queries/s
+ * </pre>
+ * A mostly perfect maze is mostly dead ends and corridors, so a search
+ * over its junctions does a small fraction of the work. Half the rooms of
+ * the random grid are junctions and its corridors are a move or two long;
+ * there the heap costs more than contraction saves, and a flat search is
+ * the better choice.
+ */
+public final class JunctionBenchmark {
+    private JunctionBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double braid = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(braid, 42);
+        layout.addDoors(0.1, 42);
+        run("kruskal, " + Math.round(braid * 100) + "% braided:", layout.build(new RedMazeFactory()), side, queries);
+        layout = null;
+        run("random grid:", GridMazes.random(new RedMazeFactory(), side, side, 0.35, 0.1, 42), side, queries);
+    }
+
+    private static void run(final String title, final Maze maze, final int side, final int queries) {
+        System.out.println(title);
+        MazeGraph graph = new MazeGraph(maze);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < queries; i++) {
+            from[i] = random.nextInt(graph.size());
+            to[i] = random.nextInt(graph.size());
+        }
+
+        long start = System.nanoTime();
+        JunctionGraph junctions = new JunctionGraph(graph, false);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int rooms = junctions.getRoomCount();
+        System.out.printf("  build %.3f s: %,d rooms, %,d kept (%.1f%%), %,d junctions (%.1f%%), %,d corridors%n",
+                seconds, rooms, junctions.getKeptRoomCount(), 100.0 * junctions.getKeptRoomCount() / rooms,
+                junctions.getJunctionCount(), 100.0 * junctions.getJunctionCount() / rooms,
+                junctions.getCorridorCount());
+
+        int[] expected = query("bfs", new BreadthFirstSearch(graph, false), from, to, null);
+        query("a*", new AStarSearch(graph, false, Heuristic.grid(graph, side)), from, to, expected);
+        query("junction", new JunctionSearch(junctions), from, to, expected);
+    }
+
+    private static int[] query(final String name, final PathFinder finder, final int[] from, final int[] to,
+            final int[] expected) {
+        Route route = new Route();
+        int[] lengths = new int[from.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < from.length; i++) {
+            finder.find(from[i], to[i], route);
+            lengths[i] = route.length();
+            if (expected != null && lengths[i] != expected[i]) {
+                throw new IllegalStateException(name + " found " + lengths[i] + " moves from " + from[i] + " to "
+                        + to[i] + ", not " + expected[i]);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-14s %,10.0f queries/s%n", name, from.length / seconds);
+        return lengths;
+    }
+}
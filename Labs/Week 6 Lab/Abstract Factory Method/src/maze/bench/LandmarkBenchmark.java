@@ -0,0 +1,165 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import maze.Door;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.solve.AStarSearch;
+import maze.solve.BreadthFirstSearch;
+import maze.solve.Heuristic;
+import maze.solve.LandmarkOracle;
+import maze.solve.MazeGraph;
+import maze.solve.PathFinder;
+import maze.solve.Route;
+
+/**
+ * Measures a {@link LandmarkOracle} on the random grid of the other solver
+ * benchmarks: building it, answering distance bounds, guiding A*, keeping
+ * up with doors, and a round trip through a file. Bounds are checked
+ * against breadth-first distances and every A* route length against
+ * breadth-first search.
+ * <p>
+ * Usage: {@code LandmarkBenchmark [side] [landmarks] [queries] [flips]},
+ * defaults {@code 1000 16 200 1000} (a 1,000,000-room maze; give it 1.5 GB
+ * of heap). On one core, JDK 17:
+ * <pre>
+ * select 16 landmarks         ~0.7 s, 32 MB of distances
+ * one given landmark          ~0.04 s
+ * bounds                      ~7,000,000 random pairs/s
+ * lower / upper bound         ~0.98 / ~1.24 of the distance, on average
+ * bfs                         ~65 queries/s
+ * a*, grid heuristic          ~140 queries/s
+ * a*, landmark heuristic      ~260 queries/s
+ * 1,000 door flips            ~0.02 s, all repaired in place
+ * write / read                ~0.035 s / ~0.005 s
+ * </pre>
+ * A bound query costs two cache misses, one per room's run of distances.
+ * With doors blocking, the flips leave no landmark stale: a closed door
+ * sets back only the rooms that reached the landmark through it, well
+ * under the repair limit here.
+ */
+public final class LandmarkBenchmark {
+    private LandmarkBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int flips = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        Maze maze = GridMazes.random(new RedMazeFactory(), side, side, 0.35, 0.1, 42);
+        MazeGraph graph = new MazeGraph(maze);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < queries; i++) {
+            from[i] = random.nextInt(graph.size());
+            to[i] = random.nextInt(graph.size());
+        }
+
+        long start = System.nanoTime();
+        LandmarkOracle oracle = LandmarkOracle.select(graph, k, false);
+        System.out.printf("select %d landmarks %.3f s, %,d bytes of distances%n", k,
+                (System.nanoTime() - start) / 1e9, oracle.getDistanceBytes());
+        start = System.nanoTime();
+        LandmarkOracle exit = LandmarkOracle.of(graph, false, graph.size() - 1);
+        System.out.printf("one given landmark %.3f s%n", (System.nanoTime() - start) / 1e9);
+
+        int pairs = 10_000_000;
+        long sum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < pairs; i++) {
+            int a = random.nextInt(graph.size());
+            int b = random.nextInt(graph.size());
+            sum += oracle.lowerBound(a, b) + oracle.upperBound(a, b);
+        }
+        Harness.sink = sum;
+        System.out.printf("bounds %,.0f pairs/s%n", pairs / ((System.nanoTime() - start) / 1e9));
+
+        PathFinder bfs = new BreadthFirstSearch(graph, false);
+        int[] expected = run("bfs", bfs, from, to, null);
+        double lower = 0;
+        double upper = 0;
+        int counted = 0;
+        for (int i = 0; i < queries; i++) {
+            int d = expected[i];
+            int lo = oracle.lowerBound(from[i], to[i]);
+            int hi = oracle.upperBound(from[i], to[i]);
+            if (d < 0 ? lo != LandmarkOracle.UNREACHABLE && hi != LandmarkOracle.UNREACHABLE : lo > d || hi < d) {
+                throw new IllegalStateException("bounds " + lo + ".." + hi + " miss " + d + " from " + from[i]
+                        + " to " + to[i]);
+            }
+            if (d > 0) {
+                lower += (double) lo / d;
+                upper += (double) hi / d;
+                counted++;
+            }
+            if (d >= 0 && exit.distance(0, to[i]) != exit.upperBound(to[i], graph.size() - 1)) {
+                throw new IllegalStateException("distance to the exit is not exact");
+            }
+        }
+        System.out.printf("lower / upper bound %.2f / %.2f of the distance%n", lower / counted, upper / counted);
+        run("a*, grid", new AStarSearch(graph, false, Heuristic.grid(graph, side)), from, to, expected);
+        run("a*, landmarks", new AStarSearch(graph, false, oracle.heuristic()), from, to, expected);
+
+        LandmarkOracle doors = LandmarkOracle.select(graph, k, true);
+        start = System.nanoTime();
+        for (int i = 0; i < flips; i++) {
+            Door door = graph.doorAt(random.nextInt(graph.size()), random.nextInt(4));
+            if (door != null) {
+                door.setOpen(!door.isOpen());
+                doors.doorChanged(door);
+            }
+        }
+        System.out.printf("%,d door flips %.3f s, %d landmarks stale%n", flips, (System.nanoTime() - start) / 1e9,
+                doors.getStaleCount());
+        start = System.nanoTime();
+        doors.refresh();
+        System.out.printf("refresh %.3f s%n", (System.nanoTime() - start) / 1e9);
+        expected = run("bfs, doors", new BreadthFirstSearch(graph, true), from, to, null);
+        run("a*, doors", new AStarSearch(graph, true, doors.heuristic()), from, to, expected);
+
+        Path file = Files.createTempFile("landmarks", ".bin");
+        try {
+            start = System.nanoTime();
+            oracle.write(file);
+            double written = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            LandmarkOracle loaded = LandmarkOracle.read(file, graph);
+            double read = (System.nanoTime() - start) / 1e9;
+            for (int l = 0; l < k; l++) {
+                for (int room = 0; room < graph.size(); room += 97) {
+                    if (loaded.distance(l, room) != oracle.distance(l, room)) {
+                        throw new IllegalStateException("landmark " + l + " came back different");
+                    }
+                }
+            }
+            System.out.printf("write / read %.3f s / %.3f s, %,d bytes%n", written, read, Files.size(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static int[] run(final String name, final PathFinder finder, final int[] from, final int[] to,
+            final int[] expected) {
+        Route route = new Route();
+        int[] lengths = new int[from.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < from.length; i++) {
+            finder.find(from[i], to[i], route);
+            lengths[i] = route.length();
+            if (expected != null && lengths[i] != expected[i]) {
+                throw new IllegalStateException(name + " found " + lengths[i] + " moves from " + from[i] + " to "
+                        + to[i] + ", not " + expected[i]);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %,10.0f queries/s%n", name, from.length / seconds);
+        return lengths;
+    }
+}
@@ -0,0 +1,139 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Scanner;
+
+import maze.Direction;
+import maze.Door;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.io.MazeHandler;
+import maze.io.MazeReader;
+
+/**
+ * Measures {@link maze.MazeFactory#loadMaze(String)} on {@code large.maze}
+ * tiled {@code copies} times, against tokenizing alone and against the
+ * {@code Scanner} loader it replaced, kept here as {@link #scannerLoad}.
+ * <p>
+ * Usage: {@code LoadBenchmark [source] [copies] [runs]}, defaults
+ * {@code large.maze 100000 5}.
+ * <p>
+ * With 100000 copies (2.5M rooms, 600k doors, 110 MB) on one core of a
+ * cloud VM, JDK 17, {@code -Xmx3g}, after the first run:
+ * <pre>
+ * Scanner / split / Hashtable loader      2.4 - 2.8 s    39 - 45 MB/s
+ * MazeReader tokenizing only              0.21 - 0.23 s  470 - 530 MB/s
+ * MazeReader + MazeBuilder (full graph)   0.90 - 1.06 s  100 - 120 MB/s
+ * </pre>
+ * Both loaders get the factory's shared walls. The remaining time is almost
+ * all allocation and GC of the {@code Room}, {@code Door} and boxed map
+ * entries that make up the object graph.
+ */
+public final class LoadBenchmark {
+    private LoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path source = Paths.get(args.length > 0 ? args[0] : "large.maze");
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Path file = Files.createTempFile("scaled", ".maze");
+        try {
+            ScaledMaze.write(source, copies, file);
+            double megabytes = Files.size(file) / (1024.0 * 1024.0);
+            for (int run = 1; run <= runs; run++) {
+                long start = System.nanoTime();
+                Maze old = scannerLoad(file, new RedMazeFactory());
+                double scanned = (System.nanoTime() - start) / 1e9;
+                System.out.printf("run %d: Scanner loader %d rooms in %.3f s (%.1f MB/s)%n", run,
+                        old.getNumberOfRooms(), scanned, megabytes / scanned);
+                old = null;
+
+                start = System.nanoTime();
+                MazeReader.read(file, new MazeHandler() {
+                    @Override
+                    public void room(int number, int north, int south, int east, int west) {
+                    }
+
+                    @Override
+                    public void door(int id, int room1, int room2, boolean open) {
+                    }
+                });
+                double parse = (System.nanoTime() - start) / 1e9;
+                System.out.printf("run %d: tokenize only %.3f s (%.1f MB/s)%n", run, parse, megabytes / parse);
+
+                start = System.nanoTime();
+                Maze maze = new RedMazeFactory().loadMaze(file.toString());
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("run %d: %d rooms, %.1f MB in %.3f s (%.0f rooms/s, %.1f MB/s)%n",
+                        run, maze.getNumberOfRooms(), megabytes, seconds,
+                        maze.getNumberOfRooms() / seconds, megabytes / seconds);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * The loader {@code loadMaze} had before {@link MazeReader}: a
+     * {@code Scanner} over lines, {@code String.split}, map lookups for
+     * every neighbour and the directions of each door name gathered in a
+     * {@code Hashtable} until its door line comes.
+     */
+    static Maze scannerLoad(final Path path, final MazeFactory factory) throws IOException {
+        Maze maze = new Maze();
+        Hashtable<String, List<Direction>> doors = new Hashtable<>();
+        try (Scanner sc = new Scanner(path.toFile())) {
+            while (sc.hasNextLine()) {
+                List<String> line = List.of(sc.nextLine().split(" "));
+                if (line.get(0).equals("room")) {
+                    int num = Integer.parseInt(line.get(1));
+                    Room room = maze.getRoom(num);
+                    if (room == null) {
+                        room = factory.makeRoom(num);
+                        maze.addRoom(room);
+                    }
+                    if (maze.getNumberOfRooms() == 1) {
+                        maze.setCurrentRoom(room);
+                    }
+                    for (Direction dir : Direction.values()) {
+                        String edge = line.get(2 + dir.ordinal());
+                        if (edge.contains("d")) {
+                            doors.computeIfAbsent(edge, name -> new ArrayList<>()).add(dir);
+                        } else if (edge.equals("wall")) {
+                            room.setSide(dir, factory.makeWall());
+                        } else {
+                            int neighborNum = Integer.parseInt(edge);
+                            Room neighbor = maze.getRoom(neighborNum);
+                            if (neighbor == null) {
+                                neighbor = factory.makeRoom(neighborNum);
+                                maze.addRoom(neighbor);
+                            }
+                            neighbor.setSide(dir.opposite(), room);
+                            room.setSide(dir, neighbor);
+                        }
+                    }
+                } else if (line.size() > 1) {
+                    Room r1 = maze.getRoom(Integer.parseInt(line.get(2)));
+                    Room r2 = maze.getRoom(Integer.parseInt(line.get(3)));
+                    List<Direction> sides = doors.get(line.get(1));
+                    Door door = factory.makeDoor(r1, r2);
+                    int first = r1.getSide(sides.get(0)) == null ? 0 : 1;
+                    r1.setSide(sides.get(first), door);
+                    r2.setSide(sides.get(1 - first), door);
+                    door.setOpen(line.get(4).equals("open"));
+                }
+            }
+        }
+        return maze;
+    }
+}
@@ -0,0 +1,219 @@
+package maze.bench;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import maze.BlueMazeFactory;
+import maze.Direction;
+import maze.Door;
+import maze.EntryListener;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.gen.GridLayout;
+import maze.gen.KruskalGenerator;
+import maze.io.MazeTextWriter;
+
+/**
+ * Reproducible, headless benchmarks of the maze model, parameterized by
+ * maze size and theme. Each size is a square braided maze from
+ * {@link KruskalGenerator} with a fixed seed, a tenth of its passages
+ * doors. Scores are operations per second, where an operation is:
+ * <ul>
+ * <li>{@code load}: one room loaded from a text file by {@code loadMaze}</li>
+ * <li>{@code construct}: one room built through the factory</li>
+ * <li>{@code getSide}: one {@code Room.getSide} call, visiting every side</li>
+ * <li>{@code doorEnter}: one {@code Door.enter} on an open door with the
+ * given number of listeners</li>
+ * <li>{@code iterator}: one room from {@code Maze.iterator()}</li>
+ * </ul>
+ * Usage: {@code MazeBenchmarks [--sizes 10,100,300] [--themes red,blue]
+ * [--only load,getSide] [--listeners 0,1,4] [--warmup 3] [--iterations 5]
+ * [--millis 500] [--format json|csv] [--out file] [--baseline file]
+ * [--tolerance 0.1]}. Results go to {@code --out} or standard output,
+ * progress to standard error. With {@code --baseline}, a JSON file from an
+ * earlier run, benchmarks that lost more than {@code --tolerance} of their
+ * score are listed and the exit status is 1.
+ * <p>
+ * This project does not ship JMH, so {@link Harness} does the timing; there
+ * is no forking, so run one benchmark group per JVM when comparing numbers
+ * that must not influence each other's JIT profile.
+ */
+public final class MazeBenchmarks {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private MazeBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> options = options(args);
+        int[] sizes = ints(options.getOrDefault("sizes", "10,100,300"));
+        List<String> themes = Arrays.asList(options.getOrDefault("themes", "red,blue").split(","));
+        List<String> only = options.containsKey("only") ? Arrays.asList(options.get("only").split(","))
+                : Arrays.asList("load", "construct", "getSide", "doorEnter", "iterator");
+        int[] listenerCounts = ints(options.getOrDefault("listeners", "0,1,4"));
+        Harness harness = new Harness(Integer.parseInt(options.getOrDefault("warmup", "3")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")),
+                Long.parseLong(options.getOrDefault("millis", "500")));
+
+        for (int side : sizes) {
+            GridLayout layout = new KruskalGenerator().generate(side, side, side);
+            layout.braid(0.5, 1);
+            layout.addDoors(0.1, 2);
+            Path file = Files.createTempFile("bench", ".maze");
+            try {
+                try (MazeTextWriter out = new MazeTextWriter(file)) {
+                    layout.write(out);
+                }
+                for (String theme : themes) {
+                    MazeFactory factory = factory(theme);
+                    String params = "side=" + side + ",theme=" + theme;
+                    if (only.contains("load")) {
+                        harness.measure("load", params, () -> {
+                            Maze maze = factory.loadMaze(file.toString());
+                            Harness.sink = maze.getCurrentRoom().getNumber();
+                            return maze.getNumberOfRooms();
+                        });
+                    }
+                    if (only.contains("construct")) {
+                        harness.measure("construct", params, () -> {
+                            Maze maze = layout.build(factory);
+                            Harness.sink = maze.getCurrentRoom().getNumber();
+                            return maze.getNumberOfRooms();
+                        });
+                    }
+                    if (only.contains("getSide")) {
+                        Room[] rooms = rooms(factory.loadMaze(file.toString()));
+                        harness.measure("getSide", params, () -> getSide(rooms));
+                    }
+                    if (only.contains("doorEnter")) {
+                        for (int listeners : listenerCounts) {
+                            Door[] doors = doors(factory.loadMaze(file.toString()), listeners);
+                            harness.measure("doorEnter", params + ",listeners=" + listeners, () -> {
+                                for (Door door : doors) {
+                                    door.enter();
+                                }
+                                return doors.length;
+                            });
+                        }
+                    }
+                    if (only.contains("iterator")) {
+                        Maze maze = factory.loadMaze(file.toString());
+                        harness.measure("iterator", params, () -> {
+                            long sum = 0;
+                            int n = 0;
+                            for (Room room : maze) {
+                                sum += room.getNumber();
+                                n++;
+                            }
+                            Harness.sink = sum;
+                            return n;
+                        });
+                    }
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        PrintStream out = options.containsKey("out") ? new PrintStream(new FileOutputStream(options.get("out")))
+                : System.out;
+        if ("csv".equals(options.get("format"))) {
+            harness.writeCsv(out);
+        } else {
+            harness.writeJson(out);
+        }
+        out.flush();
+        if (options.containsKey("baseline")) {
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.1"));
+            if (harness.compare(Paths.get(options.get("baseline")), tolerance) > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static long getSide(final Room[] rooms) {
+        long passages = 0;
+        for (Room room : rooms) {
+            for (Direction dir : DIRECTIONS) {
+                if (room.getSide(dir) instanceof Room) {
+                    passages++;
+                }
+            }
+        }
+        Harness.sink = passages;
+        return 4L * rooms.length;
+    }
+
+    private static Room[] rooms(final Maze maze) {
+        List<Room> rooms = new ArrayList<>();
+        for (Room room : maze) {
+            rooms.add(room);
+        }
+        return rooms.toArray(new Room[0]);
+    }
+
+    /**
+     * Returns every door of the maze, open, with {@code listeners} listeners
+     * each.
+     */
+    private static Door[] doors(final Maze maze, final int listeners) {
+        Set<Door> doors = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Room room : maze) {
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door) {
+                    doors.add((Door) site);
+                }
+            }
+        }
+        EntryListener count = site -> Harness.sink++;
+        for (Door door : doors) {
+            door.setOpen(true);
+            for (int i = 0; i < listeners; i++) {
+                door.addEntryListener(count);
+            }
+        }
+        return doors.toArray(new Door[0]);
+    }
+
+    private static MazeFactory factory(final String theme) {
+        switch (theme) {
+        case "red":
+            return new RedMazeFactory();
+        case "blue":
+            return new BlueMazeFactory();
+        default:
+            throw new IllegalArgumentException("unknown theme " + theme);
+        }
+    }
+
+    private static Map<String, String> options(final String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected --option value at " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static int[] ints(final String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,101 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import maze.Direction;
+import maze.EventSink;
+import maze.MapSite;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.compact.CompactMaze;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.io.MazeBinaryWriter;
+import maze.paged.PagedMaze;
+import maze.sim.Simulator;
+
+/**
+ * Exercises {@link PagedMaze} under a small memory budget: a long random
+ * walk, which stays in a few regions, random room lookups, which mostly
+ * miss, and a full scan, which pages every region in and out once. The
+ * walk is replayed on a {@link CompactMaze} loaded from the same file and
+ * must end in the same room with the same counts.
+ * <p>
+ * Usage: {@code PagedMazeBenchmark [side] [budget MB] [moves] [lookups]},
+ * defaults {@code 2000 16 10000000 1000000} (4,000,000 rooms, 64 regions).
+ * On one core, JDK 17, the walk runs at about 22M moves/s with 99.99% of
+ * region reads hitting, random lookups at about 36,000/s with nearly one
+ * miss each, and the scan at about 17M rooms/s with one miss a region.
+ */
+public final class PagedMazeBenchmark {
+    private PagedMazeBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long budget = (args.length > 1 ? Long.parseLong(args[1]) : 16) << 20;
+        long moves = args.length > 2 ? Long.parseLong(args[2]) : 10_000_000L;
+        int lookups = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+        Path file = Files.createTempFile("paged", ".mazeb");
+        file.toFile().deleteOnExit();
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(0.3, 43);
+        layout.addDoors(0.2, 44);
+        try (MazeBinaryWriter writer = new MazeBinaryWriter(file)) {
+            layout.write(writer);
+        }
+        MapSite.setEventSink(EventSink.NONE);
+
+        try (PagedMaze paged = PagedMaze.open(file, new RedMazeFactory(), budget)) {
+            System.out.printf("%,d rooms, %d regions of %,d rooms in memory at most%n", paged.getNumberOfRooms(),
+                    paged.getMaxRegions(), paged.getRegionSize());
+
+            Simulator walk = new Simulator(paged);
+            long start = System.nanoTime();
+            walk.random(moves, new SplittableRandom(7));
+            report("walk", paged, moves, start);
+            check(walk, CompactMaze.load(file, new RedMazeFactory()), moves);
+
+            paged.resetCounters();
+            SplittableRandom random = new SplittableRandom(11);
+            long found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Room room = paged.getRoom(random.nextInt(paged.getNumberOfRooms()));
+                found += room.getSide(Direction.East) instanceof Room ? 1 : 0;
+            }
+            report("lookups", paged, lookups, start);
+            Harness.sink = found;
+
+            paged.resetCounters();
+            start = System.nanoTime();
+            long rooms = 0;
+            for (Room room : paged) {
+                rooms += room.getSide(Direction.North) == null ? 0 : 1;
+            }
+            report("scan", paged, rooms, start);
+        }
+    }
+
+    private static void report(final String name, final PagedMaze maze, final long operations, final long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long reads = maze.getHits() + maze.getMisses();
+        System.out.printf("%-8s %,14.0f ops/s  %,12d hits  %,10d misses  %,10d evictions  (%.2f%% hits)%n", name,
+                operations / seconds, maze.getHits(), maze.getMisses(), maze.getEvictions(),
+                reads == 0 ? 0 : 100.0 * maze.getHits() / reads);
+    }
+
+    private static void check(final Simulator paged, final CompactMaze maze, final long moves) {
+        Simulator walk = new Simulator(maze);
+        walk.random(moves, new SplittableRandom(7));
+        if (walk.getCurrentRoom().getNumber() != paged.getCurrentRoom().getNumber()
+                || walk.getRoomChanges() != paged.getRoomChanges() || walk.getWallHits() != paged.getWallHits()
+                || walk.getDoorOpenings() != paged.getDoorOpenings()) {
+            throw new IllegalStateException("paged walk differs from the compact maze");
+        }
+    }
+}
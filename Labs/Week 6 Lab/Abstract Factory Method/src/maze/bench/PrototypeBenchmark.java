@@ -0,0 +1,177 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazePrototype;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.io.MazeTextWriter;
+
+/**
+ * Compares making many copies of one level by loading it from text each
+ * time with {@link maze.MazeFactory#loadMaze(String)} against loading it
+ * once into a {@link MazePrototype} and calling
+ * {@link MazePrototype#newMaze()}: {@code clones} copies of
+ * {@code large.maze}, then a few of a generated level with {@code side}
+ * squared rooms, which is also built straight from its layout for scale.
+ * After each, {@code writers} threads race to open the closed doors of
+ * fresh copies with {@link Door#compareAndSetOpen}, each its own share of
+ * them, and every door must open exactly once: a copy's first writes copy
+ * the door pages it shares with the template, which must not lose a CAS.
+ * <p>
+ * Usage: {@code PrototypeBenchmark [source] [clones] [side] [runs]
+ * [writers]}, defaults {@code large.maze 10000 1000 3 8} (give it 2 GB of
+ * heap). The
+ * large level is timed once per run after a collection, so a collection
+ * left over from the one before does not land on it. On one core, JDK 17,
+ * per maze, after the first run:
+ * <pre>
+ * large.maze (25 rooms), loadMaze       ~8 - 15 us
+ * large.maze (25 rooms), newMaze        ~0.5 - 2 us
+ * 1,000,000 rooms, loadMaze             ~0.24 - 0.29 s
+ * 1,000,000 rooms, GridLayout.build     ~0.16 - 0.21 s
+ * 1,000,000 rooms, newMaze              ~0.06 s
+ * </pre>
+ * A copy skips the file, the tokenizer and the factory; what it still
+ * pays for is a new room, side array and map entry per room and a new door
+ * per door, since those are what a game changes. The walls are the
+ * template's and the doors' open states are shared until written.
+ */
+public final class PrototypeBenchmark {
+    private PrototypeBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String source = args.length > 0 ? args[0] : "large.maze";
+        int clones = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int side = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int writers = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        RedMazeFactory factory = new RedMazeFactory();
+
+        MazePrototype prototype = factory.loadPrototype(source);
+        for (int run = 1; run <= runs; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < clones; i++) {
+                Harness.sink = factory.loadMaze(source).getNumberOfRooms();
+            }
+            double loaded = (System.nanoTime() - start) / 1e3 / clones;
+            start = System.nanoTime();
+            for (int i = 0; i < clones; i++) {
+                Harness.sink = prototype.newMaze().getNumberOfRooms();
+            }
+            double copied = (System.nanoTime() - start) / 1e3 / clones;
+            System.out.printf("run %d: %s, %,d rooms x %,d: loadMaze %.2f us, newMaze %.2f us%n", run, source,
+                    prototype.getNumberOfRooms(), clones, loaded, copied);
+        }
+        checkWriters(source, prototype, writers, 2000);
+
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(0.1, 42);
+        layout.addDoors(0.1, 42);
+        Path file = Files.createTempFile("prototype", ".maze");
+        try {
+            try (MazeTextWriter out = new MazeTextWriter(file)) {
+                layout.write(out);
+            }
+            prototype = new MazePrototype(factory.loadMaze(file.toString()));
+            for (int run = 1; run <= runs; run++) {
+                System.gc();
+                long start = System.nanoTime();
+                Maze maze = factory.loadMaze(file.toString());
+                double loaded = (System.nanoTime() - start) / 1e9;
+                maze = null;
+                System.gc();
+                start = System.nanoTime();
+                maze = layout.build(factory);
+                double built = (System.nanoTime() - start) / 1e9;
+                maze = null;
+                System.gc();
+                start = System.nanoTime();
+                maze = prototype.newMaze();
+                double copied = (System.nanoTime() - start) / 1e9;
+                Harness.sink = maze.getNumberOfRooms();
+                System.out.printf("run %d: %,d rooms: loadMaze %.3f s, build %.3f s, newMaze %.3f s%n", run,
+                        prototype.getNumberOfRooms(), loaded, built, copied);
+            }
+            checkWriters(side + "x" + side, prototype, writers, 20);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void checkWriters(final String name, final MazePrototype prototype, final int writers,
+            final int trials) throws InterruptedException {
+        int lost = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            Maze maze = prototype.newMaze();
+            List<Door> closed = closedDoors(maze);
+            int before = maze.getDoorState().countOpen();
+            AtomicInteger opened = new AtomicInteger();
+            CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[writers];
+            for (int t = 0; t < writers; t++) {
+                int first = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = first; i < closed.size(); i += writers) {
+                        if (closed.get(i).compareAndSetOpen(false, true)) {
+                            opened.incrementAndGet();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            boolean allOpen = true;
+            for (Door door : closed) {
+                allOpen &= door.isOpen();
+            }
+            if (!allOpen || opened.get() != closed.size()
+                    || maze.getDoorState().countOpen() != before + closed.size()) {
+                lost++;
+            }
+        }
+        System.out.printf("%s, %d writers on fresh copies: %d of %d trials lost a door%n", name, writers, lost,
+                trials);
+        if (lost != 0) {
+            throw new IllegalStateException("a copy lost a door opening");
+        }
+    }
+
+    private static List<Door> closedDoors(final Maze maze) {
+        Set<Door> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Door> closed = new ArrayList<>();
+        for (Room room : maze) {
+            for (Direction dir : Direction.values()) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door && seen.add((Door) site) && !((Door) site).isOpen()) {
+                    closed.add((Door) site);
+                }
+            }
+        }
+        return closed;
+    }
+}
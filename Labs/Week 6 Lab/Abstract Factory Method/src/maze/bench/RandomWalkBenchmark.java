@@ -0,0 +1,78 @@
+package maze.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.sim.RandomWalks;
+import maze.sim.Simulator;
+import maze.solve.MazeGraph;
+
+/**
+ * Measures {@link RandomWalks} against walking the same number of steps
+ * through {@code Room.getSide} with a {@link Simulator}, and checks that
+ * runs on pools of different sizes give identical counts.
+ * <p>
+ * Usage: {@code RandomWalkBenchmark [side] [walkers] [max steps]}, defaults
+ * {@code 32 20000 1000000} (a 1,024-room Kruskal maze, a fifth of its dead
+ * ends braided, from one corner to the other). On one core, JDK 17:
+ * <pre>
+ * walks, 1 thread              ~175,000,000 steps/s
+ * walks, 2 and 4 threads       the same counts, no faster on one core
+ * simulator, one walker        ~145,000,000 steps/s
+ * </pre>
+ * The walkers also count visits to every room, which the simulator does
+ * not. Mean hitting time is about 105,000 steps, with a long tail: one
+ * walker in 20,000 has not arrived after a million.
+ */
+public final class RandomWalkBenchmark {
+    private RandomWalkBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long walkers = args.length > 1 ? Long.parseLong(args[1]) : 20_000;
+        long maxSteps = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(0.2, 42);
+        Maze maze = layout.build(new RedMazeFactory());
+        MazeGraph graph = new MazeGraph(maze);
+        int start = graph.indexOf(0);
+        int target = graph.indexOf(side * side - 1);
+        RandomWalks walks = new RandomWalks(graph, false);
+
+        RandomWalks.Result first = null;
+        for (int threads : new int[] { 1, 2, 4 }) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long begin = System.nanoTime();
+            RandomWalks.Result result = walks.run(start, new int[] { target }, walkers, maxSteps, 1, pool);
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            pool.shutdown();
+            System.out.printf("walks, %d thread%s %,15.0f steps/s%n", threads, threads == 1 ? " " : "s",
+                    result.getSteps() / seconds);
+            if (first == null) {
+                first = result;
+                System.out.print(result);
+            } else if (!result.equals(first)) {
+                throw new IllegalStateException(threads + " threads gave different counts");
+            }
+        }
+
+        MapSite.setEventSink(EventSink.NONE);
+        Simulator simulator = new Simulator(maze.getRoom(0));
+        long steps = Math.min(first.getSteps(), 200_000_000L);
+        long begin = System.nanoTime();
+        simulator.random(steps, new SplittableRandom(1));
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        Room end = simulator.getCurrentRoom();
+        Harness.sink = end.getNumber();
+        System.out.printf("simulator, one walker %,12.0f steps/s%n", steps / seconds);
+    }
+}
@@ -0,0 +1,118 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import maze.Door;
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.render.MazeLayout;
+import maze.render.MazeTiles;
+import maze.solve.MazeGraph;
+import maze.ui.MazePanel;
+
+/**
+ * Measures laying out and drawing a large maze with {@link MazeTiles}:
+ * the layout, the whole pyramid up to its one top tile, the top tile again
+ * from the cache, the top tile after a door is opened, and a PNG of level
+ * 0. For scale, {@link MazePanel}'s own layout is timed on a smaller maze;
+ * it rescans every room until no more can be placed, and its paint then
+ * draws every room on every repaint.
+ * <p>
+ * Usage: {@code RenderBenchmark [side] [panel side] [toggles]}, defaults
+ * {@code 1000 100 1000} (1,000,000 rooms, 8 pixels a room; give it 1.5 GB
+ * of heap). Runs headless. On one core, JDK 17:
+ * <pre>
+ * MazePanel layout, 10,000 rooms   ~0.16 - 0.24 s
+ * MazePanel layout, 90,000 rooms   ~1.0 s
+ * MazeLayout, 1,000,000 rooms      ~0.06 - 0.27 s
+ * whole pyramid, 1,365 tiles       ~0.53 s
+ * top tile from the cache          ~0.05 us
+ * door opened, top tile again      ~0.7 ms, 1 tile redrawn
+ * PNG of level 0, 8000x8000        ~0.55 s, ~9 MB
+ * </pre>
+ * Opening a door redraws one level 0 tile and shrinks it into the tiles
+ * above, and the first door also finds the rooms of every door once. At
+ * {@code 3163 0 100} (10,000,000 rooms, 4 GB of heap) the pyramid takes
+ * ~7.6 s, a door ~2.6 ms, and the 25,304 pixel square PNG ~9.5 s and 93 MB.
+ */
+public final class RenderBenchmark {
+    private RenderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int panelSide = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int toggles = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        System.setProperty("java.awt.headless", "true");
+        MapSite.setEventSink(EventSink.NONE);
+
+        if (panelSide > 0) {
+            Maze small = maze(panelSide);
+            long start = System.nanoTime();
+            new MazePanel(small);
+            System.out.printf("MazePanel layout %,d rooms %.3f s%n", small.getNumberOfRooms(),
+                    (System.nanoTime() - start) / 1e9);
+        }
+
+        Maze maze = maze(side);
+        MazeGraph graph = new MazeGraph(maze);
+        long start = System.nanoTime();
+        MazeLayout layout = new MazeLayout(graph);
+        System.out.printf("MazeLayout %,d rooms %.3f s, %d x %d%n", graph.size(), (System.nanoTime() - start) / 1e9,
+                layout.getWidth(), layout.getHeight());
+
+        MazeTiles tiles = new MazeTiles(layout, 8, 256, 2048);
+        tiles.attach(maze);
+        int top = tiles.getLevels() - 1;
+        start = System.nanoTime();
+        tiles.getTile(top, 0, 0);
+        System.out.printf("whole pyramid %,d tiles %.3f s%n", tiles.getTilesDrawn(), (System.nanoTime() - start) / 1e9);
+
+        int hits = 1_000_000;
+        start = System.nanoTime();
+        for (int i = 0; i < hits; i++) {
+            Harness.sink = tiles.getTile(top, 0, 0).getWidth();
+        }
+        System.out.printf("top tile from the cache %.3f us%n", (System.nanoTime() - start) / 1e3 / hits);
+
+        SplittableRandom random = new SplittableRandom(7);
+        long before = tiles.getTilesDrawn();
+        int opened = 0;
+        start = System.nanoTime();
+        while (opened < toggles) {
+            Door door = graph.doorAt(random.nextInt(graph.size()), random.nextInt(4));
+            if (door != null) {
+                door.setOpen(false);
+                door.enter();
+                tiles.getTile(top, 0, 0);
+                opened++;
+            }
+        }
+        System.out.printf("door opened, top tile again %.3f ms, %.1f tiles redrawn%n",
+                (System.nanoTime() - start) / 1e6 / toggles, (double) (tiles.getTilesDrawn() - before) / toggles);
+
+        Path file = Files.createTempFile("maze", ".png");
+        try {
+            start = System.nanoTime();
+            tiles.export(file, 0);
+            System.out.printf("PNG of level 0 %.3f s, %,d bytes%n", (System.nanoTime() - start) / 1e9,
+                    Files.size(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Maze maze(final int side) {
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(0.1, 42);
+        layout.addDoors(0.1, 42);
+        return layout.build(new RedMazeFactory());
+    }
+}
@@ -0,0 +1,93 @@
+package maze.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import maze.io.MazeHandler;
+import maze.io.MazeReader;
+import maze.io.MazeTextWriter;
+
+/**
+ * Writes a maze file made of many renumbered copies of a small one, so the
+ * loaders can be measured on realistic line shapes at any size.
+ */
+public final class ScaledMaze implements MazeHandler {
+    private int[] rooms = new int[5 * 16];
+    private int roomCount;
+    private int[] doors = new int[4 * 16];
+    private int doorCount;
+    private int maxRoom = -1;
+    private int maxDoor = -1;
+
+    private ScaledMaze() {
+    }
+
+    /**
+     * Writes {@code copies} copies of {@code source} to {@code target}.
+     */
+    public static void write(final Path source, final int copies, final Path target) throws IOException {
+        ScaledMaze maze = new ScaledMaze();
+        MazeReader.read(source, maze);
+        try (MazeTextWriter out = new MazeTextWriter(target)) {
+            maze.write(copies, out);
+        }
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        if (5 * roomCount + 5 > rooms.length) {
+            rooms = Arrays.copyOf(rooms, rooms.length * 2);
+        }
+        int i = 5 * roomCount++;
+        rooms[i] = number;
+        rooms[i + 1] = north;
+        rooms[i + 2] = south;
+        rooms[i + 3] = east;
+        rooms[i + 4] = west;
+        maxRoom = Math.max(maxRoom, number);
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        if (4 * doorCount + 4 > doors.length) {
+            doors = Arrays.copyOf(doors, doors.length * 2);
+        }
+        int i = 4 * doorCount++;
+        doors[i] = id;
+        doors[i + 1] = room1;
+        doors[i + 2] = room2;
+        doors[i + 3] = open ? 1 : 0;
+        maxDoor = Math.max(maxDoor, id);
+    }
+
+    private void write(final int copies, final MazeHandler out) {
+        for (int k = 0; k < copies; k++) {
+            int roomBase = k * (maxRoom + 1);
+            int doorBase = k * (maxDoor + 1);
+            for (int i = 0; i < 5 * roomCount; i += 5) {
+                out.room(rooms[i] + roomBase, shift(rooms[i + 1], roomBase, doorBase),
+                        shift(rooms[i + 2], roomBase, doorBase), shift(rooms[i + 3], roomBase, doorBase),
+                        shift(rooms[i + 4], roomBase, doorBase));
+            }
+        }
+        for (int k = 0; k < copies; k++) {
+            int roomBase = k * (maxRoom + 1);
+            int doorBase = k * (maxDoor + 1);
+            for (int i = 0; i < 4 * doorCount; i += 4) {
+                out.door(doors[i] + doorBase, doors[i + 1] + roomBase, doors[i + 2] + roomBase, doors[i + 3] == 1);
+            }
+        }
+        out.end();
+    }
+
+    private static int shift(final int side, final int roomBase, final int doorBase) {
+        if (side == WALL) {
+            return side;
+        }
+        if (MazeHandler.isDoor(side)) {
+            return MazeHandler.door(MazeHandler.doorId(side) + doorBase);
+        }
+        return side + roomBase;
+    }
+}
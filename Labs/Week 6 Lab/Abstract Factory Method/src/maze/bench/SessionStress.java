@@ -0,0 +1,149 @@
+package maze.bench;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import maze.Direction;
+import maze.Door;
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.Wall;
+import maze.gen.GridLayout;
+import maze.gen.KruskalGenerator;
+import maze.session.MazeSession;
+import maze.session.SharedMaze;
+
+/**
+ * Stress test for {@link SharedMaze}: up to 64 agents walk one maze at once,
+ * opening and closing doors as they go. Every door change any agent makes
+ * is tallied per door, and at the end each door's tally must match its
+ * state: opened exactly once more than closed if it ends open, as often if
+ * it ends closed. Each session's listener must also have heard exactly the
+ * entries its own moves made, and every move must land next to where it
+ * started. Any mismatch throws.
+ * <p>
+ * Usage: {@code SessionStress [threads] [steps] [side]}, defaults
+ * {@code 64 2000000 100}. The run is repeated for 1, 2, 4 ... threads up to
+ * the given count and the total steps per second printed for each.
+ */
+public final class SessionStress {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private SessionStress() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long steps = args.length > 1 ? Long.parseLong(args[1]) : 2_000_000;
+        int side = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            run(threads, steps / threads, side);
+        }
+    }
+
+    private static void run(final int threads, final long steps, final int side) throws InterruptedException {
+        GridLayout layout = new KruskalGenerator().generate(side, side, 1);
+        layout.braid(0.5, 2);
+        layout.addDoors(0.3, 3);
+        Maze maze = layout.build(new RedMazeFactory());
+        Map<Door, Integer> ids = new IdentityHashMap<>();
+        for (Room room : maze) {
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door && !ids.containsKey(site)) {
+                    ids.put((Door) site, ids.size());
+                }
+            }
+        }
+        AtomicIntegerArray opened = new AtomicIntegerArray(ids.size());
+        AtomicIntegerArray closed = new AtomicIntegerArray(ids.size());
+        MapSite.setEventSink(new EventSink() {
+            @Override
+            public void wallHit(final Wall wall) {
+            }
+
+            @Override
+            public void doorOpened(final Door door) {
+                opened.incrementAndGet(ids.get(door));
+            }
+        });
+
+        SharedMaze shared = new SharedMaze(maze);
+        Thread[] workers = new Thread[threads];
+        long[] heard = new long[threads];
+        long[] expected = new long[threads];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            SplittableRandom random = new SplittableRandom(t);
+            MazeSession session = shared.join(maze.getRoom(random.nextInt(maze.getNumberOfRooms())));
+            session.addEntryListener(site -> heard[id]++);
+            workers[t] = new Thread(() -> {
+                for (long i = 0; i < steps; i++) {
+                    Direction dir = DIRECTIONS[random.nextInt(4)];
+                    int roll = random.nextInt(10);
+                    if (roll < 7) {
+                        Room from = session.getCurrentRoom();
+                        MapSite toward = from.getSide(dir);
+                        if (toward != null && !(toward instanceof Room)) {
+                            expected[id]++;
+                        }
+                        if (session.move(dir)) {
+                            expected[id]++;
+                            if (!leadsTo(from, dir, session.getCurrentRoom())) {
+                                throw new IllegalStateException("session " + id + " jumped from room "
+                                        + from.getNumber() + " to " + session.getCurrentRoom().getNumber());
+                            }
+                        }
+                    } else {
+                        MapSite site = session.getCurrentRoom().getSide(dir);
+                        if (roll < 9 ? session.closeDoor(dir) : session.openDoor(dir)) {
+                            (roll < 9 ? closed : opened).incrementAndGet(ids.get(site));
+                        }
+                    }
+                }
+            });
+            workers[t].setUncaughtExceptionHandler((thread, e) -> failure[0] = e);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        MapSite.setEventSink(EventSink.CONSOLE);
+        if (failure[0] != null) {
+            throw new IllegalStateException(failure[0]);
+        }
+
+        for (Map.Entry<Door, Integer> e : ids.entrySet()) {
+            int balance = opened.get(e.getValue()) - closed.get(e.getValue());
+            if (balance != (e.getKey().isOpen() ? 1 : 0)) {
+                throw new IllegalStateException("door " + e.getValue() + " opened " + opened.get(e.getValue())
+                        + " times, closed " + closed.get(e.getValue()) + " times, open " + e.getKey().isOpen());
+            }
+        }
+        long changes = 0;
+        for (MazeSession session : shared.getSessions()) {
+            if (heard[session.getId()] != expected[session.getId()]) {
+                throw new IllegalStateException("session " + session.getId() + " saw other sessions' events");
+            }
+            changes += session.getRoomChanges();
+        }
+        System.out.printf("%2d threads: %,12.0f steps/s, %,d room changes, %,d doors consistent%n", threads,
+                threads * steps / seconds, changes, ids.size());
+    }
+
+    private static boolean leadsTo(final Room from, final Direction dir, final Room to) {
+        MapSite site = from.getSide(dir);
+        return site == to || site instanceof Door && ((Door) site).getOtherSide(from) == to;
+    }
+}
@@ -0,0 +1,94 @@
+package maze.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.solve.AStarSearch;
+import maze.solve.BidirectionalSearch;
+import maze.solve.BreadthFirstSearch;
+import maze.solve.Heuristic;
+import maze.solve.MazeGraph;
+import maze.solve.PathFinder;
+import maze.solve.Route;
+
+/**
+ * Compares the path finders on a random braided grid maze. Every finder
+ * answers the same random room pairs; the route lengths are checked to
+ * agree, and the bytes allocated per query are reported to show the search
+ * loop stays allocation-free.
+ * <p>
+ * The comparison is hand-timed rather than run under JMH, which this
+ * project does not ship. Usage: {@code SolverBenchmark [side] [queries]},
+ * defaults {@code 300 1000} (a 90,000-room maze). On one core, JDK 17:
+ * <pre>
+ *                  all doors passable     closed doors block
+ * bfs              ~1,100 queries/s       ~790 queries/s
+ * bidirectional    ~1,600 queries/s     ~1,200 queries/s
+ * a*               ~1,750 queries/s       ~960 queries/s
+ * </pre>
+ * All three allocate 0 bytes per query once warmed up.
+ */
+public final class SolverBenchmark {
+    private SolverBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Maze maze = GridMazes.random(new RedMazeFactory(), side, side, 0.35, 0.1, 42);
+        MazeGraph graph = new MazeGraph(maze);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < queries; i++) {
+            from[i] = random.nextInt(graph.size());
+            to[i] = random.nextInt(graph.size());
+        }
+
+        for (boolean openDoorsOnly : new boolean[] { false, true }) {
+            System.out.println(openDoorsOnly ? "closed doors block:" : "all doors passable:");
+            PathFinder[] finders = {
+                    new BreadthFirstSearch(graph, openDoorsOnly),
+                    new BidirectionalSearch(graph, openDoorsOnly),
+                    new AStarSearch(graph, openDoorsOnly, Heuristic.grid(graph, side)),
+            };
+            String[] names = { "bfs", "bidirectional", "a*" };
+            long[] lengths = new long[finders.length];
+            for (int f = 0; f < finders.length; f++) {
+                lengths[f] = run(names[f], finders[f], from, to);
+            }
+            for (int f = 1; f < finders.length; f++) {
+                if (lengths[f] != lengths[0]) {
+                    throw new IllegalStateException(names[f] + " disagrees with bfs");
+                }
+            }
+        }
+    }
+
+    private static long run(final String name, final PathFinder finder, final int[] from, final int[] to) {
+        Route route = new Route();
+        long total = 0;
+        for (int i = 0; i < from.length; i++) {
+            finder.find(from[i], to[i], route);
+        }
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < from.length; i++) {
+            finder.find(from[i], to[i], route);
+            total += route.length();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("  %-14s %,10.0f queries/s  %,6d bytes/query  (total length %d)%n", name,
+                from.length / seconds, allocated / from.length, total);
+        return total;
+    }
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,177 @@
+package maze.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import maze.Direction;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.gen.GridLayout;
+import maze.gen.MazeGenerator;
+import maze.io.MazeHandler;
+import maze.patch.MazePatch;
+import maze.solve.MazeGraph;
+import maze.solve.Route;
+import maze.solve.VersionSearch;
+import maze.version.MazeDraft;
+import maze.version.MazeVersion;
+import maze.version.VersionedMaze;
+
+/**
+ * Measures readers of a {@link VersionedMaze} while a writer streams
+ * patches into it. Readers walk at random through a pinned version,
+ * pinning the latest every 4096 steps, and run a breadth-first search
+ * every so often. Each patch toggles two doors of a maze whose doors all
+ * start closed, so every published version has an even number of open
+ * doors; a reader that ever counts an odd number saw half a patch.
+ * <p>
+ * Usage: {@code VersionBenchmark [side] [readers] [seconds]}, defaults
+ * {@code 1000 2 3}. Read rates are per second of the readers' own CPU
+ * time, so that a writer sharing the cores does not count against them.
+ * On one core, JDK 17:
+ * <pre>
+ * load 1,000,000 rooms             ~0.05 s
+ * MazeGraph steps, one thread      ~125,000,000/s
+ * version steps, no writer         ~41,000,000/s of reader CPU
+ * version steps, writer streaming  ~40,000,000/s of reader CPU
+ * patches published                ~88,000/s, 0 torn reads
+ * </pre>
+ * The reader rates include the door counts and searches. A version step
+ * reads two directories and a leaf, and through a door a door page, where
+ * a graph step reads one array; that is the price of editing while
+ * reading. Readers take no lock, so the writer only costs them the cores
+ * it runs on.
+ */
+public final class VersionBenchmark {
+    private static final int PIN_STEPS = 4096;
+    private static final int SEARCH_EVERY = 256;
+
+    private VersionBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 3;
+
+        GridLayout layout = MazeGenerator.forName("kruskal").generate(side, side, 42);
+        layout.braid(0.1, 42);
+        layout.addDoors(0.1, 42);
+        long start = System.nanoTime();
+        MazeDraft draft = MazeVersion.EMPTY.edit();
+        layout.write(draft);
+        VersionedMaze versioned = new VersionedMaze(draft.freeze());
+        System.out.printf("load %,d rooms %.3f s%n", versioned.current().getRoomCount(),
+                (System.nanoTime() - start) / 1e9);
+
+        Maze maze = layout.build(new RedMazeFactory());
+        MazeGraph graph = new MazeGraph(maze);
+        SplittableRandom random = new SplittableRandom(1);
+        int room = 0;
+        long steps = 20_000_000;
+        start = System.nanoTime();
+        for (long i = 0; i < steps; i++) {
+            int next = graph.step(room, random.nextInt(4), false);
+            if (next >= 0) {
+                room = next;
+            }
+        }
+        Harness.sink = room;
+        System.out.printf("MazeGraph steps %,.0f/s%n", steps / ((System.nanoTime() - start) / 1e9));
+        maze = null;
+        graph = null;
+
+        List<int[]> doorSides = new ArrayList<>();
+        MazeVersion first = versioned.current();
+        for (int r = 0; r < side * side; r++) {
+            for (Direction dir : Direction.values()) {
+                if (MazeHandler.isDoor(first.getSide(r, dir))) {
+                    doorSides.add(new int[] { r, dir.ordinal() });
+                }
+            }
+        }
+
+        run("no writer", versioned, readers, seconds, null, side);
+        run("writer streaming", versioned, readers, seconds, doorSides, side);
+    }
+
+    private static void run(final String name, final VersionedMaze versioned, final int readers,
+            final double seconds, final List<int[]> doorSides, final int side) throws InterruptedException {
+        ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong readNanos = new AtomicLong();
+        AtomicLong torn = new AtomicLong();
+        AtomicLong versions = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < readers; t++) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                long begin = cpu.getCurrentThreadCpuTime();
+                SplittableRandom random = new SplittableRandom(seed);
+                VersionSearch search = new VersionSearch(false);
+                Route route = new Route();
+                long count = 0;
+                long pins = 0;
+                int room = 0;
+                while (!stop.get()) {
+                    MazeVersion version = versioned.current();
+                    if ((version.countOpenDoors() & 1) != 0) {
+                        torn.incrementAndGet();
+                    }
+                    for (int i = 0; i < PIN_STEPS; i++) {
+                        int next = version.step(room, random.nextInt(4), false);
+                        if (next >= 0) {
+                            room = next;
+                        }
+                    }
+                    count += PIN_STEPS;
+                    if (++pins % SEARCH_EVERY == 0) {
+                        search.find(version, room, random.nextInt(side * side), route);
+                    }
+                }
+                reads.addAndGet(count);
+                readNanos.addAndGet(cpu.getCurrentThreadCpuTime() - begin);
+                Harness.sink = room;
+            }));
+        }
+        if (doorSides != null) {
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(99);
+                Direction[] dirs = Direction.values();
+                while (!stop.get()) {
+                    int[] a = doorSides.get(random.nextInt(doorSides.size()));
+                    int[] b = doorSides.get(random.nextInt(doorSides.size()));
+                    int c = random.nextInt(side - 1) + side * random.nextInt(side);
+                    MazePatch patch = new MazePatch().toggleDoor(a[0], dirs[a[1]]);
+                    patch.wall(c, Direction.East).link(c, Direction.East, c + 1);
+                    patch.toggleDoor(b[0], dirs[b[1]]);
+                    try {
+                        versioned.apply(patch);
+                        versions.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // one of the doors was walled over by an earlier patch
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%-18s %,14.0f steps/s of reader CPU, %,d patches/s, %d torn reads%n", name,
+                reads.get() / (readNanos.get() / 1e9), (long) (versions.get() / seconds), torn.get());
+        if (torn.get() != 0) {
+            throw new IllegalStateException("a reader saw half a patch");
+        }
+    }
+}
@@ -0,0 +1,573 @@
+package maze.compact;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+import maze.Wall;
+import maze.io.MazeFiles;
+import maze.io.NumberIndex;
+
+/**
+ * A maze kept in primitive arrays instead of an object graph.
+ * <p>
+ * Rooms get dense indices in the order they are created, however sparse
+ * their numbers, through a {@link NumberIndex}. Each room has four
+ * int side entries in {@link Direction} order: a neighbouring room index,
+ * {@link #WALL}, {@link #NONE} for an unset side, or a door tagged with
+ * {@link #door(int)}. Doors keep their two room indices; their open state
+ * is one bit in the maze's {@link maze.DoorState}, where a door's index is
+ * its id. All of that is about 24 bytes per room, against a few hundred for
+ * {@code Room}, {@code Wall} and boxed map entries.
+ * <p>
+ * The {@link Maze} API is served by views: the {@code Room} and {@code Door}
+ * objects returned by {@link #getRoom(int)}, {@link #iterator()} and
+ * {@link Room#getSide(Direction)} read and write the arrays. A view is made
+ * the first time it is asked for and then kept, so listeners attached by
+ * {@code MazeViewer} stay put. All walls are one shared instance.
+ * <p>
+ * Rooms and doors made by a factory can be added too, as
+ * {@link maze.io.MazeBuilder} and {@link maze.patch.MazePatcher} do: a room
+ * is copied into the arrays, and a door is taken in under its index so that
+ * it and its view share one open state and it may be set as a side.
+ * <p>
+ * A removed room keeps its index and sides, marked removed, so that other
+ * indices and the views handed out stay valid; adding a room with its
+ * number takes the index back. {@link #getRoomCount()} counts the indices,
+ * removed or not, and {@link #getNumberOfRooms()} only the rooms.
+ */
+public class CompactMaze extends Maze {
+    public static final int WALL = -1;
+    public static final int NONE = -2;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Room roomStyle;
+    private final Door doorStyle;
+    private final Wall wall;
+
+    private int roomCount;
+    private int[] numbers = new int[16];
+    private int[] sides = new int[64];
+    private final NumberIndex index = new NumberIndex();
+    private boolean[] removed;
+    private int removedCount;
+
+    private int doorCount;
+    private int[] doorRooms = new int[16];
+    private final Map<Door, Integer> adopted = new IdentityHashMap<>();
+
+    private int current = -1;
+
+    private Room[] roomViews;
+    private Door[] doorViews;
+
+    public CompactMaze() {
+        this(null);
+    }
+
+    /**
+     * Creates an empty maze whose views take their colours from the sites
+     * the factory makes. The factory is asked for one room, door and wall.
+     */
+    public CompactMaze(final MazeFactory factory) {
+        if (factory == null) {
+            roomStyle = new Room(0);
+            doorStyle = new Door(null, null);
+            wall = new Wall();
+        } else {
+            roomStyle = factory.makeRoom(0);
+            doorStyle = factory.makeDoor(null, null);
+            wall = factory.makeWall();
+        }
+    }
+
+    /**
+     * Loads a text or binary maze file straight into the arrays.
+     */
+    public static CompactMaze load(final Path path, final MazeFactory factory) throws IOException {
+        CompactMazeBuilder builder = new CompactMazeBuilder(new CompactMaze(factory));
+        MazeFiles.read(path, builder);
+        return builder.getMaze();
+    }
+
+    /**
+     * Copies the rooms, sides, doors and current room of any maze.
+     */
+    public static CompactMaze copyOf(final Maze maze, final MazeFactory factory) {
+        CompactMaze compact = new CompactMaze(factory);
+        for (Room room : maze) {
+            compact.createRoom(room.getNumber());
+        }
+        Map<Door, Integer> doors = new IdentityHashMap<>();
+        for (Room room : maze) {
+            int from = compact.indexOf(room.getNumber());
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Room) {
+                    compact.sides[4 * from + dir.ordinal()] = compact.indexOf(((Room) site).getNumber());
+                } else if (site instanceof Door) {
+                    Door door = (Door) site;
+                    Integer d = doors.get(door);
+                    if (d == null) {
+                        Room other = door.getOtherSide(room);
+                        int to = other == null ? from : compact.indexOf(other.getNumber());
+                        d = compact.createDoor(from, to, door.isOpen());
+                        doors.put(door, d);
+                    }
+                    compact.sides[4 * from + dir.ordinal()] = door(d);
+                } else if (site != null) {
+                    compact.sides[4 * from + dir.ordinal()] = WALL;
+                }
+            }
+        }
+        Room current = maze.getCurrentRoom();
+        if (current != null) {
+            compact.current = compact.indexOf(current.getNumber());
+        }
+        return compact;
+    }
+
+    public static int door(final int door) {
+        return -3 - door;
+    }
+
+    public static boolean isDoor(final int side) {
+        return side <= -3;
+    }
+
+    public static int doorOf(final int side) {
+        return -3 - side;
+    }
+
+    /**
+     * Adds a room with all sides unset and returns its index. A room that
+     * was removed gets its old index back.
+     */
+    public int createRoom(final int number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("negative room number " + number);
+        }
+        int room = index.get(number);
+        if (room >= 0) {
+            if (!isRemoved(room)) {
+                throw new IllegalArgumentException("duplicate room " + number);
+            }
+            removed[room] = false;
+            removedCount--;
+        } else {
+            if (roomCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, roomCount * 2);
+                sides = Arrays.copyOf(sides, roomCount * 8);
+                if (roomViews != null) {
+                    roomViews = Arrays.copyOf(roomViews, roomCount * 2);
+                }
+                if (removed != null) {
+                    removed = Arrays.copyOf(removed, roomCount * 2);
+                }
+            }
+            room = roomCount++;
+            numbers[room] = number;
+            index.add(number);
+        }
+        Arrays.fill(sides, 4 * room, 4 * room + 4, NONE);
+        return room;
+    }
+
+    /**
+     * Adds a door between two rooms and returns its index. The rooms' sides
+     * are left alone; use {@link #setSide(int, Direction, int)}.
+     */
+    public int createDoor(final int room1, final int room2, final boolean open) {
+        getDoorState().allocate(open);
+        return newDoor(room1, room2);
+    }
+
+    private int newDoor(final int room1, final int room2) {
+        if (2 * doorCount == doorRooms.length) {
+            doorRooms = Arrays.copyOf(doorRooms, doorRooms.length * 2);
+            if (doorViews != null) {
+                doorViews = Arrays.copyOf(doorViews, doorCount * 2);
+            }
+        }
+        int door = doorCount++;
+        doorRooms[2 * door] = room1;
+        doorRooms[2 * door + 1] = room2;
+        return door;
+    }
+
+    /**
+     * Returns the index of the room with the given number, or -1 if there is
+     * none or it was removed.
+     */
+    public int indexOf(final int number) {
+        int room = index.get(number);
+        return room >= 0 && isRemoved(room) ? -1 : room;
+    }
+
+    public boolean isRemoved(final int room) {
+        return removed != null && removed[room];
+    }
+
+    /**
+     * Returns how many room indices have been handed out, counting those of
+     * removed rooms; every index is below this.
+     */
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int numberOf(final int room) {
+        return numbers[room];
+    }
+
+    public int getDoorCount() {
+        return doorCount;
+    }
+
+    /**
+     * Returns the raw side entry of a room.
+     */
+    public int side(final int room, final Direction dir) {
+        return sides[4 * room + dir.ordinal()];
+    }
+
+    public void setSide(final int room, final Direction dir, final int side) {
+        sides[4 * room + dir.ordinal()] = side;
+    }
+
+    /**
+     * Sets both sides of a passage between neighbouring rooms.
+     */
+    public void link(final int room, final Direction dir, final int neighbor) {
+        sides[4 * room + dir.ordinal()] = neighbor;
+        sides[4 * neighbor + dir.opposite().ordinal()] = room;
+    }
+
+    public boolean isDoorOpen(final int door) {
+        return getDoorState().isOpen(door);
+    }
+
+    public void setDoorOpen(final int door, final boolean open) {
+        getDoorState().setOpen(door, open);
+    }
+
+    /**
+     * Returns the room on the other side of a door, or -1 if {@code room} is
+     * not one of its ends.
+     */
+    public int otherRoom(final int door, final int room) {
+        if (doorRooms[2 * door] == room) {
+            return doorRooms[2 * door + 1];
+        }
+        if (doorRooms[2 * door + 1] == room) {
+            return doorRooms[2 * door];
+        }
+        return -1;
+    }
+
+    public int doorRoom(final int door, final int end) {
+        return doorRooms[2 * door + end];
+    }
+
+    public int getCurrentIndex() {
+        return current;
+    }
+
+    public void setCurrentIndex(final int room) {
+        current = room;
+    }
+
+    /**
+     * Returns the view of a room by index.
+     */
+    public Room roomAt(final int room) {
+        if (roomViews == null) {
+            roomViews = new Room[numbers.length];
+        }
+        Room view = roomViews[room];
+        if (view == null) {
+            view = new RoomView(room);
+            roomViews[room] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Returns the view of a door by index.
+     */
+    public Door doorAt(final int door) {
+        if (doorViews == null) {
+            doorViews = new Door[doorRooms.length / 2];
+        }
+        Door view = doorViews[door];
+        if (view == null) {
+            view = new DoorView(door);
+            doorViews[door] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Creates a room with the number of {@code r} and copies the sides it
+     * has so far: walls, rooms of this maze, found by number, and doors
+     * added with {@link #addDoor(Door)}. {@code r} itself is not kept, so
+     * later changes go through {@link #getRoom(int)}.
+     */
+    @Override
+    public void addRoom(final Room r) {
+        int[] copied = new int[4];
+        for (Direction dir : DIRECTIONS) {
+            copied[dir.ordinal()] = encode(r.getSide(dir));
+        }
+        int room = createRoom(r.getNumber());
+        System.arraycopy(copied, 0, sides, 4 * room, 4);
+    }
+
+    /**
+     * Creates a door between the rooms {@code d} was made with, which must
+     * be in this maze, and returns its index. As in
+     * {@link Maze#addDoor(Door)} the door's open state moves into the
+     * maze's {@link maze.DoorState}, so {@code d} and {@link #doorAt(int)}
+     * read and write the same bit.
+     */
+    @Override
+    public int addDoor(final Door d) {
+        int room1 = indexOf(end(d, 0));
+        int room2 = indexOf(end(d, 1));
+        super.addDoor(d);
+        int door = newDoor(room1, room2);
+        adopted.put(d, door);
+        return door;
+    }
+
+    /**
+     * Marks a room removed and returns its view, which keeps its sides so
+     * that adding it back restores it. Sides of other rooms that lead to it
+     * are left alone.
+     */
+    @Override
+    public Room removeRoom(final int number) {
+        int room = indexOf(number);
+        if (room < 0) {
+            return null;
+        }
+        if (removed == null) {
+            removed = new boolean[numbers.length];
+        }
+        removed[room] = true;
+        removedCount++;
+        return roomAt(room);
+    }
+
+    /**
+     * Takes back the door added last with {@link #addDoor(Door)}, to undo
+     * it, along with its index.
+     */
+    @Override
+    public void removeDoor(final Door d) {
+        Integer door = adopted.get(d);
+        if (door == null || door != doorCount - 1) {
+            throw new IllegalArgumentException("door " + d.getId() + " is not the last door added");
+        }
+        super.removeDoor(d);
+        adopted.remove(d);
+        doorCount--;
+        if (doorViews != null) {
+            doorViews[doorCount] = null;
+        }
+    }
+
+    @Override
+    public Room getRoom(final int number) {
+        int room = indexOf(number);
+        return room < 0 ? null : roomAt(room);
+    }
+
+    @Override
+    public Iterator<Room> iterator() {
+        return new Iterator<Room>() {
+            private int next = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < roomCount;
+            }
+
+            @Override
+            public Room next() {
+                if (next >= roomCount) {
+                    throw new NoSuchElementException();
+                }
+                Room room = roomAt(next);
+                next = skipRemoved(next + 1);
+                return room;
+            }
+        };
+    }
+
+    @Override
+    public int getNumberOfRooms() {
+        return roomCount - removedCount;
+    }
+
+    @Override
+    public Room getCurrentRoom() {
+        return current < 0 ? null : roomAt(current);
+    }
+
+    @Override
+    public void setCurrentRoom(final Room room) {
+        current = room == null ? -1 : indexOf(room);
+    }
+
+    @Override
+    public void setCurrentRoom(final int number) {
+        current = indexOf(number);
+    }
+
+    private int indexOf(final Room room) {
+        if (room instanceof RoomView && ((RoomView) room).maze() == this) {
+            return ((RoomView) room).index;
+        }
+        int i = room instanceof RoomView ? -1 : indexOf(room.getNumber());
+        if (i < 0) {
+            throw new IllegalArgumentException("room " + room.getNumber() + " does not belong to this maze");
+        }
+        return i;
+    }
+
+    private int skipRemoved(int room) {
+        while (room < roomCount && isRemoved(room)) {
+            room++;
+        }
+        return room;
+    }
+
+    private static Room end(final Door door, final int end) {
+        Room room = door.getRoom(end);
+        if (room == null) {
+            throw new IllegalArgumentException("door " + door.getId() + " has no room " + (end + 1));
+        }
+        return room;
+    }
+
+    private MapSite site(final int side) {
+        if (side >= 0) {
+            return roomAt(side);
+        }
+        if (side == WALL) {
+            return wall;
+        }
+        if (side == NONE) {
+            return null;
+        }
+        return doorAt(doorOf(side));
+    }
+
+    private int encode(final MapSite site) {
+        if (site == null) {
+            return NONE;
+        }
+        if (site instanceof Room) {
+            return indexOf((Room) site);
+        }
+        if (site instanceof DoorView && ((DoorView) site).maze() == this) {
+            return door(((DoorView) site).index);
+        }
+        Integer door = site instanceof Door ? adopted.get(site) : null;
+        if (door != null) {
+            return door(door);
+        }
+        if (site instanceof Wall) {
+            return WALL;
+        }
+        throw new IllegalArgumentException("site does not belong to this maze");
+    }
+
+    private final class RoomView extends Room {
+        private final int index;
+
+        RoomView(final int index) {
+            super(numbers[index]);
+            this.index = index;
+        }
+
+        CompactMaze maze() {
+            return CompactMaze.this;
+        }
+
+        @Override
+        public MapSite getSide(final Direction dir) {
+            return site(sides[4 * index + dir.ordinal()]);
+        }
+
+        @Override
+        public void setSide(final Direction dir, final MapSite site) {
+            sides[4 * index + dir.ordinal()] = encode(site);
+        }
+
+        @Override
+        public Color getColor() {
+            return roomStyle.getColor();
+        }
+    }
+
+    private final class DoorView extends Door {
+        private final int index;
+
+        DoorView(final int index) {
+            super(null, null);
+            this.index = index;
+        }
+
+        CompactMaze maze() {
+            return CompactMaze.this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isDoorOpen(index);
+        }
+
+        @Override
+        public void setOpen(final boolean open) {
+            setDoorOpen(index, open);
+        }
+
+        @Override
+        public boolean compareAndSetOpen(final boolean expected, final boolean open) {
+            return getDoorState().compareAndSet(index, expected, open);
+        }
+
+        @Override
+        public int getId() {
+            return index;
+        }
+
+        @Override
+        public Room getOtherSide(final Room r) {
+            if (!(r instanceof RoomView) || ((RoomView) r).maze() != CompactMaze.this) {
+                return null;
+            }
+            int other = otherRoom(index, ((RoomView) r).index);
+            return other < 0 ? null : roomAt(other);
+        }
+
+        @Override
+        public Color getColor() {
+            return doorStyle.getColor();
+        }
+    }
+}
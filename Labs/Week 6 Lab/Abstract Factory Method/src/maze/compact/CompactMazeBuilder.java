@@ -0,0 +1,89 @@
+package maze.compact;
+
+import java.util.Arrays;
+
+import maze.Direction;
+import maze.io.MazeHandler;
+import maze.io.NumberIndex;
+
+/**
+ * Fills a {@link CompactMaze} from maze records in one pass. Works like
+ * {@link maze.io.MazeBuilder} but never creates a site object.
+ */
+public class CompactMazeBuilder implements MazeHandler {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final CompactMaze maze;
+    private final NumberIndex doorIndex = new NumberIndex();
+    private int[] doors = new int[16];
+    private int[] pending = new int[32];
+
+    public CompactMazeBuilder(final CompactMaze maze) {
+        this.maze = maze;
+    }
+
+    public CompactMaze getMaze() {
+        return maze;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        int room = roomFor(number);
+        if (maze.getCurrentIndex() < 0) {
+            maze.setCurrentIndex(room);
+        }
+        side(room, Direction.North, north);
+        side(room, Direction.South, south);
+        side(room, Direction.East, east);
+        side(room, Direction.West, west);
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        int d = doorSlot(id);
+        int door = maze.createDoor(roomFor(room1), roomFor(room2), open);
+        doors[d] = door + 1;
+        for (int i = 2 * d; i < 2 * d + 2; i++) {
+            if (pending[i] != 0) {
+                int slot = pending[i] - 1;
+                maze.setSide(slot >>> 2, DIRECTIONS[slot & 3], CompactMaze.door(door));
+                pending[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        maze.setCurrentIndex(roomFor(number));
+    }
+
+    private void side(final int room, final Direction dir, final int side) {
+        if (side == WALL) {
+            maze.setSide(room, dir, CompactMaze.WALL);
+        } else if (MazeHandler.isDoor(side)) {
+            int d = doorSlot(MazeHandler.doorId(side));
+            if (doors[d] != 0) {
+                maze.setSide(room, dir, CompactMaze.door(doors[d] - 1));
+            } else {
+                int i = pending[2 * d] == 0 ? 2 * d : 2 * d + 1;
+                pending[i] = (room << 2 | dir.ordinal()) + 1;
+            }
+        } else {
+            maze.link(room, dir, roomFor(side));
+        }
+    }
+
+    private int roomFor(final int number) {
+        int room = maze.indexOf(number);
+        return room >= 0 ? room : maze.createRoom(number);
+    }
+
+    private int doorSlot(final int id) {
+        int d = doorIndex.add(id);
+        if (d == doors.length) {
+            doors = Arrays.copyOf(doors, d * 2);
+            pending = Arrays.copyOf(pending, d * 4);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,459 @@
+package maze.compact;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+import maze.Wall;
+import maze.io.MazeFiles;
+
+/**
+ * A rectangular maze whose rooms are numbered row by row, stored as two bits
+ * per edge. Room {@code n} sits at column {@code n % width}, row
+ * {@code n / width}, so neighbours are found by arithmetic. Each room owns
+ * its east and south edges; north and west are its neighbours' south and
+ * east, and the outer border is always wall. An edge is {@link #WALL},
+ * {@link #PASSAGE}, {@link #DOOR} (closed) or {@link #OPEN_DOOR}: four bits a
+ * room, so 10^8 rooms fit in 50 MB.
+ * <p>
+ * Because each edge is stored once, a file whose two rooms disagree about
+ * the side between them keeps whichever was read last.
+ * <p>
+ * {@code Room}, {@code Door} and {@code Wall} objects exist only when asked
+ * for through the {@link Maze} API, for {@code MazeViewer} and the like. They
+ * are cached so each room and door keeps one identity; all walls are one
+ * shared instance. The cache grows with the rooms visited, so code that
+ * walks huge grids should use {@link #edge(int, Direction)} instead.
+ * <p>
+ * Rooms and doors made by a factory can be added, as
+ * {@link maze.io.MazeBuilder} does, as long as they fit the grid: adding a
+ * room copies its sides onto the edges, and a door must join neighbours.
+ * Rooms cannot be removed, since every cell of the grid is one.
+ */
+public class GridMaze extends Maze {
+    public static final int WALL = 0;
+    public static final int PASSAGE = 1;
+    public static final int DOOR = 2;
+    public static final int OPEN_DOOR = 3;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final long[] edges;
+    private int current;
+
+    private final Room roomStyle;
+    private final Door doorStyle;
+    private final Wall wall;
+    private final Map<Integer, Room> roomViews = new HashMap<>();
+    private final Map<Integer, Door> doorViews = new HashMap<>();
+
+    /**
+     * Creates a grid with every edge a wall. Views take their colours from
+     * the sites the factory makes, as in {@link CompactMaze}.
+     */
+    public GridMaze(final int width, final int height, final MazeFactory factory) {
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("bad size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        edges = new long[(int) ((4L * width * height + 63) >>> 6)];
+        if (factory == null) {
+            roomStyle = new Room(0);
+            doorStyle = new Door(null, null);
+            wall = new Wall();
+        } else {
+            roomStyle = factory.makeRoom(0);
+            doorStyle = factory.makeDoor(null, null);
+            wall = factory.makeWall();
+        }
+    }
+
+    /**
+     * Loads a maze file, working out the grid width from the links between
+     * rooms. Fails if the rooms are not numbered as a grid.
+     */
+    public static GridMaze load(final Path path, final MazeFactory factory) throws IOException {
+        GridShape shape = new GridShape();
+        MazeFiles.read(path, shape);
+        return load(path, shape.getWidth(), shape.getHeight(), factory);
+    }
+
+    public static GridMaze load(final Path path, final int width, final int height, final MazeFactory factory)
+            throws IOException {
+        GridMazeBuilder builder = new GridMazeBuilder(new GridMaze(width, height, factory));
+        MazeFiles.read(path, builder);
+        return builder.getMaze();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the room next to {@code room} in the given direction, or -1 at
+     * the border.
+     */
+    public int neighbor(final int room, final Direction dir) {
+        switch (dir) {
+        case North:
+            return room >= width ? room - width : -1;
+        case South:
+            return room < width * (height - 1) ? room + width : -1;
+        case East:
+            return room % width < width - 1 ? room + 1 : -1;
+        default:
+            return room % width > 0 ? room - 1 : -1;
+        }
+    }
+
+    /**
+     * Returns the state of a room's side: {@link #WALL}, {@link #PASSAGE},
+     * {@link #DOOR} or {@link #OPEN_DOOR}.
+     */
+    public int edge(final int room, final Direction dir) {
+        int e = edgeIndex(room, dir);
+        return e < 0 ? WALL : (int) (edges[e >>> 5] >>> ((e & 31) << 1)) & 3;
+    }
+
+    public void setEdge(final int room, final Direction dir, final int state) {
+        int e = edgeIndex(room, dir);
+        if (e < 0) {
+            if (state != WALL) {
+                throw new IllegalArgumentException("room " + room + " has no " + dir + " neighbour");
+            }
+            return;
+        }
+        int shift = (e & 31) << 1;
+        edges[e >>> 5] = edges[e >>> 5] & ~(3L << shift) | (long) (state & 3) << shift;
+    }
+
+    public static boolean isDoor(final int state) {
+        return (state & DOOR) != 0;
+    }
+
+    /**
+     * Returns true if the side can be walked through: a passage, or a door
+     * that is open or need not be.
+     */
+    public boolean isPassable(final int room, final Direction dir, final boolean openDoorsOnly) {
+        int state = edge(room, dir);
+        return state == PASSAGE || state == OPEN_DOOR || state == DOOR && !openDoorsOnly;
+    }
+
+    public int getCurrentIndex() {
+        return current;
+    }
+
+    public void setCurrentIndex(final int room) {
+        current = room;
+    }
+
+    /**
+     * Returns the index of the edge bits for a side, or -1 on the border.
+     */
+    private int edgeIndex(final int room, final Direction dir) {
+        switch (dir) {
+        case North:
+            return room >= width ? 2 * (room - width) + 1 : -1;
+        case South:
+            return room < width * (height - 1) ? 2 * room + 1 : -1;
+        case East:
+            return room % width < width - 1 ? 2 * room : -1;
+        default:
+            return room % width > 0 ? 2 * (room - 1) : -1;
+        }
+    }
+
+    /**
+     * Returns the view of a room by index.
+     */
+    public Room roomAt(final int room) {
+        Room view = roomViews.get(room);
+        if (view == null) {
+            view = new RoomView(room);
+            roomViews.put(room, view);
+        }
+        return view;
+    }
+
+    /**
+     * Returns the view of the door on an edge, by the index
+     * {@link #addDoor(Door)} returns.
+     */
+    public Door doorAt(final int edge) {
+        Door view = doorViews.get(edge);
+        if (view == null) {
+            view = new DoorView(edge);
+            doorViews.put(edge, view);
+        }
+        return view;
+    }
+
+    /**
+     * Copies the sides {@code r} has so far onto the edges of the grid room
+     * with its number: walls, passages to the neighbour on that side and
+     * doors to it. The grid already has every room, so this only sets
+     * edges, and {@code r} itself is not kept.
+     */
+    @Override
+    public void addRoom(final Room r) {
+        int room = r.getNumber();
+        if (room < 0 || room >= size()) {
+            throw new IllegalArgumentException("room " + room + " is outside the " + width + "x" + height
+                    + " grid");
+        }
+        int[] states = new int[4];
+        for (Direction dir : DIRECTIONS) {
+            MapSite site = r.getSide(dir);
+            states[dir.ordinal()] = site == null ? -1 : state(room, dir, site);
+        }
+        for (Direction dir : DIRECTIONS) {
+            if (states[dir.ordinal()] >= 0) {
+                setEdge(room, dir, states[dir.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Makes the edge between the rooms {@code d} was made with, which must
+     * be neighbours, a door that is open if {@code d} is, and returns the
+     * edge's index. {@code d} is only read: the grid keeps two bits for the
+     * door, not the object, so from then on the view, {@link #doorAt(int)}
+     * of the index or the side of either room, is the one handle on it.
+     * Opening or closing {@code d} afterwards does not reach the grid.
+     */
+    @Override
+    public int addDoor(final Door d) {
+        Room a = d.getRoom(0);
+        Room b = d.getRoom(1);
+        if (a != null && b != null) {
+            for (Direction dir : DIRECTIONS) {
+                int room = a.getNumber();
+                if (room >= 0 && room < size() && neighbor(room, dir) == b.getNumber() && b.getNumber() >= 0) {
+                    setEdge(room, dir, d.isOpen() ? OPEN_DOOR : DOOR);
+                    return edgeIndex(room, dir);
+                }
+            }
+        }
+        throw new IllegalArgumentException("a door must join two neighbouring rooms of the grid");
+    }
+
+    /**
+     * Refuses: the grid has a room in every cell.
+     */
+    @Override
+    public Room removeRoom(final int number) {
+        throw new UnsupportedOperationException("a grid maze has a room in every cell");
+    }
+
+    /**
+     * Takes back a door added with {@link #addDoor(Door)}. The grid keeps
+     * no door objects and {@code d} kept its own open state, so there is
+     * nothing to free; the edge is left as it is, as sides are in any maze.
+     */
+    @Override
+    public void removeDoor(final Door d) {
+    }
+
+    @Override
+    public Room getRoom(final int number) {
+        return number >= 0 && number < size() ? roomAt(number) : null;
+    }
+
+    @Override
+    public Iterator<Room> iterator() {
+        return new Iterator<Room>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Room next() {
+                if (next >= size()) {
+                    throw new NoSuchElementException();
+                }
+                return roomAt(next++);
+            }
+        };
+    }
+
+    @Override
+    public int getNumberOfRooms() {
+        return size();
+    }
+
+    public int size() {
+        return width * height;
+    }
+
+    @Override
+    public Room getCurrentRoom() {
+        return roomAt(current);
+    }
+
+    @Override
+    public void setCurrentRoom(final Room room) {
+        current = indexOf(room);
+    }
+
+    @Override
+    public void setCurrentRoom(final int number) {
+        if (number < 0 || number >= size()) {
+            throw new IllegalArgumentException("no room " + number);
+        }
+        current = number;
+    }
+
+    private int indexOf(final Room room) {
+        if (room instanceof RoomView && ((RoomView) room).maze() == this) {
+            return room.getNumber();
+        }
+        throw new IllegalArgumentException("room " + room.getNumber() + " does not belong to this maze");
+    }
+
+    /**
+     * Returns the edge state a site stands for on a side: a wall, a room of
+     * this grid or by number that is the neighbour there, or a door to it,
+     * either this grid's view of the edge or one made between the two rooms.
+     */
+    private int state(final int room, final Direction dir, final MapSite site) {
+        int next = neighbor(room, dir);
+        if (site instanceof Wall) {
+            return WALL;
+        }
+        if (site instanceof Room && next >= 0 && ((Room) site).getNumber() == next
+                && (!(site instanceof RoomView) || ((RoomView) site).maze() == this)) {
+            return PASSAGE;
+        }
+        if (site instanceof DoorView) {
+            if (((DoorView) site).maze() == this && ((DoorView) site).edge == edgeIndex(room, dir)) {
+                return edge(room, dir) | DOOR;
+            }
+        } else if (site instanceof Door && next >= 0) {
+            Door door = (Door) site;
+            Room a = door.getRoom(0);
+            Room b = door.getRoom(1);
+            if (a != null && b != null && (a.getNumber() == room && b.getNumber() == next
+                    || a.getNumber() == next && b.getNumber() == room)) {
+                return door.isOpen() ? OPEN_DOOR : DOOR;
+            }
+        }
+        throw new IllegalArgumentException("room " + room + " cannot have that site to the " + dir);
+    }
+
+    private final class RoomView extends Room {
+        RoomView(final int index) {
+            super(index);
+        }
+
+        GridMaze maze() {
+            return GridMaze.this;
+        }
+
+        @Override
+        public MapSite getSide(final Direction dir) {
+            int room = getNumber();
+            int state = edge(room, dir);
+            if (state == PASSAGE) {
+                return roomAt(neighbor(room, dir));
+            }
+            if (isDoor(state)) {
+                return doorAt(edgeIndex(room, dir));
+            }
+            return wall;
+        }
+
+        @Override
+        public void setSide(final Direction dir, final MapSite site) {
+            int room = getNumber();
+            setEdge(room, dir, site == null ? WALL : state(room, dir, site));
+        }
+
+        @Override
+        public Color getColor() {
+            return roomStyle.getColor();
+        }
+    }
+
+    private final class DoorView extends Door {
+        private final int edge;
+
+        DoorView(final int edge) {
+            super(null, null);
+            this.edge = edge;
+        }
+
+        GridMaze maze() {
+            return GridMaze.this;
+        }
+
+        private Direction direction() {
+            return (edge & 1) == 0 ? Direction.East : Direction.South;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return edge(edge >>> 1, direction()) == OPEN_DOOR;
+        }
+
+        /**
+         * Edges of several rooms share a word, so changes through the views
+         * take the maze's lock.
+         */
+        @Override
+        public void setOpen(final boolean open) {
+            synchronized (GridMaze.this) {
+                setEdge(edge >>> 1, direction(), open ? OPEN_DOOR : DOOR);
+            }
+        }
+
+        @Override
+        public boolean compareAndSetOpen(final boolean expected, final boolean open) {
+            synchronized (GridMaze.this) {
+                if (isOpen() != expected) {
+                    return false;
+                }
+                setOpen(open);
+                return true;
+            }
+        }
+
+        @Override
+        public Room getOtherSide(final Room r) {
+            if (!(r instanceof RoomView) || ((RoomView) r).maze() != GridMaze.this) {
+                return null;
+            }
+            int a = edge >>> 1;
+            int b = neighbor(a, direction());
+            if (r.getNumber() == a) {
+                return roomAt(b);
+            }
+            return r.getNumber() == b ? roomAt(a) : null;
+        }
+
+        @Override
+        public Color getColor() {
+            return doorStyle.getColor();
+        }
+    }
+}
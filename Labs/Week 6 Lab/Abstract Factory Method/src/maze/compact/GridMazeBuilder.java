@@ -0,0 +1,73 @@
+package maze.compact;
+
+import maze.Direction;
+import maze.io.MazeHandler;
+
+/**
+ * Fills a {@link GridMaze} from maze records. Every neighbour and door must
+ * be where the grid puts it; anything else is rejected.
+ */
+public class GridMazeBuilder implements MazeHandler {
+    private final GridMaze maze;
+    private boolean first = true;
+
+    public GridMazeBuilder(final GridMaze maze) {
+        this.maze = maze;
+    }
+
+    public GridMaze getMaze() {
+        return maze;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        if (number < 0 || number >= maze.size()) {
+            throw new IllegalArgumentException("room " + number + " is outside the " + maze.getWidth() + "x"
+                    + maze.getHeight() + " grid");
+        }
+        if (first) {
+            maze.setCurrentIndex(number);
+            first = false;
+        }
+        side(number, Direction.North, north);
+        side(number, Direction.South, south);
+        side(number, Direction.East, east);
+        side(number, Direction.West, west);
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        maze.setEdge(room1, direction(room1, room2), open ? GridMaze.OPEN_DOOR : GridMaze.DOOR);
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        maze.setCurrentIndex(number);
+        first = false;
+    }
+
+    private void side(final int room, final Direction dir, final int side) {
+        if (side == WALL) {
+            maze.setEdge(room, dir, GridMaze.WALL);
+        } else if (MazeHandler.isDoor(side)) {
+            if (!GridMaze.isDoor(maze.edge(room, dir))) {
+                maze.setEdge(room, dir, GridMaze.DOOR);
+            }
+        } else if (side == maze.neighbor(room, dir)) {
+            maze.setEdge(room, dir, GridMaze.PASSAGE);
+        } else {
+            throw new IllegalArgumentException("room " + side + " is not the " + dir + " neighbour of " + room);
+        }
+    }
+
+    private Direction direction(final int from, final int to) {
+        if (from >= 0 && from < maze.size()) {
+            for (Direction dir : Direction.values()) {
+                if (maze.neighbor(from, dir) == to) {
+                    return dir;
+                }
+            }
+        }
+        throw new IllegalArgumentException("rooms " + from + " and " + to + " are not neighbours");
+    }
+}
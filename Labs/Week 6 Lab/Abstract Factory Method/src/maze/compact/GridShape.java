@@ -0,0 +1,105 @@
+package maze.compact;
+
+import java.util.Arrays;
+
+import maze.io.MazeHandler;
+import maze.io.NumberIndex;
+
+/**
+ * Works out the width and height of a maze whose rooms are numbered row by
+ * row from 0, from the north-south links between rooms and the doors on
+ * north and south sides. A maze with no such links is taken as one row.
+ * Doors are kept by slot, handed out through a {@link NumberIndex}, so
+ * sparse door ids cost nothing.
+ */
+public class GridShape implements MazeHandler {
+    private int rooms;
+    private int maxRoom = -1;
+    private int width = -1;
+    private final NumberIndex doorIds = new NumberIndex();
+    private boolean[] verticalDoors = new boolean[16];
+    private int[] doorRooms = new int[32];
+    private boolean done;
+
+    public int getWidth() {
+        finish();
+        return width;
+    }
+
+    public int getHeight() {
+        finish();
+        return rooms / width;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        rooms++;
+        maxRoom = Math.max(maxRoom, number);
+        verticalDoor(north);
+        verticalDoor(south);
+        if (north >= 0) {
+            width(number, number - north);
+        }
+        if (south >= 0) {
+            width(number, south - number);
+        }
+        if (east >= 0 && east != number + 1 || west >= 0 && west != number - 1) {
+            throw new IllegalArgumentException("room " + number + " has a side neighbour out of sequence");
+        }
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        int slot = slot(id);
+        doorRooms[2 * slot] = room1;
+        doorRooms[2 * slot + 1] = room2;
+    }
+
+    @Override
+    public void end() {
+        finish();
+    }
+
+    private void verticalDoor(final int side) {
+        if (MazeHandler.isDoor(side)) {
+            verticalDoors[slot(MazeHandler.doorId(side))] = true;
+        }
+    }
+
+    private void width(final int room, final int diff) {
+        if (diff <= 0 || width > 0 && diff != width) {
+            throw new IllegalArgumentException("room " + room + " does not fit a grid of width " + width);
+        }
+        width = diff;
+    }
+
+    private void finish() {
+        if (done) {
+            return;
+        }
+        done = true;
+        for (int slot = 0; slot < doorIds.size(); slot++) {
+            if (verticalDoors[slot] && doorRooms[2 * slot] != doorRooms[2 * slot + 1]) {
+                width(doorRooms[2 * slot], Math.abs(doorRooms[2 * slot + 1] - doorRooms[2 * slot]));
+            }
+        }
+        if (rooms == 0 || maxRoom != rooms - 1) {
+            throw new IllegalArgumentException("rooms are not numbered 0 to " + (rooms - 1));
+        }
+        if (width < 0) {
+            width = rooms;
+        }
+        if (rooms % width != 0) {
+            throw new IllegalArgumentException(rooms + " rooms do not make a grid of width " + width);
+        }
+    }
+
+    private int slot(final int id) {
+        int slot = doorIds.add(id);
+        if (slot == verticalDoors.length) {
+            verticalDoors = Arrays.copyOf(verticalDoors, slot * 2);
+            doorRooms = Arrays.copyOf(doorRooms, slot * 4);
+        }
+        return slot;
+    }
+}
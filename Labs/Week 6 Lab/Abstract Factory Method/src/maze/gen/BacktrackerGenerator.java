@@ -0,0 +1,49 @@
+package maze.gen;
+
+import java.util.SplittableRandom;
+
+import maze.Direction;
+
+/**
+ * Recursive backtracker, run with an explicit int stack instead of
+ * recursion: walk to a random unvisited neighbour, carving as it goes, and
+ * back up when stuck. Gives long winding corridors with few branches.
+ */
+public class BacktrackerGenerator extends MazeGenerator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Override
+    public GridLayout generate(final int width, final int height, final long seed) {
+        GridLayout layout = new GridLayout(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int n = layout.size();
+        long[] visited = new long[(n + 63) >>> 6];
+        int[] stack = new int[n];
+        Direction[] choices = new Direction[4];
+
+        int top = 0;
+        int start = random.nextInt(n);
+        visited[start >>> 6] |= 1L << start;
+        stack[top++] = start;
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int count = 0;
+            for (Direction dir : DIRECTIONS) {
+                int next = layout.neighbor(cell, dir);
+                if (next >= 0 && (visited[next >>> 6] & (1L << next)) == 0) {
+                    choices[count++] = dir;
+                }
+            }
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            Direction dir = choices[random.nextInt(count)];
+            int next = layout.neighbor(cell, dir);
+            layout.carve(cell, dir);
+            visited[next >>> 6] |= 1L << next;
+            stack[top++] = next;
+        }
+        return layout;
+    }
+}
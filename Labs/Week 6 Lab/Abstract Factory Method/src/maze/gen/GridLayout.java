@@ -0,0 +1,274 @@
+package maze.gen;
+
+import java.util.SplittableRandom;
+
+import maze.Direction;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.io.MazeBuilder;
+import maze.io.MazeHandler;
+
+/**
+ * The carved edges of a width by height grid of rooms, one byte per room.
+ * Rooms are numbered row by row from the top left. Each room records
+ * whether its east and south edges are open and whether an open edge is a
+ * door; north and west are read from the neighbour, so every edge is stored
+ * once and the two sides always agree.
+ * <p>
+ * A layout is only a plan. {@link #write(MazeHandler)} streams it as maze
+ * records, which can go to a {@code MazeTextWriter}, a binary writer or a
+ * builder; {@link #build(MazeFactory)} makes the rooms, walls and doors
+ * through a factory so its theme applies.
+ */
+public final class GridLayout {
+    private static final int EAST = 1;
+    private static final int SOUTH = 2;
+    private static final int EAST_DOOR = 4;
+    private static final int SOUTH_DOOR = 8;
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+
+    public GridLayout(final int width, final int height) {
+        if (width < 1 || height < 1 || (long) width * height > 1 << 30) {
+            throw new IllegalArgumentException("bad size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        cells = new byte[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the room next to {@code cell} in the given direction, or -1 at
+     * the edge of the grid.
+     */
+    public int neighbor(final int cell, final Direction dir) {
+        switch (dir) {
+        case North:
+            return cell >= width ? cell - width : -1;
+        case South:
+            return cell + width < cells.length ? cell + width : -1;
+        case East:
+            return cell % width + 1 < width ? cell + 1 : -1;
+        default:
+            return cell % width > 0 ? cell - 1 : -1;
+        }
+    }
+
+    /**
+     * Returns true if the edge is a passage or a door.
+     */
+    public boolean isOpen(final int cell, final Direction dir) {
+        switch (dir) {
+        case North:
+            return cell >= width && (cells[cell - width] & SOUTH) != 0;
+        case South:
+            return (cells[cell] & SOUTH) != 0;
+        case East:
+            return (cells[cell] & EAST) != 0;
+        default:
+            return cell % width > 0 && (cells[cell - 1] & EAST) != 0;
+        }
+    }
+
+    public boolean isDoor(final int cell, final Direction dir) {
+        switch (dir) {
+        case North:
+            return cell >= width && (cells[cell - width] & SOUTH_DOOR) != 0;
+        case South:
+            return (cells[cell] & SOUTH_DOOR) != 0;
+        case East:
+            return (cells[cell] & EAST_DOOR) != 0;
+        default:
+            return cell % width > 0 && (cells[cell - 1] & EAST_DOOR) != 0;
+        }
+    }
+
+    /**
+     * Opens the edge between a room and its neighbour.
+     */
+    public void carve(final int cell, final Direction dir) {
+        edge(cell, dir, EAST, SOUTH);
+    }
+
+    /**
+     * Opens the edge between a room and its neighbour and puts a door in it.
+     */
+    public void addDoor(final int cell, final Direction dir) {
+        edge(cell, dir, EAST | EAST_DOOR, SOUTH | SOUTH_DOOR);
+    }
+
+    private void edge(final int cell, final Direction dir, final int east, final int south) {
+        if (neighbor(cell, dir) < 0) {
+            throw new IllegalArgumentException("room " + cell + " has no " + dir + " neighbour");
+        }
+        switch (dir) {
+        case North:
+            cells[cell - width] |= south;
+            break;
+        case South:
+            cells[cell] |= south;
+            break;
+        case East:
+            cells[cell] |= east;
+            break;
+        default:
+            cells[cell - 1] |= east;
+            break;
+        }
+    }
+
+    /**
+     * Counts the open edges of a room.
+     */
+    public int degree(final int cell) {
+        int degree = 0;
+        if (isOpen(cell, Direction.North)) {
+            degree++;
+        }
+        if (isOpen(cell, Direction.South)) {
+            degree++;
+        }
+        if (isOpen(cell, Direction.East)) {
+            degree++;
+        }
+        if (isOpen(cell, Direction.West)) {
+            degree++;
+        }
+        return degree;
+    }
+
+    /**
+     * Removes dead ends, turning a perfect maze into a braided one with
+     * loops. Each dead end is opened into a random walled neighbour with the
+     * given probability, preferring neighbours that are dead ends too.
+     * Returns the number of edges carved.
+     */
+    public int braid(final double fraction, final long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Direction[] walled = new Direction[4];
+        int carved = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (degree(cell) != 1 || random.nextDouble() >= fraction) {
+                continue;
+            }
+            int count = 0;
+            int deadEnds = 0;
+            for (Direction dir : Direction.values()) {
+                int next = neighbor(cell, dir);
+                if (next >= 0 && !isOpen(cell, dir)) {
+                    if (degree(next) == 1) {
+                        walled[count++] = walled[deadEnds];
+                        walled[deadEnds++] = dir;
+                    } else {
+                        walled[count++] = dir;
+                    }
+                }
+            }
+            if (count > 0) {
+                carve(cell, walled[random.nextInt(deadEnds > 0 ? deadEnds : count)]);
+                carved++;
+            }
+        }
+        return carved;
+    }
+
+    /**
+     * Puts a door in each passage with the given probability. Returns the
+     * number of doors added.
+     */
+    public int addDoors(final double chance, final long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int added = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int c = cells[cell];
+            if ((c & EAST) != 0 && (c & EAST_DOOR) == 0 && random.nextDouble() < chance) {
+                c |= EAST_DOOR;
+                added++;
+            }
+            if ((c & SOUTH) != 0 && (c & SOUTH_DOOR) == 0 && random.nextDouble() < chance) {
+                c |= SOUTH_DOOR;
+                added++;
+            }
+            cells[cell] = (byte) c;
+        }
+        return added;
+    }
+
+    /**
+     * Streams the layout as room records, row by row, then door records.
+     * Doors are numbered in the order their west or north room is written
+     * and are closed. Only one row of door ids is kept, so this needs no
+     * memory beyond the layout itself.
+     */
+    public void write(final MazeHandler out) {
+        int[] southDoors = new int[width];
+        int eastDoor = 0;
+        int doors = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int x = cell % width;
+            int c = cells[cell];
+            int north = MazeHandler.WALL;
+            if (cell >= width && (cells[cell - width] & SOUTH) != 0) {
+                north = (cells[cell - width] & SOUTH_DOOR) != 0 ? MazeHandler.door(southDoors[x]) : cell - width;
+            }
+            int west = MazeHandler.WALL;
+            if (x > 0 && (cells[cell - 1] & EAST) != 0) {
+                west = (cells[cell - 1] & EAST_DOOR) != 0 ? MazeHandler.door(eastDoor) : cell - 1;
+            }
+            int east = MazeHandler.WALL;
+            if ((c & EAST) != 0) {
+                if ((c & EAST_DOOR) != 0) {
+                    eastDoor = doors;
+                    east = MazeHandler.door(doors++);
+                } else {
+                    east = cell + 1;
+                }
+            }
+            int south = MazeHandler.WALL;
+            if ((c & SOUTH) != 0) {
+                if ((c & SOUTH_DOOR) != 0) {
+                    southDoors[x] = doors;
+                    south = MazeHandler.door(doors++);
+                } else {
+                    south = cell + width;
+                }
+            }
+            out.room(cell, north, south, east, west);
+        }
+        doors = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int c = cells[cell];
+            if ((c & EAST_DOOR) != 0) {
+                out.door(doors++, cell, cell + 1, false);
+            }
+            if ((c & SOUTH_DOOR) != 0) {
+                out.door(doors++, cell, cell + width, false);
+            }
+        }
+        out.end();
+    }
+
+    /**
+     * Builds the maze through the factory, so the rooms, walls and doors are
+     * the factory's own kinds. The first room is the current room.
+     */
+    public Maze build(final MazeFactory factory) {
+        MazeBuilder builder = new MazeBuilder(factory);
+        write(builder);
+        return builder.getMaze();
+    }
+}
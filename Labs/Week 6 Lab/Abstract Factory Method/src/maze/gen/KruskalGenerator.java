@@ -0,0 +1,63 @@
+package maze.gen;
+
+import java.util.SplittableRandom;
+
+import maze.Direction;
+
+/**
+ * Randomized Kruskal: every interior edge in random order, carved if it
+ * joins two rooms not yet connected. Connectivity is tracked with a
+ * union-find over an int array using path halving.
+ */
+public class KruskalGenerator extends MazeGenerator {
+    @Override
+    public GridLayout generate(final int width, final int height, final long seed) {
+        GridLayout layout = new GridLayout(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int n = layout.size();
+
+        // Edge 2 * cell is the cell's east edge, 2 * cell + 1 its south edge.
+        int[] edges = new int[(width - 1) * height + width * (height - 1)];
+        int count = 0;
+        for (int cell = 0; cell < n; cell++) {
+            if (cell % width + 1 < width) {
+                edges[count++] = 2 * cell;
+            }
+            if (cell + width < n) {
+                edges[count++] = 2 * cell + 1;
+            }
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = edges[i];
+            edges[i] = edges[j];
+            edges[j] = t;
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        int joined = 0;
+        for (int i = 0; i < count && joined < n - 1; i++) {
+            int cell = edges[i] >>> 1;
+            boolean south = (edges[i] & 1) != 0;
+            int a = find(parent, cell);
+            int b = find(parent, south ? cell + width : cell + 1);
+            if (a != b) {
+                parent[a] = b;
+                layout.carve(cell, south ? Direction.South : Direction.East);
+                joined++;
+            }
+        }
+        return layout;
+    }
+
+    private static int find(final int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
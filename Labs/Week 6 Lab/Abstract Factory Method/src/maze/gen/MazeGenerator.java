@@ -0,0 +1,74 @@
+package maze.gen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import maze.io.MazeBinaryWriter;
+import maze.io.MazeTextWriter;
+
+/**
+ * Carves a perfect maze, one with exactly one path between any two rooms,
+ * into a {@link GridLayout}. The same seed always gives the same maze.
+ * Generators keep their work in flat arrays and never recurse, so they run
+ * on grids of tens of millions of rooms.
+ * <p>
+ * Usage: {@code MazeGenerator <kruskal|wilson|backtracker> <width> <height>
+ * <output> [seed] [braid] [doors]}. {@code braid} is the fraction of dead ends
+ * to open up and {@code doors} the chance of a passage getting a door. The
+ * output is binary if it ends in {@code .mazeb}, text otherwise; it is
+ * written as it is generated, never held as rooms.
+ */
+public abstract class MazeGenerator {
+    public abstract GridLayout generate(int width, int height, long seed);
+
+    public static MazeGenerator forName(final String name) {
+        switch (name) {
+        case "kruskal":
+            return new KruskalGenerator();
+        case "wilson":
+            return new WilsonGenerator();
+        case "backtracker":
+            return new BacktrackerGenerator();
+        default:
+            throw new IllegalArgumentException("unknown generator " + name);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: MazeGenerator <kruskal|wilson|backtracker> <width> <height> <output>"
+                    + " [seed] [braid] [doors]");
+            System.exit(2);
+        }
+        MazeGenerator generator = forName(args[0]);
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        Path output = Paths.get(args[3]);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        double braid = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        double doors = args.length > 6 ? Double.parseDouble(args[6]) : 0;
+
+        long start = System.nanoTime();
+        GridLayout layout = generator.generate(width, height, seed);
+        if (braid > 0) {
+            layout.braid(braid, seed + 1);
+        }
+        if (doors > 0) {
+            layout.addDoors(doors, seed + 2);
+        }
+        long carved = System.nanoTime();
+        if (output.getFileName().toString().endsWith(".mazeb")) {
+            try (MazeBinaryWriter writer = new MazeBinaryWriter(output)) {
+                layout.write(writer);
+            }
+        } else {
+            try (MazeTextWriter writer = new MazeTextWriter(output)) {
+                layout.write(writer);
+            }
+        }
+        long end = System.nanoTime();
+        System.out.printf("%,d rooms: generated in %.3f s, written in %.3f s%n", layout.size(),
+                (carved - start) / 1e9, (end - carved) / 1e9);
+    }
+}
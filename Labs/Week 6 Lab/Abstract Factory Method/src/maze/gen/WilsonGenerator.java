@@ -0,0 +1,52 @@
+package maze.gen;
+
+import java.util.SplittableRandom;
+
+import maze.Direction;
+
+/**
+ * Wilson's algorithm: loop-erased random walks from each room not yet in
+ * the maze until they hit it. Produces every perfect maze with equal
+ * probability, without the long corridors of the backtracker or the short
+ * dead ends of Kruskal. The walk remembers only the last exit taken from
+ * each room, which erases loops for free.
+ */
+public class WilsonGenerator extends MazeGenerator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Override
+    public GridLayout generate(final int width, final int height, final long seed) {
+        GridLayout layout = new GridLayout(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int n = layout.size();
+        long[] inMaze = new long[(n + 63) >>> 6];
+        byte[] exit = new byte[n];
+
+        int root = random.nextInt(n);
+        inMaze[root >>> 6] |= 1L << root;
+        for (int start = 0; start < n; start++) {
+            if ((inMaze[start >>> 6] & (1L << start)) != 0) {
+                continue;
+            }
+            int cell = start;
+            while ((inMaze[cell >>> 6] & (1L << cell)) == 0) {
+                Direction dir;
+                int next;
+                do {
+                    dir = DIRECTIONS[random.nextInt(4)];
+                    next = layout.neighbor(cell, dir);
+                } while (next < 0);
+                exit[cell] = (byte) dir.ordinal();
+                cell = next;
+            }
+            cell = start;
+            while ((inMaze[cell >>> 6] & (1L << cell)) == 0) {
+                inMaze[cell >>> 6] |= 1L << cell;
+                Direction dir = DIRECTIONS[exit[cell]];
+                layout.carve(cell, dir);
+                cell = layout.neighbor(cell, dir);
+            }
+        }
+        return layout;
+    }
+}
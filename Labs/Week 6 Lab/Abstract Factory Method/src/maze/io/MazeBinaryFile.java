@@ -0,0 +1,198 @@
+package maze.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import maze.Direction;
+
+/**
+ * A memory-mapped {@code .mazeb} file. All values are little-endian ints:
+ * <pre>
+ * header  "MAZB" version rooms doors current flags 0 0      (32 bytes)
+ * rooms   number north south east west                     (20 bytes each)
+ * doors   id room1 room2 open                              (16 bytes each)
+ * </pre>
+ * Sides use the {@link MazeHandler} codes. {@code current} is a room number
+ * or -1, and the {@link #FLAG_DENSE} flag says room record {@code i} is room
+ * number {@code i}, which lets callers find a room without an index.
+ * <p>
+ * Records are read straight out of the mapped pages, either one at a time
+ * through the accessors or all at once with {@link #read(MazeHandler)}.
+ * Files over 1 GB are mapped in several windows.
+ */
+public final class MazeBinaryFile implements Closeable {
+    public static final int VERSION = 1;
+    public static final int FLAG_DENSE = 1;
+
+    static final int MAGIC = 'M' | 'A' << 8 | 'Z' << 16 | 'B' << 24;
+    static final int HEADER_SIZE = 32;
+    static final int ROOM_SIZE = 20;
+    static final int DOOR_SIZE = 16;
+
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final int roomCount;
+    private final int doorCount;
+    private final int current;
+    private final int flags;
+    private final Section rooms;
+    private final Section doors;
+
+    private MazeBinaryFile(final FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("not a binary maze file");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("unsupported binary maze version " + header.getInt(4));
+        }
+        roomCount = header.getInt(8);
+        doorCount = header.getInt(12);
+        current = header.getInt(16);
+        flags = header.getInt(20);
+        long doorBase = HEADER_SIZE + (long) roomCount * ROOM_SIZE;
+        if (channel.size() != doorBase + (long) doorCount * DOOR_SIZE) {
+            throw new IOException("truncated binary maze file");
+        }
+        rooms = new Section(channel, HEADER_SIZE, ROOM_SIZE, roomCount);
+        doors = new Section(channel, doorBase, DOOR_SIZE, doorCount);
+    }
+
+    public static MazeBinaryFile open(final Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MazeBinaryFile(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tells whether the file starts with the binary maze magic number.
+     */
+    public static boolean isBinary(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                continue;
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Replays the whole file into a handler and calls {@link MazeHandler#end()}.
+     */
+    public static void read(final Path path, final MazeHandler handler) throws IOException {
+        try (MazeBinaryFile file = open(path)) {
+            file.read(handler);
+        }
+        handler.end();
+    }
+
+    /**
+     * Replays every room, then every door, then the current room.
+     */
+    public void read(final MazeHandler handler) {
+        for (int i = 0; i < roomCount; i++) {
+            ByteBuffer window = rooms.window(i);
+            int at = rooms.offset(i);
+            handler.room(window.getInt(at), window.getInt(at + 4), window.getInt(at + 8),
+                    window.getInt(at + 12), window.getInt(at + 16));
+        }
+        for (int i = 0; i < doorCount; i++) {
+            ByteBuffer window = doors.window(i);
+            int at = doors.offset(i);
+            handler.door(window.getInt(at), window.getInt(at + 4), window.getInt(at + 8), window.getInt(at + 12) != 0);
+        }
+        if (current >= 0) {
+            handler.currentRoom(current);
+        }
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getDoorCount() {
+        return doorCount;
+    }
+
+    /**
+     * Returns the number of the current room, or -1.
+     */
+    public int getCurrentRoom() {
+        return current;
+    }
+
+    public boolean isDense() {
+        return (flags & FLAG_DENSE) != 0;
+    }
+
+    public int roomNumber(final int record) {
+        return rooms.getInt(record, 0);
+    }
+
+    public int roomSide(final int record, final Direction dir) {
+        return rooms.getInt(record, 1 + dir.ordinal());
+    }
+
+    public int doorId(final int record) {
+        return doors.getInt(record, 0);
+    }
+
+    public int doorRoom(final int record, final int end) {
+        return doors.getInt(record, 1 + end);
+    }
+
+    public boolean isDoorOpen(final int record) {
+        return doors.getInt(record, 3) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Fixed-size records mapped in windows that never split a record.
+     */
+    private static final class Section {
+        private final int size;
+        private final int perWindow;
+        private final ByteBuffer[] windows;
+
+        Section(final FileChannel channel, final long base, final int size, final int count) throws IOException {
+            this.size = size;
+            this.perWindow = (int) (WINDOW / size);
+            windows = new ByteBuffer[count == 0 ? 0 : (count - 1) / perWindow + 1];
+            for (int w = 0; w < windows.length; w++) {
+                long first = (long) w * perWindow;
+                long records = Math.min(perWindow, count - first);
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, base + first * size, records * size)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        ByteBuffer window(final int record) {
+            return windows[record / perWindow];
+        }
+
+        int offset(final int record) {
+            return (record % perWindow) * size;
+        }
+
+        int getInt(final int record, final int field) {
+            return windows[record / perWindow].getInt((record % perWindow) * size + 4 * field);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package maze.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.Room;
+
+/**
+ * Writes a {@code .mazeb} file (see {@link MazeBinaryFile}). As a
+ * {@link MazeHandler} it can be fed straight from {@link MazeReader}, so a
+ * text file is converted without building the maze. Room records go to disk
+ * as they arrive; door records are held until {@link #end()} because they
+ * follow the rooms in the file.
+ * <p>
+ * Only a finished {@code end()} writes the header. A writer closed without
+ * one, say by a conversion that threw halfway, deletes its file, so a
+ * truncated file is never taken for a maze.
+ */
+public final class MazeBinaryWriter implements MazeHandler, Closeable {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private int roomCount;
+    private int[] doors = new int[64];
+    private int doorCount;
+    private int current = -1;
+    private boolean dense = true;
+    private boolean finished;
+
+    public MazeBinaryWriter(final Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(MazeBinaryFile.HEADER_SIZE);
+    }
+
+    /**
+     * Writes any maze. Doors are numbered in the order they are met and
+     * unset sides are written as walls.
+     */
+    public static void write(final Maze maze, final Path path) throws IOException {
+        Map<Door, Integer> ids = new IdentityHashMap<>();
+        int[] sides = new int[4];
+        try (MazeBinaryWriter writer = new MazeBinaryWriter(path)) {
+            for (Room room : maze) {
+                for (Direction dir : DIRECTIONS) {
+                    MapSite site = room.getSide(dir);
+                    if (site instanceof Room) {
+                        sides[dir.ordinal()] = ((Room) site).getNumber();
+                    } else if (site instanceof Door) {
+                        Door door = (Door) site;
+                        Integer id = ids.get(door);
+                        if (id == null) {
+                            id = ids.size();
+                            ids.put(door, id);
+                            Room other = door.getOtherSide(room);
+                            writer.door(id, room.getNumber(), other == null ? room.getNumber() : other.getNumber(),
+                                    door.isOpen());
+                        }
+                        sides[dir.ordinal()] = MazeHandler.door(id);
+                    } else {
+                        sides[dir.ordinal()] = WALL;
+                    }
+                }
+                writer.room(room.getNumber(), sides[0], sides[1], sides[2], sides[3]);
+            }
+            Room current = maze.getCurrentRoom();
+            if (current != null) {
+                writer.currentRoom(current.getNumber());
+            }
+            writer.end();
+        }
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        if (out.remaining() < MazeBinaryFile.ROOM_SIZE) {
+            flush();
+        }
+        out.putInt(number).putInt(north).putInt(south).putInt(east).putInt(west);
+        dense &= number == roomCount;
+        roomCount++;
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        if (4 * doorCount + 4 > doors.length) {
+            doors = Arrays.copyOf(doors, doors.length * 2);
+        }
+        int i = 4 * doorCount++;
+        doors[i] = id;
+        doors[i + 1] = room1;
+        doors[i + 2] = room2;
+        doors[i + 3] = open ? 1 : 0;
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        current = number;
+    }
+
+    /**
+     * Writes the doors and the header.
+     */
+    @Override
+    public void end() {
+        if (finished) {
+            return;
+        }
+        for (int i = 0; i < 4 * doorCount; i++) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            out.putInt(doors[i]);
+        }
+        flush();
+        out.putInt(MazeBinaryFile.MAGIC).putInt(MazeBinaryFile.VERSION).putInt(roomCount).putInt(doorCount)
+                .putInt(current).putInt(dense ? MazeBinaryFile.FLAG_DENSE : 0).putInt(0).putInt(0);
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out, MazeBinaryFile.HEADER_SIZE - out.remaining());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.clear();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (!finished) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void flush() {
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package maze.io;
+
+import java.util.Arrays;
+
+import maze.Direction;
+import maze.Door;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+
+/**
+ * Wires rooms, walls and doors as the records arrive, using the given
+ * factory for every site. Room numbers and door ids are given dense
+ * indices by a {@link NumberIndex}, and rooms and doors are kept in arrays
+ * by index, so each record is resolved with a few array reads and the maze
+ * is complete after a single pass, however sparse the numbers are.
+ * <p>
+ * Door records may come before or after the rooms that refer to them. The
+ * first room record becomes the current room. Sides are set on the room the
+ * maze hands back once a room is added, so a maze that keeps rooms its own
+ * way, such as {@link maze.compact.CompactMaze}, is filled too.
+ */
+public class MazeBuilder implements MazeHandler {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final MazeFactory factory;
+    private final Maze maze;
+    private final NumberIndex roomIndex = new NumberIndex();
+    private final NumberIndex doorIndex = new NumberIndex();
+    private Room[] rooms = new Room[64];
+    private Door[] doors = new Door[16];
+    private Room[] doorRooms = new Room[32];
+    private byte[] doorSides = new byte[32];
+
+    public MazeBuilder(final MazeFactory factory) {
+        this(factory, new Maze());
+    }
+
+    /**
+     * Builds into the given maze, which must not be {@link Maze#isFixed()
+     * fixed}.
+     */
+    public MazeBuilder(final MazeFactory factory, final Maze maze) {
+        if (maze.isFixed()) {
+            throw new IllegalArgumentException("rooms and doors cannot be added to a "
+                    + maze.getClass().getSimpleName());
+        }
+        this.factory = factory;
+        this.maze = maze;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        Room room = roomFor(number);
+        if (maze.getCurrentRoom() == null) {
+            maze.setCurrentRoom(room);
+        }
+        side(room, Direction.North, north);
+        side(room, Direction.South, south);
+        side(room, Direction.East, east);
+        side(room, Direction.West, west);
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        Door door = factory.makeDoor(roomFor(room1), roomFor(room2));
+        maze.addDoor(door);
+        door.setOpen(open);
+        int d = doorSlot(id);
+        doors[d] = door;
+        for (int i = 2 * d; i < 2 * d + 2; i++) {
+            if (doorRooms[i] != null) {
+                doorRooms[i].setSide(DIRECTIONS[doorSides[i]], door);
+                doorRooms[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        maze.setCurrentRoom(roomFor(number));
+    }
+
+    private void side(final Room room, final Direction dir, final int side) {
+        if (side == WALL) {
+            room.setSide(dir, factory.makeWall());
+        } else if (MazeHandler.isDoor(side)) {
+            int d = doorSlot(MazeHandler.doorId(side));
+            if (doors[d] != null) {
+                room.setSide(dir, doors[d]);
+            } else {
+                int slot = doorRooms[2 * d] == null ? 2 * d : 2 * d + 1;
+                doorRooms[slot] = room;
+                doorSides[slot] = (byte) dir.ordinal();
+            }
+        } else {
+            Room neighbor = roomFor(side);
+            room.setSide(dir, neighbor);
+            neighbor.setSide(dir.opposite(), room);
+        }
+    }
+
+    private Room roomFor(final int number) {
+        int i = roomIndex.add(number);
+        if (i == rooms.length) {
+            rooms = Arrays.copyOf(rooms, rooms.length * 2);
+        }
+        Room room = rooms[i];
+        if (room == null) {
+            maze.addRoom(factory.makeRoom(number));
+            room = maze.getRoom(number);
+            rooms[i] = room;
+        }
+        return room;
+    }
+
+    private int doorSlot(final int id) {
+        int d = doorIndex.add(id);
+        if (d == doors.length) {
+            int size = doors.length * 2;
+            doors = Arrays.copyOf(doors, size);
+            doorRooms = Arrays.copyOf(doorRooms, size * 2);
+            doorSides = Arrays.copyOf(doorSides, size * 2);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,36 @@
+package maze.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reads a maze file in whichever format it is in.
+ */
+public final class MazeFiles {
+    private MazeFiles() {
+    }
+
+    /**
+     * Feeds a text or binary maze file to a handler, picking the reader by
+     * the file's first bytes.
+     */
+    public static void read(final Path path, final MazeHandler handler) throws IOException {
+        if (MazeBinaryFile.isBinary(path)) {
+            MazeBinaryFile.read(path, handler);
+        } else {
+            MazeReader.read(path, handler);
+        }
+    }
+
+    /**
+     * Like {@link #read(Path, MazeHandler)}, but text files are parsed on
+     * several threads by {@link ParallelMazeReader}.
+     */
+    public static void readParallel(final Path path, final MazeHandler handler) throws IOException {
+        if (MazeBinaryFile.isBinary(path)) {
+            MazeBinaryFile.read(path, handler);
+        } else {
+            ParallelMazeReader.read(path, handler);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package maze.io;
+
+/**
+ * Receives the records of a maze description in the order they are read.
+ * <p>
+ * Sides are passed as plain ints so a reader never has to allocate a token
+ * per side: a value {@code >= 0} is the number of the neighbouring room,
+ * {@link #WALL} is a wall and anything produced by {@link #door(int)} names a
+ * door by its id. Sides always arrive in {@link maze.Direction} order.
+ */
+public interface MazeHandler {
+    int WALL = -1;
+
+    /**
+     * The highest door id a side can name. {@link #door(int)} of a higher id
+     * would wrap around to a room number or be {@link Integer#MIN_VALUE},
+     * which is left free for handlers to mark sides that are not there.
+     */
+    int MAX_DOOR_ID = Integer.MAX_VALUE - 2;
+
+    static int door(int id) {
+        return -2 - id;
+    }
+
+    static boolean isDoor(int side) {
+        return side <= -2;
+    }
+
+    static int doorId(int side) {
+        return -2 - side;
+    }
+
+    void room(int number, int north, int south, int east, int west);
+
+    void door(int id, int room1, int room2, boolean open);
+
+    /**
+     * Names the room the player starts in. Text files leave this out and
+     * start in the first room; binary files report it after the records.
+     */
+    default void currentRoom(int number) {
+    }
+
+    /**
+     * Called for a line of a text file that cannot be parsed. The default
+     * throws; a handler that returns normally has the line skipped and
+     * reading goes on.
+     */
+    default void malformed(long line, String message) {
+        throw new IllegalArgumentException("line " + line + ": " + message);
+    }
+
+    /**
+     * Called once after the last record.
+     */
+    default void end() {
+    }
+}
@@ -0,0 +1,247 @@
+package maze.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the text maze format into a {@link MazeHandler}:
+ * <pre>
+ * room &lt;number&gt; &lt;north&gt; &lt;south&gt; &lt;east&gt; &lt;west&gt;
+ * door d&lt;id&gt; &lt;room1&gt; &lt;room2&gt; open|close
+ * </pre>
+ * where each side is {@code wall}, a door name {@code d<id>} or the number
+ * of the neighbouring room. The input is read through a reusable buffer and
+ * tokenized in place, so no objects are created per line.
+ */
+public final class MazeReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Thrown to abandon a line once the handler has accepted it as
+     * malformed. Shared, since it carries nothing.
+     */
+    private static final RuntimeException SKIP = new RuntimeException(null, null, false, false) {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final MazeHandler handler;
+    private ByteBuffer buf;
+    private int pos;
+    private int end;
+    private long line;
+
+    public MazeReader(final MazeHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads the whole file at {@code path} and calls {@link MazeHandler#end()}.
+     */
+    public static void read(final Path path, final MazeHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new MazeReader(handler).read(channel);
+        }
+        handler.end();
+    }
+
+    /**
+     * Reads records until the channel is exhausted.
+     */
+    public void read(final ReadableByteChannel channel) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        long next = 1;
+        while (channel.read(in) >= 0) {
+            int filled = in.position();
+            int last = filled - 1;
+            while (last >= 0 && in.get(last) != '\n') {
+                last--;
+            }
+            if (last < 0) {
+                if (filled == in.capacity()) {
+                    // a single line longer than the buffer
+                    ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+                    in.flip();
+                    bigger.put(in);
+                    in = bigger;
+                }
+                continue;
+            }
+            next = parse(in, 0, last + 1, next);
+            in.limit(filled).position(last + 1);
+            in.compact();
+        }
+        if (in.position() > 0) {
+            parse(in, 0, in.position(), next);
+        }
+    }
+
+    /**
+     * Parses the lines in {@code [from, to)} of {@code data}. The range must
+     * start at the beginning of a line; {@code firstLine} is only used in
+     * error messages. Returns the number of the line following the range.
+     */
+    long parse(final ByteBuffer data, final int from, final int to, final long firstLine) {
+        buf = data;
+        line = firstLine;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (data.get(i) == '\n') {
+                line(start, i);
+                start = i + 1;
+                line++;
+            }
+        }
+        if (start < to) {
+            line(start, to);
+            line++;
+        }
+        buf = null;
+        return line;
+    }
+
+    private void line(final int start, final int stop) {
+        try {
+            record(start, stop);
+        } catch (RuntimeException e) {
+            if (e != SKIP) {
+                throw e;
+            }
+        }
+    }
+
+    private void record(final int start, final int stop) {
+        pos = start;
+        end = stop;
+        if (end > pos && buf.get(end - 1) == '\r') {
+            end--;
+        }
+        skipSpaces();
+        if (pos == end) {
+            return;
+        }
+        if (keyword('r', 'o', 'o', 'm')) {
+            int number = number();
+            int north = side();
+            int south = side();
+            int east = side();
+            int west = side();
+            handler.room(number, north, south, east, west);
+        } else if (keyword('d', 'o', 'o', 'r')) {
+            skipSpaces();
+            expect('d');
+            int id = doorId();
+            int room1 = number();
+            int room2 = number();
+            boolean open = state();
+            handler.door(id, room1, room2, open);
+        } else {
+            throw error("unknown record");
+        }
+    }
+
+    private boolean keyword(final char a, final char b, final char c, final char d) {
+        if (end - pos < 4 || buf.get(pos) != a || buf.get(pos + 1) != b
+                || buf.get(pos + 2) != c || buf.get(pos + 3) != d) {
+            return false;
+        }
+        if (pos + 4 < end && !isSpace(buf.get(pos + 4))) {
+            return false;
+        }
+        pos += 4;
+        return true;
+    }
+
+    private int side() {
+        skipSpaces();
+        if (pos == end) {
+            throw error("missing side");
+        }
+        byte b = buf.get(pos);
+        if (b == 'w') {
+            if (!keyword('w', 'a', 'l', 'l')) {
+                throw error("bad side");
+            }
+            return MazeHandler.WALL;
+        }
+        if (b == 'd') {
+            pos++;
+            return MazeHandler.door(doorId());
+        }
+        return digits();
+    }
+
+    private int doorId() {
+        int id = digits();
+        if (id > MazeHandler.MAX_DOOR_ID) {
+            throw error("door id out of range");
+        }
+        return id;
+    }
+
+    private int number() {
+        skipSpaces();
+        return digits();
+    }
+
+    private boolean state() {
+        skipSpaces();
+        if (pos == end) {
+            throw error("missing door state");
+        }
+        boolean open = keyword('o', 'p', 'e', 'n');
+        while (pos < end && !isSpace(buf.get(pos))) {
+            pos++;
+        }
+        return open;
+    }
+
+    private int digits() {
+        int start = pos;
+        int value = 0;
+        while (pos < end) {
+            int d = buf.get(pos) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            if (value > (Integer.MAX_VALUE - d) / 10) {
+                throw error("number out of range");
+            }
+            value = value * 10 + d;
+            pos++;
+        }
+        if (pos == start || (pos < end && !isSpace(buf.get(pos)))) {
+            throw error("expected a number");
+        }
+        return value;
+    }
+
+    private void expect(final char c) {
+        if (pos == end || buf.get(pos) != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private void skipSpaces() {
+        while (pos < end && isSpace(buf.get(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Reports a malformed line to the handler, which throws unless it wants
+     * the line skipped.
+     */
+    private RuntimeException error(final String message) {
+        handler.malformed(line, message);
+        return SKIP;
+    }
+}
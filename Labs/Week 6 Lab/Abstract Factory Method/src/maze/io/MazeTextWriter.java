@@ -0,0 +1,80 @@
+package maze.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes records in the text maze format read by {@link MazeReader}. The
+ * text format has no current room; it is always the first room written.
+ */
+public final class MazeTextWriter implements MazeHandler, Closeable {
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(64);
+
+    public MazeTextWriter(final Writer out) {
+        this.out = out;
+    }
+
+    public MazeTextWriter(final Path path) throws IOException {
+        this(new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.US_ASCII), 1 << 16));
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        line.setLength(0);
+        line.append("room ").append(number);
+        side(north);
+        side(south);
+        side(east);
+        side(west);
+        write();
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        line.setLength(0);
+        line.append("door d").append(id).append(' ').append(room1).append(' ').append(room2)
+                .append(open ? " open" : " close");
+        write();
+    }
+
+    @Override
+    public void end() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void side(final int side) {
+        line.append(' ');
+        if (side == WALL) {
+            line.append("wall");
+        } else if (MazeHandler.isDoor(side)) {
+            line.append('d').append(MazeHandler.doorId(side));
+        } else {
+            line.append(side);
+        }
+    }
+
+    private void write() {
+        line.append('\n');
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package maze.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads a text maze file on several threads. The file is cut into byte
+ * ranges that end on line boundaries; each range is mapped and tokenized by
+ * {@link MazeReader} on a fork-join pool into its own record buffer. The
+ * calling thread then replays the buffers into the handler in file order,
+ * starting on the first one while later ranges are still being parsed, so
+ * the handler sees exactly the records the sequential reader would, one
+ * thread at a time, and needs no locking.
+ * <p>
+ * If a range fails to parse, it is parsed again straight into the handler
+ * once the ranges before it have been replayed, so the handler gets the same
+ * records and the same error, with the same line number, as from
+ * {@link MazeReader}.
+ */
+public final class ParallelMazeReader {
+    /** Files smaller than this are read sequentially. */
+    static final long MIN_CHUNK = 1 << 20;
+
+    private static final int PROBE = 4096;
+
+    private ParallelMazeReader() {
+    }
+
+    /**
+     * Reads the file on the common pool and calls {@link MazeHandler#end()}.
+     */
+    public static void read(final Path path, final MazeHandler handler) throws IOException {
+        read(path, handler, ForkJoinPool.commonPool());
+    }
+
+    public static void read(final Path path, final MazeHandler handler, final ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.min(4L * pool.getParallelism(), size / MIN_CHUNK);
+            if (chunks < 2) {
+                new MazeReader(handler).read(channel);
+            } else {
+                read(channel, split(channel, chunks), handler, pool);
+            }
+        }
+        handler.end();
+    }
+
+    /**
+     * Returns chunk start offsets followed by the file size. Each start after
+     * the first is moved forward to just past a newline.
+     */
+    static long[] split(final FileChannel channel, final int chunks) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[chunks + 1];
+        ByteBuffer probe = ByteBuffer.allocate(PROBE);
+        int n = 1;
+        for (int i = 1; i < chunks; i++) {
+            long at = Math.max(size * i / chunks, bounds[n - 1]);
+            at = nextLine(channel, probe, at);
+            if (at > bounds[n - 1] && at < size) {
+                bounds[n++] = at;
+            }
+        }
+        bounds[n++] = size;
+        long[] trimmed = new long[n];
+        System.arraycopy(bounds, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    private static long nextLine(final FileChannel channel, final ByteBuffer probe, long at) throws IOException {
+        long size = channel.size();
+        while (at < size) {
+            probe.clear();
+            int read = channel.read(probe, at);
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += read;
+        }
+        return size;
+    }
+
+    private static void read(final FileChannel channel, final long[] bounds, final MazeHandler handler,
+            final ForkJoinPool pool) throws IOException {
+        List<ForkJoinTask<RecordBuffer>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long from = bounds[i];
+            long to = bounds[i + 1];
+            tasks.add(pool.submit(() -> parse(map(channel, from, to))));
+        }
+        try {
+            long line = 1;
+            for (int i = 0; i < tasks.size(); i++) {
+                RecordBuffer records = tasks.get(i).join();
+                tasks.set(i, null);
+                if (records == null) {
+                    // replays the good lines and throws with the right line number
+                    MappedByteBuffer data = map(channel, bounds[i], bounds[i + 1]);
+                    line = new MazeReader(handler).parse(data, 0, data.limit(), line);
+                } else {
+                    records.replay(handler);
+                    line += records.getLines();
+                }
+            }
+        } finally {
+            for (ForkJoinTask<RecordBuffer> task : tasks) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel, final long from, final long to)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    /**
+     * Parses one range, or returns null if it is malformed.
+     */
+    private static RecordBuffer parse(final MappedByteBuffer data) {
+        // about 20 bytes and 6 ints per room line
+        RecordBuffer records = new RecordBuffer(data.limit() / 20 * 6);
+        try {
+            records.setLines(new MazeReader(records).parse(data, 0, data.limit(), 1) - 1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return records;
+    }
+}
@@ -0,0 +1,68 @@
+package maze.io;
+
+import java.util.Arrays;
+
+/**
+ * Keeps records in one int array in the order they arrive, to be replayed
+ * into another handler later.
+ */
+final class RecordBuffer implements MazeHandler {
+    private static final int ROOM = 0;
+    private static final int DOOR = 1;
+
+    private int[] data;
+    private int size;
+    private long lines;
+
+    RecordBuffer(final int capacity) {
+        data = new int[Math.max(capacity, 16)];
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        ensure(6);
+        data[size++] = ROOM;
+        data[size++] = number;
+        data[size++] = north;
+        data[size++] = south;
+        data[size++] = east;
+        data[size++] = west;
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        ensure(5);
+        data[size++] = DOOR;
+        data[size++] = id;
+        data[size++] = room1;
+        data[size++] = room2;
+        data[size++] = open ? 1 : 0;
+    }
+
+    long getLines() {
+        return lines;
+    }
+
+    void setLines(final long lines) {
+        this.lines = lines;
+    }
+
+    void replay(final MazeHandler handler) {
+        int i = 0;
+        while (i < size) {
+            if (data[i] == ROOM) {
+                handler.room(data[i + 1], data[i + 2], data[i + 3], data[i + 4], data[i + 5]);
+                i += 6;
+            } else {
+                handler.door(data[i + 1], data[i + 2], data[i + 3], data[i + 4] != 0);
+                i += 5;
+            }
+        }
+    }
+
+    private void ensure(final int n) {
+        if (size + n > data.length) {
+            data = Arrays.copyOf(data, Math.max(size + n, data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package maze.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The journal file format. A 24-byte little-endian header
+ * <pre>
+ * "MAZJ" version wall-clock-millis-at-open 0 0
+ * </pre>
+ * is followed by one record per event: a tag byte, the time since the
+ * previous event as an unsigned varint of nanoseconds, and for rooms and
+ * doors the change from the previous room number or door id as a zigzag
+ * varint. The tag's low two bits are the kind; a wall keeps its side plus
+ * one in the next three bits and a door entered or set its new state in the
+ * next bit. The wall's room is the last room entered. Most events take two
+ * or three bytes.
+ */
+final class Journal {
+    static final int MAGIC = 'M' | 'A' << 8 | 'Z' << 16 | 'J' << 24;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    static final int ROOM = 0;
+    static final int WALL = 1;
+    static final int DOOR = 2;
+    static final int SET = 3;
+
+    /**
+     * The longest a record can be: a tag, a ten-byte varint and a five-byte
+     * one.
+     */
+    static final int MAX_RECORD = 16;
+
+    private Journal() {
+    }
+
+    static void putVarLong(final ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void putZigZag(final ByteBuffer out, final int value) {
+        putVarLong(out, (value << 1 ^ value >> 31) & 0xFFFFFFFFL);
+    }
+
+    static long getVarLong(final ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            if (shift > 63) {
+                throw new IllegalArgumentException("bad varint at " + in.position());
+            }
+        }
+    }
+
+    static int getZigZag(final ByteBuffer in) {
+        int value = (int) getVarLong(in);
+        return value >>> 1 ^ -(value & 1);
+    }
+}
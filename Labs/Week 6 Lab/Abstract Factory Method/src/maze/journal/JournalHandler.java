@@ -0,0 +1,37 @@
+package maze.journal;
+
+/**
+ * Receives the events of a journal in the order they were recorded. Times
+ * are nanoseconds since the journal was opened.
+ */
+public interface JournalHandler {
+    /**
+     * The side of a wall hit that could not be told, because the room has
+     * the same wall on more than one side.
+     */
+    int UNKNOWN_SIDE = -1;
+
+    void room(long time, int number);
+
+    /**
+     * A wall of the given room was entered; {@code dir} is a
+     * {@link maze.Direction} ordinal or {@link #UNKNOWN_SIDE}.
+     */
+    void wall(long time, int room, int dir);
+
+    /**
+     * A door was entered and left open or closed.
+     */
+    void door(long time, int id, boolean open);
+
+    /**
+     * A door was opened or closed without being entered.
+     */
+    void doorSet(long time, int id, boolean open);
+
+    /**
+     * Called once after the last event.
+     */
+    default void end() {
+    }
+}
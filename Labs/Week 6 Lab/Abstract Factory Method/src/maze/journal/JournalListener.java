@@ -0,0 +1,144 @@
+package maze.journal;
+
+import maze.Direction;
+import maze.Door;
+import maze.DoorState;
+import maze.EntryListener;
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.Room;
+import maze.Wall;
+
+/**
+ * Records the entry events of a maze into a {@link JournalWriter}. Attach it
+ * to every room and door of a maze with {@link #attach(Maze)}, or add it to
+ * a {@link maze.session.MazeSession} to record one player.
+ * <p>
+ * Walls tell no entry listeners, only the {@link EventSink}, so the
+ * listener is a sink too: {@code attach} installs it in front of the
+ * current sink, which still gets every event, and {@code detach} puts the
+ * old one back.
+ * <p>
+ * {@code attach} also listens to the maze's {@link DoorState}, passing its
+ * events on to any listener it replaced, so that a door opened or closed
+ * without being entered, through {@link Door#setOpen(boolean)} or
+ * {@link Door#compareAndSetOpen(boolean, boolean)}, is recorded as set. A
+ * door opened by entering it is recorded twice, set and then entered.
+ * <p>
+ * Doors are recorded by {@link Door#getId()}, which is -1 for doors that
+ * keep no state in their maze's {@link maze.DoorState}, such as those of a
+ * {@link maze.compact.GridMaze}. A wall is recorded with its side in the
+ * last room entered; a wall instance shared by several sides of that room
+ * is recorded as {@link JournalHandler#UNKNOWN_SIDE}.
+ */
+public final class JournalListener implements EntryListener, EventSink, DoorState.Listener {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final JournalWriter journal;
+    private volatile Room room;
+    private EventSink next = EventSink.NONE;
+    private DoorState.Listener nextDoors;
+
+    public JournalListener(final JournalWriter journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Listens to every room of the maze and every door on their sides, each
+     * once however many rooms share it, and to wall hits through the sink.
+     */
+    public void attach(final Maze maze) {
+        room = maze.getCurrentRoom();
+        for (Room r : maze) {
+            listen(r);
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = r.getSide(dir);
+                if (site instanceof Door) {
+                    listen(site);
+                }
+            }
+        }
+        if (MapSite.getEventSink() != this) {
+            next = MapSite.getEventSink();
+            MapSite.setEventSink(this);
+        }
+        DoorState doors = maze.getDoorState();
+        if (doors.getListener() != this) {
+            nextDoors = doors.getListener();
+            doors.setListener(this);
+        }
+    }
+
+    public void detach(final Maze maze) {
+        for (Room r : maze) {
+            r.removeEntryListener(this);
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = r.getSide(dir);
+                if (site instanceof Door) {
+                    site.removeEntryListener(this);
+                }
+            }
+        }
+        if (MapSite.getEventSink() == this) {
+            MapSite.setEventSink(next);
+        }
+        DoorState doors = maze.getDoorState();
+        if (doors.getListener() == this) {
+            doors.setListener(nextDoors);
+        }
+    }
+
+    private void listen(final MapSite site) {
+        site.removeEntryListener(this);
+        site.addEntryListener(this);
+    }
+
+    @Override
+    public void entered(final MapSite site) {
+        if (site instanceof Room) {
+            room = (Room) site;
+            journal.room(room.getNumber());
+        } else if (site instanceof Door) {
+            Door door = (Door) site;
+            journal.door(door.getId(), door.isOpen());
+        }
+    }
+
+    @Override
+    public void wallHit(final Wall wall) {
+        journal.wall(sideOf(wall));
+        next.wallHit(wall);
+    }
+
+    @Override
+    public void doorOpened(final Door door) {
+        next.doorOpened(door);
+    }
+
+    @Override
+    public void doorChanged(final int id, final boolean open) {
+        journal.doorSet(id, open);
+        DoorState.Listener l = nextDoors;
+        if (l != null) {
+            l.doorChanged(id, open);
+        }
+    }
+
+    private int sideOf(final MapSite wall) {
+        Room current = room;
+        int side = JournalHandler.UNKNOWN_SIDE;
+        if (current == null) {
+            return side;
+        }
+        for (Direction dir : DIRECTIONS) {
+            if (current.getSide(dir) == wall) {
+                if (side != JournalHandler.UNKNOWN_SIDE) {
+                    return JournalHandler.UNKNOWN_SIDE;
+                }
+                side = dir.ordinal();
+            }
+        }
+        return side;
+    }
+}
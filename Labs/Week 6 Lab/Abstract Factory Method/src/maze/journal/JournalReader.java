@@ -0,0 +1,99 @@
+package maze.journal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a journal file into a {@link JournalHandler} through a reusable
+ * buffer, undoing the delta encoding as it goes.
+ */
+public final class JournalReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private JournalReader() {
+    }
+
+    /**
+     * Replays every event and calls {@link JournalHandler#end()}. Returns the
+     * wall-clock time the journal was opened, in milliseconds.
+     */
+    public static long read(final Path path, final JournalHandler handler) throws IOException {
+        return read(path, handler, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replays at most {@code limit} events.
+     */
+    public static long read(final Path path, final JournalHandler handler, final long limit) throws IOException {
+        long opened;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            fill(channel, in);
+            if (in.remaining() < Journal.HEADER_SIZE || in.getInt() != Journal.MAGIC) {
+                throw new IOException("not a maze journal");
+            }
+            int version = in.getInt();
+            if (version != Journal.VERSION) {
+                throw new IOException("unsupported journal version " + version);
+            }
+            opened = in.getLong();
+            in.getLong();
+            long time = 0;
+            int room = 0;
+            int door = 0;
+            boolean eof = false;
+            for (long n = 0; n < limit; n++) {
+                if (in.remaining() < Journal.MAX_RECORD && !eof) {
+                    in.compact();
+                    while (in.hasRemaining() && !eof) {
+                        eof = channel.read(in) < 0;
+                    }
+                    in.flip();
+                }
+                if (!in.hasRemaining()) {
+                    break;
+                }
+                int tag = in.get();
+                if (tag >>> 5 != 0) {
+                    throw new IOException("bad journal record " + tag + " after " + n + " events");
+                }
+                try {
+                    time += Journal.getVarLong(in);
+                    switch (tag & 3) {
+                    case Journal.ROOM:
+                        room += Journal.getZigZag(in);
+                        handler.room(time, room);
+                        break;
+                    case Journal.WALL:
+                        handler.wall(time, room, (tag >>> 2 & 7) - 1);
+                        break;
+                    case Journal.DOOR:
+                        door += Journal.getZigZag(in);
+                        handler.door(time, door, (tag & 4) != 0);
+                        break;
+                    case Journal.SET:
+                        door += Journal.getZigZag(in);
+                        handler.doorSet(time, door, (tag & 4) != 0);
+                        break;
+                    }
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("truncated journal after " + n + " events");
+                }
+            }
+        }
+        handler.end();
+        return opened;
+    }
+
+    private static void fill(final FileChannel channel, final ByteBuffer in) throws IOException {
+        while (in.hasRemaining() && channel.read(in) >= 0) {
+            continue;
+        }
+        in.flip();
+    }
+}
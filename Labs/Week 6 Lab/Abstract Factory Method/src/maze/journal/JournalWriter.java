@@ -0,0 +1,226 @@
+package maze.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends events to a journal file (see {@link Journal}). Events are encoded
+ * into a buffer on the calling thread, which costs a few byte writes and no
+ * allocation; full buffers are handed to a writer thread that owns the
+ * channel, so the game thread never waits on the disk unless the writer
+ * falls several buffers behind.
+ * <p>
+ * The recording methods are synchronized, so listeners run by an entry
+ * dispatcher may call them from any thread; events are written in the order
+ * the calls get the lock. An I/O error on the writer thread is thrown from
+ * the next call as an {@link UncheckedIOException}.
+ */
+public final class JournalWriter implements JournalHandler, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFERS = 4;
+    private static final ByteBuffer DONE = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final long origin = System.nanoTime();
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private ByteBuffer buf;
+    private long lastTime;
+    private int lastRoom;
+    private int lastDoor;
+    private long events;
+    private long bytes = Journal.HEADER_SIZE;
+    private boolean closed;
+
+    public JournalWriter(final Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(Journal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(Journal.MAGIC).putInt(Journal.VERSION).putLong(System.currentTimeMillis()).putLong(0);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        for (int i = 1; i < BUFFERS; i++) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        writer = new Thread(this::drain, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records entering a room now.
+     */
+    public void room(final int number) {
+        room(System.nanoTime() - origin, number);
+    }
+
+    /**
+     * Records hitting a wall of the last room entered now.
+     */
+    public void wall(final int dir) {
+        wall(System.nanoTime() - origin, lastRoom, dir);
+    }
+
+    /**
+     * Records entering a door now, and the state it was left in.
+     */
+    public void door(final int id, final boolean open) {
+        door(System.nanoTime() - origin, id, open);
+    }
+
+    /**
+     * Records opening or closing a door now without entering it.
+     */
+    public void doorSet(final int id, final boolean open) {
+        doorSet(System.nanoTime() - origin, id, open);
+    }
+
+    @Override
+    public synchronized void room(final long time, final int number) {
+        ByteBuffer out = record(Journal.ROOM, time);
+        Journal.putZigZag(out, number - lastRoom);
+        lastRoom = number;
+    }
+
+    /**
+     * Records a wall hit. The journal keeps no room for walls, so
+     * {@code room} is taken to be the last room entered.
+     */
+    @Override
+    public synchronized void wall(final long time, final int room, final int dir) {
+        record(Journal.WALL | (dir + 1) << 2, time);
+    }
+
+    @Override
+    public synchronized void door(final long time, final int id, final boolean open) {
+        ByteBuffer out = record(Journal.DOOR | (open ? 4 : 0), time);
+        Journal.putZigZag(out, id - lastDoor);
+        lastDoor = id;
+    }
+
+    @Override
+    public synchronized void doorSet(final long time, final int id, final boolean open) {
+        ByteBuffer out = record(Journal.SET | (open ? 4 : 0), time);
+        Journal.putZigZag(out, id - lastDoor);
+        lastDoor = id;
+    }
+
+    private ByteBuffer record(final int tag, final long time) {
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        if (buf.remaining() < Journal.MAX_RECORD) {
+            handOff();
+        }
+        buf.put((byte) tag);
+        Journal.putVarLong(buf, Math.max(0, time - lastTime));
+        lastTime = Math.max(lastTime, time);
+        events++;
+        return buf;
+    }
+
+    /**
+     * Returns the number of events recorded.
+     */
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the bytes recorded so far, header included.
+     */
+    public synchronized long getBytes() {
+        return bytes + buf.position();
+    }
+
+    /**
+     * Hands the current buffer to the writer thread.
+     */
+    public synchronized void flush() {
+        if (!closed && buf.position() > 0) {
+            handOff();
+        }
+    }
+
+    private void handOff() {
+        checkFailure();
+        bytes += buf.position();
+        buf.flip();
+        try {
+            full.put(buf);
+            buf = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while writing the journal", e);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer next = full.take();
+                if (next == DONE) {
+                    return;
+                }
+                try {
+                    while (next.hasRemaining() && failure == null) {
+                        channel.write(next);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+                next.clear();
+                free.put(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out every event and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (buf.position() > 0) {
+                handOff();
+            }
+            closed = true;
+            full.put(DONE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing the journal", e);
+        } finally {
+            closed = true;
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package maze.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import maze.DoorState;
+import maze.Maze;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.compact.CompactMaze;
+
+/**
+ * Rebuilds the state of a maze and its player from a journal: the room the
+ * player is in and which doors are open, after any number of events or at
+ * any time.
+ * <p>
+ * The replay starts from the maze as it is when the replay is made, which
+ * should be how it was when the journal was opened; the door states are
+ * kept as a {@link DoorState} snapshot, so every seek starts over from them
+ * in O(1) and then streams the journal forward. Doors the maze's
+ * {@code DoorState} does not know are skipped.
+ * <p>
+ * Usage: {@code Replay <maze file> <journal> [events]}
+ */
+public final class Replay implements JournalHandler {
+    private final Maze maze;
+    private final Room startRoom;
+    private final DoorState.Snapshot startDoors;
+    private long until = Long.MAX_VALUE;
+
+    private long events;
+    private long time;
+    private long roomEntries;
+    private long wallHits;
+    private long doorEntries;
+    private long doorSets;
+    private long skippedDoors;
+
+    public Replay(final Maze maze) {
+        this.maze = maze;
+        this.startRoom = maze.getCurrentRoom();
+        this.startDoors = maze.getDoorState().snapshot();
+    }
+
+    /**
+     * Puts the maze back as it was when the replay was made.
+     */
+    public void reset() {
+        maze.getDoorState().restore(startDoors);
+        maze.setCurrentRoom(startRoom);
+        until = Long.MAX_VALUE;
+        events = 0;
+        time = 0;
+        roomEntries = 0;
+        wallHits = 0;
+        doorEntries = 0;
+        doorSets = 0;
+        skippedDoors = 0;
+    }
+
+    /**
+     * Replays the first {@code count} events of a journal.
+     */
+    public void seek(final Path journal, final long count) throws IOException {
+        reset();
+        JournalReader.read(journal, this, count);
+    }
+
+    /**
+     * Replays the events recorded up to {@code nanos} after the journal was
+     * opened.
+     */
+    public void seekTime(final Path journal, final long nanos) throws IOException {
+        reset();
+        until = nanos;
+        JournalReader.read(journal, this);
+    }
+
+    @Override
+    public void room(final long time, final int number) {
+        if (advance(time)) {
+            maze.setCurrentRoom(number);
+            roomEntries++;
+        }
+    }
+
+    @Override
+    public void wall(final long time, final int room, final int dir) {
+        if (advance(time)) {
+            wallHits++;
+        }
+    }
+
+    @Override
+    public void door(final long time, final int id, final boolean open) {
+        if (advance(time)) {
+            setDoor(id, open);
+            doorEntries++;
+        }
+    }
+
+    @Override
+    public void doorSet(final long time, final int id, final boolean open) {
+        if (advance(time)) {
+            setDoor(id, open);
+            doorSets++;
+        }
+    }
+
+    private void setDoor(final int id, final boolean open) {
+        DoorState doors = maze.getDoorState();
+        if (id >= 0 && id < doors.size()) {
+            doors.setOpen(id, open);
+        } else {
+            skippedDoors++;
+        }
+    }
+
+    private boolean advance(final long at) {
+        if (at > until) {
+            return false;
+        }
+        events++;
+        time = at;
+        return true;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public Room getCurrentRoom() {
+        return maze.getCurrentRoom();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the time of the last event replayed, in nanoseconds since the
+     * journal was opened.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getRoomEntries() {
+        return roomEntries;
+    }
+
+    public long getWallHits() {
+        return wallHits;
+    }
+
+    public long getDoorEntries() {
+        return doorEntries;
+    }
+
+    /**
+     * Returns how many doors were opened or closed without being entered.
+     */
+    public long getDoorSets() {
+        return doorSets;
+    }
+
+    /**
+     * Returns how many door events named a door the maze does not know.
+     */
+    public long getSkippedDoors() {
+        return skippedDoors;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: Replay <maze file> <journal> [events]");
+            System.exit(2);
+        }
+        Maze maze = CompactMaze.load(Paths.get(args[0]), new RedMazeFactory());
+        Replay replay = new Replay(maze);
+        long start = System.nanoTime();
+        replay.seek(Paths.get(args[1]), args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Room current = replay.getCurrentRoom();
+        System.out.printf("%,d events to %.3f s: %,d rooms, %,d walls, %,d doors, %,d doors set%n",
+                replay.getEvents(), replay.getTime() / 1e9, replay.getRoomEntries(), replay.getWallHits(),
+                replay.getDoorEntries(), replay.getDoorSets());
+        System.out.printf("in room %s, %,d of %,d doors open%n", current == null ? "-" : current.getNumber(),
+                maze.getDoorState().countOpen(), maze.getDoorState().size());
+        System.out.printf("replayed in %.3f s%n", seconds);
+    }
+}
@@ -0,0 +1,499 @@
+package maze.paged;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import maze.Direction;
+import maze.Door;
+import maze.DoorState;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+import maze.Wall;
+import maze.io.MazeBinaryFile;
+import maze.io.MazeHandler;
+import maze.io.NumberIndex;
+
+/**
+ * A maze that stays on disk in a {@code .mazeb} file and is paged into
+ * memory a region at a time, for mazes too big to hold as {@code Room}
+ * objects.
+ * <p>
+ * A region is a run of consecutive room records. It is read from the mapped
+ * file the first time {@link #getRoom(int)}, {@link Room#getSide(Direction)}
+ * or the iterator reaches one of its rooms, and kept in an LRU cache whose
+ * size follows from the memory budget given at open. Reads count as hits
+ * or misses, and the least recently used region is dropped when the budget
+ * is full. The counters are there to tune the budget and region size.
+ * <p>
+ * Room views belong to their region. A view held across an eviction keeps
+ * working, since it reads through the maze by number, but {@code getRoom}
+ * returns a new view once the region has been reloaded. Doors are views
+ * over the file's door records; their open state lives in the maze's
+ * {@link DoorState}, one bit a door, so it survives eviction. A region
+ * whose sides are changed through {@link Room#setSide(Direction, MapSite)}
+ * is pinned in memory from then on, because the file is never written.
+ * <p>
+ * The rooms and doors are those of the file and nothing else: the maze is
+ * {@link #isFixed() fixed}, and adding or removing a room or a door throws
+ * {@link UnsupportedOperationException}. Builders and patchers check for
+ * this and refuse such a maze up front.
+ * <p>
+ * Rooms are found by number directly in files written with dense numbering;
+ * otherwise a {@link NumberIndex} of every room number is built at open,
+ * and likewise for door ids that are not their record's position. Its
+ * size follows the count, not the highest number. Access is
+ * synchronized on the maze.
+ */
+public class PagedMaze extends Maze implements Closeable {
+    /**
+     * The default number of rooms in a region.
+     */
+    public static final int REGION_SIZE = 4096;
+
+    /**
+     * The heap a resident room is taken to cost: its sides, its slot in the
+     * region and a share of the views.
+     */
+    static final int BYTES_PER_ROOM = 64;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final MazeBinaryFile file;
+    private final int regionSize;
+    private final int maxRegions;
+    private final int roomCount;
+    private final NumberIndex recordOf;
+    private final NumberIndex doorRecordOf;
+
+    private final Room roomStyle;
+    private final Door doorStyle;
+    private final Wall wall;
+
+    private final LinkedHashMap<Integer, Region> regions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Region> pinned = new HashMap<>();
+    private int current = -1;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private PagedMaze(final MazeBinaryFile file, final MazeFactory factory, final long budget, final int regionSize)
+            throws IOException {
+        if (regionSize < 1) {
+            throw new IllegalArgumentException("region size " + regionSize);
+        }
+        this.file = file;
+        this.regionSize = regionSize;
+        this.maxRegions = (int) Math.max(2, Math.min(Integer.MAX_VALUE, budget / ((long) BYTES_PER_ROOM * regionSize)));
+        this.roomCount = file.getRoomCount();
+        this.recordOf = file.isDense() ? null : index(file);
+        this.doorRecordOf = doorIndex(file);
+        DoorState state = getDoorState();
+        for (int i = 0; i < file.getDoorCount(); i++) {
+            state.allocate(file.isDoorOpen(i));
+        }
+        if (factory == null) {
+            roomStyle = new Room(0);
+            doorStyle = new Door(null, null);
+            wall = new Wall();
+        } else {
+            roomStyle = factory.makeRoom(0);
+            doorStyle = factory.makeDoor(null, null);
+            wall = factory.makeWall();
+        }
+        int start = file.getCurrentRoom();
+        current = start >= 0 ? recordFor(start) : roomCount > 0 ? 0 : -1;
+    }
+
+    /**
+     * Opens a binary maze file with the default region size. The budget is
+     * the heap, in bytes, the resident regions may take; at least two
+     * regions are always kept.
+     */
+    public static PagedMaze open(final Path path, final MazeFactory factory, final long budget) throws IOException {
+        return open(path, factory, budget, REGION_SIZE);
+    }
+
+    public static PagedMaze open(final Path path, final MazeFactory factory, final long budget, final int regionSize)
+            throws IOException {
+        MazeBinaryFile file = MazeBinaryFile.open(path);
+        try {
+            return new PagedMaze(file, factory, budget, regionSize);
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Indexes the room numbers in record order, so that a number's index is
+     * its record however sparse the numbers are.
+     */
+    private static NumberIndex index(final MazeBinaryFile file) throws IOException {
+        NumberIndex index = new NumberIndex();
+        for (int i = 0; i < file.getRoomCount(); i++) {
+            if (index.add(file.roomNumber(i)) != i) {
+                throw new IOException("room " + file.roomNumber(i) + " appears twice");
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns null if every door record's id is its position, as the writers
+     * produce, and an index from id to record otherwise.
+     */
+    private static NumberIndex doorIndex(final MazeBinaryFile file) throws IOException {
+        boolean identity = true;
+        for (int i = 0; i < file.getDoorCount() && identity; i++) {
+            identity = file.doorId(i) == i;
+        }
+        if (identity) {
+            return null;
+        }
+        NumberIndex index = new NumberIndex();
+        for (int i = 0; i < file.getDoorCount(); i++) {
+            if (index.add(file.doorId(i)) != i) {
+                throw new IOException("door d" + file.doorId(i) + " appears twice");
+            }
+        }
+        return index;
+    }
+
+    private int recordFor(final int number) {
+        if (recordOf == null) {
+            return number >= 0 && number < roomCount ? number : -1;
+        }
+        return recordOf.get(number);
+    }
+
+    private int doorRecordFor(final int id) {
+        if (doorRecordOf == null) {
+            return id >= 0 && id < file.getDoorCount() ? id : -1;
+        }
+        return doorRecordOf.get(id);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of regions in memory, pinned ones included.
+     */
+    public synchronized int getResidentRegions() {
+        return regions.size() + pinned.size();
+    }
+
+    public int getMaxRegions() {
+        return maxRegions;
+    }
+
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns the region holding a room record, reading it in if needed.
+     */
+    private Region region(final int record) {
+        Integer key = record / regionSize;
+        Region region = pinned.get(key);
+        if (region == null) {
+            region = regions.get(key);
+        }
+        if (region != null) {
+            hits++;
+            return region;
+        }
+        misses++;
+        region = new Region(key * regionSize, Math.min(regionSize, roomCount - key * regionSize));
+        regions.put(key, region);
+        if (regions.size() + pinned.size() > maxRegions && !regions.isEmpty()) {
+            Iterator<Region> eldest = regions.values().iterator();
+            if (eldest.next() != region) {
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return region;
+    }
+
+    private synchronized Room roomAtRecord(final int record) {
+        return region(record).view(record);
+    }
+
+    private synchronized MapSite getSide(final int record, final int dir) {
+        Region region = region(record);
+        int slot = 4 * (record - region.first) + dir;
+        int side = region.sides[slot];
+        if (side == MazeHandler.WALL) {
+            return wall;
+        }
+        if (MazeHandler.isDoor(side)) {
+            return region.door(slot, doorRecordFor(MazeHandler.doorId(side)));
+        }
+        int next = recordFor(side);
+        return next < 0 ? null : region(next).view(next);
+    }
+
+    private synchronized void setSide(final int record, final int dir, final int side) {
+        Region region = region(record);
+        int slot = 4 * (record - region.first) + dir;
+        region.sides[slot] = side;
+        if (region.doors != null) {
+            region.doors[slot] = null;
+        }
+        Integer key = region.first / regionSize;
+        if (regions.remove(key) != null) {
+            pinned.put(key, region);
+        }
+    }
+
+    @Override
+    public void addRoom(final Room r) {
+        throw new UnsupportedOperationException("a paged maze is read from its file");
+    }
+
+    @Override
+    public Room removeRoom(final int number) {
+        throw new UnsupportedOperationException("a paged maze is read from its file");
+    }
+
+    @Override
+    public int addDoor(final Door d) {
+        throw new UnsupportedOperationException("a paged maze is read from its file");
+    }
+
+    @Override
+    public void removeDoor(final Door d) {
+        throw new UnsupportedOperationException("a paged maze is read from its file");
+    }
+
+    @Override
+    public boolean isFixed() {
+        return true;
+    }
+
+    @Override
+    public Room getRoom(final int number) {
+        int record = recordFor(number);
+        return record < 0 ? null : roomAtRecord(record);
+    }
+
+    /**
+     * Walks the rooms in file order, paging regions in and out as it goes.
+     */
+    @Override
+    public Iterator<Room> iterator() {
+        return new Iterator<Room>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < roomCount;
+            }
+
+            @Override
+            public Room next() {
+                if (next >= roomCount) {
+                    throw new NoSuchElementException();
+                }
+                return roomAtRecord(next++);
+            }
+        };
+    }
+
+    @Override
+    public int getNumberOfRooms() {
+        return roomCount;
+    }
+
+    @Override
+    public Room getCurrentRoom() {
+        return current < 0 ? null : roomAtRecord(current);
+    }
+
+    @Override
+    public void setCurrentRoom(final Room room) {
+        if (room == null) {
+            current = -1;
+        } else if (room instanceof RoomView && ((RoomView) room).maze() == this) {
+            current = ((RoomView) room).record;
+        } else {
+            throw new IllegalArgumentException("room " + room.getNumber() + " does not belong to this maze");
+        }
+    }
+
+    @Override
+    public void setCurrentRoom(final int number) {
+        current = recordFor(number);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int encode(final MapSite site) {
+        if (site instanceof RoomView && ((RoomView) site).maze() == this) {
+            return ((RoomView) site).getNumber();
+        }
+        if (site instanceof DoorView && ((DoorView) site).maze() == this) {
+            return MazeHandler.door(file.doorId(((DoorView) site).record));
+        }
+        if (site instanceof Wall) {
+            return MazeHandler.WALL;
+        }
+        throw new IllegalArgumentException("site does not belong to this maze");
+    }
+
+    /**
+     * The sides of a run of rooms, copied out of the file, and the views
+     * made for them so far. Door views are kept by side, so the two rooms
+     * of a door may hold different views of it; they share its state bit.
+     */
+    private final class Region {
+        final int first;
+        final int[] sides;
+        final Room[] views;
+        Door[] doors;
+
+        Region(final int first, final int count) {
+            this.first = first;
+            sides = new int[4 * count];
+            views = new Room[count];
+            for (int i = 0; i < count; i++) {
+                for (Direction dir : DIRECTIONS) {
+                    sides[4 * i + dir.ordinal()] = file.roomSide(first + i, dir);
+                }
+            }
+        }
+
+        Room view(final int record) {
+            Room view = views[record - first];
+            if (view == null) {
+                view = new RoomView(record, file.roomNumber(record));
+                views[record - first] = view;
+            }
+            return view;
+        }
+
+        Door door(final int slot, final int record) {
+            if (record < 0) {
+                return null;
+            }
+            if (doors == null) {
+                doors = new Door[sides.length];
+            }
+            Door view = doors[slot];
+            if (view == null) {
+                view = new DoorView(record);
+                doors[slot] = view;
+            }
+            return view;
+        }
+    }
+
+    private final class RoomView extends Room {
+        private final int record;
+
+        RoomView(final int record, final int number) {
+            super(number);
+            this.record = record;
+        }
+
+        PagedMaze maze() {
+            return PagedMaze.this;
+        }
+
+        @Override
+        public MapSite getSide(final Direction dir) {
+            return PagedMaze.this.getSide(record, dir.ordinal());
+        }
+
+        @Override
+        public void setSide(final Direction dir, final MapSite site) {
+            PagedMaze.this.setSide(record, dir.ordinal(), encode(site));
+        }
+
+        @Override
+        public Color getColor() {
+            return roomStyle.getColor();
+        }
+    }
+
+    private final class DoorView extends Door {
+        private final int record;
+
+        DoorView(final int record) {
+            super(null, null);
+            this.record = record;
+        }
+
+        PagedMaze maze() {
+            return PagedMaze.this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return getDoorState().isOpen(record);
+        }
+
+        @Override
+        public void setOpen(final boolean open) {
+            getDoorState().setOpen(record, open);
+        }
+
+        @Override
+        public boolean compareAndSetOpen(final boolean expected, final boolean open) {
+            return getDoorState().compareAndSet(record, expected, open);
+        }
+
+        @Override
+        public int getId() {
+            return record;
+        }
+
+        @Override
+        public Room getOtherSide(final Room r) {
+            if (!(r instanceof RoomView) || ((RoomView) r).maze() != PagedMaze.this) {
+                return null;
+            }
+            int room1 = file.doorRoom(record, 0);
+            int room2 = file.doorRoom(record, 1);
+            if (r.getNumber() == room1) {
+                return PagedMaze.this.getRoom(room2);
+            }
+            return r.getNumber() == room2 ? PagedMaze.this.getRoom(room1) : null;
+        }
+
+        @Override
+        public Color getColor() {
+            return doorStyle.getColor();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package maze.patch;
+
+import java.util.Collections;
+import java.util.List;
+
+import maze.Door;
+import maze.Room;
+
+/**
+ * What one applied patch touched: the rooms it added and removed, the rooms
+ * whose sides it changed, and the doors it added or opened or closed. A
+ * listener that keeps its own index of the maze, such as a
+ * {@link maze.solve.MazeGraph}, need only look at these.
+ */
+public final class MazeChange {
+    private final List<Room> added;
+    private final List<Room> removed;
+    private final List<Room> changed;
+    private final List<Door> doors;
+
+    MazeChange(final List<Room> added, final List<Room> removed, final List<Room> changed, final List<Door> doors) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+        this.doors = Collections.unmodifiableList(doors);
+    }
+
+    public List<Room> getAddedRooms() {
+        return added;
+    }
+
+    /**
+     * Returns the rooms taken out of the maze. Their sides are as they were
+     * when they were removed.
+     */
+    public List<Room> getRemovedRooms() {
+        return removed;
+    }
+
+    /**
+     * Returns the rooms still in the maze with a side set by the patch,
+     * added rooms included, each once.
+     */
+    public List<Room> getChangedRooms() {
+        return changed;
+    }
+
+    /**
+     * Returns the doors added, opened or closed by the patch, each once.
+     */
+    public List<Door> getDoors() {
+        return doors;
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty() && doors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " rooms added, " + removed.size() + " removed, " + changed.size() + " changed, "
+                + doors.size() + " doors";
+    }
+}
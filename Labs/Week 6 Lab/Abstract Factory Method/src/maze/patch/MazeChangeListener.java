@@ -0,0 +1,8 @@
+package maze.patch;
+
+/**
+ * Told by a {@link MazePatcher} after a patch has been applied in full.
+ */
+public interface MazeChangeListener {
+    void mazeChanged(MazeChange change);
+}
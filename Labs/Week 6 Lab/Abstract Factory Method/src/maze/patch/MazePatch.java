@@ -0,0 +1,274 @@
+package maze.patch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import maze.Direction;
+
+/**
+ * A list of edits to a maze's layout, applied in order and all or nothing
+ * by a {@link MazePatcher}. Rooms are named by number and doors by the room
+ * side they are on, so applying a patch looks up only the rooms it names.
+ * <p>
+ * The text form has one edit per line; blank lines and anything after
+ * {@code #} are ignored:
+ * <pre>
+ * room 12                   add room 12, walled in
+ * remove 12                 remove room 12, walling up its neighbours
+ * link 12 east 13           a passage from 12 east to 13 and back west
+ * wall 12 east              a wall there, and on the far side of what was
+ * door 12 east 13 open      a new door between 12 and 13, open or closed
+ * open 12 east              open, close or toggle the door on that side
+ * close 12 east
+ * toggle 12 east
+ * </pre>
+ * Every edit keeps both sides of a passage or door in step: whatever the
+ * changed side led to before gets a wall on its side back.
+ */
+public final class MazePatch {
+    /**
+     * The kinds of edit, with their names in the text form.
+     */
+    public enum Kind {
+        ROOM("room"),
+        REMOVE("remove"),
+        LINK("link"),
+        WALL("wall"),
+        DOOR("door"),
+        OPEN("open"),
+        CLOSE("close"),
+        TOGGLE("toggle");
+
+        private final String word;
+
+        Kind(final String word) {
+            this.word = word;
+        }
+
+        public String getWord() {
+            return word;
+        }
+    }
+
+    /**
+     * One edit. Fields an edit does not use are -1, null or false.
+     */
+    public static final class Edit {
+        private final Kind kind;
+        private final int room;
+        private final Direction dir;
+        private final int other;
+        private final boolean open;
+
+        Edit(final Kind kind, final int room, final Direction dir, final int other, final boolean open) {
+            this.kind = kind;
+            this.room = room;
+            this.dir = dir;
+            this.other = other;
+            this.open = open;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getRoom() {
+            return room;
+        }
+
+        public Direction getDirection() {
+            return dir;
+        }
+
+        public int getOther() {
+            return other;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(kind.word).append(' ').append(room);
+            if (dir != null) {
+                s.append(' ').append(dir.name().toLowerCase(Locale.ROOT));
+            }
+            if (kind == Kind.LINK || kind == Kind.DOOR) {
+                s.append(' ').append(other);
+            }
+            if (kind == Kind.DOOR) {
+                s.append(open ? " open" : " close");
+            }
+            return s.toString();
+        }
+    }
+
+    private final List<Edit> edits = new ArrayList<>();
+
+    public MazePatch addRoom(final int room) {
+        return add(new Edit(Kind.ROOM, room, null, -1, false));
+    }
+
+    public MazePatch removeRoom(final int room) {
+        return add(new Edit(Kind.REMOVE, room, null, -1, false));
+    }
+
+    public MazePatch link(final int room, final Direction dir, final int other) {
+        return add(new Edit(Kind.LINK, room, dir, other, false));
+    }
+
+    public MazePatch wall(final int room, final Direction dir) {
+        return add(new Edit(Kind.WALL, room, dir, -1, false));
+    }
+
+    public MazePatch addDoor(final int room, final Direction dir, final int other, final boolean open) {
+        return add(new Edit(Kind.DOOR, room, dir, other, open));
+    }
+
+    public MazePatch setDoorOpen(final int room, final Direction dir, final boolean open) {
+        return add(new Edit(open ? Kind.OPEN : Kind.CLOSE, room, dir, -1, false));
+    }
+
+    public MazePatch toggleDoor(final int room, final Direction dir) {
+        return add(new Edit(Kind.TOGGLE, room, dir, -1, false));
+    }
+
+    private MazePatch add(final Edit edit) {
+        if (edit.room < 0 || (edit.kind == Kind.LINK || edit.kind == Kind.DOOR) && edit.other < 0) {
+            throw new IllegalArgumentException("negative room number in " + edit);
+        }
+        edits.add(edit);
+        return this;
+    }
+
+    public List<Edit> getEdits() {
+        return Collections.unmodifiableList(edits);
+    }
+
+    public int size() {
+        return edits.size();
+    }
+
+    public static MazePatch read(final Path path) throws IOException {
+        return parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the text form. A bad line throws an
+     * {@link IllegalArgumentException} naming its line number.
+     */
+    public static MazePatch parse(final CharSequence text) {
+        MazePatch patch = new MazePatch();
+        String[] lines = text.toString().split("\r?\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int hash = line.indexOf('#');
+            if (hash >= 0) {
+                line = line.substring(0, hash);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                patch.parseLine(line.split("\\s+"));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return patch;
+    }
+
+    private void parseLine(final String[] words) {
+        Kind kind = null;
+        for (Kind k : Kind.values()) {
+            if (k.word.equals(words[0])) {
+                kind = k;
+            }
+        }
+        if (kind == null) {
+            throw new IllegalArgumentException("unknown edit '" + words[0] + "'");
+        }
+        int expected;
+        switch (kind) {
+        case ROOM:
+        case REMOVE:
+            expected = 2;
+            break;
+        case LINK:
+            expected = 4;
+            break;
+        case DOOR:
+            expected = 5;
+            break;
+        default:
+            expected = 3;
+        }
+        if (words.length != expected) {
+            throw new IllegalArgumentException(kind.word + " takes " + (expected - 1) + " arguments");
+        }
+        int room = number(words[1]);
+        switch (kind) {
+        case ROOM:
+            addRoom(room);
+            break;
+        case REMOVE:
+            removeRoom(room);
+            break;
+        case LINK:
+            link(room, direction(words[2]), number(words[3]));
+            break;
+        case WALL:
+            wall(room, direction(words[2]));
+            break;
+        case DOOR:
+            if (!"open".equals(words[4]) && !"close".equals(words[4])) {
+                throw new IllegalArgumentException("door state must be open or close, not '" + words[4] + "'");
+            }
+            addDoor(room, direction(words[2]), number(words[3]), "open".equals(words[4]));
+            break;
+        case OPEN:
+        case CLOSE:
+            setDoorOpen(room, direction(words[2]), kind == Kind.OPEN);
+            break;
+        default:
+            toggleDoor(room, direction(words[2]));
+        }
+    }
+
+    private static int number(final String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad room number '" + word + "'");
+        }
+    }
+
+    private static Direction direction(final String word) {
+        for (Direction dir : Direction.values()) {
+            if (dir.name().equalsIgnoreCase(word)) {
+                return dir;
+            }
+        }
+        throw new IllegalArgumentException("bad direction '" + word + "'");
+    }
+
+    /**
+     * Returns the text form, one edit per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Edit edit : edits) {
+            s.append(edit).append('\n');
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,266 @@
+package maze.patch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.Room;
+
+/**
+ * Applies {@link MazePatch patches} to a live maze in place, making new
+ * rooms, walls and doors with the maze's factory. Only the rooms a patch
+ * names and their neighbours are looked at, so a patch costs the same on
+ * a maze of ten rooms as on one of ten million.
+ * <p>
+ * A patch is applied all or nothing. Each change is logged as it is made;
+ * if an edit is refused, every change before it is undone in reverse and
+ * an {@link IllegalArgumentException} is thrown with the edit's place in
+ * the patch. An edit the maze does not support, such as removing a room
+ * from a {@link maze.compact.GridMaze}, is refused the same way. Adding a
+ * door is undone with {@link Maze#removeDoor(Door)}, so a refused patch
+ * leaves no door state behind. Listeners hear of a patch only once it has
+ * been applied in full, on the applying thread. On a
+ * {@link Maze#isFixed() fixed} maze, a patch that adds or removes a room or
+ * adds a door is refused before any edit is made.
+ * <p>
+ * Patches are applied one at a time, but nothing stops players moving
+ * while one is applied; a player may see half a patch. Changing a side
+ * does not tell the sites' entry listeners, which hear of players, not of
+ * edits.
+ */
+public final class MazePatcher {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Maze maze;
+    private final MazeFactory factory;
+    private final List<MazeChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Deque<Runnable> undo = new ArrayDeque<>();
+    private final List<Room> added = new ArrayList<>();
+    private final List<Room> removed = new ArrayList<>();
+    private final Set<Room> changed = new LinkedHashSet<>();
+    private final Set<Door> doors = new LinkedHashSet<>();
+
+    public MazePatcher(final Maze maze, final MazeFactory factory) {
+        this.maze = maze;
+        this.factory = factory;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public void addChangeListener(final MazeChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(final MazeChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Applies every edit of the patch, or none of them, and returns what
+     * it touched.
+     */
+    public synchronized MazeChange apply(final MazePatch patch) {
+        List<MazePatch.Edit> edits = patch.getEdits();
+        if (maze.isFixed()) {
+            checkFixed(edits);
+        }
+        int i = 0;
+        try {
+            for (; i < edits.size(); i++) {
+                apply(edits.get(i));
+            }
+        } catch (RuntimeException e) {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            clear();
+            if (e instanceof IllegalArgumentException || e instanceof UnsupportedOperationException) {
+                throw new IllegalArgumentException("edit " + (i + 1) + " (" + edits.get(i) + "): "
+                        + e.getMessage(), e);
+            }
+            throw e;
+        }
+        changed.removeIf(room -> maze.getRoom(room.getNumber()) != room);
+        MazeChange change = new MazeChange(new ArrayList<>(added), new ArrayList<>(removed),
+                new ArrayList<>(changed), new ArrayList<>(doors));
+        clear();
+        for (MazeChangeListener listener : listeners) {
+            listener.mazeChanged(change);
+        }
+        return change;
+    }
+
+    private void checkFixed(final List<MazePatch.Edit> edits) {
+        for (int i = 0; i < edits.size(); i++) {
+            MazePatch.Kind kind = edits.get(i).getKind();
+            if (kind == MazePatch.Kind.ROOM || kind == MazePatch.Kind.REMOVE || kind == MazePatch.Kind.DOOR) {
+                throw new IllegalArgumentException("edit " + (i + 1) + " (" + edits.get(i)
+                        + "): rooms and doors cannot be added to or removed from a "
+                        + maze.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private void clear() {
+        undo.clear();
+        added.clear();
+        removed.clear();
+        changed.clear();
+        doors.clear();
+    }
+
+    private void apply(final MazePatch.Edit edit) {
+        Room room;
+        Direction dir = edit.getDirection();
+        switch (edit.getKind()) {
+        case ROOM:
+            if (maze.getRoom(edit.getRoom()) != null) {
+                throw new IllegalArgumentException("room " + edit.getRoom() + " already exists");
+            }
+            room = factory.makeRoom(edit.getRoom());
+            for (Direction d : DIRECTIONS) {
+                room.setSide(d, factory.makeWall());
+            }
+            room = addRoom(room);
+            added.add(room);
+            changed.add(room);
+            break;
+        case REMOVE:
+            room = room(edit.getRoom());
+            if (room == maze.getCurrentRoom()) {
+                throw new IllegalArgumentException("room " + room.getNumber() + " is the current room");
+            }
+            for (Direction d : DIRECTIONS) {
+                detach(room, d);
+            }
+            removeRoom(room);
+            if (!added.remove(room)) {
+                removed.add(room);
+            }
+            break;
+        case LINK:
+            room = room(edit.getRoom());
+            Room other = other(room, edit.getOther());
+            detach(room, dir);
+            detach(other, dir.opposite());
+            setSide(room, dir, other);
+            setSide(other, dir.opposite(), room);
+            break;
+        case WALL:
+            room = room(edit.getRoom());
+            detach(room, dir);
+            setSide(room, dir, factory.makeWall());
+            break;
+        case DOOR:
+            room = room(edit.getRoom());
+            other = other(room, edit.getOther());
+            detach(room, dir);
+            detach(other, dir.opposite());
+            Door door = factory.makeDoor(room, other);
+            door.setOpen(edit.isOpen());
+            addDoor(door);
+            setSide(room, dir, door);
+            setSide(other, dir.opposite(), door);
+            doors.add((Door) room.getSide(dir));
+            break;
+        case OPEN:
+        case CLOSE:
+            setOpen(door(edit), edit.getKind() == MazePatch.Kind.OPEN);
+            break;
+        default:
+            door = door(edit);
+            setOpen(door, !door.isOpen());
+        }
+    }
+
+    private Room room(final int number) {
+        Room room = maze.getRoom(number);
+        if (room == null) {
+            throw new IllegalArgumentException("no room " + number);
+        }
+        return room;
+    }
+
+    private Room other(final Room room, final int number) {
+        if (number == room.getNumber()) {
+            throw new IllegalArgumentException("room " + number + " cannot lead to itself");
+        }
+        return room(number);
+    }
+
+    private Door door(final MazePatch.Edit edit) {
+        MapSite site = room(edit.getRoom()).getSide(edit.getDirection());
+        if (!(site instanceof Door)) {
+            throw new IllegalArgumentException("no door on the " + edit.getDirection() + " side of room "
+                    + edit.getRoom());
+        }
+        return (Door) site;
+    }
+
+    /**
+     * Walls up the far side of whatever a side leads to, if it leads back,
+     * so that the side can be set to something else.
+     */
+    private void detach(final Room room, final Direction dir) {
+        MapSite site = room.getSide(dir);
+        Room far = null;
+        if (site instanceof Room) {
+            far = (Room) site;
+        } else if (site instanceof Door) {
+            far = ((Door) site).getOtherSide(room);
+        }
+        if (far == null || far == room) {
+            return;
+        }
+        MapSite back = far.getSide(dir.opposite());
+        if (back == room || back == site) {
+            setSide(far, dir.opposite(), factory.makeWall());
+        }
+    }
+
+    private void setSide(final Room room, final Direction dir, final MapSite site) {
+        MapSite old = room.getSide(dir);
+        room.setSide(dir, site);
+        undo.push(() -> room.setSide(dir, old));
+        changed.add(room);
+    }
+
+    /**
+     * Adds a room and returns the one the maze keeps, which is a view of its
+     * own in the array-backed mazes.
+     */
+    private Room addRoom(final Room room) {
+        maze.addRoom(room);
+        undo.push(() -> maze.removeRoom(room.getNumber()));
+        return maze.getRoom(room.getNumber());
+    }
+
+    private void removeRoom(final Room room) {
+        maze.removeRoom(room.getNumber());
+        undo.push(() -> maze.addRoom(room));
+    }
+
+    private void addDoor(final Door door) {
+        maze.addDoor(door);
+        undo.push(() -> maze.removeDoor(door));
+    }
+
+    private void setOpen(final Door door, final boolean open) {
+        boolean old = door.isOpen();
+        door.setOpen(open);
+        undo.push(() -> door.setOpen(old));
+        doors.add(door);
+    }
+}
@@ -0,0 +1,113 @@
+package maze.render;
+
+import maze.Maze;
+import maze.solve.MazeGraph;
+
+/**
+ * Grid coordinates for every room of a maze, worked out once from the
+ * rooms' sides. A room north of another sits one row above it, and so on;
+ * each connected part of the maze is laid out by one breadth-first pass
+ * and the parts are placed left to right, a column apart. Doors count as
+ * passages. Coordinates are kept in int arrays by {@link MazeGraph} index
+ * and start at 0.
+ * <p>
+ * A maze whose sides do not fit a grid, such as one where going east then
+ * west leads somewhere new, still gets a layout, but two rooms may land on
+ * the same cell: each room keeps the place it was first reached at.
+ */
+public final class MazeLayout {
+    private static final int[] DX = { 0, 0, 1, -1 };
+    private static final int[] DY = { -1, 1, 0, 0 };
+
+    private final MazeGraph graph;
+    private final int[] x;
+    private final int[] y;
+    private final int width;
+    private final int height;
+
+    public MazeLayout(final Maze maze) {
+        this(new MazeGraph(maze));
+    }
+
+    /**
+     * Lays out a graph's rooms, starting from index {@code 0}'s part.
+     */
+    public MazeLayout(final MazeGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        x = new int[n];
+        y = new int[n];
+        boolean[] placed = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        int left = 0;
+        int bottom = 0;
+        for (int root = 0; root < n; root++) {
+            if (placed[root]) {
+                continue;
+            }
+            int head = tail;
+            int first = tail;
+            placed[root] = true;
+            queue[tail++] = root;
+            int minX = 0;
+            int maxX = 0;
+            int minY = 0;
+            int maxY = 0;
+            while (head < tail) {
+                int room = queue[head++];
+                for (int dir = 0; dir < 4; dir++) {
+                    int next = graph.step(room, dir, false);
+                    if (next < 0 || placed[next]) {
+                        continue;
+                    }
+                    placed[next] = true;
+                    x[next] = x[room] + DX[dir];
+                    y[next] = y[room] + DY[dir];
+                    minX = Math.min(minX, x[next]);
+                    maxX = Math.max(maxX, x[next]);
+                    minY = Math.min(minY, y[next]);
+                    maxY = Math.max(maxY, y[next]);
+                    queue[tail++] = next;
+                }
+            }
+            for (int i = first; i < tail; i++) {
+                x[queue[i]] += left - minX;
+                y[queue[i]] -= minY;
+            }
+            left += maxX - minX + 2;
+            bottom = Math.max(bottom, maxY - minY + 1);
+        }
+        width = Math.max(0, left - 1);
+        height = bottom;
+    }
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the column of the room at a graph index.
+     */
+    public int getX(final int room) {
+        return x[room];
+    }
+
+    /**
+     * Returns the row of the room at a graph index, 0 at the top.
+     */
+    public int getY(final int room) {
+        return y[room];
+    }
+
+    /**
+     * Returns the number of columns, gaps between parts included.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,509 @@
+package maze.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import maze.BlueMazeFactory;
+import maze.Direction;
+import maze.Door;
+import maze.EntryListener;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.patch.MazeChange;
+import maze.patch.MazeChangeListener;
+import maze.solve.MazeGraph;
+
+/**
+ * Draws a {@link MazeLayout} into square tiles, kept in a pyramid of
+ * levels: level 0 has {@code cell} pixels a room, and each level above
+ * halves that, its tiles shrunk from the four below, up to one tile for
+ * the whole maze. Tiles are drawn when first asked for and kept, the least
+ * recently used dropped past a limit.
+ * <p>
+ * A room is drawn in its own cell only: its colour, then each side that
+ * is not a passage or an open door as a bar in that site's colour, and a
+ * dot if it is the current room. So when a room or one of its doors
+ * changes only the level 0 tile over it is redrawn, and the square it
+ * makes of each kept tile above is shrunk from it again.
+ * Listening to the rooms and doors with {@link #attach(Maze)} and to a
+ * {@link maze.patch.MazePatcher} as a {@link MazeChangeListener} does that
+ * as the player moves and doors open; a door opened behind the tiles'
+ * back needs {@link #doorChanged(Door)}. Rooms added or removed need a new
+ * layout.
+ * <p>
+ * Pixels are written straight into the tiles' int arrays, so nothing here
+ * needs a display, and {@link #export(Path, int)} streams a PNG of a whole
+ * level a row of tiles at a time.
+ * <p>
+ * Usage: {@code MazeTiles <maze file> <png file> [cell] [level]
+ * [--theme red|blue]}, defaults {@code 8 0}.
+ */
+public final class MazeTiles implements EntryListener, MazeChangeListener {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int BACKGROUND = 0x000000;
+
+    private final MazeLayout layout;
+    private final MazeGraph graph;
+    private final int cell;
+    private final int tile;
+    private final int roomsPerTile;
+    private final int tilesX;
+    private final int tilesY;
+    private final int levels;
+    private final int[] tileStart;
+    private final int[] tileRooms;
+    private final Map<Long, BufferedImage> cache;
+    private final Set<Long> dirty = new LinkedHashSet<>();
+    private Map<Door, Integer> doorRooms;
+    private int current = -1;
+    private long drawn;
+
+    /**
+     * Uses 8 pixels a room, tiles of 256 pixels and keeps up to 256 tiles,
+     * 64 MB.
+     */
+    public MazeTiles(final MazeLayout layout) {
+        this(layout, 8, 256, 256);
+    }
+
+    /**
+     * {@code cell} and {@code tile} are powers of two, {@code tile} at
+     * least {@code cell}.
+     */
+    public MazeTiles(final MazeLayout layout, final int cell, final int tile, final int maxTiles) {
+        if (Integer.bitCount(cell) != 1 || Integer.bitCount(tile) != 1 || tile < cell || maxTiles < 1) {
+            throw new IllegalArgumentException("cell " + cell + " and tile " + tile
+                    + " must be powers of two with cell <= tile");
+        }
+        this.layout = layout;
+        this.graph = layout.getGraph();
+        this.cell = cell;
+        this.tile = tile;
+        roomsPerTile = tile / cell;
+        tilesX = Math.max(1, (layout.getWidth() + roomsPerTile - 1) / roomsPerTile);
+        tilesY = Math.max(1, (layout.getHeight() + roomsPerTile - 1) / roomsPerTile);
+        int level = 1;
+        while ((1 << (level - 1)) < Math.max(tilesX, tilesY)) {
+            level++;
+        }
+        levels = level;
+        cache = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+
+        int n = graph.size();
+        tileStart = new int[tilesX * tilesY + 1];
+        for (int room = 0; room < n; room++) {
+            tileStart[tileOf(room) + 1]++;
+        }
+        for (int t = 0; t < tilesX * tilesY; t++) {
+            tileStart[t + 1] += tileStart[t];
+        }
+        tileRooms = new int[n];
+        int[] fill = tileStart.clone();
+        for (int room = 0; room < n; room++) {
+            tileRooms[fill[tileOf(room)]++] = room;
+        }
+    }
+
+    public MazeLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the number of levels; the top one is a single tile.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getTileSize() {
+        return tile;
+    }
+
+    public int getTilesX(final int level) {
+        return (tilesX + (1 << level) - 1) >> level;
+    }
+
+    public int getTilesY(final int level) {
+        return (tilesY + (1 << level) - 1) >> level;
+    }
+
+    /**
+     * Returns how many tiles have been drawn or shrunk so far.
+     */
+    public long getTilesDrawn() {
+        return drawn;
+    }
+
+    /**
+     * Returns a tile, drawing it and any tiles below it it needs if they
+     * are not kept. The image is the kept one and is redrawn in place after
+     * a change; do not draw on it.
+     */
+    public synchronized BufferedImage getTile(final int level, final int tx, final int ty) {
+        if (level < 0 || level >= levels || tx < 0 || ty < 0 || tx >= getTilesX(level) || ty >= getTilesY(level)) {
+            throw new IllegalArgumentException("no tile " + tx + "," + ty + " at level " + level);
+        }
+        if (!dirty.isEmpty()) {
+            repair(level, tx, ty);
+        }
+        long key = key(level, tx, ty);
+        BufferedImage image = cache.get(key);
+        if (image == null) {
+            image = new BufferedImage(tile, tile, BufferedImage.TYPE_INT_RGB);
+            if (level == 0) {
+                draw(image, tx, ty);
+            } else {
+                for (int q = 0; q < 4; q++) {
+                    shrink(image, level, tx, ty, q);
+                }
+            }
+            cache.put(key, image);
+            drawn++;
+        }
+        return image;
+    }
+
+    /**
+     * Marks the level 0 tile over a room, by graph index, for redrawing.
+     * It is redrawn when it or a tile above it is next asked for.
+     */
+    public synchronized void invalidate(final int room) {
+        if (room < 0 || room >= graph.size()) {
+            return;
+        }
+        long key = key(0, layout.getX(room) / roomsPerTile, layout.getY(room) / roomsPerTile);
+        cache.remove(key);
+        dirty.add(key);
+    }
+
+    /**
+     * Moves the current room's dot, by graph index, or -1 for none.
+     */
+    public synchronized void setCurrentRoom(final int room) {
+        invalidate(current);
+        current = room;
+        invalidate(current);
+    }
+
+    /**
+     * Redraws the two rooms a door joins, after it opened or closed.
+     */
+    public synchronized void doorChanged(final Door door) {
+        if (doorRooms == null) {
+            doorRooms = new IdentityHashMap<>();
+            for (int room = 0; room < graph.size(); room++) {
+                addDoors(room);
+            }
+        }
+        Integer room = doorRooms.get(door);
+        if (room != null) {
+            invalidate(room);
+            Room other = door.getOtherSide(graph.roomAt(room));
+            if (other != null) {
+                invalidate(graph.indexOf(other));
+            }
+        }
+    }
+
+    /**
+     * Follows the player: entering a room moves the dot, and entering a
+     * door, which opens it, redraws the rooms on both sides.
+     */
+    @Override
+    public void entered(final MapSite site) {
+        if (site instanceof Room) {
+            setCurrentRoom(graph.indexOf((Room) site));
+        } else if (site instanceof Door) {
+            doorChanged((Door) site);
+        }
+    }
+
+    /**
+     * Reads the changed rooms into the graph and redraws them and the
+     * doors the patch touched.
+     */
+    @Override
+    public synchronized void mazeChanged(final MazeChange change) {
+        for (Room room : change.getChangedRooms()) {
+            if (graph.update(room)) {
+                int i = graph.indexOf(room);
+                invalidate(i);
+                if (doorRooms != null) {
+                    addDoors(i);
+                }
+            }
+        }
+        for (Door door : change.getDoors()) {
+            doorChanged(door);
+        }
+    }
+
+    /**
+     * Listens to every room and door of the maze, each once.
+     */
+    public void attach(final Maze maze) {
+        for (Room room : maze) {
+            room.removeEntryListener(this);
+            room.addEntryListener(this);
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door) {
+                    site.removeEntryListener(this);
+                    site.addEntryListener(this);
+                }
+            }
+        }
+        Room room = maze.getCurrentRoom();
+        setCurrentRoom(room == null ? -1 : graph.indexOf(room));
+    }
+
+    public void detach(final Maze maze) {
+        for (Room room : maze) {
+            room.removeEntryListener(this);
+            for (Direction dir : DIRECTIONS) {
+                MapSite site = room.getSide(dir);
+                if (site instanceof Door) {
+                    site.removeEntryListener(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a whole level as a PNG, cropped to the maze, one row of tiles
+     * at a time through the cache.
+     */
+    public void export(final Path file, final int level) throws IOException {
+        if (level < 0 || level >= levels) {
+            throw new IllegalArgumentException("no level " + level);
+        }
+        int width = (int) Math.max(1, ((long) layout.getWidth() * cell) >> level);
+        int height = (int) Math.max(1, ((long) layout.getHeight() * cell) >> level);
+        int columns = getTilesX(level);
+        int[] row = new int[columns * tile];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+                PngWriter png = new PngWriter(out, width, height)) {
+            for (int ty = 0; ty * tile < height; ty++) {
+                List<int[]> strip = new ArrayList<>(columns);
+                for (int tx = 0; tx < columns; tx++) {
+                    strip.add(pixels(getTile(level, tx, ty)));
+                }
+                for (int y = 0; y < tile && ty * tile + y < height; y++) {
+                    for (int tx = 0; tx < columns; tx++) {
+                        System.arraycopy(strip.get(tx), y * tile, row, tx * tile, tile);
+                    }
+                    png.writeRow(row, 0);
+                }
+            }
+        }
+    }
+
+    private void draw(final BufferedImage image, final int tx, final int ty) {
+        int[] px = pixels(image);
+        int t = tx + ty * tilesX;
+        int left = tx * roomsPerTile;
+        int top = ty * roomsPerTile;
+        for (int i = tileStart[t]; i < tileStart[t + 1]; i++) {
+            int room = tileRooms[i];
+            drawRoom(px, (layout.getX(room) - left) * cell, (layout.getY(room) - top) * cell, room);
+        }
+    }
+
+    private void drawRoom(final int[] px, final int ox, final int oy, final int index) {
+        Room room = graph.roomAt(index);
+        int color = room.getColor().getRGB() & 0xFFFFFF;
+        fill(px, ox, oy, cell, cell, color);
+        int bar = Math.max(1, cell / 8);
+        for (Direction dir : DIRECTIONS) {
+            MapSite site = room.getSide(dir);
+            if (site instanceof Room || site instanceof Door && ((Door) site).isOpen()) {
+                continue;
+            }
+            int side = site == null ? BACKGROUND : site.getColor().getRGB() & 0xFFFFFF;
+            switch (dir) {
+            case North:
+                fill(px, ox, oy, cell, bar, side);
+                break;
+            case South:
+                fill(px, ox, oy + cell - bar, cell, bar, side);
+                break;
+            case East:
+                fill(px, ox + cell - bar, oy, bar, cell, side);
+                break;
+            default:
+                fill(px, ox, oy, bar, cell, side);
+            }
+        }
+        if (index == current) {
+            int dot = Math.max(1, cell / 4);
+            fill(px, ox + (cell - dot) / 2, oy + (cell - dot) / 2, dot, dot, 0xFFFFFF - color);
+        }
+    }
+
+    private void fill(final int[] px, final int x, final int y, final int w, final int h, final int color) {
+        for (int row = y; row < y + h; row++) {
+            int at = row * tile + x;
+            for (int i = 0; i < w; i++) {
+                px[at + i] = color;
+            }
+        }
+    }
+
+    /**
+     * Redraws the marked level 0 tiles under a tile. Each level 0 tile alone
+     * makes a square of every tile above it, so it is shrunk again and
+     * again and each square pasted into the kept tile at that level; tiles
+     * in between that are not kept are not needed.
+     */
+    private void repair(final int level, final int tx, final int ty) {
+        Iterator<Long> marked = dirty.iterator();
+        while (marked.hasNext()) {
+            long key = marked.next();
+            int x = (int) (key & 0xFFFFFFF);
+            int y = (int) ((key >>> 28) & 0xFFFFFFF);
+            if (x >> level != tx || y >> level != ty) {
+                continue;
+            }
+            marked.remove();
+            BufferedImage image = new BufferedImage(tile, tile, BufferedImage.TYPE_INT_RGB);
+            draw(image, x, y);
+            cache.put(key, image);
+            drawn++;
+            int[] px = pixels(image);
+            int size = tile;
+            for (int l = 1; l < levels; l++) {
+                BufferedImage above = cache.get(key(l, x >> l, y >> l));
+                if (size == 1) {
+                    cache.remove(key(l, x >> l, y >> l));
+                    continue;
+                }
+                int half = size / 2;
+                int[] shrunk = new int[half * half];
+                shrink(px, size, shrunk, half, 0, half);
+                px = shrunk;
+                size = half;
+                if (above != null) {
+                    int[] to = pixels(above);
+                    int ox = (x & ((1 << l) - 1)) * size;
+                    int oy = (y & ((1 << l) - 1)) * size;
+                    for (int row = 0; row < size; row++) {
+                        System.arraycopy(px, row * size, to, (oy + row) * tile + ox, size);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Shrinks the tile below into one quarter of a tile, averaging each
+     * square of four pixels. A quarter with no tile below is left black.
+     */
+    private void shrink(final BufferedImage image, final int level, final int tx, final int ty, final int q) {
+        int[] px = pixels(image);
+        int half = tile / 2;
+        int ox = (q & 1) * half;
+        int oy = (q >> 1) * half;
+        int cx = 2 * tx + (q & 1);
+        int cy = 2 * ty + (q >> 1);
+        if (cx >= getTilesX(level - 1) || cy >= getTilesY(level - 1)) {
+            return;
+        }
+        shrink(pixels(getTile(level - 1, cx, cy)), tile, px, tile, oy * tile + ox, half);
+    }
+
+    /**
+     * Averages each square of four pixels of a {@code 2 * half} wide
+     * square into {@code to}, which has rows {@code stride} long.
+     */
+    private static void shrink(final int[] from, final int fromStride, final int[] to, final int stride,
+            final int offset, final int half) {
+        for (int y = 0; y < half; y++) {
+            int at = 2 * y * fromStride;
+            int out = offset + y * stride;
+            for (int x = 0; x < half; x++, at += 2) {
+                int a = from[at];
+                int b = from[at + 1];
+                int c = from[at + fromStride];
+                int d = from[at + fromStride + 1];
+                to[out + x] = average(a, b, c, d, 16) << 16 | average(a, b, c, d, 8) << 8 | average(a, b, c, d, 0);
+            }
+        }
+    }
+
+    private static int average(final int a, final int b, final int c, final int d, final int shift) {
+        return (((a >> shift) & 0xFF) + ((b >> shift) & 0xFF) + ((c >> shift) & 0xFF) + ((d >> shift) & 0xFF) + 2) >> 2;
+    }
+
+    private void addDoors(final int room) {
+        for (int dir = 0; dir < 4; dir++) {
+            Door door = graph.doorAt(room, dir);
+            if (door != null) {
+                doorRooms.putIfAbsent(door, room);
+            }
+        }
+    }
+
+    private int tileOf(final int room) {
+        return layout.getX(room) / roomsPerTile + layout.getY(room) / roomsPerTile * tilesX;
+    }
+
+    private static long key(final int level, final int tx, final int ty) {
+        return ((long) level << 56) | ((long) ty << 28) | tx;
+    }
+
+    private static int[] pixels(final BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        MazeFactory factory = new RedMazeFactory();
+        for (int i = 0; i < args.length; i++) {
+            if ("--theme".equals(args[i]) && i + 1 < args.length) {
+                factory = "blue".equals(args[++i]) ? new BlueMazeFactory() : new RedMazeFactory();
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("usage: MazeTiles <maze file> <png file> [cell] [level] [--theme red|blue]");
+            System.exit(2);
+        }
+        int cell = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 8;
+        int level = positional.size() > 3 ? Integer.parseInt(positional.get(3)) : 0;
+        Maze maze = factory.loadMaze(positional.get(0));
+        long start = System.nanoTime();
+        MazeTiles tiles = new MazeTiles(new MazeLayout(maze), cell, Math.max(cell, 256), 256);
+        Room current = maze.getCurrentRoom();
+        tiles.setCurrentRoom(current == null ? -1 : tiles.graph.indexOf(current));
+        double laid = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        tiles.export(Paths.get(positional.get(1)), level);
+        System.out.printf("%,d rooms, layout %.3f s, export %.3f s, %,d bytes%n", maze.getNumberOfRooms(), laid,
+                (System.nanoTime() - start) / 1e9, Files.size(Paths.get(positional.get(1))));
+    }
+}
@@ -0,0 +1,139 @@
+package maze.render;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGB PNG one row at a time, so an image of any size can
+ * be written without holding it. Rows use the Sub filter, which suits the
+ * long runs of one colour a maze is made of.
+ */
+final class PngWriter implements Closeable {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int CHUNK = 1 << 16;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final byte[] row;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final DeflaterOutputStream data;
+    private int rows;
+
+    PngWriter(final OutputStream out, final int width, final int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("empty image " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        row = new byte[1 + 3 * width];
+        row[0] = 1;
+        this.out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = 2;
+        chunk("IHDR", header, header.length);
+        data = new DeflaterOutputStream(new IdatStream(), deflater, CHUNK);
+    }
+
+    /**
+     * Writes the next row from {@code width} pixels of {@code rgb} starting
+     * at {@code offset}, as {@code 0xRRGGBB}.
+     */
+    void writeRow(final int[] rgb, final int offset) throws IOException {
+        if (rows == height) {
+            throw new IllegalStateException("all " + height + " rows were written");
+        }
+        int left = 0;
+        for (int i = 0, at = 1; i < width; i++, at += 3) {
+            int pixel = rgb[offset + i];
+            row[at] = (byte) ((pixel >>> 16) - (left >>> 16));
+            row[at + 1] = (byte) ((pixel >>> 8) - (left >>> 8));
+            row[at + 2] = (byte) (pixel - left);
+            left = pixel;
+        }
+        data.write(row);
+        rows++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rows != height) {
+            throw new IllegalStateException(rows + " of " + height + " rows were written");
+        }
+        data.close();
+        deflater.end();
+        chunk("IEND", new byte[0], 0);
+        out.close();
+    }
+
+    private void chunk(final String type, final byte[] bytes, final int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(bytes, 0, length);
+        out.writeInt(length);
+        out.write(name);
+        out.write(bytes, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(final byte[] bytes, final int at, final int value) {
+        bytes[at] = (byte) (value >>> 24);
+        bytes[at + 1] = (byte) (value >>> 16);
+        bytes[at + 2] = (byte) (value >>> 8);
+        bytes[at + 3] = (byte) value;
+    }
+
+    /**
+     * Cuts the compressed stream into IDAT chunks of up to 64 KB.
+     */
+    private final class IdatStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK];
+        private int size;
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                chunk("IDAT", buffer, size);
+                size = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
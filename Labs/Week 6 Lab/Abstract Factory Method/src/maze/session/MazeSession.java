@@ -0,0 +1,163 @@
+package maze.session;
+
+import maze.Direction;
+import maze.Door;
+import maze.EntryListener;
+import maze.MapSite;
+import maze.Room;
+
+/**
+ * One agent's view of a {@link SharedMaze}: its own current room, its own
+ * entry listeners and its own counters. A session belongs to one thread at
+ * a time; any number of sessions may move through the same maze at once.
+ * <p>
+ * Moves behave as in {@code MazeViewer} and fire the sites' own listeners,
+ * once for each site: a room is entered only when stepped into, and a door
+ * is passed only if it is still open once entered, since another session
+ * may close it at any time.
+ * Door state is shared by all sessions and only changed with
+ * {@link Door#compareAndSetOpen(boolean, boolean)}, so two agents opening
+ * the same door never both see themselves as the one who opened it.
+ */
+public final class MazeSession {
+    private static final EntryListener[] NO_LISTENERS = new EntryListener[0];
+
+    private final SharedMaze maze;
+    private final int id;
+    private Room current;
+    private volatile EntryListener[] listeners = NO_LISTENERS;
+
+    private long moves;
+    private long roomChanges;
+    private long wallHits;
+    private long doorOpenings;
+
+    MazeSession(final SharedMaze maze, final int id, final Room start) {
+        this.maze = maze;
+        this.id = id;
+        this.current = start;
+    }
+
+    public SharedMaze getMaze() {
+        return maze;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Room getCurrentRoom() {
+        return current;
+    }
+
+    public void setCurrentRoom(final Room room) {
+        current = room;
+    }
+
+    /**
+     * Adds a listener told about every site this session enters, and only
+     * those.
+     */
+    public synchronized void addEntryListener(final EntryListener el) {
+        EntryListener[] next = new EntryListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, next, 0, listeners.length);
+        next[listeners.length] = el;
+        listeners = next;
+    }
+
+    public synchronized void removeEntryListener(final EntryListener el) {
+        EntryListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(el)) {
+                EntryListener[] next = new EntryListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, next.length - i);
+                listeners = next.length == 0 ? NO_LISTENERS : next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves one step and returns true if it led to another room.
+     */
+    public boolean move(final Direction dir) {
+        moves++;
+        MapSite site = current.getSide(dir);
+        if (site == null) {
+            return false;
+        }
+        Room next = null;
+        if (site instanceof Door) {
+            Door door = (Door) site;
+            if (!door.isOpen() && door.compareAndSetOpen(false, true)) {
+                doorOpenings++;
+                MapSite.getEventSink().doorOpened(door);
+            }
+            door.enter();
+            notify(door);
+            if (door.isOpen()) {
+                next = door.getOtherSide(current);
+            }
+        } else if (site instanceof Room) {
+            next = (Room) site;
+        } else {
+            site.enter();
+            notify(site);
+            wallHits++;
+        }
+        if (next == null) {
+            return false;
+        }
+        current = next;
+        current.enter();
+        notify(current);
+        roomChanges++;
+        return true;
+    }
+
+    /**
+     * Opens the door on a side of the current room. Returns true if this
+     * session changed it, false if there is no door or it was already open.
+     */
+    public boolean openDoor(final Direction dir) {
+        MapSite site = current.getSide(dir);
+        return site instanceof Door && ((Door) site).compareAndSetOpen(false, true);
+    }
+
+    /**
+     * Closes the door on a side of the current room. Returns true if this
+     * session changed it.
+     */
+    public boolean closeDoor(final Direction dir) {
+        MapSite site = current.getSide(dir);
+        return site instanceof Door && ((Door) site).compareAndSetOpen(true, false);
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    public long getRoomChanges() {
+        return roomChanges;
+    }
+
+    public long getWallHits() {
+        return wallHits;
+    }
+
+    /**
+     * Returns the number of doors this session found closed and opened by
+     * walking into them.
+     */
+    public long getDoorOpenings() {
+        return doorOpenings;
+    }
+
+    private void notify(final MapSite site) {
+        EntryListener[] snapshot = listeners;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i].entered(site);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package maze.session;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import maze.Maze;
+import maze.Room;
+
+/**
+ * A maze played by many agents at once, each through its own
+ * {@link MazeSession}. The maze's own current room is left to the viewer;
+ * sessions never touch it. Joining and leaving use a concurrent map and no
+ * lock is held while agents move.
+ */
+public final class SharedMaze {
+    private final Maze maze;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, MazeSession> sessions = new ConcurrentHashMap<>();
+
+    public SharedMaze(final Maze maze) {
+        this.maze = maze;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    /**
+     * Starts a session in the maze's current room.
+     */
+    public MazeSession join() {
+        return join(maze.getCurrentRoom());
+    }
+
+    public MazeSession join(final Room start) {
+        if (start == null) {
+            throw new IllegalArgumentException("no start room");
+        }
+        MazeSession session = new MazeSession(this, ids.getAndIncrement(), start);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    public void leave(final MazeSession session) {
+        sessions.remove(session.getId(), session);
+    }
+
+    public MazeSession getSession(final int id) {
+        return sessions.get(id);
+    }
+
+    public Collection<MazeSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+}
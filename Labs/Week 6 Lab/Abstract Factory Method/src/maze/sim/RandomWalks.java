@@ -0,0 +1,399 @@
+package maze.sim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import maze.BlueMazeFactory;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.solve.MazeGraph;
+
+/**
+ * Runs many independent random walkers over a maze on a fork-join pool and
+ * gathers how long they take to reach a target and where they go.
+ * <p>
+ * A walker moves like {@link Simulator#random(long, SplittableRandom)}:
+ * each step picks one of the four directions at random, and a wall, or
+ * with {@code openDoorsOnly} a closed door, leaves it where it is. Doors
+ * are not opened and no listeners fire; the maze is only read, through a
+ * {@link MazeGraph}, with the walker's room kept as an index. A walker
+ * stops on reaching a target room or after {@code maxSteps} steps.
+ * <p>
+ * Walker {@code i} draws from its own {@link SplittableRandom} seeded from
+ * the run's seed and {@code i}, and the counts are exact sums, the squared
+ * hitting times in 128 bits, so a run gives the same result on any pool.
+ * At most {@link #STRIPES} lanes run, however large the pool; each takes
+ * blocks of walkers as it finishes the last and counts into a stripe of its
+ * own with plain increments, and the stripes are added up when the run
+ * ends.
+ * <p>
+ * Usage: {@code RandomWalks <maze file> <target room> [walkers] [max steps]
+ * [seed] [threads] [--theme red|blue]}, defaults {@code 100000 1000000 1}
+ * and all processors. Walkers start in the maze's current room.
+ */
+public final class RandomWalks {
+    /**
+     * Hitting times are counted in {@code BINS} bins by powers of two: bin
+     * {@code b} holds times from {@code 2^(b-1)} up to {@code 2^b - 1}, and
+     * bin 0 walkers that start on a target.
+     */
+    public static final int BINS = 64;
+
+    /**
+     * The most stripes of counts a run holds, each with a visit count for
+     * every room.
+     */
+    public static final int STRIPES = 8;
+
+    static final int WALKERS_PER_TASK = 1024;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final MazeGraph graph;
+    private final boolean openDoorsOnly;
+
+    public RandomWalks(final MazeGraph graph, final boolean openDoorsOnly) {
+        this.graph = graph;
+        this.openDoorsOnly = openDoorsOnly;
+    }
+
+    /**
+     * Walks the rooms of a maze with all doors passable.
+     */
+    public RandomWalks(final Maze maze) {
+        this(new MazeGraph(maze), false);
+    }
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Runs on the common pool.
+     */
+    public Result run(final int start, final int[] targets, final long walkers, final long maxSteps,
+            final long seed) {
+        return run(start, targets, walkers, maxSteps, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sends {@code walkers} walkers from room {@code start}, by graph index,
+     * until each reaches one of {@code targets} or takes {@code maxSteps}
+     * steps.
+     */
+    public Result run(final int start, final int[] targets, final long walkers, final long maxSteps,
+            final long seed, final ForkJoinPool pool) {
+        int n = graph.size();
+        if (start < 0 || start >= n) {
+            throw new IllegalArgumentException("no room at index " + start);
+        }
+        if (walkers < 0 || maxSteps < 0) {
+            throw new IllegalArgumentException("negative walkers or steps");
+        }
+        boolean[] target = new boolean[n];
+        for (int room : targets) {
+            if (room < 0 || room >= n) {
+                throw new IllegalArgumentException("no room at index " + room);
+            }
+            target[room] = true;
+        }
+        int lanes = (int) Math.min(Math.min(pool.getParallelism(), STRIPES),
+                Math.max(1, (walkers + WALKERS_PER_TASK - 1) / WALKERS_PER_TASK));
+        Run run = new Run(start, target, walkers, maxSteps, seed, lanes);
+        pool.invoke(run.new Lanes(0, lanes));
+        return run.total();
+    }
+
+    /**
+     * Mixes a seed and a walker number into the walker's own seed, as
+     * {@link SplittableRandom} mixes its gamma steps.
+     */
+    static long walkerSeed(final long seed, final long walker) {
+        long z = seed + (walker + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * One lane's counts.
+     */
+    private static final class Stripe {
+        final long[] visits;
+        final long[] histogram = new long[BINS];
+        long hits;
+        long hitSteps;
+        long squaresLow;
+        long squaresHigh;
+        long steps;
+
+        Stripe(final int rooms) {
+            visits = new long[rooms];
+        }
+    }
+
+    private final class Run {
+        private final int start;
+        private final boolean[] target;
+        private final long walkers;
+        private final long maxSteps;
+        private final long seed;
+        private final Stripe[] stripes;
+        private final AtomicLong claimed = new AtomicLong();
+
+        Run(final int start, final boolean[] target, final long walkers, final long maxSteps, final long seed,
+                final int lanes) {
+            this.start = start;
+            this.target = target;
+            this.walkers = walkers;
+            this.maxSteps = maxSteps;
+            this.seed = seed;
+            stripes = new Stripe[lanes];
+        }
+
+        /**
+         * Walks blocks of walkers until none are left, counting into the
+         * lane's stripe, which is made on the first block.
+         */
+        void lane(final int lane) {
+            for (long from = claimed.getAndAdd(WALKERS_PER_TASK); from < walkers;
+                    from = claimed.getAndAdd(WALKERS_PER_TASK)) {
+                if (stripes[lane] == null) {
+                    stripes[lane] = new Stripe(graph.size());
+                }
+                walk(stripes[lane], from, Math.min(from + WALKERS_PER_TASK, walkers));
+            }
+        }
+
+        void walk(final Stripe s, final long from, final long to) {
+            long[] visits = s.visits;
+            for (long w = from; w < to; w++) {
+                SplittableRandom random = new SplittableRandom(walkerSeed(seed, w));
+                int room = start;
+                long step = 0;
+                visits[room]++;
+                while (!target[room] && step < maxSteps) {
+                    int next = graph.step(room, random.nextInt(4), openDoorsOnly);
+                    if (next >= 0) {
+                        room = next;
+                    }
+                    step++;
+                    visits[room]++;
+                }
+                s.steps += step;
+                if (target[room]) {
+                    s.hits++;
+                    s.hitSteps += step;
+                    long low = step * step;
+                    s.squaresHigh += Math.multiplyHigh(step, step);
+                    s.squaresLow += low;
+                    if (Long.compareUnsigned(s.squaresLow, low) < 0) {
+                        s.squaresHigh++;
+                    }
+                    s.histogram[64 - Long.numberOfLeadingZeros(step)]++;
+                }
+            }
+        }
+
+        Result total() {
+            Result result = new Result(walkers, graph.size());
+            for (Stripe s : stripes) {
+                if (s == null) {
+                    continue;
+                }
+                for (int room = 0; room < s.visits.length; room++) {
+                    result.visits[room] += s.visits[room];
+                }
+                for (int b = 0; b < BINS; b++) {
+                    result.histogram[b] += s.histogram[b];
+                }
+                result.hits += s.hits;
+                result.hitSteps += s.hitSteps;
+                result.squaresHigh += s.squaresHigh;
+                result.squaresLow += s.squaresLow;
+                if (Long.compareUnsigned(result.squaresLow, s.squaresLow) < 0) {
+                    result.squaresHigh++;
+                }
+                result.steps += s.steps;
+            }
+            return result;
+        }
+
+        final class Lanes extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+
+            Lanes(final int from, final int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from == 1) {
+                    lane(from);
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new Lanes(from, middle), new Lanes(middle, to));
+            }
+        }
+    }
+
+    /**
+     * The counts of one run.
+     */
+    public static final class Result {
+        private final long walkers;
+        private final long[] visits;
+        private final long[] histogram = new long[BINS];
+        private long hits;
+        private long hitSteps;
+        private long squaresLow;
+        private long squaresHigh;
+        private long steps;
+
+        Result(final long walkers, final int rooms) {
+            this.walkers = walkers;
+            visits = new long[rooms];
+        }
+
+        public long getWalkers() {
+            return walkers;
+        }
+
+        /**
+         * Returns how many walkers reached a target.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Returns how many walkers ran out of steps first.
+         */
+        public long getCensored() {
+            return walkers - hits;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the mean steps to a target of the walkers that reached
+         * one, or NaN if none did.
+         */
+        public double getMeanHittingTime() {
+            return hits == 0 ? Double.NaN : (double) hitSteps / hits;
+        }
+
+        public double getHittingTimeDeviation() {
+            if (hits == 0) {
+                return Double.NaN;
+            }
+            double mean = getMeanHittingTime();
+            double squares = squaresHigh * 0x1p64 + (squaresLow >>> 1) * 2.0 + (squaresLow & 1);
+            return Math.sqrt(Math.max(0, squares / hits - mean * mean));
+        }
+
+        /**
+         * Returns the number of walkers whose hitting time fell in a bin;
+         * see {@link RandomWalks#BINS}.
+         */
+        public long getHistogram(final int bin) {
+            return histogram[bin];
+        }
+
+        /**
+         * Returns how many times walkers were in a room after a step,
+         * counting the start and steps that stayed put.
+         */
+        public long getVisits(final int room) {
+            return visits[room];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("walkers        %,d%n", walkers));
+            s.append(String.format("reached        %,d%n", hits));
+            s.append(String.format("ran out        %,d%n", getCensored()));
+            s.append(String.format("steps          %,d%n", steps));
+            s.append(String.format("hitting time   %,.1f +- %,.1f%n", getMeanHittingTime(),
+                    getHittingTimeDeviation()));
+            for (int b = 0; b < BINS; b++) {
+                if (histogram[b] != 0) {
+                    long low = b == 0 ? 0 : 1L << (b - 1);
+                    s.append(String.format("  %,14d+  %,d%n", low, histogram[b]));
+                }
+            }
+            return s.toString();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Result)) {
+                return false;
+            }
+            Result r = (Result) o;
+            return walkers == r.walkers && hits == r.hits && hitSteps == r.hitSteps && steps == r.steps
+                    && squaresLow == r.squaresLow && squaresHigh == r.squaresHigh
+                    && Arrays.equals(histogram, r.histogram) && Arrays.equals(visits, r.visits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(steps) * 31 + Long.hashCode(hitSteps);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        MazeFactory factory = new RedMazeFactory();
+        for (int i = 0; i < args.length; i++) {
+            if ("--theme".equals(args[i]) && i + 1 < args.length) {
+                factory = "blue".equals(args[++i]) ? new BlueMazeFactory() : new RedMazeFactory();
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("usage: RandomWalks <maze file> <target room> [walkers] [max steps] [seed] [threads]"
+                    + " [--theme red|blue]");
+            System.exit(2);
+        }
+        Maze maze = factory.loadMaze(positional.get(0));
+        MazeGraph graph = new MazeGraph(maze);
+        Room current = maze.getCurrentRoom();
+        int start = current == null ? 0 : graph.indexOf(current);
+        int target = graph.indexOf(Integer.parseInt(positional.get(1)));
+        if (target < 0) {
+            throw new IllegalArgumentException("no room " + positional.get(1));
+        }
+        long walkers = positional.size() > 2 ? Long.parseLong(positional.get(2)) : 100_000;
+        long maxSteps = positional.size() > 3 ? Long.parseLong(positional.get(3)) : 1_000_000;
+        long seed = positional.size() > 4 ? Long.parseLong(positional.get(4)) : 1;
+        int threads = positional.size() > 5 ? Integer.parseInt(positional.get(5))
+                : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long begin = System.nanoTime();
+        Result result = new RandomWalks(graph, false).run(start, new int[] { target }, walkers, maxSteps, seed,
+                pool);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        pool.shutdown();
+        System.out.print(result);
+        System.out.printf("steps/sec      %,.0f%n", result.getSteps() / seconds);
+    }
+}
@@ -0,0 +1,231 @@
+package maze.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import maze.BlueMazeFactory;
+import maze.Direction;
+import maze.Door;
+import maze.EventSink;
+import maze.MapSite;
+import maze.Maze;
+import maze.MazeFactory;
+import maze.RedMazeFactory;
+import maze.Room;
+import maze.solve.JunctionGraph;
+import maze.solve.JunctionSearch;
+import maze.solve.MazeGraph;
+import maze.solve.Route;
+
+/**
+ * Plays a maze without a window. Each move does what {@code MazeViewer}
+ * does for a key press: a room on that side of the current room is
+ * stepped into and entered once; a door or wall is entered, and an open
+ * door, which entering opens, leads on into the room beyond, which is then
+ * entered. Listeners fire as in the game, once per site; the
+ * console messages go to whatever {@link EventSink} is installed.
+ * <p>
+ * Usage: {@code Simulator <maze file> [--theme red|blue] [--moves n]
+ * [--seed s] [--script NSEW...|@file] [--goal room] [--sink none|console]}.
+ * Without a script the moves are random. A script is repeated until
+ * {@code --moves} moves are made, by default once through. With
+ * {@code --goal} the script is a shortest route to that room, found on the
+ * maze's {@link JunctionGraph}. The sink defaults to {@code none}.
+ */
+public class Simulator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private Room current;
+    private long moves;
+    private long roomChanges;
+    private long wallHits;
+    private long doorOpenings;
+
+    public Simulator(final Maze maze) {
+        this(maze.getCurrentRoom());
+    }
+
+    public Simulator(final Room start) {
+        if (start == null) {
+            throw new IllegalArgumentException("no start room");
+        }
+        current = start;
+    }
+
+    /**
+     * Makes one move and returns true if it led to another room.
+     */
+    public boolean move(final Direction dir) {
+        moves++;
+        MapSite site = current.getSide(dir);
+        if (site == null) {
+            return false;
+        }
+        Room next = null;
+        if (site instanceof Room) {
+            next = (Room) site;
+        } else if (site instanceof Door) {
+            Door door = (Door) site;
+            boolean wasClosed = !door.isOpen();
+            door.enter();
+            if (wasClosed && door.isOpen()) {
+                doorOpenings++;
+            }
+            if (door.isOpen()) {
+                next = door.getOtherSide(current);
+            }
+        } else {
+            site.enter();
+            wallHits++;
+        }
+        if (next == null) {
+            return false;
+        }
+        current = next;
+        current.enter();
+        roomChanges++;
+        return true;
+    }
+
+    /**
+     * Makes {@code count} moves in uniformly random directions.
+     */
+    public void random(final long count, final SplittableRandom random) {
+        for (long i = 0; i < count; i++) {
+            move(DIRECTIONS[random.nextInt(4)]);
+        }
+    }
+
+    /**
+     * Makes {@code count} moves, cycling through the script.
+     */
+    public void script(final Direction[] script, final long count) {
+        if (script.length == 0) {
+            return;
+        }
+        int next = 0;
+        for (long i = 0; i < count; i++) {
+            move(script[next]);
+            if (++next == script.length) {
+                next = 0;
+            }
+        }
+    }
+
+    /**
+     * Makes the moves of a route in order.
+     */
+    public void follow(final Route route) {
+        for (int i = 0; i < route.length(); i++) {
+            move(route.get(i));
+        }
+    }
+
+    /**
+     * Parses moves written as the letters N, S, E and W, in either case.
+     * Anything else except white space is an error.
+     */
+    public static Direction[] parseScript(final CharSequence text) {
+        Direction[] script = new Direction[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            switch (c) {
+            case 'N':
+                script[n++] = Direction.North;
+                break;
+            case 'S':
+                script[n++] = Direction.South;
+                break;
+            case 'E':
+                script[n++] = Direction.East;
+                break;
+            case 'W':
+                script[n++] = Direction.West;
+                break;
+            default:
+                if (!Character.isWhitespace(c)) {
+                    throw new IllegalArgumentException("bad move '" + text.charAt(i) + "' at " + i);
+                }
+            }
+        }
+        Direction[] trimmed = new Direction[n];
+        System.arraycopy(script, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    public Room getCurrentRoom() {
+        return current;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    public long getRoomChanges() {
+        return roomChanges;
+    }
+
+    public long getWallHits() {
+        return wallHits;
+    }
+
+    public long getDoorOpenings() {
+        return doorOpenings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 == 0) {
+            System.err.println("usage: Simulator <maze file> [--theme red|blue] [--moves n] [--seed s]"
+                    + " [--script NSEW...|@file] [--goal room] [--sink none|console]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        MazeFactory factory = "blue".equals(options.get("theme")) ? new BlueMazeFactory() : new RedMazeFactory();
+        MapSite.setEventSink("console".equals(options.get("sink")) ? EventSink.CONSOLE : EventSink.NONE);
+
+        Maze maze = factory.loadMaze(args[0]);
+        Simulator simulator = new Simulator(maze);
+        long start = System.nanoTime();
+        String script = options.get("script");
+        String goal = options.get("goal");
+        if (goal != null) {
+            MazeGraph graph = new MazeGraph(maze);
+            Room to = maze.getRoom(Integer.parseInt(goal));
+            if (to == null) {
+                throw new IllegalArgumentException("no room " + goal);
+            }
+            Route route = new Route();
+            if (!new JunctionSearch(new JunctionGraph(graph, false)).find(simulator.getCurrentRoom(), to, route)) {
+                throw new IllegalArgumentException("room " + goal + " cannot be reached");
+            }
+            simulator.follow(route);
+        } else if (script == null) {
+            long moves = Long.parseLong(options.getOrDefault("moves", "10000000"));
+            simulator.random(moves, new SplittableRandom(Long.parseLong(options.getOrDefault("seed", "1"))));
+        } else {
+            if (script.startsWith("@")) {
+                script = new String(Files.readAllBytes(Paths.get(script.substring(1))), StandardCharsets.US_ASCII);
+            }
+            Direction[] moves = parseScript(script);
+            simulator.script(moves, Long.parseLong(options.getOrDefault("moves", String.valueOf(moves.length))));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        maze.setCurrentRoom(simulator.getCurrentRoom());
+
+        System.out.printf("moves          %,d%n", simulator.getMoves());
+        System.out.printf("moves/sec      %,.0f%n", simulator.getMoves() / seconds);
+        System.out.printf("room changes   %,d%n", simulator.getRoomChanges());
+        System.out.printf("wall hits      %,d%n", simulator.getWallHits());
+        System.out.printf("door openings  %,d%n", simulator.getDoorOpenings());
+        System.out.printf("final room     %d%n", simulator.getCurrentRoom().getNumber());
+    }
+}
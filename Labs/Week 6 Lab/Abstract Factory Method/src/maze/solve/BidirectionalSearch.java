@@ -0,0 +1,137 @@
+package maze.solve;
+
+/**
+ * Breadth-first search from both ends at once, always growing the smaller
+ * frontier by one full level. Meets after exploring roughly the square root
+ * of what a one-sided search touches on open layouts.
+ * <p>
+ * The backward search follows links from the goal, so it relies on links
+ * being symmetric: if room A leads to B, B has a side leading back to A.
+ */
+public final class BidirectionalSearch extends PathFinder {
+    private final int[] forwardQueue;
+    private final int[] backwardQueue;
+    private final int[] forwardParent;
+    private final int[] backwardParent;
+    private final int[] forwardDistance;
+    private final int[] backwardDistance;
+    private final byte[] forwardVia;
+    private final byte[] backwardVia;
+    private final Marks forwardSeen;
+    private final Marks backwardSeen;
+
+    public BidirectionalSearch(final MazeGraph graph, final boolean openDoorsOnly) {
+        super(graph, openDoorsOnly);
+        int n = graph.size();
+        forwardQueue = new int[n];
+        backwardQueue = new int[n];
+        forwardParent = new int[n];
+        backwardParent = new int[n];
+        forwardDistance = new int[n];
+        backwardDistance = new int[n];
+        forwardVia = new byte[n];
+        backwardVia = new byte[n];
+        forwardSeen = new Marks(n);
+        backwardSeen = new Marks(n);
+    }
+
+    @Override
+    public boolean find(final int from, final int to, final Route route) {
+        if (from == to) {
+            route.clear();
+            return true;
+        }
+        forwardSeen.clear();
+        backwardSeen.clear();
+        forwardSeen.add(from);
+        backwardSeen.add(to);
+        forwardDistance[from] = 0;
+        backwardDistance[to] = 0;
+        forwardQueue[0] = from;
+        backwardQueue[0] = to;
+        int forwardHead = 0;
+        int forwardTail = 1;
+        int backwardHead = 0;
+        int backwardTail = 1;
+        int meet = -1;
+        int best = Integer.MAX_VALUE;
+
+        while (meet < 0 && forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                while (forwardHead < levelEnd) {
+                    int room = forwardQueue[forwardHead++];
+                    for (int dir = 0; dir < 4; dir++) {
+                        int next = step(room, dir);
+                        if (next < 0 || forwardSeen.contains(next)) {
+                            continue;
+                        }
+                        forwardSeen.add(next);
+                        forwardParent[next] = room;
+                        forwardVia[next] = (byte) dir;
+                        forwardDistance[next] = forwardDistance[room] + 1;
+                        forwardQueue[forwardTail++] = next;
+                        if (backwardSeen.contains(next)
+                                && forwardDistance[next] + backwardDistance[next] < best) {
+                            best = forwardDistance[next] + backwardDistance[next];
+                            meet = next;
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = backwardTail;
+                while (backwardHead < levelEnd) {
+                    int room = backwardQueue[backwardHead++];
+                    for (int dir = 0; dir < 4; dir++) {
+                        int next = step(room, dir);
+                        if (next < 0 || backwardSeen.contains(next)) {
+                            continue;
+                        }
+                        int back = backTo(next, room);
+                        if (back < 0) {
+                            continue;
+                        }
+                        backwardSeen.add(next);
+                        backwardParent[next] = room;
+                        backwardVia[next] = (byte) back;
+                        backwardDistance[next] = backwardDistance[room] + 1;
+                        backwardQueue[backwardTail++] = next;
+                        if (forwardSeen.contains(next)
+                                && forwardDistance[next] + backwardDistance[next] < best) {
+                            best = forwardDistance[next] + backwardDistance[next];
+                            meet = next;
+                        }
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            route.notFound();
+            return false;
+        }
+
+        int length = forwardDistance[meet] + backwardDistance[meet];
+        route.resize(length);
+        int i = forwardDistance[meet];
+        for (int r = meet; r != from; r = forwardParent[r]) {
+            route.set(--i, forwardVia[r]);
+        }
+        i = forwardDistance[meet];
+        for (int r = meet; r != to; r = backwardParent[r]) {
+            route.set(i++, backwardVia[r]);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the side of {@code room} that leads to {@code target}, or -1.
+     */
+    private int backTo(final int room, final int target) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (step(room, dir) == target) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+}
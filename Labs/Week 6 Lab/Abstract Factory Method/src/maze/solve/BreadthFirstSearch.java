@@ -0,0 +1,52 @@
+package maze.solve;
+
+/**
+ * Plain breadth-first search with a preallocated int queue.
+ */
+public final class BreadthFirstSearch extends PathFinder {
+    private final int[] queue;
+    private final int[] parent;
+    private final byte[] via;
+    private final Marks seen;
+
+    public BreadthFirstSearch(final MazeGraph graph, final boolean openDoorsOnly) {
+        super(graph, openDoorsOnly);
+        int n = graph.size();
+        queue = new int[n];
+        parent = new int[n];
+        via = new byte[n];
+        seen = new Marks(n);
+    }
+
+    @Override
+    public boolean find(final int from, final int to, final Route route) {
+        if (from == to) {
+            route.clear();
+            return true;
+        }
+        seen.clear();
+        seen.add(from);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int room = queue[head++];
+            for (int dir = 0; dir < 4; dir++) {
+                int next = step(room, dir);
+                if (next < 0 || seen.contains(next)) {
+                    continue;
+                }
+                seen.add(next);
+                parent[next] = room;
+                via[next] = (byte) dir;
+                if (next == to) {
+                    trace(from, to, parent, via, route);
+                    return true;
+                }
+                queue[tail++] = next;
+            }
+        }
+        route.notFound();
+        return false;
+    }
+}
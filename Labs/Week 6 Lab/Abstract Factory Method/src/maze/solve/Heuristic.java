@@ -0,0 +1,24 @@
+package maze.solve;
+
+/**
+ * An estimate of the number of moves between two rooms, by graph index.
+ * {@link AStarSearch} returns shortest routes as long as the estimate never
+ * exceeds the true distance.
+ */
+public interface Heuristic {
+    Heuristic NONE = (room, goal) -> 0;
+
+    int estimate(int room, int goal);
+
+    /**
+     * Manhattan distance for mazes whose rooms are numbered row by row,
+     * {@code width} to a row, and whose links only join grid neighbours.
+     */
+    static Heuristic grid(final MazeGraph graph, final int width) {
+        return (room, goal) -> {
+            int a = graph.numberOf(room);
+            int b = graph.numberOf(goal);
+            return Math.abs(a % width - b % width) + Math.abs(a / width - b / width);
+        };
+    }
+}
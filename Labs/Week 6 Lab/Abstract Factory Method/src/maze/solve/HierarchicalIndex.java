@@ -0,0 +1,486 @@
+package maze.solve;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+import maze.Door;
+import maze.EntryListener;
+import maze.io.NumberIndex;
+
+/**
+ * The abstract graph for hierarchical path finding over a
+ * {@link MazeGraph}, searched by {@link HierarchicalSearch}.
+ * <p>
+ * Rooms are split into clusters of about {@code clusterSize} rooms, grown
+ * breadth-first over every link so they follow the corridors whatever the
+ * numbering. A room with a link into another cluster is an entrance. For
+ * each cluster the index keeps the distance between every pair of its
+ * entrances, moving only inside the cluster; links between clusters are
+ * read live from the graph. Any shortest route is a chain of in-cluster
+ * runs between entrances joined by single moves across, so searching the
+ * entrances and then filling each run in finds routes as short as a flat
+ * search would. Links are taken to be two-way, as every builder in this
+ * project makes them.
+ * <p>
+ * With {@code openDoorsOnly} the distances depend on the doors inside each
+ * cluster. Report a door that opened or closed with
+ * {@link #doorChanged(Door)}, or let {@link #watchDoors()} hear doors being
+ * entered; only that door's cluster is dropped, and its distances are
+ * worked out again the next time a search reaches it. Doors between
+ * clusters need no report.
+ * <p>
+ * Distances are built in parallel on the common pool. The index is safe to
+ * share between threads, each with its own {@link HierarchicalSearch}.
+ */
+public final class HierarchicalIndex {
+    /**
+     * The default cluster size, which keeps the number of entrances per
+     * cluster, and so the pairs, small on grid mazes.
+     */
+    public static final int CLUSTER_SIZE = 1024;
+
+    final MazeGraph graph;
+    final boolean openDoorsOnly;
+    final int[] cluster;
+    final int[] local;
+    final int[] node;
+    final int[] nodeRoom;
+    final int[] nodeStart;
+    final int maxClusterSize;
+    private final int[] members;
+    private final int[] memberStart;
+    private final AtomicReferenceArray<int[]> distances;
+    private final AtomicIntegerArray versions;
+    private final NumberIndex doorIds = new NumberIndex();
+    private final int[] doorClusters;
+    private final Map<Door, Integer> unnumberedDoors = new IdentityHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final ThreadLocal<Local> work;
+    private final EntryListener doorListener = site -> doorChanged((Door) site);
+
+    public HierarchicalIndex(final MazeGraph graph, final boolean openDoorsOnly) {
+        this(graph, openDoorsOnly, CLUSTER_SIZE);
+    }
+
+    public HierarchicalIndex(final MazeGraph graph, final boolean openDoorsOnly, final int clusterSize) {
+        if (clusterSize < 1) {
+            throw new IllegalArgumentException("cluster size " + clusterSize);
+        }
+        this.graph = graph;
+        this.openDoorsOnly = openDoorsOnly;
+        int n = graph.size();
+        cluster = new int[n];
+        local = new int[n];
+        members = new int[n];
+        int clusters = partition(clusterSize);
+        memberStart = new int[clusters + 1];
+        int max = 0;
+        for (int c = 0, at = 0; c < clusters; c++) {
+            memberStart[c] = at;
+            while (at < n && cluster[members[at]] == c) {
+                at++;
+            }
+            max = Math.max(max, at - memberStart[c]);
+        }
+        memberStart[clusters] = n;
+        maxClusterSize = max;
+
+        node = new int[n];
+        Arrays.fill(node, -1);
+        nodeStart = new int[clusters + 1];
+        int nodes = 0;
+        for (int c = 0; c < clusters; c++) {
+            nodeStart[c] = nodes;
+            for (int i = memberStart[c]; i < memberStart[c + 1]; i++) {
+                if (isEntrance(members[i])) {
+                    node[members[i]] = nodes++;
+                }
+            }
+        }
+        nodeStart[clusters] = nodes;
+        nodeRoom = new int[nodes];
+        for (int room = 0; room < n; room++) {
+            if (node[room] >= 0) {
+                nodeRoom[node[room]] = room;
+            }
+        }
+        doorClusters = openDoorsOnly ? indexDoors() : new int[0];
+
+        distances = new AtomicReferenceArray<>(clusters);
+        versions = new AtomicIntegerArray(clusters);
+        work = ThreadLocal.withInitial(() -> new Local(this));
+        IntStream.range(0, clusters).parallel().forEach(c -> distances.set(c, compute(c)));
+    }
+
+    /**
+     * Grows clusters breadth-first from the lowest unassigned room, merges
+     * the small ones left between them into their neighbours, lists the rooms of
+     * each cluster together in {@code members} and returns how many there
+     * are.
+     */
+    private int partition(final int clusterSize) {
+        int n = graph.size();
+        Arrays.fill(cluster, -1);
+        int[] sizes = new int[16];
+        int clusters = 0;
+        int tail = 0;
+        for (int seed = 0; seed < n; seed++) {
+            if (cluster[seed] >= 0) {
+                continue;
+            }
+            int c = clusters++;
+            int head = tail;
+            int start = tail;
+            cluster[seed] = c;
+            members[tail++] = seed;
+            while (head < tail && tail - start < clusterSize) {
+                int room = members[head++];
+                for (int dir = 0; dir < 4 && tail - start < clusterSize; dir++) {
+                    int next = graph.link(room, dir);
+                    if (next >= 0 && cluster[next] < 0) {
+                        cluster[next] = c;
+                        members[tail++] = next;
+                    }
+                }
+            }
+            if (c == sizes.length) {
+                sizes = Arrays.copyOf(sizes, c * 2);
+            }
+            sizes[c] = tail - start;
+        }
+
+        // Clusters hemmed in by their elders come out small; each round, a
+        // cluster under half the size joins its smallest neighbour, as long
+        // as that stays within twice the size.
+        int[] merged = new int[clusters];
+        int[] best = new int[clusters];
+        for (int c = 0; c < clusters; c++) {
+            merged[c] = c;
+        }
+        for (boolean changed = true; changed;) {
+            changed = false;
+            Arrays.fill(best, -1);
+            for (int room = 0; room < n; room++) {
+                int a = root(merged, cluster[room]);
+                if (sizes[a] >= clusterSize / 2) {
+                    continue;
+                }
+                for (int dir = 0; dir < 4; dir++) {
+                    int next = graph.link(room, dir);
+                    if (next < 0) {
+                        continue;
+                    }
+                    int b = root(merged, cluster[next]);
+                    if (b != a && (best[a] < 0 || sizes[b] < sizes[best[a]])) {
+                        best[a] = b;
+                    }
+                }
+            }
+            for (int a = 0; a < clusters; a++) {
+                if (best[a] < 0 || merged[a] != a) {
+                    continue;
+                }
+                int b = root(merged, best[a]);
+                if (b != a && sizes[a] + sizes[b] <= 2 * clusterSize) {
+                    merged[a] = b;
+                    sizes[b] += sizes[a];
+                    changed = true;
+                }
+            }
+        }
+
+        // Number the surviving clusters and regroup the rooms by them.
+        int[] label = new int[clusters];
+        int count = 0;
+        for (int c = 0; c < clusters; c++) {
+            label[c] = root(merged, c) == c ? count++ : -1;
+        }
+        int[] start = new int[count + 1];
+        for (int room = 0; room < n; room++) {
+            cluster[room] = label[root(merged, cluster[room])];
+            start[cluster[room] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] fill = Arrays.copyOf(start, count);
+        for (int room = 0; room < n; room++) {
+            int c = cluster[room];
+            local[room] = fill[c] - start[c];
+            members[fill[c]++] = room;
+        }
+        return count;
+    }
+
+    private static int root(final int[] merged, int c) {
+        while (merged[c] != c) {
+            merged[c] = merged[merged[c]];
+            c = merged[c];
+        }
+        return c;
+    }
+
+    private boolean isEntrance(final int room) {
+        for (int dir = 0; dir < 4; dir++) {
+            int next = graph.link(room, dir);
+            if (next >= 0 && cluster[next] != cluster[room]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps each door inside a cluster to that cluster, by door id through
+     * {@link #doorIds} where the door has one.
+     */
+    private int[] indexDoors() {
+        int[] clusters = new int[16];
+        for (int room = 0; room < graph.size(); room++) {
+            for (int dir = 0; dir < 4; dir++) {
+                Door door = graph.doorAt(room, dir);
+                int next = graph.link(room, dir);
+                if (door == null || next < 0 || cluster[next] != cluster[room]) {
+                    continue;
+                }
+                if (door.getId() >= 0) {
+                    int i = doorIds.add(door.getId());
+                    if (i == clusters.length) {
+                        clusters = Arrays.copyOf(clusters, 2 * i);
+                    }
+                    clusters[i] = cluster[room];
+                } else {
+                    unnumberedDoors.put(door, cluster[room]);
+                }
+            }
+        }
+        return Arrays.copyOf(clusters, doorIds.size());
+    }
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isOpenDoorsOnly() {
+        return openDoorsOnly;
+    }
+
+    public int getClusterCount() {
+        return memberStart.length - 1;
+    }
+
+    public int getEntranceCount() {
+        return nodeRoom.length;
+    }
+
+    public int clusterOf(final int room) {
+        return cluster[room];
+    }
+
+    /**
+     * Returns the number of ints held for entrance distances, counting only
+     * clusters whose distances are current.
+     */
+    public long getDistanceCount() {
+        long count = 0;
+        for (int c = 0; c < getClusterCount(); c++) {
+            int[] d = distances.get(c);
+            count += d == null ? 0 : d.length;
+        }
+        return count;
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Returns how many times a dropped cluster's distances were worked out
+     * again.
+     */
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    /**
+     * Drops the distances of the cluster holding a door, if the door is
+     * inside one and doors matter. Call it after opening or closing a door.
+     */
+    public void doorChanged(final Door door) {
+        if (!openDoorsOnly) {
+            return;
+        }
+        int id = door.getId();
+        int c;
+        if (id >= 0) {
+            int i = doorIds.get(id);
+            c = i < 0 ? -1 : doorClusters[i];
+        } else {
+            Integer known = unnumberedDoors.get(door);
+            c = known == null ? -1 : known;
+        }
+        if (c >= 0) {
+            invalidate(c);
+        }
+    }
+
+    /**
+     * Drops a cluster's distances. The cluster's version goes up first, so
+     * that distances being worked out from the doors as they were are not
+     * kept.
+     */
+    public void invalidate(final int c) {
+        versions.incrementAndGet(c);
+        if (distances.getAndSet(c, null) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds an entry listener to every door inside a cluster, so doors opened
+     * by being entered are reported. Doors closed with
+     * {@link Door#setOpen(boolean)} still need {@link #doorChanged(Door)}.
+     */
+    public void watchDoors() {
+        if (!openDoorsOnly) {
+            return;
+        }
+        for (int room = 0; room < graph.size(); room++) {
+            for (int dir = 0; dir < 4; dir++) {
+                Door door = graph.doorAt(room, dir);
+                int next = graph.link(room, dir);
+                if (door != null && next > room && cluster[next] == cluster[room]) {
+                    door.removeEntryListener(doorListener);
+                    door.addEntryListener(doorListener);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entrance-to-entrance distances of a cluster, row by row,
+     * -1 where one cannot reach the other, working them out if dropped.
+     * <p>
+     * Distances worked out while the cluster is invalidated again are
+     * returned to this search but not kept: if the version moved once they
+     * are installed, they are taken out again. An {@link #invalidate(int)}
+     * that raced past that check clears them itself, since it drops the
+     * distances after raising the version.
+     */
+    int[] distances(final int c) {
+        int[] d = distances.get(c);
+        if (d == null) {
+            int version = versions.get(c);
+            d = compute(c);
+            rebuilds.incrementAndGet();
+            if (distances.compareAndSet(c, null, d) && versions.get(c) != version) {
+                distances.compareAndSet(c, d, null);
+            }
+        }
+        return d;
+    }
+
+    private int[] compute(final int c) {
+        int first = nodeStart[c];
+        int k = nodeStart[c + 1] - first;
+        int[] d = new int[k * k];
+        Local bfs = work.get();
+        for (int i = 0; i < k; i++) {
+            bfs.run(c, nodeRoom[first + i]);
+            for (int j = 0; j < k; j++) {
+                d[i * k + j] = bfs.distance(nodeRoom[first + j]);
+            }
+        }
+        return d;
+    }
+
+    /**
+     * A breadth-first search that stays inside one cluster, with work
+     * arrays indexed by a room's place in its cluster.
+     */
+    static final class Local {
+        private final HierarchicalIndex index;
+        private final int[] dist;
+        private final int[] parent;
+        private final byte[] via;
+        private final int[] queue;
+        private final int[] stamps;
+        private int stamp;
+        private int c = -1;
+
+        Local(final HierarchicalIndex index) {
+            this.index = index;
+            int size = index.maxClusterSize;
+            dist = new int[size];
+            parent = new int[size];
+            via = new byte[size];
+            queue = new int[size];
+            stamps = new int[size];
+        }
+
+        void run(final int c, final int from) {
+            run(c, from, -1);
+        }
+
+        /**
+         * Searches out from a room, stopping early once {@code target} is
+         * reached if it is not -1.
+         */
+        void run(final int c, final int from, final int target) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            this.c = c;
+            int[] cluster = index.cluster;
+            int[] local = index.local;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = from;
+            stamps[local[from]] = stamp;
+            dist[local[from]] = 0;
+            parent[local[from]] = -1;
+            while (head < tail) {
+                int room = queue[head++];
+                int next = dist[local[room]] + 1;
+                for (int dir = 0; dir < 4; dir++) {
+                    int neighbor = index.graph.step(room, dir, index.openDoorsOnly);
+                    if (neighbor < 0 || cluster[neighbor] != c || stamps[local[neighbor]] == stamp) {
+                        continue;
+                    }
+                    int at = local[neighbor];
+                    stamps[at] = stamp;
+                    dist[at] = next;
+                    parent[at] = room;
+                    via[at] = (byte) dir;
+                    if (neighbor == target) {
+                        return;
+                    }
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        /**
+         * Returns the distance from the last search's start, or -1 if the
+         * room is outside its cluster or was not reached.
+         */
+        int distance(final int room) {
+            return index.cluster[room] == c && stamps[index.local[room]] == stamp ? dist[index.local[room]] : -1;
+        }
+
+        int parent(final int room) {
+            return parent[index.local[room]];
+        }
+
+        int via(final int room) {
+            return via[index.local[room]];
+        }
+    }
+}
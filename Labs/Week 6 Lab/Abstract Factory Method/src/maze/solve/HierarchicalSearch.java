@@ -0,0 +1,190 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical A* over a {@link HierarchicalIndex}. A query searches the
+ * entrances of the clusters, joined to the start and goal by searches
+ * inside their own clusters, and then fills in the moves of each leg. Only
+ * the legs on the route are searched room by room, so a query touches a
+ * few clusters' worth of rooms however far apart the ends are.
+ * <p>
+ * Routes are as short as a flat search's. The heuristic, if given, is
+ * applied to the entrances' rooms and must not overestimate, as for
+ * {@link AStarSearch}.
+ */
+public final class HierarchicalSearch extends PathFinder {
+    private final HierarchicalIndex index;
+    private final Heuristic heuristic;
+    private final HierarchicalIndex.Local fromStart;
+    private final HierarchicalIndex.Local toGoal;
+    private final HierarchicalIndex.Local leg;
+    private final IntHeap open;
+    private final int[] cost;
+    private final int[] parent;
+    private final Marks seen;
+    private final Marks closed;
+    private int[] path = new int[64];
+
+    public HierarchicalSearch(final HierarchicalIndex index) {
+        this(index, Heuristic.NONE);
+    }
+
+    public HierarchicalSearch(final HierarchicalIndex index, final Heuristic heuristic) {
+        super(index.graph, index.openDoorsOnly);
+        this.index = index;
+        this.heuristic = heuristic;
+        fromStart = new HierarchicalIndex.Local(index);
+        toGoal = new HierarchicalIndex.Local(index);
+        leg = new HierarchicalIndex.Local(index);
+        int nodes = index.getEntranceCount() + 2;
+        open = new IntHeap(1024);
+        cost = new int[nodes];
+        parent = new int[nodes];
+        seen = new Marks(nodes);
+        closed = new Marks(nodes);
+    }
+
+    public HierarchicalIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean find(final int from, final int to, final Route route) {
+        if (from == to) {
+            route.clear();
+            return true;
+        }
+        int start = index.getEntranceCount();
+        int goal = start + 1;
+        int startCluster = index.cluster[from];
+        int goalCluster = index.cluster[to];
+        fromStart.run(startCluster, from);
+        toGoal.run(goalCluster, to);
+        open.clear();
+        seen.clear();
+        closed.clear();
+        seen.add(start);
+        cost[start] = 0;
+        open.push(key(heuristic.estimate(from, to), 0), start);
+        while (!open.isEmpty()) {
+            int u = open.pop();
+            if (closed.contains(u)) {
+                continue;
+            }
+            if (u == goal) {
+                trace(start, goal, from, to, route);
+                return true;
+            }
+            closed.add(u);
+            if (u == start) {
+                for (int v = index.nodeStart[startCluster]; v < index.nodeStart[startCluster + 1]; v++) {
+                    relax(u, v, fromStart.distance(index.nodeRoom[v]), to);
+                }
+                if (startCluster == goalCluster) {
+                    relax(u, goal, fromStart.distance(to), to);
+                }
+                continue;
+            }
+            int room = index.nodeRoom[u];
+            int c = index.cluster[room];
+            if (c == goalCluster) {
+                relax(u, goal, toGoal.distance(room), to);
+            }
+            int first = index.nodeStart[c];
+            int k = index.nodeStart[c + 1] - first;
+            int[] d = index.distances(c);
+            int row = (u - first) * k;
+            for (int j = 0; j < k; j++) {
+                if (d[row + j] > 0) {
+                    relax(u, first + j, d[row + j], to);
+                }
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int next = step(room, dir);
+                if (next >= 0 && index.cluster[next] != c) {
+                    relax(u, index.node[next], 1, to);
+                }
+            }
+        }
+        route.notFound();
+        return false;
+    }
+
+    private void relax(final int u, final int v, final int length, final int to) {
+        if (length < 0 || closed.contains(v)) {
+            return;
+        }
+        int next = cost[u] + length;
+        if (!seen.contains(v) || next < cost[v]) {
+            seen.add(v);
+            cost[v] = next;
+            parent[v] = u;
+            int estimate = v < index.getEntranceCount() ? heuristic.estimate(index.nodeRoom[v], to) : 0;
+            open.push(key(next + estimate, next), v);
+        }
+    }
+
+    private static long key(final int estimate, final int cost) {
+        return (long) estimate << 32 | (0xFFFFFFFFL - cost);
+    }
+
+    /**
+     * Turns the chain of entrances into rooms and fills in each leg: the
+     * first from the start's search, the last by walking the goal's search
+     * backwards, the ones between by a search inside their cluster, and
+     * single moves between clusters.
+     */
+    private void trace(final int start, final int goal, final int from, final int to, final Route route) {
+        int count = 0;
+        for (int v = goal; v != start; v = parent[v]) {
+            if (count == path.length) {
+                path = Arrays.copyOf(path, count * 2);
+            }
+            path[count++] = v;
+        }
+        route.resize(cost[goal]);
+        int at = 0;
+        int room = from;
+        for (int i = count - 1; i >= 0; i--) {
+            int v = path[i];
+            int next = v == goal ? to : index.nodeRoom[v];
+            if (v == goal) {
+                for (int r = room; r != to; r = toGoal.parent(r)) {
+                    route.set(at++, toGoal.via(r) ^ 1);
+                }
+            } else if (room == from && i == count - 1) {
+                at = fill(fromStart, from, next, route, at);
+            } else if (index.cluster[room] != index.cluster[next]) {
+                route.set(at++, directionTo(room, next));
+            } else {
+                leg.run(index.cluster[room], room, next);
+                at = fill(leg, room, next, route, at);
+            }
+            room = next;
+        }
+    }
+
+    /**
+     * Writes the moves of a search from {@code from} to {@code to} at
+     * {@code at} and returns the position after them.
+     */
+    private static int fill(final HierarchicalIndex.Local search, final int from, final int to, final Route route,
+            final int at) {
+        int end = at + search.distance(to);
+        int i = end;
+        for (int r = to; r != from; r = search.parent(r)) {
+            route.set(--i, search.via(r));
+        }
+        return end;
+    }
+
+    private int directionTo(final int room, final int next) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (step(room, dir) == next) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("rooms " + room + " and " + next + " are not linked");
+    }
+}
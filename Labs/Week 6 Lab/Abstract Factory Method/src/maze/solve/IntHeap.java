@@ -0,0 +1,73 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of room indices ordered by long keys. Entries are never
+ * updated in place; a room pushed again with a better key simply shadows
+ * the older entry, which the caller skips when popped. The arrays double
+ * when full, so a heap sized for the usual case stops growing once warm.
+ */
+final class IntHeap {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    IntHeap(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(final long key, final int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(16, size * 2));
+            values = Arrays.copyOf(values, keys.length);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Removes the entry with the smallest key and returns its room.
+     */
+    int pop() {
+        int top = values[0];
+        long key = keys[--size];
+        int value = values[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return top;
+    }
+}
@@ -0,0 +1,339 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+import maze.Direction;
+import maze.Room;
+
+/**
+ * A {@link MazeGraph} with its dead ends pruned and its corridors
+ * contracted, searched by {@link JunctionSearch}.
+ * <p>
+ * Dead ends are peeled off one room at a time until none is left; each
+ * pruned room keeps the next room towards the tree's anchor, the kept room
+ * the tree hangs from, so a route into or out of a dead end is a walk up
+ * its tree. What remains is made of junctions, rooms with other than two
+ * ways on, and corridors, runs of two-way rooms between junctions. Each
+ * corridor becomes one weighted edge and keeps its rooms in order, so a
+ * route on the junction graph maps back to rooms and moves. A loop with no
+ * junction on it gets one of its rooms made a junction.
+ * <p>
+ * The graph is built once for the doors as they are: with
+ * {@code openDoorsOnly} a closed door is a wall, and a door opened or
+ * closed afterwards needs a new graph. Links are taken to be two-way.
+ */
+public final class JunctionGraph {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    final MazeGraph graph;
+    final boolean openDoorsOnly;
+
+    final int[] parent;
+    final int[] depth;
+    final int[] anchor;
+
+    final int[] junction;
+    int[] junctionRoom = new int[64];
+    int junctionCount;
+
+    final int[] corridor;
+    final int[] position;
+    int[] corridorStart = new int[65];
+    int[] corridorRooms;
+    int corridorCount;
+
+    int[] adjacentStart;
+    int[] adjacent;
+
+    private final int keptRooms;
+
+    public JunctionGraph(final MazeGraph graph, final boolean openDoorsOnly) {
+        this.graph = graph;
+        this.openDoorsOnly = openDoorsOnly;
+        int n = graph.size();
+        parent = new int[n];
+        depth = new int[n];
+        anchor = new int[n];
+        keptRooms = prune();
+
+        junction = new int[n];
+        corridor = new int[n];
+        position = new int[n];
+        Arrays.fill(junction, -1);
+        Arrays.fill(corridor, -1);
+        corridorRooms = new int[Math.max(16, keptRooms + keptRooms / 4)];
+        for (int room = 0; room < n; room++) {
+            if (isKept(room) && keptDegree(room) != 2) {
+                addJunction(room);
+            }
+        }
+        for (int j = 0; j < junctionCount; j++) {
+            traceFrom(junctionRoom[j]);
+        }
+        for (int room = 0; room < n; room++) {
+            if (isKept(room) && junction[room] < 0 && corridor[room] < 0) {
+                // a loop of corridor rooms with no way off it
+                traceFrom(junctionRoom[addJunction(room)]);
+            }
+        }
+        link();
+    }
+
+    /**
+     * Peels dead ends, recording each pruned room's parent, depth and
+     * anchor, and returns how many rooms are kept.
+     */
+    private int prune() {
+        int n = graph.size();
+        int[] degree = new int[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int room = 0; room < n; room++) {
+            parent[room] = -1;
+            for (int dir = 0; dir < 4; dir++) {
+                if (step(room, dir) >= 0) {
+                    degree[room]++;
+                }
+            }
+            if (degree[room] == 1) {
+                queue[tail++] = room;
+            }
+        }
+        boolean[] pruned = new boolean[n];
+        int[] order = new int[n];
+        int removed = 0;
+        for (int head = 0; head < tail; head++) {
+            int room = queue[head];
+            if (pruned[room] || degree[room] != 1) {
+                continue;
+            }
+            int up = -1;
+            for (int dir = 0; dir < 4 && up < 0; dir++) {
+                int next = step(room, dir);
+                if (next >= 0 && !pruned[next]) {
+                    up = next;
+                }
+            }
+            pruned[room] = true;
+            parent[room] = up;
+            order[removed++] = room;
+            if (--degree[up] == 1) {
+                queue[tail++] = up;
+            }
+        }
+        // the last room of a tree is left with no way on and is kept
+        for (int room = 0; room < n; room++) {
+            anchor[room] = room;
+        }
+        for (int i = removed - 1; i >= 0; i--) {
+            int room = order[i];
+            int up = parent[room];
+            depth[room] = depth[up] + 1;
+            anchor[room] = anchor[up];
+        }
+        int kept = 0;
+        for (int room = 0; room < n; room++) {
+            if (parent[room] < 0) {
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private int step(final int room, final int dir) {
+        return graph.step(room, dir, openDoorsOnly);
+    }
+
+    boolean isKept(final int room) {
+        return parent[room] < 0;
+    }
+
+    private int keptDegree(final int room) {
+        int degree = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            int next = step(room, dir);
+            if (next >= 0 && isKept(next)) {
+                degree++;
+            }
+        }
+        return degree;
+    }
+
+    private int addJunction(final int room) {
+        if (junctionCount == junctionRoom.length) {
+            junctionRoom = Arrays.copyOf(junctionRoom, junctionCount * 2);
+        }
+        junction[room] = junctionCount;
+        junctionRoom[junctionCount] = room;
+        return junctionCount++;
+    }
+
+    /**
+     * Follows every corridor leaving a junction that has not been followed
+     * from its other end.
+     */
+    private void traceFrom(final int start) {
+        for (int dir = 0; dir < 4; dir++) {
+            int next = step(start, dir);
+            if (next < 0 || !isKept(next) || corridor[next] >= 0) {
+                continue;
+            }
+            if (junction[next] >= 0 && next < start) {
+                continue;
+            }
+            int id = corridorCount;
+            int at = corridorStart[id];
+            at = put(at, start);
+            int previous = start;
+            int room = next;
+            while (junction[room] < 0) {
+                corridor[room] = id;
+                position[room] = at - corridorStart[id];
+                at = put(at, room);
+                int forward = -1;
+                for (int d = 0; d < 4; d++) {
+                    int n = step(room, d);
+                    if (n >= 0 && isKept(n) && n != previous) {
+                        forward = n;
+                        break;
+                    }
+                }
+                if (forward < 0) {
+                    // both ways lead back to the same room
+                    forward = previous;
+                }
+                previous = room;
+                room = forward;
+            }
+            at = put(at, room);
+            if (corridorCount + 2 > corridorStart.length) {
+                corridorStart = Arrays.copyOf(corridorStart, corridorStart.length * 2);
+            }
+            corridorStart[++corridorCount] = at;
+        }
+    }
+
+    private int put(final int at, final int room) {
+        if (at == corridorRooms.length) {
+            corridorRooms = Arrays.copyOf(corridorRooms, at * 2);
+        }
+        corridorRooms[at] = room;
+        return at + 1;
+    }
+
+    /**
+     * Lists each junction's corridors, compressed: corridor {@code c} shows
+     * up as {@code c} at its first end and {@code ~c} at its last.
+     */
+    private void link() {
+        adjacentStart = new int[junctionCount + 1];
+        for (int c = 0; c < corridorCount; c++) {
+            int a = junction[first(c)];
+            int b = junction[last(c)];
+            if (a != b) {
+                adjacentStart[a + 1]++;
+                adjacentStart[b + 1]++;
+            }
+        }
+        for (int j = 0; j < junctionCount; j++) {
+            adjacentStart[j + 1] += adjacentStart[j];
+        }
+        adjacent = new int[adjacentStart[junctionCount]];
+        int[] fill = Arrays.copyOf(adjacentStart, junctionCount);
+        for (int c = 0; c < corridorCount; c++) {
+            int a = junction[first(c)];
+            int b = junction[last(c)];
+            if (a != b) {
+                adjacent[fill[a]++] = c;
+                adjacent[fill[b]++] = ~c;
+            }
+        }
+    }
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isOpenDoorsOnly() {
+        return openDoorsOnly;
+    }
+
+    public int getRoomCount() {
+        return graph.size();
+    }
+
+    /**
+     * Returns the number of rooms left after pruning dead ends.
+     */
+    public int getKeptRoomCount() {
+        return keptRooms;
+    }
+
+    public int getJunctionCount() {
+        return junctionCount;
+    }
+
+    public int getCorridorCount() {
+        return corridorCount;
+    }
+
+    /**
+     * Returns the room index of a junction.
+     */
+    public int junctionRoom(final int j) {
+        return junctionRoom[j];
+    }
+
+    /**
+     * Returns the number of moves along a corridor from end to end.
+     */
+    public int length(final int c) {
+        return corridorStart[c + 1] - corridorStart[c] - 1;
+    }
+
+    int first(final int c) {
+        return corridorRooms[corridorStart[c]];
+    }
+
+    int last(final int c) {
+        return corridorRooms[corridorStart[c + 1] - 1];
+    }
+
+    int roomOf(final int c, final int i) {
+        return corridorRooms[corridorStart[c] + i];
+    }
+
+    /**
+     * Returns the rooms of a corridor, junctions at both ends included.
+     */
+    public Room[] rooms(final int c) {
+        Room[] rooms = new Room[length(c) + 1];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = graph.roomAt(roomOf(c, i));
+        }
+        return rooms;
+    }
+
+    /**
+     * Returns the moves that walk a corridor from its first end to its last.
+     */
+    public Direction[] moves(final int c) {
+        Direction[] moves = new Direction[length(c)];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = DIRECTIONS[direction(roomOf(c, i), roomOf(c, i + 1))];
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the direction that leads from a room to a linked one.
+     */
+    int direction(final int room, final int next) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (step(room, dir) == next) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("rooms " + room + " and " + next + " are not linked");
+    }
+}
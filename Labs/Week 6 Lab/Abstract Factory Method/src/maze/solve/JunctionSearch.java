@@ -0,0 +1,218 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra's search over a {@link JunctionGraph}. The ends of a query are
+ * first walked up out of their dead ends; an end inside a corridor joins
+ * the search at both of the corridor's junctions. The corridors on the
+ * route are then walked room by room to write its moves, so routes are as
+ * short as a flat search's while only junctions are searched.
+ */
+public final class JunctionSearch extends PathFinder {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int FROM_FIRST = Integer.MIN_VALUE;
+    private static final int FROM_LAST = Integer.MIN_VALUE + 1;
+
+    private final JunctionGraph junctions;
+    private final IntHeap open;
+    private final int[] cost;
+    private final int[] parent;
+    private final Marks seen;
+    private final Marks closed;
+    private int[] path = new int[64];
+    private int length;
+
+    public JunctionSearch(final JunctionGraph junctions) {
+        super(junctions.graph, junctions.openDoorsOnly);
+        this.junctions = junctions;
+        int n = junctions.getJunctionCount();
+        open = new IntHeap(1024);
+        cost = new int[n];
+        parent = new int[n];
+        seen = new Marks(n);
+        closed = new Marks(n);
+    }
+
+    public JunctionGraph getJunctions() {
+        return junctions;
+    }
+
+    @Override
+    public boolean find(final int from, final int to, final Route route) {
+        JunctionGraph g = junctions;
+        int s = g.anchor[from];
+        int t = g.anchor[to];
+        length = 0;
+        add(from);
+        if (s == t) {
+            // both ends hang off the same kept room: meet in the tree
+            int a = from;
+            int b = to;
+            while (g.depth[a] > g.depth[b]) {
+                a = g.parent[a];
+            }
+            while (g.depth[b] > g.depth[a]) {
+                b = g.parent[b];
+            }
+            while (a != b) {
+                a = g.parent[a];
+                b = g.parent[b];
+            }
+            climb(from, a);
+            descend(to, a);
+            write(route);
+            return true;
+        }
+
+        int sc = g.corridor[s];
+        int tc = g.corridor[t];
+        int sp = g.position[s];
+        int tp = g.position[t];
+        int best = sc >= 0 && sc == tc ? Math.abs(sp - tp) : INFINITY;
+        int bestJunction = -1;
+
+        open.clear();
+        seen.clear();
+        closed.clear();
+        if (sc < 0) {
+            seed(g.junction[s], 0, FROM_FIRST);
+        } else {
+            seed(g.junction[g.first(sc)], sp, FROM_FIRST);
+            seed(g.junction[g.last(sc)], g.length(sc) - sp, FROM_LAST);
+        }
+        int goalFirst = tc < 0 ? g.junction[t] : g.junction[g.first(tc)];
+        int goalLast = tc < 0 ? -1 : g.junction[g.last(tc)];
+        int toFirst = tc < 0 ? 0 : tp;
+        int toLast = tc < 0 ? 0 : g.length(tc) - tp;
+        boolean goalFromLast = false;
+        while (!open.isEmpty()) {
+            int j = open.pop();
+            if (closed.contains(j)) {
+                continue;
+            }
+            int c = cost[j];
+            if (c >= best) {
+                break;
+            }
+            closed.add(j);
+            if (j == goalFirst && c + toFirst < best) {
+                best = c + toFirst;
+                bestJunction = j;
+                goalFromLast = false;
+            }
+            if (j == goalLast && c + toLast < best) {
+                best = c + toLast;
+                bestJunction = j;
+                goalFromLast = true;
+            }
+            for (int i = g.adjacentStart[j]; i < g.adjacentStart[j + 1]; i++) {
+                int e = g.adjacent[i];
+                int corridor = e >= 0 ? e : ~e;
+                int next = g.junction[e >= 0 ? g.last(corridor) : g.first(corridor)];
+                int through = c + g.length(corridor);
+                if (!closed.contains(next) && (!seen.contains(next) || through < cost[next])) {
+                    seen.add(next);
+                    cost[next] = through;
+                    parent[next] = e;
+                    open.push(through, next);
+                }
+            }
+        }
+        if (best == INFINITY) {
+            route.notFound();
+            return false;
+        }
+
+        climb(from, s);
+        if (bestJunction < 0) {
+            walk(sc, sp, tp);
+        } else {
+            int j = bestJunction;
+            while (parent[j] != FROM_FIRST && parent[j] != FROM_LAST) {
+                int e = parent[j];
+                j = g.junction[e >= 0 ? g.first(e) : g.last(~e)];
+            }
+            if (sc >= 0) {
+                walk(sc, sp, parent[j] == FROM_FIRST ? 0 : g.length(sc));
+            }
+            // lay the corridors down from the goal end back to the start
+            // junction, drop that, since it is already on the path, and
+            // turn the run round
+            int mark = length;
+            add(g.junctionRoom[bestJunction]);
+            for (j = bestJunction; parent[j] != FROM_FIRST && parent[j] != FROM_LAST;) {
+                int e = parent[j];
+                int corridor = e >= 0 ? e : ~e;
+                walk(corridor, e >= 0 ? g.length(corridor) : 0, e >= 0 ? 0 : g.length(corridor));
+                j = g.junction[e >= 0 ? g.first(corridor) : g.last(corridor)];
+            }
+            length--;
+            reverse(mark, length - 1);
+            if (tc >= 0) {
+                walk(tc, goalFromLast ? g.length(tc) : 0, tp);
+            }
+        }
+        descend(to, t);
+        write(route);
+        return true;
+    }
+
+    private void seed(final int j, final int c, final int side) {
+        if (!seen.contains(j) || c < cost[j]) {
+            seen.add(j);
+            cost[j] = c;
+            parent[j] = side;
+            open.push(c, j);
+        }
+    }
+
+    private void add(final int room) {
+        if (length == path.length) {
+            path = Arrays.copyOf(path, length * 2);
+        }
+        path[length++] = room;
+    }
+
+    /**
+     * Adds the rooms of a corridor after position {@code i} up to and
+     * including position {@code k}, in whichever direction that is.
+     */
+    private void walk(final int corridor, final int i, final int k) {
+        int d = k > i ? 1 : -1;
+        for (int p = i; p != k;) {
+            p += d;
+            add(junctions.roomOf(corridor, p));
+        }
+    }
+
+    private void climb(final int from, final int top) {
+        for (int r = from; r != top;) {
+            r = junctions.parent[r];
+            add(r);
+        }
+    }
+
+    private void descend(final int to, final int top) {
+        int mark = length;
+        for (int r = to; r != top; r = junctions.parent[r]) {
+            add(r);
+        }
+        reverse(mark, length - 1);
+    }
+
+    private void reverse(int i, int k) {
+        while (i < k) {
+            int room = path[i];
+            path[i++] = path[k];
+            path[k--] = room;
+        }
+    }
+
+    private void write(final Route route) {
+        route.resize(length - 1);
+        for (int i = 0; i + 1 < length; i++) {
+            route.set(i, junctions.direction(path[i], path[i + 1]));
+        }
+    }
+}
@@ -0,0 +1,720 @@
+package maze.solve;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import maze.Door;
+import maze.Maze;
+import maze.io.NumberIndex;
+
+/**
+ * Distance bounds between rooms from a few landmark rooms' exact distances.
+ * <p>
+ * For a landmark {@code L}, the triangle inequality gives
+ * {@code |d(L,a) - d(L,b)| <= d(a,b) <= d(L,a) + d(L,b)}; taking the best
+ * over all landmarks answers {@link #lowerBound(int, int)} and
+ * {@link #upperBound(int, int)} in time proportional to their number, and
+ * the lower bound makes an A* {@link #heuristic()}. A room that is itself a
+ * landmark, an exit say, has exact distances from every room in
+ * {@link #distance(int, int)}.
+ * <p>
+ * Distances are kept room by room, so a query reads two short runs: as
+ * {@code char}s, two bytes per room per landmark, unless some distance does
+ * not fit, then as {@code int}s. Each landmark's distances come from one
+ * breadth-first search; landmarks given by the caller are searched in
+ * parallel. {@link #select(MazeGraph, int, boolean)} picks landmarks far
+ * from each other instead, each the room furthest from those before it,
+ * which needs the searches one after another.
+ * <p>
+ * With {@code openDoorsOnly}, report each door that opens or closes to
+ * {@link #doorChanged(Door)}. A door that opens is worked into the
+ * distances at once, touching only rooms that come closer. A door that
+ * closes is too, touching only rooms whose every shortest path from the
+ * landmark went through it; if that is more than {@link #REPAIR_LIMIT} of
+ * the maze, the landmark is made stale instead. A stale landmark is left
+ * out of bounds, which stay correct, until {@link #refresh()} searches
+ * again from all stale landmarks in parallel. Updates must not run while
+ * other threads query. The distances can be saved with {@link #write(Path)}
+ * and loaded back for the same maze with {@link #read(Path, MazeGraph)}.
+ */
+public final class LandmarkOracle {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * The most {@link #heuristic()} returns, so A* sums cannot overflow.
+     */
+    static final int MAX_ESTIMATE = 1 << 30;
+
+    /**
+     * The share of the rooms a closed door may set back before repairing
+     * its landmark costs more than searching from it again. Up to 64 rooms
+     * are always repaired.
+     */
+    public static final double REPAIR_LIMIT = 1.0 / 16;
+
+    /**
+     * The file format. All values are little-endian:
+     * <pre>
+     * header     "MAZL" version rooms landmarks flags 0 0 0    (32 bytes)
+     * landmarks  room index                                   (4 bytes each)
+     * distances  room by room, landmark by landmark           (2 or 4 bytes each)
+     * </pre>
+     * Flag {@link #FLAG_OPEN_DOORS_ONLY} records how doors were taken and
+     * {@link #FLAG_WIDE} that distances are ints rather than chars.
+     */
+    static final int MAGIC = 'M' | 'A' << 8 | 'Z' << 16 | 'L' << 24;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int FLAG_OPEN_DOORS_ONLY = 1;
+    static final int FLAG_WIDE = 2;
+
+    private static final char NARROW_UNREACHABLE = 0xFFFF;
+
+    private final MazeGraph graph;
+    private final boolean openDoorsOnly;
+    private final int[] landmarks;
+    private final int k;
+    private char[] narrow;
+    private int[] wide;
+    private final boolean[] stale;
+    private int staleCount;
+    private int[] queue;
+    private Marks affected;
+    private Marks settled;
+    private IntHeap heap;
+    private final NumberIndex doorIds = new NumberIndex();
+    private int[] doorSlots;
+    private final Map<Door, Integer> unnumberedDoors = new IdentityHashMap<>();
+
+    private LandmarkOracle(final MazeGraph graph, final boolean openDoorsOnly, final int[] landmarks) {
+        this.graph = graph;
+        this.openDoorsOnly = openDoorsOnly;
+        this.landmarks = landmarks.clone();
+        k = landmarks.length;
+        for (int room : landmarks) {
+            if (room < 0 || room >= graph.size()) {
+                throw new IllegalArgumentException("no room at index " + room);
+            }
+        }
+        stale = new boolean[k];
+        if (openDoorsOnly) {
+            indexDoors();
+        }
+    }
+
+    /**
+     * Builds an oracle with the given rooms, by graph index, as landmarks.
+     */
+    public static LandmarkOracle of(final MazeGraph graph, final boolean openDoorsOnly, final int... landmarks) {
+        LandmarkOracle oracle = new LandmarkOracle(graph, openDoorsOnly, landmarks);
+        oracle.narrow = new char[graph.size() * oracle.k];
+        Arrays.fill(oracle.stale, true);
+        oracle.staleCount = oracle.k;
+        oracle.refresh();
+        return oracle;
+    }
+
+    /**
+     * Builds an oracle with {@code k} landmarks spread over a maze, doors
+     * passable.
+     */
+    public static LandmarkOracle of(final Maze maze, final int k) {
+        return select(new MazeGraph(maze), k, false);
+    }
+
+    /**
+     * Builds an oracle with {@code k} landmarks picked farthest first. The
+     * first is the room furthest from a start in the largest part of the
+     * maze found by searching from rooms in turn until one reaches half of
+     * it; rooms no landmark can reach are passed over.
+     */
+    public static LandmarkOracle select(final MazeGraph graph, final int k, final boolean openDoorsOnly) {
+        if (k <= 0 || k > graph.size()) {
+            throw new IllegalArgumentException("cannot pick " + k + " landmarks from " + graph.size() + " rooms");
+        }
+        int n = graph.size();
+        int[] nearest = new int[n];
+        int[] queue = new int[n];
+        boolean[] seen = new boolean[n];
+        int start = 0;
+        int reach = 0;
+        for (int room = 0; room < n && reach < n / 2; room++) {
+            if (!seen[room]) {
+                int found = reachable(graph, openDoorsOnly, room, seen, queue);
+                if (found > reach) {
+                    reach = found;
+                    start = room;
+                }
+            }
+        }
+        LandmarkOracle oracle = new LandmarkOracle(graph, openDoorsOnly, new int[k]);
+        oracle.narrow = new char[n * k];
+        Arrays.fill(nearest, UNREACHABLE);
+        // a search from the start finds the first landmark, then each one
+        // found is searched from to find the next
+        oracle.landmarks[0] = start;
+        oracle.searchFitting(0, queue);
+        oracle.landmarks[0] = oracle.farthest(0, nearest, false);
+        for (int l = 0; l < k; l++) {
+            oracle.searchFitting(l, queue);
+            if (l + 1 < k) {
+                oracle.landmarks[l + 1] = oracle.farthest(l, nearest, true);
+            }
+        }
+        return oracle;
+    }
+
+    private static int reachable(final MazeGraph graph, final boolean openDoorsOnly, final int from,
+            final boolean[] seen, final int[] queue) {
+        seen[from] = true;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int room = queue[head++];
+            for (int dir = 0; dir < 4; dir++) {
+                int next = graph.step(room, dir, openDoorsOnly);
+                if (next >= 0 && !seen[next]) {
+                    seen[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Returns the reachable room furthest from landmark {@code l} or, with
+     * {@code fold}, from every landmark up to {@code l}, folding {@code l}'s
+     * distances into {@code nearest}.
+     */
+    private int farthest(final int l, final int[] nearest, final boolean fold) {
+        int best = landmarks[l];
+        int bestDistance = -1;
+        for (int room = 0; room < nearest.length; room++) {
+            int d = get(room, l);
+            if (!fold) {
+                if (d != UNREACHABLE && d > bestDistance) {
+                    bestDistance = d;
+                    best = room;
+                }
+                continue;
+            }
+            if (d < nearest[room]) {
+                nearest[room] = d;
+            }
+            if (nearest[room] != UNREACHABLE && nearest[room] > bestDistance) {
+                bestDistance = nearest[room];
+                best = room;
+            }
+        }
+        return best;
+    }
+
+    private void indexDoors() {
+        doorSlots = new int[16];
+        for (int room = 0; room < graph.size(); room++) {
+            for (int dir = 0; dir < 4; dir++) {
+                Door door = graph.doorAt(room, dir);
+                if (door == null || graph.link(room, dir) < 0) {
+                    continue;
+                }
+                if (door.getId() >= 0) {
+                    int i = doorIds.add(door.getId());
+                    if (i == doorSlots.length) {
+                        doorSlots = Arrays.copyOf(doorSlots, 2 * i);
+                    }
+                    doorSlots[i] = 4 * room + dir;
+                } else {
+                    unnumberedDoors.put(door, 4 * room + dir);
+                }
+            }
+        }
+    }
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isOpenDoorsOnly() {
+        return openDoorsOnly;
+    }
+
+    public int getLandmarkCount() {
+        return k;
+    }
+
+    /**
+     * Returns the graph index of a landmark.
+     */
+    public int landmarkRoom(final int l) {
+        return landmarks[l];
+    }
+
+    public boolean isStale(final int l) {
+        return stale[l];
+    }
+
+    public int getStaleCount() {
+        return staleCount;
+    }
+
+    /**
+     * Returns the number of bytes held for distances.
+     */
+    public long getDistanceBytes() {
+        return narrow != null ? 2L * narrow.length : 4L * wide.length;
+    }
+
+    /**
+     * Returns the exact distance from landmark {@code l} to a room, or
+     * {@link #UNREACHABLE}. A stale landmark's distances may be out of date.
+     */
+    public int distance(final int l, final int room) {
+        return get(room, l);
+    }
+
+    private int get(final int room, final int l) {
+        if (narrow != null) {
+            char d = narrow[room * k + l];
+            return d == NARROW_UNREACHABLE ? UNREACHABLE : d;
+        }
+        int d = wide[room * k + l];
+        return d < 0 ? UNREACHABLE : d;
+    }
+
+    private void set(final int room, final int l, final int d) {
+        if (narrow != null) {
+            narrow[room * k + l] = d == UNREACHABLE ? NARROW_UNREACHABLE : (char) d;
+        } else {
+            wide[room * k + l] = d == UNREACHABLE ? -1 : d;
+        }
+    }
+
+    /**
+     * Returns a number of moves no greater than the distance between two
+     * rooms, or {@link #UNREACHABLE} if some landmark shows they are not
+     * joined.
+     */
+    public int lowerBound(final int from, final int to) {
+        if (from == to) {
+            return 0;
+        }
+        int a = from * k;
+        int b = to * k;
+        int best = 0;
+        if (narrow != null) {
+            for (int l = 0; l < k; l++) {
+                int da = narrow[a + l];
+                int db = narrow[b + l];
+                if (stale[l] || da == db) {
+                    continue;
+                }
+                if (da == NARROW_UNREACHABLE || db == NARROW_UNREACHABLE) {
+                    return UNREACHABLE;
+                }
+                best = Math.max(best, Math.abs(da - db));
+            }
+        } else {
+            for (int l = 0; l < k; l++) {
+                int da = wide[a + l];
+                int db = wide[b + l];
+                if (stale[l] || da == db) {
+                    continue;
+                }
+                if (da < 0 || db < 0) {
+                    return UNREACHABLE;
+                }
+                best = Math.max(best, Math.abs(da - db));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a number of moves no less than the distance between two
+     * rooms, or {@link #UNREACHABLE} if no landmark reaches both.
+     */
+    public int upperBound(final int from, final int to) {
+        if (from == to) {
+            return 0;
+        }
+        long best = UNREACHABLE;
+        for (int l = 0; l < k; l++) {
+            if (stale[l]) {
+                continue;
+            }
+            int da = get(from, l);
+            int db = get(to, l);
+            if (da != UNREACHABLE && db != UNREACHABLE) {
+                best = Math.min(best, (long) da + db);
+            }
+        }
+        return (int) best;
+    }
+
+    /**
+     * Returns the landmark lower bound as an A* heuristic.
+     */
+    public Heuristic heuristic() {
+        return (room, goal) -> Math.min(lowerBound(room, goal), MAX_ESTIMATE);
+    }
+
+    /**
+     * Brings the distances up to date after a door opened or closed. Does
+     * nothing unless closed doors block.
+     */
+    public void doorChanged(final Door door) {
+        if (!openDoorsOnly) {
+            return;
+        }
+        int id = door.getId();
+        int slot;
+        if (id >= 0) {
+            int i = doorIds.get(id);
+            slot = i < 0 ? -1 : doorSlots[i];
+        } else {
+            Integer known = unnumberedDoors.get(door);
+            slot = known == null ? -1 : known;
+        }
+        if (slot >= 0) {
+            doorChanged(slot / 4, slot % 4);
+        }
+    }
+
+    /**
+     * Same as {@link #doorChanged(Door)} for the door on a room's side.
+     */
+    public void doorChanged(final int room, final int dir) {
+        int other = graph.link(room, dir);
+        if (!openDoorsOnly || other < 0) {
+            return;
+        }
+        boolean open = graph.step(room, dir, true) >= 0;
+        for (int l = 0; l < k; l++) {
+            if (stale[l]) {
+                continue;
+            }
+            int du = get(room, l);
+            int dv = get(other, l);
+            if (open) {
+                if (du != UNREACHABLE && (dv == UNREACHABLE || dv > du + 1)) {
+                    lower(l, other, du + 1);
+                } else if (dv != UNREACHABLE && (du == UNREACHABLE || du > dv + 1)) {
+                    lower(l, room, dv + 1);
+                }
+            } else if (du != UNREACHABLE && dv != UNREACHABLE && Math.abs(du - dv) == 1) {
+                int far = du > dv ? room : other;
+                if (!hasParent(far, l, Math.max(du, dv), null) && !raise(l, far)) {
+                    stale[l] = true;
+                    staleCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether a room can be reached from a neighbour one move nearer
+     * the landmark, leaving out rooms in {@code exclude} if given.
+     */
+    private boolean hasParent(final int room, final int l, final int d, final Marks exclude) {
+        for (int dir = 0; dir < 4; dir++) {
+            int next = graph.step(room, dir, openDoorsOnly);
+            if (next >= 0 && get(next, l) == d - 1 && (exclude == null || !exclude.contains(next))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out again the distances from landmark {@code l} of a room that
+     * lost its last way one move nearer, and of the rooms beyond that only
+     * reached the landmark through it. Returns false, changing nothing, if
+     * there are more of them than the repair limit allows.
+     */
+    private boolean raise(final int l, final int from) {
+        int n = graph.size();
+        if (queue == null) {
+            queue = new int[n];
+        }
+        if (affected == null) {
+            affected = new Marks(n);
+            settled = new Marks(n);
+            heap = new IntHeap(1024);
+        }
+        int limit = Math.max(64, (int) (n * REPAIR_LIMIT));
+        affected.clear();
+        affected.add(from);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        // rooms one level at a time, so all of a room's nearer neighbours
+        // are known to be set back or not before it is looked at
+        while (head < tail) {
+            int room = queue[head++];
+            int child = get(room, l) + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = graph.step(room, dir, openDoorsOnly);
+                if (next >= 0 && !affected.contains(next) && get(next, l) == child
+                        && !hasParent(next, l, child, affected)) {
+                    if (tail >= limit) {
+                        return false;
+                    }
+                    affected.add(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        heap.clear();
+        settled.clear();
+        for (int i = 0; i < tail; i++) {
+            int room = queue[i];
+            long best = UNREACHABLE;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = graph.step(room, dir, openDoorsOnly);
+                if (next >= 0 && !affected.contains(next)) {
+                    best = Math.min(best, (long) get(next, l) + 1);
+                }
+            }
+            set(room, l, fit((int) Math.min(best, UNREACHABLE)));
+            if (best < UNREACHABLE) {
+                heap.push(best, room);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int room = heap.pop();
+            if (settled.contains(room)) {
+                continue;
+            }
+            settled.add(room);
+            int next = get(room, l) + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int neighbor = graph.step(room, dir, openDoorsOnly);
+                if (neighbor >= 0 && affected.contains(neighbor) && !settled.contains(neighbor)
+                        && next < get(neighbor, l)) {
+                    set(neighbor, l, fit(next));
+                    heap.push(next, neighbor);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the distances to ints first if a distance is too long for a
+     * char, and returns it.
+     */
+    private int fit(final int d) {
+        if (narrow != null && d != UNREACHABLE && d >= NARROW_UNREACHABLE) {
+            widen();
+        }
+        return d;
+    }
+
+    /**
+     * Gives a room a shorter distance from landmark {@code l} and passes the
+     * gain on breadth first, as far as it shortens other rooms' distances.
+     */
+    private void lower(final int l, final int from, final int d) {
+        if (queue == null) {
+            queue = new int[graph.size()];
+        }
+        set(from, l, fit(d));
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int room = queue[head++];
+            int next = get(room, l) + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int neighbor = graph.step(room, dir, openDoorsOnly);
+                if (neighbor >= 0 && next < get(neighbor, l)) {
+                    set(neighbor, l, fit(next));
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches again from every stale landmark, in parallel.
+     */
+    public void refresh() {
+        if (staleCount == 0) {
+            return;
+        }
+        int[] todo = IntStream.range(0, k).filter(l -> stale[l]).toArray();
+        boolean fits = IntStream.of(todo).parallel().mapToObj(l -> search(l, new int[graph.size()]))
+                .reduce(true, Boolean::logicalAnd);
+        if (!fits) {
+            widen();
+            IntStream.of(todo).parallel().forEach(l -> search(l, new int[graph.size()]));
+        }
+        for (int l : todo) {
+            stale[l] = false;
+        }
+        staleCount = 0;
+    }
+
+    /**
+     * Writes landmark {@code l}'s distances with a breadth-first search.
+     * Returns false, leaving the distances half written, if one is too long
+     * for a char.
+     */
+    private boolean search(final int l, final int[] queue) {
+        int n = graph.size();
+        for (int room = 0; room < n; room++) {
+            set(room, l, UNREACHABLE);
+        }
+        int from = landmarks[l];
+        set(from, l, 0);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int room = queue[head++];
+            int next = get(room, l) + 1;
+            if (narrow != null && next >= NARROW_UNREACHABLE) {
+                return false;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int neighbor = graph.step(room, dir, openDoorsOnly);
+                if (neighbor >= 0 && get(neighbor, l) == UNREACHABLE) {
+                    set(neighbor, l, next);
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void searchFitting(final int l, final int[] queue) {
+        if (!search(l, queue)) {
+            widen();
+            search(l, queue);
+        }
+    }
+
+    /**
+     * Moves the distances to ints.
+     */
+    private void widen() {
+        int[] ints = new int[narrow.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = narrow[i] == NARROW_UNREACHABLE ? -1 : narrow[i];
+        }
+        wide = ints;
+        narrow = null;
+    }
+
+    /**
+     * Saves the landmarks and their distances, refreshing stale ones first.
+     */
+    public void write(final Path path) throws IOException {
+        refresh();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            int flags = (openDoorsOnly ? FLAG_OPEN_DOORS_ONLY : 0) | (narrow == null ? FLAG_WIDE : 0);
+            out.putInt(MAGIC).putInt(VERSION).putInt(graph.size()).putInt(k).putInt(flags).putInt(0).putInt(0)
+                    .putInt(0);
+            for (int l = 0; l < k; l++) {
+                out = room(channel, out, 4);
+                out.putInt(landmarks[l]);
+            }
+            if (narrow != null) {
+                for (char d : narrow) {
+                    out = room(channel, out, 2);
+                    out.putChar(d);
+                }
+            } else {
+                for (int d : wide) {
+                    out = room(channel, out, 4);
+                    out.putInt(d);
+                }
+            }
+            flush(channel, out);
+        }
+    }
+
+    private static ByteBuffer room(final FileChannel channel, final ByteBuffer out, final int bytes)
+            throws IOException {
+        if (out.remaining() < bytes) {
+            flush(channel, out);
+        }
+        return out;
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Loads distances saved by {@link #write(Path)} for the same maze, read
+     * into the same graph order. Door states are taken to be as they were
+     * when it was saved.
+     */
+    public static LandmarkOracle read(final Path path, final MazeGraph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a landmark file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported landmark file version " + header.getInt(4));
+            }
+            int rooms = header.getInt(8);
+            int k = header.getInt(12);
+            int flags = header.getInt(16);
+            if (rooms != graph.size()) {
+                throw new IOException("landmarks are for " + rooms + " rooms, not " + graph.size());
+            }
+            boolean wide = (flags & FLAG_WIDE) != 0;
+            long size = HEADER_SIZE + 4L * k + (wide ? 4L : 2L) * rooms * k;
+            if (k <= 0 || channel.size() != size) {
+                throw new IOException("truncated landmark file");
+            }
+            ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size - HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int[] landmarks = new int[k];
+            body.asIntBuffer().get(landmarks);
+            body.position(4 * k);
+            LandmarkOracle oracle;
+            try {
+                oracle = new LandmarkOracle(graph, (flags & FLAG_OPEN_DOORS_ONLY) != 0, landmarks);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("bad landmark file: " + e.getMessage(), e);
+            }
+            if (wide) {
+                oracle.wide = new int[rooms * k];
+                body.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(oracle.wide);
+            } else {
+                oracle.narrow = new char[rooms * k];
+                body.slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer().get(oracle.narrow);
+            }
+            return oracle;
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("truncated landmark file");
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * A reusable set of room indices. Clearing bumps a generation counter
+ * instead of wiping the array, so starting a new search costs nothing.
+ */
+final class Marks {
+    private final int[] marks;
+    private int stamp;
+
+    Marks(final int size) {
+        marks = new int[size];
+    }
+
+    void clear() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+    }
+
+    boolean contains(final int i) {
+        return marks[i] == stamp;
+    }
+
+    void add(final int i) {
+        marks[i] = stamp;
+    }
+}
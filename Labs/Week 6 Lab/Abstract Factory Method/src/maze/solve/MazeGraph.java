@@ -0,0 +1,132 @@
+package maze.solve;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.Room;
+import maze.io.NumberIndex;
+
+/**
+ * A dense index over the rooms of a maze, made once by walking every
+ * {@link Room#getSide(Direction)} link. Rooms become indices
+ * {@code 0..size()-1} in iteration order, found by number through a
+ * {@link NumberIndex} however sparse the numbers are. Each room has four
+ * link slots in {@link Direction} order holding the index of the room
+ * reached through that side, or -1 for a wall or unset side. Slots that go through a door also keep the
+ * {@link Door} so its open state is read live at search time.
+ * <p>
+ * The index does not follow later changes to the maze's layout by itself.
+ * After sides change, {@link #update(Room)} the rooms they belong to; after
+ * adding rooms, make a new one.
+ */
+public final class MazeGraph {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Room[] rooms;
+    private final int[] numbers;
+    private final NumberIndex index = new NumberIndex();
+    private final int[] links;
+    private final Door[] doors;
+
+    public MazeGraph(final Maze maze) {
+        int size = maze.getNumberOfRooms();
+        rooms = new Room[size];
+        numbers = new int[size];
+        int i = 0;
+        for (Room room : maze) {
+            rooms[i] = room;
+            numbers[i] = room.getNumber();
+            if (index.add(numbers[i]) != i) {
+                throw new IllegalArgumentException("room " + numbers[i] + " appears twice");
+            }
+            i++;
+        }
+        links = new int[4 * size];
+        doors = new Door[4 * size];
+        for (i = 0; i < size; i++) {
+            read(i);
+        }
+    }
+
+    private void read(final int i) {
+        for (Direction dir : DIRECTIONS) {
+            int slot = 4 * i + dir.ordinal();
+            MapSite site = rooms[i].getSide(dir);
+            Room next = null;
+            doors[slot] = null;
+            if (site instanceof Room) {
+                next = (Room) site;
+            } else if (site instanceof Door) {
+                doors[slot] = (Door) site;
+                next = doors[slot].getOtherSide(rooms[i]);
+            }
+            links[slot] = next == null ? -1 : indexOf(next.getNumber());
+        }
+    }
+
+    /**
+     * Reads a room's sides again after they changed in the maze. Returns
+     * false, changing nothing, if the room is not in this graph. A side
+     * leading to a room added since the graph was made reads as a wall;
+     * such rooms need a new graph.
+     */
+    public boolean update(final Room room) {
+        int i = indexOf(room);
+        if (i < 0 || rooms[i] != room) {
+            return false;
+        }
+        read(i);
+        return true;
+    }
+
+    public int size() {
+        return rooms.length;
+    }
+
+    /**
+     * Returns the index of a room number, or -1.
+     */
+    public int indexOf(final int number) {
+        return index.get(number);
+    }
+
+    public int indexOf(final Room room) {
+        return indexOf(room.getNumber());
+    }
+
+    public Room roomAt(final int room) {
+        return rooms[room];
+    }
+
+    public int numberOf(final int room) {
+        return numbers[room];
+    }
+
+    /**
+     * Returns the room reached from {@code room} through {@code dir}, or -1.
+     * Doors count as passable whatever their state.
+     */
+    public int link(final int room, final int dir) {
+        return links[4 * room + dir];
+    }
+
+    /**
+     * Returns the door on a side, or null.
+     */
+    public Door doorAt(final int room, final int dir) {
+        return doors[4 * room + dir];
+    }
+
+    /**
+     * Returns the room reached through a side, or -1 if the side is a wall
+     * or, when {@code openDoorsOnly} is set, a closed door.
+     */
+    public int step(final int room, final int dir, final boolean openDoorsOnly) {
+        int slot = 4 * room + dir;
+        if (openDoorsOnly && doors[slot] != null && !doors[slot].isOpen()) {
+            return -1;
+        }
+        return links[slot];
+    }
+}
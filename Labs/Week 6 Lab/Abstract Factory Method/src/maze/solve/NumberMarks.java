@@ -0,0 +1,48 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * A reusable set of room numbers, however sparse, in an open-addressing
+ * table of at least twice the rooms it may hold. Numbers below the table
+ * size sit at their own slot, so a dense maze is marked as if by number;
+ * higher bits are hashed in. Clearing bumps a generation counter as
+ * {@link Marks} does.
+ */
+final class NumberMarks {
+    private final int[] slots;
+    private final int shift;
+    private final int mask;
+    private int stamp;
+
+    NumberMarks(final int size) {
+        int capacity = Integer.highestOneBit(Math.max(2 * size - 1, 1)) << 1;
+        slots = new int[2 * capacity];
+        shift = Integer.numberOfTrailingZeros(capacity);
+        mask = capacity - 1;
+    }
+
+    void clear() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(slots, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Adds a number, returning false if it was already there.
+     */
+    boolean add(final int number) {
+        for (int i = (number ^ (number >>> shift) * 0x9E3779B9) & mask;; i = (i + 1) & mask) {
+            int at = 2 * i;
+            if (slots[at + 1] != stamp) {
+                slots[at] = number;
+                slots[at + 1] = stamp;
+                return true;
+            }
+            if (slots[at] == number) {
+                return false;
+            }
+        }
+    }
+}
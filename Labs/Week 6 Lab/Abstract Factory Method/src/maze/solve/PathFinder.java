@@ -0,0 +1,64 @@
+package maze.solve;
+
+import maze.Room;
+
+/**
+ * Finds shortest routes between rooms of a {@link MazeGraph}.
+ * <p>
+ * Each finder owns work arrays sized to the graph, made once in the
+ * constructor and reused by every query, so a search allocates nothing.
+ * A finder is therefore not safe to share between threads; give each thread
+ * its own. Doors are passable; with {@code openDoorsOnly} a closed door
+ * counts as a wall.
+ */
+public abstract class PathFinder {
+    protected final MazeGraph graph;
+    protected final boolean openDoorsOnly;
+
+    protected PathFinder(final MazeGraph graph, final boolean openDoorsOnly) {
+        this.graph = graph;
+        this.openDoorsOnly = openDoorsOnly;
+    }
+
+    /**
+     * Writes the moves from {@code from} to {@code to} into {@code route}.
+     * Returns false, leaving the route not found, if there is no way through.
+     */
+    public final boolean find(final Room from, final Room to, final Route route) {
+        int start = graph.indexOf(from);
+        int goal = graph.indexOf(to);
+        if (start < 0 || goal < 0) {
+            route.notFound();
+            return false;
+        }
+        return find(start, goal, route);
+    }
+
+    /**
+     * Same as {@link #find(Room, Room, Route)} with graph indices.
+     */
+    public abstract boolean find(int from, int to, Route route);
+
+    public MazeGraph getGraph() {
+        return graph;
+    }
+
+    protected final int step(final int room, final int dir) {
+        return graph.step(room, dir, openDoorsOnly);
+    }
+
+    /**
+     * Writes the route to {@code to} by following parent links back to
+     * {@code from}; {@code via[r]} is the move that entered room {@code r}.
+     */
+    static void trace(final int from, final int to, final int[] parent, final byte[] via, final Route route) {
+        int length = 0;
+        for (int r = to; r != from; r = parent[r]) {
+            length++;
+        }
+        route.resize(length);
+        for (int r = to; r != from; r = parent[r]) {
+            route.set(--length, via[r]);
+        }
+    }
+}
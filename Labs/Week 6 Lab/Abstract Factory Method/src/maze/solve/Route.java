@@ -0,0 +1,76 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+import maze.Direction;
+
+/**
+ * The directions of a path from one room to another. Searches write into a
+ * route the caller owns, so it can be reused across queries; its storage
+ * only grows when a longer path than any before comes along.
+ */
+public final class Route {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private byte[] steps = new byte[64];
+    private int length;
+
+    /**
+     * Returns the number of moves, or -1 if no path was found.
+     */
+    public int length() {
+        return length;
+    }
+
+    public boolean isFound() {
+        return length >= 0;
+    }
+
+    public Direction get(final int i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(i));
+        }
+        return DIRECTIONS[steps[i]];
+    }
+
+    /**
+     * Returns the ordinal of move {@code i} without bounds checks.
+     */
+    public int ordinal(final int i) {
+        return steps[i];
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    void notFound() {
+        length = -1;
+    }
+
+    /**
+     * Makes room for {@code n} moves and sets the length to {@code n}.
+     */
+    void resize(final int n) {
+        if (n > steps.length) {
+            steps = Arrays.copyOf(steps, Math.max(n, steps.length * 2));
+        }
+        length = n;
+    }
+
+    void set(final int i, final int dir) {
+        steps[i] = (byte) dir;
+    }
+
+    @Override
+    public String toString() {
+        if (length < 0) {
+            return "no route";
+        }
+        StringBuilder s = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            s.append(DIRECTIONS[steps[i]].name().charAt(0));
+        }
+        return s.toString();
+    }
+}
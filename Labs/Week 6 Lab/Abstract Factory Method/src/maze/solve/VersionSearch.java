@@ -0,0 +1,72 @@
+package maze.solve;
+
+import maze.version.MazeVersion;
+
+/**
+ * Breadth-first search over a pinned {@link MazeVersion}, by room number.
+ * The version cannot change during a search, so the route is always one
+ * that existed in full in some published version, however fast edits come.
+ * <p>
+ * Rooms are kept in the order they are reached, so the work arrays are
+ * sized to the version's room count however sparse the numbers are, and
+ * grown when a later version has more rooms. As with a {@link PathFinder},
+ * a search allocates nothing once they have grown, and one instance is for
+ * one thread.
+ */
+public final class VersionSearch {
+    private final boolean openDoorsOnly;
+    private int[] queue = new int[0];
+    private int[] parent = new int[0];
+    private byte[] via = new byte[0];
+    private NumberMarks seen = new NumberMarks(0);
+
+    public VersionSearch(final boolean openDoorsOnly) {
+        this.openDoorsOnly = openDoorsOnly;
+    }
+
+    /**
+     * Writes the moves from room {@code from} to room {@code to} of the
+     * version into {@code route}. Returns false, leaving the route not
+     * found, if either room is missing or there is no way through.
+     */
+    public boolean find(final MazeVersion version, final int from, final int to, final Route route) {
+        if (!version.contains(from) || !version.contains(to)) {
+            route.notFound();
+            return false;
+        }
+        if (from == to) {
+            route.clear();
+            return true;
+        }
+        int n = version.getRoomCount();
+        if (queue.length < n) {
+            queue = new int[n];
+            parent = new int[n];
+            via = new byte[n];
+            seen = new NumberMarks(n);
+        }
+        seen.clear();
+        seen.add(from);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int room = queue[head++];
+            for (int dir = 0; dir < 4; dir++) {
+                int next = version.step(room, dir, openDoorsOnly);
+                if (next < 0 || !seen.add(next)) {
+                    continue;
+                }
+                parent[tail] = head - 1;
+                via[tail] = (byte) dir;
+                if (next == to) {
+                    PathFinder.trace(0, tail, parent, via, route);
+                    return true;
+                }
+                queue[tail++] = next;
+            }
+        }
+        route.notFound();
+        return false;
+    }
+}
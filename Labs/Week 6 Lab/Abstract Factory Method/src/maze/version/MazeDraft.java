@@ -0,0 +1,364 @@
+package maze.version;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import maze.Direction;
+import maze.io.MazeHandler;
+import maze.patch.MazePatch;
+
+/**
+ * The next {@link MazeVersion} while it is being edited. A draft copies a
+ * leaf, page or directory of its version the first time it writes to it
+ * and writes the copy in place from then on; {@link #freeze()} hands the
+ * result out as a new version, after which the draft cannot be used.
+ * <p>
+ * The edits keep both sides of a passage or door in step as a
+ * {@link maze.patch.MazePatcher} does. The draft is also a
+ * {@link MazeHandler}, taking records as they are and trusting them, so a
+ * maze file can be read straight into a version. A draft is for one
+ * thread.
+ */
+public final class MazeDraft implements MazeHandler {
+    private final MazeVersion base;
+    private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int[][][] top;
+    private int[][] doorRooms;
+    private long[][] doorOpen;
+    private int rooms;
+    private int doors;
+    private int current;
+    private boolean frozen;
+
+    private int cachedKey = -1;
+    private int[] cachedLeaf;
+
+    MazeDraft(final MazeVersion base) {
+        this.base = base;
+        top = base.top;
+        doorRooms = base.doorRooms;
+        doorOpen = base.doorOpen;
+        rooms = base.rooms;
+        doors = base.doors;
+        current = base.current;
+    }
+
+    /**
+     * Returns the version this draft was started from.
+     */
+    public MazeVersion getBase() {
+        return base;
+    }
+
+    /**
+     * Applies every edit of a patch in order. A refused edit throws an
+     * {@link IllegalArgumentException} with its place in the patch and may
+     * leave the draft half edited; drop it, the base version is untouched.
+     */
+    public MazeDraft apply(final MazePatch patch) {
+        List<MazePatch.Edit> edits = patch.getEdits();
+        for (int i = 0; i < edits.size(); i++) {
+            try {
+                apply(edits.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("edit " + (i + 1) + " (" + edits.get(i) + "): "
+                        + e.getMessage(), e);
+            }
+        }
+        return this;
+    }
+
+    public MazeDraft apply(final MazePatch.Edit edit) {
+        int room = edit.getRoom();
+        Direction dir = edit.getDirection();
+        switch (edit.getKind()) {
+        case ROOM:
+            addRoom(room);
+            break;
+        case REMOVE:
+            removeRoom(room);
+            break;
+        case LINK:
+            link(room, dir, edit.getOther());
+            break;
+        case WALL:
+            wall(room, dir);
+            break;
+        case DOOR:
+            addDoor(room, dir, edit.getOther(), edit.isOpen());
+            break;
+        case OPEN:
+        case CLOSE:
+            setDoorOpen(room, dir, edit.getKind() == MazePatch.Kind.OPEN);
+            break;
+        default:
+            toggleDoor(room, dir);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a room walled in on every side.
+     */
+    public MazeDraft addRoom(final int room) {
+        if (room < 0) {
+            throw new IllegalArgumentException("negative room number " + room);
+        }
+        if (side(room, 0) != MazeVersion.ABSENT) {
+            throw new IllegalArgumentException("room " + room + " already exists");
+        }
+        int[] leaf = writableLeaf(room);
+        Arrays.fill(leaf, at(room), at(room) + 4, MazeHandler.WALL);
+        rooms++;
+        return this;
+    }
+
+    /**
+     * Removes a room, walling up every side that led to it.
+     */
+    public MazeDraft removeRoom(final int room) {
+        require(room);
+        if (room == current) {
+            throw new IllegalArgumentException("room " + room + " is the current room");
+        }
+        for (int dir = 0; dir < 4; dir++) {
+            detach(room, dir);
+        }
+        int[] leaf = writableLeaf(room);
+        Arrays.fill(leaf, at(room), at(room) + 4, MazeVersion.ABSENT);
+        rooms--;
+        return this;
+    }
+
+    public MazeDraft link(final int room, final Direction dir, final int other) {
+        requireOther(room, other);
+        int d = dir.ordinal();
+        detach(room, d);
+        detach(other, d ^ 1);
+        setSide(room, d, other);
+        setSide(other, d ^ 1, room);
+        return this;
+    }
+
+    public MazeDraft wall(final int room, final Direction dir) {
+        require(room);
+        detach(room, dir.ordinal());
+        setSide(room, dir.ordinal(), MazeHandler.WALL);
+        return this;
+    }
+
+    /**
+     * Puts a new door between two rooms and returns its id.
+     */
+    public int addDoor(final int room, final Direction dir, final int other, final boolean open) {
+        requireOther(room, other);
+        int d = dir.ordinal();
+        detach(room, d);
+        detach(other, d ^ 1);
+        int id = doors;
+        door(id, room, other, open);
+        setSide(room, d, MazeHandler.door(id));
+        setSide(other, d ^ 1, MazeHandler.door(id));
+        return id;
+    }
+
+    public MazeDraft setDoorOpen(final int room, final Direction dir, final boolean open) {
+        setOpen(doorOn(room, dir), open);
+        return this;
+    }
+
+    public MazeDraft toggleDoor(final int room, final Direction dir) {
+        int id = doorOn(room, dir);
+        setOpen(id, !isOpen(id));
+        return this;
+    }
+
+    public MazeDraft setCurrentRoom(final int room) {
+        require(room);
+        current = room;
+        return this;
+    }
+
+    /**
+     * Returns the draft as a new version, numbered one past its base.
+     */
+    public MazeVersion freeze() {
+        checkOpen();
+        frozen = true;
+        return new MazeVersion(base.number + 1, top, doorRooms, doorOpen, rooms, doors, current);
+    }
+
+    @Override
+    public void room(final int number, final int north, final int south, final int east, final int west) {
+        if (number < 0) {
+            throw new IllegalArgumentException("negative room number " + number);
+        }
+        if (side(number, 0) == MazeVersion.ABSENT) {
+            rooms++;
+        }
+        if (current < 0) {
+            current = number;
+        }
+        int[] leaf = writableLeaf(number);
+        int at = at(number);
+        leaf[at] = north;
+        leaf[at + 1] = south;
+        leaf[at + 2] = east;
+        leaf[at + 3] = west;
+    }
+
+    @Override
+    public void door(final int id, final int room1, final int room2, final boolean open) {
+        checkOpen();
+        int p = id >>> MazeVersion.DOOR_SHIFT;
+        if (p >= doorRooms.length) {
+            doorRooms = own(Arrays.copyOf(doorRooms, p + 1));
+            doorOpen = own(Arrays.copyOf(doorOpen, p + 1));
+        } else {
+            doorRooms = writable(doorRooms);
+            doorOpen = writable(doorOpen);
+        }
+        if (doorRooms[p] == null) {
+            doorRooms[p] = own(new int[2 * MazeVersion.DOOR_PAGE]);
+            doorOpen[p] = own(new long[MazeVersion.DOOR_PAGE >>> 6]);
+        }
+        int[] page = doorRooms[p] = writable(doorRooms[p]);
+        int at = (id & (MazeVersion.DOOR_PAGE - 1)) << 1;
+        page[at] = room1;
+        page[at + 1] = room2;
+        doors = Math.max(doors, id + 1);
+        setOpen(id, open);
+    }
+
+    @Override
+    public void currentRoom(final int number) {
+        current = number;
+    }
+
+    /**
+     * Walls up the far side of whatever a side leads to, if it leads back,
+     * so that the side can be set to something else.
+     */
+    private void detach(final int room, final int dir) {
+        int side = side(room, dir);
+        int far = -1;
+        if (side >= 0) {
+            far = side;
+        } else if (MazeHandler.isDoor(side)) {
+            int id = MazeHandler.doorId(side);
+            int[] page = doorRooms[id >>> MazeVersion.DOOR_SHIFT];
+            int at = (id & (MazeVersion.DOOR_PAGE - 1)) << 1;
+            far = page[at] == room ? page[at + 1] : page[at];
+        }
+        if (far < 0 || far == room) {
+            return;
+        }
+        int back = side(far, dir ^ 1);
+        if (back == room || back == side) {
+            setSide(far, dir ^ 1, MazeHandler.WALL);
+        }
+    }
+
+    private int doorOn(final int room, final Direction dir) {
+        require(room);
+        int side = side(room, dir.ordinal());
+        if (!MazeHandler.isDoor(side)) {
+            throw new IllegalArgumentException("no door on the " + dir + " side of room " + room);
+        }
+        return MazeHandler.doorId(side);
+    }
+
+    private boolean isOpen(final int id) {
+        return (doorOpen[id >>> MazeVersion.DOOR_SHIFT][(id & (MazeVersion.DOOR_PAGE - 1)) >>> 6] & (1L << id)) != 0;
+    }
+
+    private void setOpen(final int id, final boolean open) {
+        checkOpen();
+        int p = id >>> MazeVersion.DOOR_SHIFT;
+        doorOpen = writable(doorOpen);
+        long[] page = doorOpen[p] = writable(doorOpen[p]);
+        int w = (id & (MazeVersion.DOOR_PAGE - 1)) >>> 6;
+        page[w] = open ? page[w] | (1L << id) : page[w] & ~(1L << id);
+    }
+
+    private void require(final int room) {
+        if (side(room, 0) == MazeVersion.ABSENT) {
+            throw new IllegalArgumentException("no room " + room);
+        }
+    }
+
+    private void requireOther(final int room, final int other) {
+        require(room);
+        if (other == room) {
+            throw new IllegalArgumentException("room " + room + " cannot lead to itself");
+        }
+        require(other);
+    }
+
+    private int side(final int room, final int dir) {
+        int[] leaf = MazeVersion.leaf(top, room);
+        return leaf == null ? MazeVersion.ABSENT : leaf[at(room) | dir];
+    }
+
+    private void setSide(final int room, final int dir, final int side) {
+        writableLeaf(room)[at(room) | dir] = side;
+    }
+
+    private static int at(final int room) {
+        return (room & (MazeVersion.LEAF_ROOMS - 1)) << 2;
+    }
+
+    private int[] writableLeaf(final int room) {
+        checkOpen();
+        int key = room >>> MazeVersion.LEAF_SHIFT;
+        if (key == cachedKey) {
+            return cachedLeaf;
+        }
+        int hi = room >>> (MazeVersion.MID_SHIFT + MazeVersion.LEAF_SHIFT);
+        if (hi >= top.length) {
+            top = own(Arrays.copyOf(top, hi + 1));
+        } else {
+            top = writable(top);
+        }
+        int[][] mid = top[hi] == null ? own(new int[MazeVersion.MID_LEAVES][]) : writable(top[hi]);
+        top[hi] = mid;
+        int m = key & (MazeVersion.MID_LEAVES - 1);
+        int[] leaf;
+        if (mid[m] == null) {
+            leaf = own(new int[4 * MazeVersion.LEAF_ROOMS]);
+            Arrays.fill(leaf, MazeVersion.ABSENT);
+        } else {
+            leaf = writable(mid[m]);
+        }
+        mid[m] = leaf;
+        cachedKey = key;
+        cachedLeaf = leaf;
+        return leaf;
+    }
+
+    private <T> T own(final T array) {
+        owned.add(array);
+        return array;
+    }
+
+    private int[] writable(final int[] array) {
+        return owned.contains(array) ? array : own(array.clone());
+    }
+
+    private long[] writable(final long[] array) {
+        return owned.contains(array) ? array : own(array.clone());
+    }
+
+    private <T> T[] writable(final T[] array) {
+        return owned.contains(array) ? array : own(array.clone());
+    }
+
+    private void checkOpen() {
+        if (frozen) {
+            throw new IllegalStateException("draft of version " + base.number + " was already frozen");
+        }
+    }
+}
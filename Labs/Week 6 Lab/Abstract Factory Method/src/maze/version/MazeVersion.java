@@ -0,0 +1,266 @@
+package maze.version;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import maze.Direction;
+import maze.Door;
+import maze.MapSite;
+import maze.Maze;
+import maze.Room;
+import maze.io.MazeHandler;
+
+/**
+ * One immutable version of a maze's layout and door states. Nothing about
+ * a version ever changes, so any number of threads may read one, with no
+ * locking, for as long as they hold it; an edit makes a new version with
+ * {@link #edit()}.
+ * <p>
+ * Rooms are kept by number in a two-level directory of leaves of 1024
+ * rooms, four ints a room with sides coded as in {@link MazeHandler}, and
+ * doors by id in pages of 2048. A new version copies only the leaves and
+ * pages it writes and the directories above them, about 30 KB for a patch
+ * of a few rooms, and shares everything else with the version it came
+ * from, as {@link maze.DoorState} snapshots do.
+ */
+public final class MazeVersion {
+    static final int LEAF_SHIFT = 10;
+    static final int LEAF_ROOMS = 1 << LEAF_SHIFT;
+    static final int MID_SHIFT = 10;
+    static final int MID_LEAVES = 1 << MID_SHIFT;
+    static final int DOOR_SHIFT = 11;
+    static final int DOOR_PAGE = 1 << DOOR_SHIFT;
+
+    /**
+     * The side code of every side of a room that is not there.
+     */
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    /**
+     * The version with no rooms and no doors, numbered 0.
+     */
+    public static final MazeVersion EMPTY = new MazeVersion(0, new int[0][][], new int[0][], new long[0][], 0, 0, -1);
+
+    final long number;
+    final int[][][] top;
+    final int[][] doorRooms;
+    final long[][] doorOpen;
+    final int rooms;
+    final int doors;
+    final int current;
+
+    MazeVersion(final long number, final int[][][] top, final int[][] doorRooms, final long[][] doorOpen,
+            final int rooms, final int doors, final int current) {
+        this.number = number;
+        this.top = top;
+        this.doorRooms = doorRooms;
+        this.doorOpen = doorOpen;
+        this.rooms = rooms;
+        this.doors = doors;
+        this.current = current;
+    }
+
+    /**
+     * Takes a version of a built maze. Doors are numbered in the order they
+     * are met.
+     */
+    public static MazeVersion of(final Maze maze) {
+        MazeDraft draft = EMPTY.edit();
+        Map<Door, Integer> ids = new IdentityHashMap<>();
+        int[] sides = new int[4];
+        for (Room room : maze) {
+            for (Direction dir : Direction.values()) {
+                MapSite site = room.getSide(dir);
+                int side = MazeHandler.WALL;
+                if (site instanceof Room) {
+                    side = ((Room) site).getNumber();
+                } else if (site instanceof Door) {
+                    Door door = (Door) site;
+                    Integer id = ids.get(door);
+                    if (id == null) {
+                        id = ids.size();
+                        ids.put(door, id);
+                        Room other = door.getOtherSide(room);
+                        draft.door(id, room.getNumber(), other == null ? room.getNumber() : other.getNumber(),
+                                door.isOpen());
+                    }
+                    side = MazeHandler.door(id);
+                }
+                sides[dir.ordinal()] = side;
+            }
+            draft.room(room.getNumber(), sides[0], sides[1], sides[2], sides[3]);
+        }
+        Room current = maze.getCurrentRoom();
+        if (current != null) {
+            draft.currentRoom(current.getNumber());
+        }
+        return draft.freeze();
+    }
+
+    /**
+     * Starts the next version from this one. The draft can be edited by one
+     * thread; this version stays as it is.
+     */
+    public MazeDraft edit() {
+        return new MazeDraft(this);
+    }
+
+    /**
+     * Returns the version number, one more than the version it came from.
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    public int getRoomCount() {
+        return rooms;
+    }
+
+    /**
+     * Returns the number of door ids handed out. Doors replaced by walls
+     * keep their ids.
+     */
+    public int getDoorCount() {
+        return doors;
+    }
+
+    /**
+     * Returns the current room's number, or -1 if there is none.
+     */
+    public int getCurrentRoom() {
+        return current;
+    }
+
+    public boolean contains(final int room) {
+        int[] leaf = leaf(top, room);
+        return leaf != null && leaf[(room & (LEAF_ROOMS - 1)) << 2] != ABSENT;
+    }
+
+    /**
+     * Returns a side of a room coded as in {@link MazeHandler}: a room
+     * number, {@link MazeHandler#WALL} or a door.
+     */
+    public int getSide(final int room, final Direction dir) {
+        int side = side(room, dir.ordinal());
+        if (side == ABSENT) {
+            throw new IllegalArgumentException("no room " + room);
+        }
+        return side;
+    }
+
+    /**
+     * Returns the room one move from {@code room} in direction ordinal
+     * {@code dir}, or -1 for a wall, a missing room, or with
+     * {@code openDoorsOnly} a closed door.
+     */
+    public int step(final int room, final int dir, final boolean openDoorsOnly) {
+        int side = side(room, dir);
+        if (side >= 0) {
+            return side;
+        }
+        if (side == MazeHandler.WALL || side == ABSENT) {
+            return -1;
+        }
+        int id = MazeHandler.doorId(side);
+        if (openDoorsOnly && !isOpen(id)) {
+            return -1;
+        }
+        int[] page = doorRooms[id >>> DOOR_SHIFT];
+        int at = (id & (DOOR_PAGE - 1)) << 1;
+        return page[at] == room ? page[at + 1] : page[at];
+    }
+
+    public boolean isOpen(final int door) {
+        checkDoor(door);
+        return (doorOpen[door >>> DOOR_SHIFT][(door & (DOOR_PAGE - 1)) >>> 6] & (1L << door)) != 0;
+    }
+
+    /**
+     * Returns one of the two rooms a door joins, {@code end} 0 or 1.
+     */
+    public int getDoorRoom(final int door, final int end) {
+        checkDoor(door);
+        return doorRooms[door >>> DOOR_SHIFT][((door & (DOOR_PAGE - 1)) << 1) + (end & 1)];
+    }
+
+    /**
+     * Counts the doors that are open, used or not.
+     */
+    public int countOpenDoors() {
+        int count = 0;
+        for (long[] page : doorOpen) {
+            for (long word : page) {
+                count += Long.bitCount(word);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Streams the version as records in room number order, then the doors
+     * some room still uses, then the current room, as a reader of a file
+     * would. Build a {@link Maze} for the viewer with a
+     * {@link maze.io.MazeBuilder}, or write a file with a
+     * {@link maze.io.MazeTextWriter}.
+     */
+    public void write(final MazeHandler out) {
+        BitSet used = new BitSet(doors);
+        for (int hi = 0; hi < top.length; hi++) {
+            int[][] mid = top[hi];
+            if (mid == null) {
+                continue;
+            }
+            for (int m = 0; m < MID_LEAVES; m++) {
+                int[] leaf = mid[m];
+                if (leaf == null) {
+                    continue;
+                }
+                for (int r = 0; r < LEAF_ROOMS; r++) {
+                    int at = r << 2;
+                    if (leaf[at] == ABSENT) {
+                        continue;
+                    }
+                    for (int d = 0; d < 4; d++) {
+                        if (MazeHandler.isDoor(leaf[at + d])) {
+                            used.set(MazeHandler.doorId(leaf[at + d]));
+                        }
+                    }
+                    out.room((hi << (MID_SHIFT + LEAF_SHIFT)) | (m << LEAF_SHIFT) | r, leaf[at], leaf[at + 1],
+                            leaf[at + 2], leaf[at + 3]);
+                }
+            }
+        }
+        for (int id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1)) {
+            out.door(id, getDoorRoom(id, 0), getDoorRoom(id, 1), isOpen(id));
+        }
+        if (current >= 0) {
+            out.currentRoom(current);
+        }
+        out.end();
+    }
+
+    int side(final int room, final int dir) {
+        int[] leaf = leaf(top, room);
+        return leaf == null ? ABSENT : leaf[((room & (LEAF_ROOMS - 1)) << 2) | dir];
+    }
+
+    private void checkDoor(final int door) {
+        if (door < 0 || door >= doors) {
+            throw new IndexOutOfBoundsException("door " + door);
+        }
+    }
+
+    static int[] leaf(final int[][][] top, final int room) {
+        int hi = room >>> (MID_SHIFT + LEAF_SHIFT);
+        if (room < 0 || hi >= top.length || top[hi] == null) {
+            return null;
+        }
+        return top[hi][(room >>> LEAF_SHIFT) & (MID_LEAVES - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "version " + number + ": " + rooms + " rooms, " + doors + " doors";
+    }
+}
@@ -0,0 +1,56 @@
+package maze.version;
+
+import maze.patch.MazePatch;
+
+/**
+ * A maze that editors change while solvers and viewers read it. Readers
+ * {@link #current() pin} the latest {@link MazeVersion} with one volatile
+ * read and keep it as long as they like; it never changes under them.
+ * Writers build the next version off to the side and publish it with one
+ * volatile write, so a reader sees every edit of a patch or none of them,
+ * and no reader ever waits for a writer.
+ * <p>
+ * Writers take turns: {@link #apply(MazePatch)} holds this object's lock
+ * while it edits and publishes. A writer that builds its own draft hands
+ * it to {@link #publish(MazeDraft)}, which refuses it if another version
+ * was published since the draft was started.
+ */
+public final class VersionedMaze {
+    private volatile MazeVersion current;
+
+    public VersionedMaze(final MazeVersion version) {
+        current = version;
+    }
+
+    /**
+     * Returns the latest version. Pin it for a whole search or frame.
+     */
+    public MazeVersion current() {
+        return current;
+    }
+
+    /**
+     * Applies a patch to the latest version and publishes the result, or
+     * publishes nothing and throws if an edit is refused.
+     */
+    public synchronized MazeVersion apply(final MazePatch patch) {
+        MazeVersion next = current.edit().apply(patch).freeze();
+        current = next;
+        return next;
+    }
+
+    /**
+     * Publishes a draft of the latest version. Throws an
+     * {@link IllegalStateException} if the draft was started from an older
+     * one; start again from {@link #current()}.
+     */
+    public synchronized MazeVersion publish(final MazeDraft draft) {
+        if (draft.getBase() != current) {
+            throw new IllegalStateException("draft of version " + draft.getBase().getNumber()
+                    + ", but version " + current.getNumber() + " is the latest");
+        }
+        MazeVersion next = draft.freeze();
+        current = next;
+        return next;
+    }
+}